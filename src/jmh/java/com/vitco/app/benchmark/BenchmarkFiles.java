@@ -0,0 +1,267 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.core.data.container.Voxel;
+
+import java.awt.*;
+import java.io.*;
+import java.util.ArrayList;
+
+/**
+ * Writes the generated models in the formats that can only be imported (there is no exporter
+ * for them), so the importers can be benchmarked with files of a known size.
+ */
+public final class BenchmarkFiles {
+
+    // the model as dense grid (palette index + 1, zero if there is no voxel)
+    private static final class Grid {
+        private final int sx, sy, sz;
+        private final int[][][] cells;
+        private final ArrayList<Color> palette = new ArrayList<Color>();
+
+        private Grid(Voxel[] voxels) {
+            int[] min = new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+            int[] max = new int[] {Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            for (Voxel voxel : voxels) {
+                int[] pos = voxel.getPosAsInt();
+                for (int i = 0; i < 3; i++) {
+                    min[i] = Math.min(min[i], pos[i]);
+                    max[i] = Math.max(max[i], pos[i]);
+                }
+            }
+            sx = max[0] - min[0] + 1;
+            sy = max[1] - min[1] + 1;
+            sz = max[2] - min[2] + 1;
+            cells = new int[sx][sy][sz];
+            for (Voxel voxel : voxels) {
+                int[] pos = voxel.getPosAsInt();
+                int index = palette.indexOf(voxel.getColor());
+                if (index == -1) {
+                    index = palette.size();
+                    palette.add(voxel.getColor());
+                }
+                cells[pos[0] - min[0]][pos[1] - min[1]][pos[2] - min[2]] = index + 1;
+            }
+        }
+    }
+
+    // helper - write a little-endian int
+    private static void writeIntRev(DataOutputStream out, int value) throws IOException {
+        out.writeInt(Integer.reverseBytes(value));
+    }
+
+    // helper - write a little-endian short
+    private static void writeShortRev(DataOutputStream out, int value) throws IOException {
+        out.writeShort(Short.reverseBytes((short) value));
+    }
+
+    // write the model as binvox file (the format needs a cube)
+    private static void writeBinVox(Grid grid, DataOutputStream out) throws IOException {
+        int size = Math.max(grid.sx, Math.max(grid.sy, grid.sz));
+        out.writeBytes("#binvox 1\ndim " + size + " " + size + " " + size + "\ntranslate 0 0 0\nscale 1\ndata\n");
+        // run length encoded (value, count)
+        int value = -1;
+        int count = 0;
+        for (int z = 0; z < size; z++) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    int cell = x < grid.sx && y < grid.sy && z < grid.sz && grid.cells[x][y][z] != 0 ? 1 : 0;
+                    if (cell != value || count == 255) {
+                        if (count > 0) {
+                            out.writeByte(value);
+                            out.writeByte(count);
+                        }
+                        value = cell;
+                        count = 0;
+                    }
+                    count++;
+                }
+            }
+        }
+        out.writeByte(value);
+        out.writeByte(count);
+    }
+
+    // write the model as raw vox file (8 bits per voxel)
+    private static void writeRawVox(Grid grid, DataOutputStream out) throws IOException {
+        out.writeBytes("XOVR");
+        writeIntRev(out, grid.sx);
+        writeIntRev(out, grid.sy);
+        writeIntRev(out, grid.sz);
+        writeIntRev(out, 8);
+        for (int z = 0; z < grid.sz; z++) {
+            for (int y = 0; y < grid.sy; y++) {
+                for (int x = 0; x < grid.sx; x++) {
+                    out.writeByte(grid.cells[x][y][z]);
+                }
+            }
+        }
+    }
+
+    // write the model as kvx file (one slab per run of voxels in a column)
+    private static void writeKvx(Grid grid, DataOutputStream out) throws IOException {
+        ByteArrayOutputStream slabBytes = new ByteArrayOutputStream();
+        DataOutputStream slabs = new DataOutputStream(slabBytes);
+        int[] xoffset = new int[grid.sx + 1];
+        int[][] xyoffset = new int[grid.sx][grid.sy + 1];
+        int headerSize = (grid.sx + 1) * 4 + grid.sx * (grid.sy + 1) * 2;
+        for (int x = 0; x < grid.sx; x++) {
+            int columnStart = slabs.size();
+            xoffset[x] = headerSize + columnStart;
+            for (int y = 0; y < grid.sy; y++) {
+                xyoffset[x][y] = slabs.size() - columnStart;
+                int[] column = grid.cells[x][y];
+                for (int z = 0; z < grid.sz;) {
+                    if (column[z] == 0) {
+                        z++;
+                        continue;
+                    }
+                    int end = z;
+                    while (end < grid.sz && column[end] != 0 && end - z < 255) {
+                        end++;
+                    }
+                    slabs.writeByte(z);
+                    slabs.writeByte(end - z);
+                    // all faces visible
+                    slabs.writeByte(0x3F);
+                    for (int i = z; i < end; i++) {
+                        slabs.writeByte(column[i] - 1);
+                    }
+                    z = end;
+                }
+            }
+            xyoffset[x][grid.sy] = slabs.size() - columnStart;
+        }
+        xoffset[grid.sx] = headerSize + slabs.size();
+
+        writeIntRev(out, 24 + headerSize + slabs.size());
+        writeIntRev(out, grid.sx);
+        writeIntRev(out, grid.sy);
+        writeIntRev(out, grid.sz);
+        writeIntRev(out, (grid.sx / 2) << 8);
+        writeIntRev(out, (grid.sy / 2) << 8);
+        writeIntRev(out, grid.sz << 8);
+        for (int offset : xoffset) {
+            writeIntRev(out, offset);
+        }
+        for (int[] offsets : xyoffset) {
+            for (int offset : offsets) {
+                writeShortRev(out, offset);
+            }
+        }
+        slabBytes.writeTo(out);
+        // palette (six bits per channel)
+        for (int i = 0; i < 256; i++) {
+            Color color = i < grid.palette.size() ? grid.palette.get(i) : Color.BLACK;
+            out.writeByte(color.getRed() >> 2);
+            out.writeByte(color.getGreen() >> 2);
+            out.writeByte(color.getBlue() >> 2);
+        }
+    }
+
+    // write the model as Command & Conquer vxl file (one limb)
+    private static void writeCCVxl(Grid grid, DataOutputStream out) throws IOException {
+        // the columns of the limb (one span per run of voxels)
+        int baseSize = grid.sx * grid.sy;
+        int[] colStart = new int[baseSize];
+        int[] colEnd = new int[baseSize];
+        ByteArrayOutputStream spanBytes = new ByteArrayOutputStream();
+        DataOutputStream spans = new DataOutputStream(spanBytes);
+        for (int i = 0; i < baseSize; i++) {
+            int[] column = grid.cells[i % grid.sx][i / grid.sx];
+            int z = 0;
+            while (z < grid.sz && column[z] == 0) {
+                z++;
+            }
+            if (z == grid.sz) {
+                // empty column
+                colStart[i] = -1;
+                colEnd[i] = -1;
+                continue;
+            }
+            colStart[i] = spans.size();
+            int last = 0;
+            while (z < grid.sz) {
+                int end = z;
+                while (end < grid.sz && column[end] != 0) {
+                    end++;
+                }
+                spans.writeByte(z - last);
+                spans.writeByte(end - z);
+                for (int j = z; j < end; j++) {
+                    spans.writeByte(column[j]);
+                    spans.writeByte(0);
+                }
+                spans.writeByte(end - z);
+                last = end;
+                z = end;
+                while (z < grid.sz && column[z] == 0) {
+                    z++;
+                }
+                if (z == grid.sz && last < grid.sz) {
+                    // the column needs to reach the top
+                    spans.writeByte(grid.sz - last);
+                    spans.writeByte(0);
+                    spans.writeByte(0);
+                }
+            }
+            colEnd[i] = spans.size() - 1;
+        }
+        int bodySize = baseSize * 8 + spans.size();
+
+        // header
+        out.writeBytes("Voxel Animation");
+        out.writeByte(0);
+        writeIntRev(out, 1);
+        writeIntRev(out, 1);
+        writeIntRev(out, 1);
+        writeIntRev(out, bodySize);
+        out.write(new byte[770]);
+        // limb header
+        out.writeBytes("layer");
+        out.write(new byte[11 + 12]);
+        // body
+        for (int start : colStart) {
+            writeIntRev(out, start);
+        }
+        for (int end : colEnd) {
+            writeIntRev(out, end);
+        }
+        spanBytes.writeTo(out);
+        // limb tailer
+        writeIntRev(out, 0);
+        writeIntRev(out, baseSize * 4);
+        writeIntRev(out, baseSize * 8);
+        out.writeFloat(1);
+        out.write(new byte[48]);
+        for (int i = 0; i < 6; i++) {
+            out.writeFloat(0);
+        }
+        out.writeByte(grid.sx);
+        out.writeByte(grid.sy);
+        out.writeByte(grid.sz);
+        out.writeByte(4);
+    }
+
+    // write the model in the format to the file
+    public static void write(Voxel[] voxels, String format, File file) throws IOException {
+        Grid grid = new Grid(voxels);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            if (format.equals("binvox")) {
+                writeBinVox(grid, out);
+            } else if (format.equals("rawvox")) {
+                writeRawVox(grid, out);
+            } else if (format.equals("kvx")) {
+                writeKvx(grid, out);
+            } else if (format.equals("ccvxl")) {
+                writeCCVxl(grid, out);
+            } else {
+                throw new IllegalArgumentException("Unknown format \"" + format + "\".");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private BenchmarkFiles() {}
+}
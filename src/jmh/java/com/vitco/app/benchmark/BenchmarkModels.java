@@ -0,0 +1,76 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.core.data.Data;
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.low.CubeIndexer;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Generates the (seeded, hence reproducible) models that are used by the benchmarks.
+ */
+public final class BenchmarkModels {
+
+    // seed used for all generated models
+    public static final long SEED = 1234;
+
+    // amount of distinct colors used by the models
+    private static final int COLOR_COUNT = 16;
+
+    // generate a "blob" model: a solid sphere with noise on the surface and a
+    // few holes, this gives a realistic mix of hull and interior voxels
+    public static Voxel[] generateVoxels(int count) {
+        Random rand = new Random(SEED);
+        // radius of a sphere that holds roughly "count" voxels
+        int radius = (int) Math.ceil(Math.cbrt(count * 3 / (4 * Math.PI))) + 1;
+        Color[] colors = new Color[COLOR_COUNT];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = new Color(rand.nextInt(0xFFFFFF));
+        }
+        Voxel[] result = new Voxel[count];
+        TIntHashSet known = new TIntHashSet();
+        int i = 0;
+        while (i < count) {
+            int x = rand.nextInt(radius * 2 + 1) - radius;
+            int y = rand.nextInt(radius * 2 + 1) - radius;
+            int z = rand.nextInt(radius * 2 + 1) - radius;
+            int dist = x * x + y * y + z * z;
+            // accept points inside the sphere, and some points slightly outside
+            if (dist <= radius * radius || (dist <= (radius + 2) * (radius + 2) && rand.nextInt(4) == 0)) {
+                // ensure y is not positive (as it is done in the editor)
+                y -= radius;
+                if (known.add(CubeIndexer.getId(x, y, z))) {
+                    result[i++] = new Voxel(-1, new int[] {x, y, z}, colors[rand.nextInt(colors.length)], false, null, 0);
+                } else if (known.size() >= (radius * 2 + 1) * (radius * 2 + 1) * (radius * 2 + 1) * 4 / 10) {
+                    // the sphere is full, grow it
+                    radius++;
+                }
+            }
+        }
+        return result;
+    }
+
+    // generate a data object that contains the generated model (in the selected layer)
+    public static Data generateData(int count) {
+        Data data = new Data();
+        data.massAddVoxel(generateVoxels(count));
+        data.clearHistoryV();
+        return data;
+    }
+
+    // generate a random bit grid where roughly half of the entries are set
+    public static boolean[][] generateBitGrid(int size) {
+        Random rand = new Random(SEED);
+        boolean[][] data = new boolean[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                data[x][y] = rand.nextBoolean();
+            }
+        }
+        return data;
+    }
+
+    private BenchmarkModels() {}
+}
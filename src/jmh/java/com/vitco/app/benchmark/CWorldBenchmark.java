@@ -0,0 +1,48 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.core.world.CWorld;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the (full) meshing of a world.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class CWorldBenchmark {
+
+    @Param({"10000", "100000"})
+    public int voxelCount;
+
+    private Voxel[] voxels;
+    private CWorld world;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        voxels = BenchmarkModels.generateVoxels(voxelCount);
+    }
+
+    // every invocation meshes a new world
+    @Setup(Level.Invocation)
+    public void fill() {
+        world = new CWorld(true, -1, false);
+        for (Voxel voxel : voxels) {
+            world.updateVoxel(voxel);
+        }
+    }
+
+    @Benchmark
+    public CWorld refreshWorld() {
+        // the world is refreshed in batches of one frame (as done by the render loop)
+        while (!world.refreshWorld(1000000000L / 60)) {
+            // continue with the next batch
+        }
+        return world;
+    }
+}
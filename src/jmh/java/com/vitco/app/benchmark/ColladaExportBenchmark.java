@@ -0,0 +1,74 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.core.data.Data;
+import com.vitco.app.export.collada.ColladaExportWrapper;
+import com.vitco.app.manager.error.ErrorHandler;
+import com.vitco.app.util.components.progressbar.ProgressDialog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the Collada export (there is no Collada importer, so this is export only).
+ * The exporter writes the dae file and the texture files into the same folder.
+ * One export takes seconds, so every iteration measures a single export.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ColladaExportBenchmark {
+
+    @Param({"10000", "100000"})
+    public int voxelCount;
+
+    // export with textures or with vertex colors
+    @Param({"false", "true"})
+    public boolean vertexColoring;
+
+    private Data data;
+    private ProgressDialog dialog;
+    private ErrorHandler errorHandler;
+    // the folder that contains the exported files
+    private File folder;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        data = BenchmarkModels.generateData(voxelCount);
+        dialog = new ProgressDialog(null);
+        errorHandler = new ErrorHandler();
+        folder = File.createTempFile("benchmark", "");
+        if (!folder.delete() || !folder.mkdir()) {
+            throw new IOException("Failed to create the export folder.");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        dialog.dispose();
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        if (!folder.delete()) {
+            folder.deleteOnExit();
+        }
+    }
+
+    // export the data to a dae file (and the textures)
+    @Benchmark
+    public boolean export() {
+        ColladaExportWrapper exporter = new ColladaExportWrapper(dialog, null);
+        exporter.setTriangulateByColor(vertexColoring);
+        exporter.setUseVertexColoring(vertexColoring);
+        return exporter.export(data, errorHandler, new File(folder, "model.dae"));
+    }
+}
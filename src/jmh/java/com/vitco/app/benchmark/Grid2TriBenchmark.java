@@ -0,0 +1,86 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.low.triangulate.Grid2TriGreedyOptimal;
+import com.vitco.app.low.triangulate.Grid2TriMono;
+import com.vitco.app.low.triangulate.Grid2TriNaive;
+import com.vitco.app.low.triangulate.Grid2TriNaiveGreedy;
+import com.vitco.app.low.triangulate.Grid2TriPolyFast;
+import com.vitco.app.low.triangulate.Grid2TriPolySlow;
+import com.vitco.app.low.triangulate.util.Grid2PolyHelper;
+import org.jaitools.imageutils.ImageUtils;
+import org.openjdk.jmh.annotations.*;
+import org.poly2tri.Poly2Tri;
+import org.poly2tri.triangulation.delaunay.DelaunayTriangle;
+
+import javax.media.jai.TiledImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the different "grid to triangle" algorithms on random bit grids.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class Grid2TriBenchmark {
+
+    @Param({"16", "64", "256"})
+    public int size;
+
+    private boolean[][] grid;
+    private TiledImage image;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Poly2Tri.warmup();
+        grid = BenchmarkModels.generateBitGrid(size);
+        // the slow algorithm operates on an image
+        image = ImageUtils.createConstantImage(size, size, 0);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (grid[x][y]) {
+                    image.setSample(x, y, 0, 1);
+                }
+            }
+        }
+    }
+
+    // some algorithms modify the grid, so every invocation works on a copy
+    // (the copy overhead is the same for all algorithms)
+    private boolean[][] copy() {
+        return Grid2TriMono.clone2DArray(grid);
+    }
+
+    @Benchmark
+    public List<DelaunayTriangle> naive() {
+        return Grid2TriNaive.triangulate(copy());
+    }
+
+    @Benchmark
+    public List<DelaunayTriangle> naiveGreedy() {
+        return Grid2TriNaiveGreedy.triangulate(copy());
+    }
+
+    @Benchmark
+    public List<DelaunayTriangle> greedyOptimal() {
+        return Grid2TriGreedyOptimal.triangulate(copy());
+    }
+
+    @Benchmark
+    public List<DelaunayTriangle> mono() {
+        return Grid2TriMono.triangulate(copy(), false);
+    }
+
+    @Benchmark
+    public List<DelaunayTriangle> polyFast() {
+        return Grid2TriPolyFast.triangulate(Grid2PolyHelper.convert(copy()));
+    }
+
+    @Benchmark
+    public List<DelaunayTriangle> polySlow() {
+        return Grid2TriPolySlow.triangulate(Grid2TriPolySlow.doVectorize(image), false);
+    }
+}
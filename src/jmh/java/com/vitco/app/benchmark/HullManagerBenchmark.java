@@ -0,0 +1,57 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.low.hull.HullManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the hull computation (update and retrieval of the hull changes).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class HullManagerBenchmark {
+
+    @Param({"10000", "100000"})
+    public int voxelCount;
+
+    private Voxel[] voxels;
+    // hull manager that contains all voxels (with pending changes)
+    private HullManager<Voxel> filled;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        voxels = BenchmarkModels.generateVoxels(voxelCount);
+    }
+
+    // the hull additions are consumed when retrieved, so refill for every invocation
+    @Setup(Level.Invocation)
+    public void fill() {
+        filled = new HullManager<Voxel>();
+        for (Voxel voxel : voxels) {
+            filled.update(voxel.posId, voxel);
+        }
+    }
+
+    @Benchmark
+    public HullManager<Voxel> update() {
+        HullManager<Voxel> hullManager = new HullManager<Voxel>();
+        for (Voxel voxel : voxels) {
+            hullManager.update(voxel.posId, voxel);
+        }
+        return hullManager;
+    }
+
+    @Benchmark
+    public void getHullAdditions(Blackhole blackhole) {
+        for (int i = 0; i < 6; i++) {
+            blackhole.consume(filled.getHullAdditions(i));
+        }
+    }
+}
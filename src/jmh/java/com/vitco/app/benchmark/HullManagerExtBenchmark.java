@@ -0,0 +1,67 @@
+package com.vitco.app.benchmark;
+
+import com.threed.jpct.SimpleVector;
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.low.hull.HullManagerExt;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the hit test and the exterior computation of the extended hull manager.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class HullManagerExtBenchmark {
+
+    // amount of rays that are tested per invocation
+    private static final int RAY_COUNT = 256;
+
+    @Param({"10000", "100000"})
+    public int voxelCount;
+
+    private HullManagerExt<Voxel> hullManager;
+    private SimpleVector[] origins;
+    private SimpleVector[] directions;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        hullManager = new HullManagerExt<Voxel>();
+        for (Voxel voxel : BenchmarkModels.generateVoxels(voxelCount)) {
+            hullManager.update(voxel.posId, voxel);
+        }
+        // rays that start outside of the model and point roughly at the model
+        Random rand = new Random(BenchmarkModels.SEED);
+        origins = new SimpleVector[RAY_COUNT];
+        directions = new SimpleVector[RAY_COUNT];
+        for (int i = 0; i < RAY_COUNT; i++) {
+            SimpleVector origin = new SimpleVector(
+                    rand.nextFloat() - 0.5f, rand.nextFloat() - 0.5f, rand.nextFloat() - 0.5f);
+            origin.scalarMul(150 / origin.length());
+            SimpleVector target = new SimpleVector(
+                    rand.nextInt(20) - 10, rand.nextInt(20) - 30, rand.nextInt(20) - 10);
+            origins[i] = origin;
+            directions[i] = target.calcSub(origin).normalize();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public void hitTest(Blackhole blackhole) {
+        for (int i = 0; i < RAY_COUNT; i++) {
+            blackhole.consume(hullManager.hitTest(origins[i], directions[i]));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean computeExterior() {
+        return hullManager.computeExterior();
+    }
+}
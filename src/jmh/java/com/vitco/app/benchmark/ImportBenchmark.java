@@ -0,0 +1,75 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.core.data.Data;
+import com.vitco.app.importer.AbstractImporter;
+import com.vitco.app.importer.BinVoxImporter;
+import com.vitco.app.importer.CCVxlImporter;
+import com.vitco.app.importer.KvxImporter;
+import com.vitco.app.importer.RawVoxImporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the importers of the formats that have no exporter (the files are written
+ * from the generated model, see BenchmarkFiles). The other formats are benchmarked as
+ * round trip in ImportExportBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ImportBenchmark {
+
+    @Param({"binvox", "kvx", "ccvxl", "rawvox"})
+    public String format;
+
+    @Param({"10000", "100000"})
+    public int voxelCount;
+
+    // the imported file
+    private File file;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        file = File.createTempFile("benchmark", "." + format);
+        file.deleteOnExit();
+        BenchmarkFiles.write(BenchmarkModels.generateVoxels(voxelCount), format, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    // import the file into a new data object
+    @Benchmark
+    public Data load() throws IOException {
+        AbstractImporter importer;
+        switch (format) {
+            case "binvox":
+                importer = new BinVoxImporter(file, "Import");
+                break;
+            case "kvx":
+                importer = new KvxImporter(file, "Import");
+                break;
+            case "ccvxl":
+                importer = new CCVxlImporter(file, "Import");
+                break;
+            case "rawvox":
+                importer = new RawVoxImporter(file, "Import");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format \"" + format + "\".");
+        }
+        Data result = new Data();
+        importer.loadInto(result, true);
+        return result;
+    }
+}
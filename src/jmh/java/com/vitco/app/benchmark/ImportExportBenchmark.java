@@ -0,0 +1,122 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.core.data.Data;
+import com.vitco.app.export.AbstractExporter;
+import com.vitco.app.export.Kv6Exporter;
+import com.vitco.app.export.MagicaVoxelExporter;
+import com.vitco.app.export.PnxExporter;
+import com.vitco.app.export.QbExporter;
+import com.vitco.app.export.VoxVoxLapExporter;
+import com.vitco.app.importer.AbstractImporter;
+import com.vitco.app.importer.Kv6Importer;
+import com.vitco.app.importer.PnxImporter;
+import com.vitco.app.importer.QbImporter;
+import com.vitco.app.importer.VoxImporter;
+import com.vitco.app.util.components.progressbar.ProgressDialog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the file formats, exporting a generated model and importing it again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ImportExportBenchmark {
+
+    @Param({"magicavoxel", "voxlap", "kv6", "pnx", "qb"})
+    public String format;
+
+    @Param({"10000", "100000"})
+    public int voxelCount;
+
+    private Data data;
+    private ProgressDialog dialog;
+    // the exported file
+    private File file;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        data = BenchmarkModels.generateData(voxelCount);
+        dialog = new ProgressDialog(null);
+        file = File.createTempFile("benchmark", "." + format);
+        file.deleteOnExit();
+        // make sure the file exists for the import benchmark
+        if (!export()) {
+            throw new IllegalStateException("Failed to export \"" + format + "\" file.");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        dialog.dispose();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    // export the data to the file
+    @Benchmark
+    public boolean export() throws IOException {
+        AbstractExporter exporter;
+        switch (format) {
+            case "magicavoxel":
+                exporter = new MagicaVoxelExporter(file, data, dialog, null, true);
+                break;
+            case "voxlap":
+                exporter = new VoxVoxLapExporter(file, data, dialog, null);
+                break;
+            case "kv6":
+                exporter = new Kv6Exporter(file, data, dialog, null);
+                break;
+            case "pnx":
+                exporter = new PnxExporter(file, data, dialog, null);
+                break;
+            case "qb":
+                exporter = new QbExporter(file, data, dialog, null);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format \"" + format + "\".");
+        }
+        return exporter.writeData();
+    }
+
+    // import the file into a new data object
+    @Benchmark
+    public Data load() throws IOException {
+        AbstractImporter importer;
+        switch (format) {
+            case "magicavoxel":
+            case "voxlap":
+                importer = new VoxImporter(file, "Import");
+                break;
+            case "kv6":
+                importer = new Kv6Importer(file, "Import");
+                break;
+            case "pnx":
+                importer = new PnxImporter(file, "Import");
+                break;
+            case "qb":
+                importer = new QbImporter(file, "Import");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format \"" + format + "\".");
+        }
+        Data result = new Data();
+        importer.loadInto(result, true);
+        return result;
+    }
+
+    // export and import again
+    @Benchmark
+    public Data roundTrip() throws IOException {
+        export();
+        return load();
+    }
+}
@@ -0,0 +1,68 @@
+package com.vitco.app.benchmark;
+
+import com.vitco.app.core.data.Data;
+import com.vitco.app.core.data.container.Voxel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the mass operations of the voxel data (add, remove and move).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class VoxelDataBenchmark {
+
+    @Param({"10000", "100000"})
+    public int voxelCount;
+
+    // the voxels that are added
+    private Voxel[] voxels;
+    // the data object the operations are executed on
+    private Data data;
+    // the voxels that are currently in the data object
+    private Voxel[] layerVoxels;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        voxels = BenchmarkModels.generateVoxels(voxelCount);
+    }
+
+    // every invocation starts from a freshly filled data object
+    @Setup(Level.Invocation)
+    public void fill() {
+        data = BenchmarkModels.generateData(voxelCount);
+        layerVoxels = data.getLayerVoxels(data.getSelectedLayer());
+    }
+
+    @Benchmark
+    public Data massAdd() {
+        Data empty = new Data();
+        empty.massAddVoxel(voxels);
+        return empty;
+    }
+
+    @Benchmark
+    public Data massRemove() {
+        data.massRemoveVoxel(Voxel.convertVoxelsToIdArray(layerVoxels));
+        return data;
+    }
+
+    @Benchmark
+    public Data massMove() {
+        data.massMoveVoxel(layerVoxels, new int[] {3, -2, 1});
+        return data;
+    }
+
+    @Benchmark
+    public Data massMoveUndoRedo() {
+        data.massMoveVoxel(layerVoxels, new int[] {3, -2, 1});
+        data.undoV();
+        data.redoV();
+        return data;
+    }
+}
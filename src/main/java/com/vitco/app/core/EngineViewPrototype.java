@@ -128,12 +128,12 @@ public abstract class EngineViewPrototype extends ViewPrototype {
         for (Voxel added : changed[1]) {
             world.updateVoxel(added);
         }
-        asyncActionManager.addAsyncAction(new AsyncAction("asyncWorld" + side) {
+        asyncActionManager.addAsyncAction(new AsyncAction("asyncWorld" + side, AsyncAction.PRIORITY_WORLD) {
             @Override
             public void performAction() {
                 container.doNotSkipNextWorldRender();
                 forceRepaint();
-                if (!world.refreshWorld()) {
+                if (!world.refreshWorld(asyncActionManager.getSliceBudget())) {
                     asyncActionManager.addAsyncAction(this);
                 }
             }
@@ -152,12 +152,12 @@ public abstract class EngineViewPrototype extends ViewPrototype {
         for (Voxel added : changed[1]) {
             selectedVoxelsWorld.updateVoxel(added);
         }
-        asyncActionManager.addAsyncAction(new AsyncAction("asyncSelWorld" + side) {
+        asyncActionManager.addAsyncAction(new AsyncAction("asyncSelWorld" + side, AsyncAction.PRIORITY_WORLD) {
             @Override
             public void performAction() {
                 container.doNotSkipNextWorldRender();
                 forceRepaint();
-                if (!selectedVoxelsWorld.refreshWorld()) {
+                if (!selectedVoxelsWorld.refreshWorld(asyncActionManager.getSliceBudget())) {
                     asyncActionManager.addAsyncAction(this);
                 }
             }
@@ -197,7 +197,7 @@ public abstract class EngineViewPrototype extends ViewPrototype {
             final boolean skipNextWorldRender = container.isSkipNextWorldRender();
             final boolean doNotSkipNextWorldRender = container.isDoNotSkipNextWorldRender();
             container.resetSkipRenderFlags();
-            asyncActionManager.addAsyncAction(new AsyncAction("repaint" + side) {
+            asyncActionManager.addAsyncAction(new AsyncAction("repaint" + side, AsyncAction.PRIORITY_REPAINT) {
                 @Override
                 public void performAction() {
                     if (skipNextWorldRender) {
@@ -212,6 +212,8 @@ public abstract class EngineViewPrototype extends ViewPrototype {
                     container.repaint();
                 }
 
+                // Note: the mouse state only changes in async actions, so this
+                // is checked again once the state changes
                 @Override
                 public boolean ready() {
                     return !globalMouseDown || localMouseDown;
@@ -427,7 +429,7 @@ public abstract class EngineViewPrototype extends ViewPrototype {
         // handle mouse events for this container
         container.addMouseListener(new MouseAdapter() {
             private void handleMouseState(final MouseEvent e, final boolean flag) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         // only consider mouse events that don't involve middle mouse (camera)
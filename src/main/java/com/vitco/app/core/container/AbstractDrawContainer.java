@@ -6,10 +6,12 @@ import com.vitco.app.core.CCamera;
 import com.vitco.app.core.CameraChangeListener;
 import com.vitco.app.core.data.Data;
 import com.vitco.app.core.data.container.ExtendedVector;
+import com.vitco.app.core.data.container.Voxel;
 import com.vitco.app.core.world.AbstractCWorld;
 import com.vitco.app.manager.async.AsyncActionManager;
 import com.vitco.app.settings.DynamicSettings;
 import com.vitco.app.settings.VitcoSettings;
+import com.vitco.app.util.misc.CompressedBitSet;
 
 import javax.swing.*;
 import java.awt.*;
@@ -294,6 +296,15 @@ public abstract class AbstractDrawContainer extends JPanel {
         return result;
     }
 
+    // screen positions of voxels (reused until the camera or the voxels change)
+    private final VoxelScreenIndex voxelScreenIndex = new VoxelScreenIndex();
+
+    // collect the ids of the voxels that are projected into the rectangle (border inclusive)
+    public final void getVoxelsInRect(Voxel[] voxels, Rectangle rect, CompressedBitSet result) {
+        voxelScreenIndex.update(camera, buffer, DynamicSettings.SAMPLING_MODE_DIVIDEND, getWidth(), getHeight(), voxels);
+        voxelScreenIndex.collect(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height, result);
+    }
+
     // conversion
     public final ExtendedVector convertExt3D2D(ExtendedVector point) {
         ExtendedVector result = null;
@@ -1,6 +1,10 @@
 package com.vitco.app.core.container;
 
 import com.threed.jpct.*;
+import com.vitco.app.core.container.shader.DepthNormalizationPass;
+import com.vitco.app.core.container.shader.OutlinePass;
+import com.vitco.app.core.container.shader.ShaderPipeline;
+import com.vitco.app.core.container.shader.TJunctionPass;
 import com.vitco.app.core.data.container.ExtendedVector;
 import com.vitco.app.manager.async.AsyncAction;
 import com.vitco.app.settings.DynamicSettings;
@@ -12,6 +16,7 @@ import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -821,28 +826,7 @@ public abstract class DrawContainer extends AbstractDrawContainer {
         int[] pixels = fb.getPixels();
 
         // fix t-junction anomalies
-        for (int c = w + 1; c < zBuffer.length - w - 1; c++) {
-
-            int x = zBuffer[c] + Integer.MAX_VALUE;
-            int x5 = zBuffer[c-w] + Integer.MAX_VALUE;
-            int x3 = zBuffer[c+w] + Integer.MAX_VALUE;
-            int x1 = zBuffer[c-1] + Integer.MAX_VALUE;
-            int x7 = zBuffer[c+1] + Integer.MAX_VALUE;
-            int x2 = zBuffer[c-w - 1] + Integer.MAX_VALUE;
-            int x8 = zBuffer[c-w + 1] + Integer.MAX_VALUE;
-            int x0 = zBuffer[c+w - 1] + Integer.MAX_VALUE;
-            int x6 = zBuffer[c+w + 1] + Integer.MAX_VALUE;
-
-            if (Math.abs(x1 - x7) < 100000 && Math.abs(x1 - x) > 100000) {
-                pixels[c] = pixels[c-1];
-            } else if (Math.abs(x5 - x3) < 100000 && Math.abs(x5 - x) > 100000) {
-                pixels[c] = pixels[c-w];
-            } else if (Math.abs(x0 - x8) < 100000 && Math.abs(x0 - x) > 100000) {
-                pixels[c] = pixels[c+w-1];
-            } else if (Math.abs(x2 - x6) < 100000 && Math.abs(x2 - x) > 100000) {
-                pixels[c] = pixels[c-w-1];
-            }
-        }
+        ShaderPipeline.run(zBuffer, w, new TJunctionPass(pixels));
 
         BufferedImage largeResult = new BufferedImage(fb.getWidth(), fb.getHeight(), BufferedImage.TYPE_INT_ARGB);
         fb.display(largeResult.getGraphics());
@@ -870,71 +854,10 @@ public abstract class DrawContainer extends AbstractDrawContainer {
 
         int w = fb.getWidth() * 2;
         int[] zBuffer = fb.getZBuffer(); //requires hacked framebuffer
+        int[] raster = ((DataBufferInt) largeResult.getRaster().getDataBuffer()).getData();
 
-        // compute mean
-        int count = 0;
-        long mean = 0;
-        for (int aZBuffer : zBuffer) {
-            if (aZBuffer != -2147483647) {
-                mean += aZBuffer;
-                count++;
-            }
-        }
-        mean /= count;
-
-        // compute std deviation
-        long sum = 0;
-        for (int aZBuffer : zBuffer) {
-            if (aZBuffer != -2147483647) {
-                sum += Math.pow(aZBuffer - mean, 2);
-            }
-        }
-        double stdDev = Math.sqrt(sum/(double)count);
-
-        // compute min and max for non outliers
-        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
-        for (int aZBuffer : zBuffer) {
-            if (Math.abs(aZBuffer - mean) < 4*stdDev) {
-                min = Math.min(min, aZBuffer);
-                max = Math.max(max, aZBuffer);
-            }
-        }
-        int range = max - min;
-
-        // fix t-junction anomalies
-        for (int c = w + 1; c < zBuffer.length - w - 1; c++) {
-
-            int x = zBuffer[c] + Integer.MAX_VALUE;
-            int x5 = zBuffer[c-w] + Integer.MAX_VALUE;
-            int x3 = zBuffer[c+w] + Integer.MAX_VALUE;
-            int x1 = zBuffer[c-1] + Integer.MAX_VALUE;
-            int x7 = zBuffer[c+1] + Integer.MAX_VALUE;
-            int x2 = zBuffer[c-w - 1] + Integer.MAX_VALUE;
-            int x8 = zBuffer[c-w + 1] + Integer.MAX_VALUE;
-            int x0 = zBuffer[c+w - 1] + Integer.MAX_VALUE;
-            int x6 = zBuffer[c+w + 1] + Integer.MAX_VALUE;
-
-            if (Math.abs(x1 - x7) < 100000 && Math.abs(x1 - x) > 100000) {
-                zBuffer[c] = zBuffer[c-1];
-            } else if (Math.abs(x5 - x3) < 100000 && Math.abs(x5 - x) > 100000) {
-                zBuffer[c] = zBuffer[c-w];
-            } else if (Math.abs(x0 - x8) < 100000 && Math.abs(x0 - x) > 100000) {
-                zBuffer[c] = zBuffer[c+w-1];
-            } else if (Math.abs(x2 - x6) < 100000 && Math.abs(x2 - x) > 100000) {
-                zBuffer[c] = zBuffer[c-w-1];
-            }
-        }
-
-        // compute values
-        for (int c = 0; c < zBuffer.length; c++) {
-            if (zBuffer[c] != -2147483647) {
-                int val = (int) Math.min(255,Math.max(0,
-                        ((zBuffer[c] - min) ) / (range/255f)
-                ));
-                //if (c%w < largeResult.getWidth() && c/w < largeResult.getHeight())
-                largeResult.setRGB((c % w), (c / w), new Color(val, val, val, 255).getRGB());
-            }
-        }
+        // fix t-junction anomalies and compute the gray values
+        ShaderPipeline.run(zBuffer, w, new TJunctionPass(zBuffer), new DepthNormalizationPass(raster));
 
         // resize
         BufferedImage result = new BufferedImage(largeResult.getWidth()/2, largeResult.getHeight()/2, BufferedImage.TYPE_INT_ARGB);
@@ -951,64 +874,9 @@ public abstract class DrawContainer extends AbstractDrawContainer {
     // draw shader
     private void drawShader() {
         // draw depth outline (software "shader")
-        // idea: http://coding-experiments.blogspot.de/2010/06/edge-detection.html
         int w = buffer.getWidth() * DynamicSettings.SAMPLING_MODE_MULTIPLICAND;
-        int factor = w * DynamicSettings.SAMPLING_MODE_MULTIPLICAND * DynamicSettings.SAMPLING_MODE_MULTIPLICAND;
-        int[] zBuffer = buffer.getZBuffer(); //requires hacked framebuffer
-        @SuppressWarnings("MismatchedReadAndWriteOfArray")
-        int[] pixels = buffer.getPixels();
-        for (int c = w*2 + 2; c < zBuffer.length - w*2 - 2; c++) {
-
-            int x = zBuffer[c] + Integer.MAX_VALUE;
-            if (x != 0) {
-                int x5 = zBuffer[c-w] + Integer.MAX_VALUE;
-                int x3 = zBuffer[c+w] + Integer.MAX_VALUE;
-                int x1 = zBuffer[c-1] + Integer.MAX_VALUE;
-                int x7 = zBuffer[c+1] + Integer.MAX_VALUE;
-                int x2 = zBuffer[c-w - 1] + Integer.MAX_VALUE;
-                int x8 = zBuffer[c-w + 1] + Integer.MAX_VALUE;
-                int x0 = zBuffer[c+w - 1] + Integer.MAX_VALUE;
-                int x6 = zBuffer[c+w + 1] + Integer.MAX_VALUE;
-
-                // move one more outwards
-                int x5t = zBuffer[c-2*w] + Integer.MAX_VALUE;
-                int x3t = zBuffer[c+2*w] + Integer.MAX_VALUE;
-                int x1t = zBuffer[c-2] + Integer.MAX_VALUE;
-                int x7t = zBuffer[c+2] + Integer.MAX_VALUE;
-                int x2t = zBuffer[c-2*w - 2] + Integer.MAX_VALUE;
-                int x8t = zBuffer[c-2*w + 2] + Integer.MAX_VALUE;
-                int x0t = zBuffer[c+2*w - 2] + Integer.MAX_VALUE;
-                int x6t = zBuffer[c+2*w + 2] + Integer.MAX_VALUE;
-
-                int p1 = Math.abs(x1 - x7)/10;
-                int p2 = Math.abs(x5 - x3)/10;
-                int p3 = Math.abs(x0 - x8)/10;
-                int p4 = Math.abs(x2 - x6)/10;
-                int val = (Math.abs(x7 - x7t) < p1 && Math.abs(x1 - x1t) < p1 ? 1 : 0) +
-                        (Math.abs(x5 - x5t) < p2 && Math.abs(x3 - x3t) < p2 ? 1 : 0) +
-                        (Math.abs(x0 - x0t) < p3 && Math.abs(x8 - x8t) < p3 ? 1 : 0) +
-                        (Math.abs(x2 - x2t) < p4 && Math.abs(x6 - x6t) < p4 ? 1 : 0);
-
-                if (val == 2 || val == 3) {
-                    pixels[(c/factor)*w + (c/DynamicSettings.SAMPLING_MODE_MULTIPLICAND)%w] = 0;
-                    c += DynamicSettings.SAMPLING_MODE_MULTIPLICAND -1;
-                } else {
-
-                    int xP = x + 100;
-                    int xM = x - 100;
-
-                    int s = ((x1t > xP && x7 > xP) || (x1t < xM && x7t < xM) ? 1 : 0) +
-                            ((x5t > xP && x3 > xP) || (x5t < xM && x3t < xM) ? 1 : 0) +
-                            ((x2t > xP && x6 > xP) || (x2t < xM && x6t < xM) ? 1 : 0) +
-                            ((x0t > xP && x8 > xP) || (x0t < xM && x8t < xM) ? 1 : 0);
-
-                    if (s == 2 || s == 3) {
-                        pixels[(c/factor)*w + (c/DynamicSettings.SAMPLING_MODE_MULTIPLICAND)%w] = 0;
-                        c += DynamicSettings.SAMPLING_MODE_MULTIPLICAND -1;
-                    }
-                }
-            }
-        }
+        ShaderPipeline.run(buffer.getZBuffer(), w, //requires hacked framebuffer
+                new OutlinePass(buffer.getPixels(), DynamicSettings.SAMPLING_MODE_MULTIPLICAND));
     }
 
     // render the content of this container
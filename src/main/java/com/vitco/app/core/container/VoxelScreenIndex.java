@@ -0,0 +1,170 @@
+package com.vitco.app.core.container;
+
+import com.threed.jpct.Camera;
+import com.threed.jpct.FrameBuffer;
+import com.threed.jpct.Interact2D;
+import com.threed.jpct.Matrix;
+import com.threed.jpct.SimpleVector;
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.settings.VitcoSettings;
+import com.vitco.app.util.misc.CompressedBitSet;
+
+import java.util.Arrays;
+
+/**
+ * Screen positions of voxels, bucketed into a grid of screen cells.
+ *
+ * All voxels are projected in one pass with the camera transformation (rotation,
+ * position and screen scale are read once per update). The index is kept until the
+ * camera, the screen size or the voxels change, so repeated rectangle queries only
+ * visit the cells that overlap the rectangle.
+ */
+final class VoxelScreenIndex {
+
+    // log2 of the cell size (in pixel)
+    private static final int CELL_SHIFT = 5;
+
+    // the indexed voxels
+    private Voxel[] voxels = null;
+    // the camera state the index was built for
+    private float[] state = null;
+
+    // grid size (the first and last row/column contain the positions outside the screen)
+    private int cols;
+    private int rows;
+    // screen positions of the voxels (indexed by cell)
+    private float[] screenX = new float[0];
+    private float[] screenY = new float[0];
+    // voxel ids (indexed by cell)
+    private int[] ids = new int[0];
+    // the start of every cell in the arrays above
+    private int[] cellStart = new int[0];
+
+    // helper - the camera state: the rotation, the position and the
+    // screen scale and center (measured from the projection of two points)
+    private static float[] getState(Camera camera, FrameBuffer buffer, float scale, int width, int height) {
+        float[] m = camera.getBack().getDump();
+        SimpleVector pos = camera.getPosition();
+        // two points in front of the camera (in world space)
+        Matrix inverse = camera.getBack().invert3x3();
+        SimpleVector p1 = new SimpleVector(-1, -1, 10);
+        p1.matMul(inverse);
+        p1.add(pos);
+        SimpleVector p2 = new SimpleVector(1, 1, 10);
+        p2.matMul(inverse);
+        p2.add(pos);
+        SimpleVector s1 = Interact2D.project3D2D(camera, buffer, p1);
+        SimpleVector s2 = Interact2D.project3D2D(camera, buffer, p2);
+        if (s1 == null || s2 == null) {
+            return null;
+        }
+        // screen = center + factor * (camera space / depth)
+        float factorX = (s2.x - s1.x) * scale / 0.2f;
+        float factorY = (s2.y - s1.y) * scale / 0.2f;
+        float[] result = Arrays.copyOf(m, 24);
+        result[16] = pos.x;
+        result[17] = pos.y;
+        result[18] = pos.z;
+        result[19] = factorX;
+        result[20] = factorY;
+        result[21] = s2.x * scale - factorX * 0.1f;
+        result[22] = s2.y * scale - factorY * 0.1f;
+        result[23] = width * 65536 + height;
+        return result;
+    }
+
+    // update the index (only rebuilt if the camera, the screen size or the voxels changed)
+    // Note: The voxel array is compared by identity (the data returns shared snapshots)
+    void update(Camera camera, FrameBuffer buffer, float scale, int width, int height, Voxel[] voxels) {
+        float[] state = getState(camera, buffer, scale, width, height);
+        if (voxels == this.voxels && state != null && Arrays.equals(state, this.state)) {
+            return;
+        }
+        this.voxels = voxels;
+        this.state = state;
+        cols = (width >> CELL_SHIFT) + 3;
+        rows = (height >> CELL_SHIFT) + 3;
+        int count = voxels.length;
+        float[] px = new float[count];
+        float[] py = new float[count];
+        int[] cell = new int[count];
+        int[] cellCount = new int[cols * rows + 1];
+        if (state != null) {
+            float m00 = state[0], m01 = state[1], m02 = state[2];
+            float m10 = state[4], m11 = state[5], m12 = state[6];
+            float m20 = state[8], m21 = state[9], m22 = state[10];
+            float posX = state[16], posY = state[17], posZ = state[18];
+            float factorX = state[19], factorY = state[20];
+            float centerX = state[21], centerY = state[22];
+            // project all voxels (the same points that are used by the select tool)
+            for (int i = 0; i < count; i++) {
+                Voxel voxel = voxels[i];
+                float x = voxel.x * VitcoSettings.VOXEL_SIZE - posX;
+                float y = voxel.y * VitcoSettings.VOXEL_SIZE - posY;
+                float z = voxel.z * VitcoSettings.VOXEL_SIZE - posZ;
+                float depth = x * m02 + y * m12 + z * m22;
+                if (depth <= 0) {
+                    // behind the camera
+                    cell[i] = -1;
+                    continue;
+                }
+                px[i] = centerX + factorX * (x * m00 + y * m10 + z * m20) / depth;
+                py[i] = centerY + factorY * (x * m01 + y * m11 + z * m21) / depth;
+                cell[i] = getCell(getColumn(px[i]), getRow(py[i]));
+                cellCount[cell[i] + 1]++;
+            }
+        } else {
+            Arrays.fill(cell, -1);
+        }
+        // sort the voxels by cell
+        for (int c = 1; c < cellCount.length; c++) {
+            cellCount[c] += cellCount[c - 1];
+        }
+        cellStart = cellCount.clone();
+        int indexed = cellStart[cellStart.length - 1];
+        screenX = new float[indexed];
+        screenY = new float[indexed];
+        ids = new int[indexed];
+        for (int i = 0; i < count; i++) {
+            if (cell[i] != -1) {
+                int slot = cellCount[cell[i]]++;
+                screenX[slot] = px[i];
+                screenY[slot] = py[i];
+                ids[slot] = voxels[i].id;
+            }
+        }
+    }
+
+    // helper - the column and row of a screen position
+    private int getColumn(float x) {
+        return Math.max(0, Math.min(cols - 1, (x < 0 ? -1 : ((int) x >> CELL_SHIFT)) + 1));
+    }
+
+    private int getRow(float y) {
+        return Math.max(0, Math.min(rows - 1, (y < 0 ? -1 : ((int) y >> CELL_SHIFT)) + 1));
+    }
+
+    private int getCell(int col, int row) {
+        return col + row * cols;
+    }
+
+    // collect the ids of the voxels that are inside the rectangle (the border is inside)
+    void collect(int x1, int y1, int x2, int y2, CompressedBitSet result) {
+        int minCol = getColumn(x1), maxCol = getColumn(x2);
+        int minRow = getRow(y1), maxRow = getRow(y2);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                int cell = getCell(col, row);
+                int from = cellStart[cell];
+                int to = cellStart[cell + 1];
+                // cells that are completely inside don't need to check the positions
+                boolean inside = col > minCol && col < maxCol && row > minRow && row < maxRow;
+                for (int i = from; i < to; i++) {
+                    if (inside || (screenX[i] >= x1 && screenX[i] <= x2 && screenY[i] >= y1 && screenY[i] <= y2)) {
+                        result.add(ids[i]);
+                    }
+                }
+            }
+        }
+    }
+}
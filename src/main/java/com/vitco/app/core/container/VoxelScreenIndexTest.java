@@ -0,0 +1,81 @@
+package com.vitco.app.core.container;
+
+import com.threed.jpct.Camera;
+import com.threed.jpct.FrameBuffer;
+import com.threed.jpct.Interact2D;
+import com.threed.jpct.SimpleVector;
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.settings.VitcoSettings;
+import com.vitco.app.util.misc.CompressedBitSet;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Test the voxel screen index against the projection of every voxel.
+ */
+public class VoxelScreenIndexTest {
+
+    // helper - the ids of the voxels in the rectangle (projecting every voxel), voxels
+    // that are very close to the border are added to the ambiguous set
+    private static CompressedBitSet collect(Camera camera, FrameBuffer buffer, Voxel[] voxels,
+                                            int x1, int y1, int x2, int y2, CompressedBitSet ambiguous) {
+        CompressedBitSet result = new CompressedBitSet();
+        for (Voxel voxel : voxels) {
+            SimpleVector vec = Interact2D.project3D2D(camera, buffer, new SimpleVector(
+                    voxel.x * VitcoSettings.VOXEL_SIZE,
+                    voxel.y * VitcoSettings.VOXEL_SIZE,
+                    voxel.z * VitcoSettings.VOXEL_SIZE));
+            if (vec != null) {
+                if (vec.x >= x1 && vec.x <= x2 && vec.y >= y1 && vec.y <= y2) {
+                    result.add(voxel.id);
+                }
+                if (Math.min(Math.abs(vec.x - x1), Math.abs(vec.x - x2)) < 0.01
+                        || Math.min(Math.abs(vec.y - y1), Math.abs(vec.y - y2)) < 0.01) {
+                    ambiguous.add(voxel.id);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        Random rand = new Random(0);
+        FrameBuffer buffer = new FrameBuffer(400, 300, FrameBuffer.SAMPLINGMODE_NORMAL);
+        Camera camera = new Camera();
+        Voxel[] voxels = new Voxel[5000];
+        for (int i = 0; i < voxels.length; i++) {
+            voxels[i] = new Voxel(i, new int[] {rand.nextInt(60) - 30, rand.nextInt(60) - 30, rand.nextInt(60) - 30},
+                    Color.RED, false, null, 0);
+        }
+        VoxelScreenIndex index = new VoxelScreenIndex();
+        int found = 0;
+        for (int run = 0; run < 20; run++) {
+            // random camera (sometimes inside the voxels)
+            float distance = run % 4 == 0 ? 10 : 300 + rand.nextInt(1000);
+            camera.setPosition(
+                    (rand.nextFloat() - 0.5f) * distance,
+                    (rand.nextFloat() - 0.5f) * distance,
+                    (rand.nextFloat() - 0.5f) * distance);
+            camera.lookAt(new SimpleVector(rand.nextInt(40) - 20, rand.nextInt(40) - 20, rand.nextInt(40) - 20));
+            camera.setFOV(0.5f + rand.nextFloat());
+            // several rectangles with the same camera (the index is reused)
+            for (int i = 0; i < 10; i++) {
+                int x1 = rand.nextInt(500) - 50;
+                int y1 = rand.nextInt(400) - 50;
+                int x2 = x1 + rand.nextInt(300);
+                int y2 = y1 + rand.nextInt(300);
+                index.update(camera, buffer, 1, 400, 300, voxels);
+                CompressedBitSet result = new CompressedBitSet();
+                index.collect(x1, y1, x2, y2, result);
+                CompressedBitSet ambiguous = new CompressedBitSet();
+                CompressedBitSet expected = collect(camera, buffer, voxels, x1, y1, x2, y2, ambiguous);
+                assert result.xor(expected).andNot(ambiguous).isEmpty();
+                found += expected.cardinality();
+            }
+        }
+        assert found > 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.vitco.app.core.container.shader;
+
+/**
+ * Writes the depth buffer as gray values into an ARGB raster.
+ *
+ * The depth range is found without outliers (mean +- four standard deviations)
+ * and mapped to 0 - 255. Empty entries are not written.
+ */
+public final class DepthNormalizationPass extends ShaderPass {
+
+    // the depth of entries that were not drawn
+    private static final int EMPTY = -2147483647;
+
+    // the raster that is written (same layout as the depth buffer)
+    private final int[] raster;
+
+    // the depth range
+    private int min;
+    private int range;
+    // true if something was drawn
+    private boolean hasDepth;
+
+    // constructor
+    public DepthNormalizationPass(int[] raster) {
+        this.raster = raster;
+    }
+
+    @Override
+    protected void prepare(final int[] zBuffer, int width) {
+        // compute mean
+        final long[] sum = new long[1];
+        final int[] count = new int[1];
+        ShaderPipeline.forEachBand(zBuffer.length, width, new ShaderPipeline.BandTask() {
+            @Override
+            public void run(int from, int to) {
+                long bandSum = 0;
+                int bandCount = 0;
+                for (int c = from; c < to; c++) {
+                    if (zBuffer[c] != EMPTY) {
+                        bandSum += zBuffer[c];
+                        bandCount++;
+                    }
+                }
+                synchronized (sum) {
+                    sum[0] += bandSum;
+                    count[0] += bandCount;
+                }
+            }
+        });
+        hasDepth = count[0] > 0;
+        if (!hasDepth) {
+            return;
+        }
+        final long mean = sum[0] / count[0];
+
+        // compute std deviation
+        final double[] squares = new double[1];
+        ShaderPipeline.forEachBand(zBuffer.length, width, new ShaderPipeline.BandTask() {
+            @Override
+            public void run(int from, int to) {
+                double bandSquares = 0;
+                for (int c = from; c < to; c++) {
+                    if (zBuffer[c] != EMPTY) {
+                        double diff = zBuffer[c] - mean;
+                        bandSquares += diff * diff;
+                    }
+                }
+                synchronized (squares) {
+                    squares[0] += bandSquares;
+                }
+            }
+        });
+        final double stdDev = Math.sqrt(squares[0] / count[0]);
+
+        // compute min and max for non outliers
+        final int[] minMax = new int[] {Integer.MAX_VALUE, Integer.MIN_VALUE};
+        ShaderPipeline.forEachBand(zBuffer.length, width, new ShaderPipeline.BandTask() {
+            @Override
+            public void run(int from, int to) {
+                int bandMin = Integer.MAX_VALUE, bandMax = Integer.MIN_VALUE;
+                for (int c = from; c < to; c++) {
+                    if (Math.abs(zBuffer[c] - mean) < 4*stdDev) {
+                        bandMin = Math.min(bandMin, zBuffer[c]);
+                        bandMax = Math.max(bandMax, zBuffer[c]);
+                    }
+                }
+                synchronized (minMax) {
+                    minMax[0] = Math.min(minMax[0], bandMin);
+                    minMax[1] = Math.max(minMax[1], bandMax);
+                }
+            }
+        });
+        min = minMax[0];
+        range = minMax[1] - minMax[0];
+    }
+
+    @Override
+    protected void process(int[] zBuffer, int width, int from, int to) {
+        if (!hasDepth) {
+            return;
+        }
+        float scale = range/255f;
+        int end = Math.min(to, raster.length);
+        for (int c = from; c < end; c++) {
+            if (zBuffer[c] != EMPTY) {
+                int val = (int) Math.min(255, Math.max(0, (zBuffer[c] - min) / scale));
+                raster[c] = 0xFF000000 | (val << 16) | (val << 8) | val;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.vitco.app.core.container.shader;
+
+/**
+ * Draws the depth outline into the pixels (software "shader").
+ *
+ * Idea: http://coding-experiments.blogspot.de/2010/06/edge-detection.html
+ */
+public final class OutlinePass extends ShaderPass {
+
+    // the pixels that are drawn into
+    private final int[] pixels;
+    // the sampling multiplicand of the depth buffer
+    private final int multiplicand;
+
+    // constructor
+    public OutlinePass(int[] pixels, int multiplicand) {
+        this.pixels = pixels;
+        this.multiplicand = multiplicand;
+    }
+
+    @Override
+    protected void process(int[] zBuffer, int w, int from, int to) {
+        int factor = w * multiplicand * multiplicand;
+        int end = Math.min(to, zBuffer.length - w*2 - 2);
+        for (int c = Math.max(from, w*2 + 2); c < end; c++) {
+
+            int x = zBuffer[c] + Integer.MAX_VALUE;
+            if (x != 0) {
+                int x5 = zBuffer[c-w] + Integer.MAX_VALUE;
+                int x3 = zBuffer[c+w] + Integer.MAX_VALUE;
+                int x1 = zBuffer[c-1] + Integer.MAX_VALUE;
+                int x7 = zBuffer[c+1] + Integer.MAX_VALUE;
+                int x2 = zBuffer[c-w - 1] + Integer.MAX_VALUE;
+                int x8 = zBuffer[c-w + 1] + Integer.MAX_VALUE;
+                int x0 = zBuffer[c+w - 1] + Integer.MAX_VALUE;
+                int x6 = zBuffer[c+w + 1] + Integer.MAX_VALUE;
+
+                // move one more outwards
+                int x5t = zBuffer[c-2*w] + Integer.MAX_VALUE;
+                int x3t = zBuffer[c+2*w] + Integer.MAX_VALUE;
+                int x1t = zBuffer[c-2] + Integer.MAX_VALUE;
+                int x7t = zBuffer[c+2] + Integer.MAX_VALUE;
+                int x2t = zBuffer[c-2*w - 2] + Integer.MAX_VALUE;
+                int x8t = zBuffer[c-2*w + 2] + Integer.MAX_VALUE;
+                int x0t = zBuffer[c+2*w - 2] + Integer.MAX_VALUE;
+                int x6t = zBuffer[c+2*w + 2] + Integer.MAX_VALUE;
+
+                int p1 = Math.abs(x1 - x7)/10;
+                int p2 = Math.abs(x5 - x3)/10;
+                int p3 = Math.abs(x0 - x8)/10;
+                int p4 = Math.abs(x2 - x6)/10;
+                int val = (Math.abs(x7 - x7t) < p1 && Math.abs(x1 - x1t) < p1 ? 1 : 0) +
+                        (Math.abs(x5 - x5t) < p2 && Math.abs(x3 - x3t) < p2 ? 1 : 0) +
+                        (Math.abs(x0 - x0t) < p3 && Math.abs(x8 - x8t) < p3 ? 1 : 0) +
+                        (Math.abs(x2 - x2t) < p4 && Math.abs(x6 - x6t) < p4 ? 1 : 0);
+
+                if (val == 2 || val == 3) {
+                    pixels[(c/factor)*w + (c/multiplicand)%w] = 0;
+                    c += multiplicand - 1;
+                } else {
+
+                    int xP = x + 100;
+                    int xM = x - 100;
+
+                    int s = ((x1t > xP && x7 > xP) || (x1t < xM && x7t < xM) ? 1 : 0) +
+                            ((x5t > xP && x3 > xP) || (x5t < xM && x3t < xM) ? 1 : 0) +
+                            ((x2t > xP && x6 > xP) || (x2t < xM && x6t < xM) ? 1 : 0) +
+                            ((x0t > xP && x8 > xP) || (x0t < xM && x8t < xM) ? 1 : 0);
+
+                    if (s == 2 || s == 3) {
+                        pixels[(c/factor)*w + (c/multiplicand)%w] = 0;
+                        c += multiplicand - 1;
+                    }
+                }
+            }
+        }
+    }
+}
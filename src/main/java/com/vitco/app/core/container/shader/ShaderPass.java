@@ -0,0 +1,17 @@
+package com.vitco.app.core.container.shader;
+
+/**
+ * A post processing pass that works on a depth buffer (and the buffers that
+ * were rendered together with it).
+ *
+ * The buffer is split into bands of rows that are processed concurrently, so
+ * a pass must only write entries of the band it is given.
+ */
+public abstract class ShaderPass {
+
+    // called once before the bands are processed
+    protected void prepare(int[] zBuffer, int width) {}
+
+    // process the entries [from, to) of the buffer (always full rows)
+    protected abstract void process(int[] zBuffer, int width, int from, int to);
+}
@@ -0,0 +1,63 @@
+package com.vitco.app.core.container.shader;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs post processing passes on row bands of a buffer using a shared pool.
+ */
+public final class ShaderPipeline {
+
+    // the amount of rows in one band
+    private static final int BAND_ROWS = 32;
+
+    // pool that processes the bands (the threads are daemon threads and shared by all containers)
+    private static final ForkJoinPool pool = new ForkJoinPool();
+
+    // something that is done for a band of rows
+    public interface BandTask {
+        // handle the entries [from, to) of the buffer
+        void run(int from, int to);
+    }
+
+    // run the task for all bands of a buffer with the given length and row width
+    // (returns when all bands are done)
+    public static void forEachBand(int length, int width, final BandTask task) {
+        int bandSize = Math.max(1, width) * BAND_ROWS;
+        if (length <= bandSize) {
+            task.run(0, length);
+            return;
+        }
+        ArrayList<RecursiveAction> bands = new ArrayList<RecursiveAction>();
+        for (int from = 0; from < length; from += bandSize) {
+            final int start = from;
+            final int stop = Math.min(length, from + bandSize);
+            RecursiveAction band = new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected void compute() {
+                    task.run(start, stop);
+                }
+            };
+            pool.execute(band);
+            bands.add(band);
+        }
+        for (RecursiveAction band : bands) {
+            band.join();
+        }
+    }
+
+    // run the passes one after another on the buffer
+    public static void run(final int[] zBuffer, final int width, ShaderPass... passes) {
+        for (final ShaderPass pass : passes) {
+            pass.prepare(zBuffer, width);
+            forEachBand(zBuffer.length, width, new BandTask() {
+                @Override
+                public void run(int from, int to) {
+                    pass.process(zBuffer, width, from, to);
+                }
+            });
+        }
+    }
+}
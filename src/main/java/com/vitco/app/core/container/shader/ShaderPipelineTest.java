@@ -0,0 +1,88 @@
+package com.vitco.app.core.container.shader;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Test the band processing and the post processing passes.
+ */
+public class ShaderPipelineTest {
+
+    @Test
+    public void testBands() throws Exception {
+        for (int rows : new int[] {1, 31, 32, 33, 100, 1000}) {
+            final int width = 17;
+            final int[] visited = new int[rows * width];
+            ShaderPipeline.forEachBand(visited.length, width, new ShaderPipeline.BandTask() {
+                @Override
+                public void run(int from, int to) {
+                    // bands contain full rows
+                    assert from % width == 0;
+                    assert to % width == 0;
+                    for (int c = from; c < to; c++) {
+                        visited[c]++;
+                    }
+                }
+            });
+            for (int count : visited) {
+                assert count == 1;
+            }
+        }
+    }
+
+    @Test
+    public void testTJunction() throws Exception {
+        int width = 50;
+        int[] zBuffer = new int[width * 200];
+        int[] pixels = new int[zBuffer.length];
+        Random rand = new Random(1);
+        for (int c = 0; c < zBuffer.length; c++) {
+            zBuffer[c] = 1000000;
+            pixels[c] = c;
+        }
+        // single anomalies (also at the band borders)
+        int[] anomalies = new int[] {width * 31 + 5, width * 32 + 7, width * 100 + 20, width * 150 + rand.nextInt(width - 2) + 1};
+        for (int c : anomalies) {
+            zBuffer[c] = 5000000;
+        }
+        ShaderPipeline.run(zBuffer, width, new TJunctionPass(pixels));
+        for (int c = 0; c < pixels.length; c++) {
+            boolean anomaly = false;
+            for (int a : anomalies) {
+                anomaly |= a == c;
+            }
+            // anomalies take the color of the left neighbour
+            assert pixels[c] == (anomaly ? c - 1 : c);
+        }
+        // fixing the depth buffer itself
+        ShaderPipeline.run(zBuffer, width, new TJunctionPass(zBuffer));
+        for (int depth : zBuffer) {
+            assert depth == 1000000;
+        }
+    }
+
+    @Test
+    public void testDepthNormalization() throws Exception {
+        int width = 64;
+        int[] zBuffer = new int[width * 64];
+        for (int c = 0; c < zBuffer.length; c++) {
+            zBuffer[c] = c % width == 0 ? -2147483647 : (c % width) * 1000;
+        }
+        int[] raster = new int[zBuffer.length];
+        ShaderPipeline.run(zBuffer, width, new DepthNormalizationPass(raster));
+        for (int c = 0; c < raster.length; c++) {
+            if (c % width == 0) {
+                assert raster[c] == 0;
+            } else {
+                int val = raster[c] & 0xFF;
+                assert raster[c] == (0xFF000000 | (val << 16) | (val << 8) | val);
+                // the gray value grows with the depth
+                assert c % width == 1 ? val == 0 : val > (raster[c - 1] & 0xFF);
+            }
+        }
+        assert (raster[width - 1] & 0xFF) == 255;
+        // nothing drawn
+        ShaderPipeline.run(new int[] {-2147483647, -2147483647}, 2, new DepthNormalizationPass(new int[2]));
+    }
+}
@@ -0,0 +1,55 @@
+package com.vitco.app.core.container.shader;
+
+/**
+ * Fixes t-junction anomalies, i.e. single entries that have a different depth
+ * than both neighbours along some direction.
+ *
+ * The anomaly is replaced in the target buffer (the pixels or the depth buffer itself)
+ * by the value of a neighbour. Neighbours are read from a copy of the target that is
+ * taken before the bands are processed.
+ */
+public final class TJunctionPass extends ShaderPass {
+
+    // the buffer that is fixed
+    private final int[] target;
+    // copy of the target before the fix
+    private int[] source;
+
+    // constructor
+    public TJunctionPass(int[] target) {
+        this.target = target;
+    }
+
+    @Override
+    protected void prepare(int[] zBuffer, int width) {
+        source = target.clone();
+    }
+
+    @Override
+    protected void process(int[] zBuffer, int w, int from, int to) {
+        int[] depth = target == zBuffer ? source : zBuffer;
+        int end = Math.min(to, depth.length - w - 1);
+        for (int c = Math.max(from, w + 1); c < end; c++) {
+
+            int x = depth[c] + Integer.MAX_VALUE;
+            int x5 = depth[c-w] + Integer.MAX_VALUE;
+            int x3 = depth[c+w] + Integer.MAX_VALUE;
+            int x1 = depth[c-1] + Integer.MAX_VALUE;
+            int x7 = depth[c+1] + Integer.MAX_VALUE;
+            int x2 = depth[c-w - 1] + Integer.MAX_VALUE;
+            int x8 = depth[c-w + 1] + Integer.MAX_VALUE;
+            int x0 = depth[c+w - 1] + Integer.MAX_VALUE;
+            int x6 = depth[c+w + 1] + Integer.MAX_VALUE;
+
+            if (Math.abs(x1 - x7) < 100000 && Math.abs(x1 - x) > 100000) {
+                target[c] = source[c-1];
+            } else if (Math.abs(x5 - x3) < 100000 && Math.abs(x5 - x) > 100000) {
+                target[c] = source[c-w];
+            } else if (Math.abs(x0 - x8) < 100000 && Math.abs(x0 - x) > 100000) {
+                target[c] = source[c+w-1];
+            } else if (Math.abs(x2 - x6) < 100000 && Math.abs(x2 - x) > 100000) {
+                target[c] = source[c-w-1];
+            }
+        }
+    }
+}
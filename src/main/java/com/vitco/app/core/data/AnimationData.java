@@ -7,7 +7,6 @@ import com.vitco.app.core.data.container.Frame;
 import com.vitco.app.core.data.history.BasicActionIntent;
 import com.vitco.app.core.data.history.HistoryChangeListener;
 import com.vitco.app.core.data.history.HistoryManager;
-import com.vitco.app.settings.VitcoSettings;
 
 import java.util.ArrayList;
 
@@ -483,36 +482,46 @@ public abstract class AnimationData extends GeneralData implements AnimationData
 
     @Override
     public final boolean isValid(int pointId) {
-        synchronized (VitcoSettings.SYNC) {
+        readLock.lock();
+        try {
             return dataContainer.points.containsKey(pointId);
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public final int addPoint(SimpleVector position) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             int pointId = getFreePointId();
             ExtendedVector point = new ExtendedVector(position.x, position.y, position.z, pointId);
             historyManagerA.applyIntent(new AddPointIntent(point, false));
             return pointId;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean removePoint(int pointId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (isValid(pointId)) {
                 historyManagerA.applyIntent(new RemovePointIntent(pointId, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean movePoint(int pointId, SimpleVector pos) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (isValid(pointId)) {
                 if (dataContainer.activeFrame == -1) { // move real point
@@ -523,55 +532,70 @@ public abstract class AnimationData extends GeneralData implements AnimationData
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean areConnected(int id1, int id2) {
-        synchronized (VitcoSettings.SYNC) {
+        readLock.lock();
+        try {
             return dataContainer.lines.containsKey(Math.min(id1, id2) + "_" + Math.max(id1, id2));
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public final boolean connect(int id1, int id2) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (isValid(id1) && isValid(id2) && !areConnected(id1, id2)) {
                 historyManagerA.applyIntent(new ConnectIntent(id1, id2, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean clearA() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.points.size() > 0) {
                 historyManagerA.applyIntent(new ClearAIntent(false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean disconnect(int id1, int id2) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (isValid(id1) && isValid(id2) && areConnected(id1, id2)) {
                 historyManagerA.applyIntent(new DisconnectIntent(id1, id2, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final ExtendedVector getPoint(int pointId) {
-        synchronized (VitcoSettings.SYNC) {
+        readLock.lock();
+        try {
             if (dataContainer.activeFrame != -1) { // return frame point if defined
                 ExtendedVector point = dataContainer.frames.get(dataContainer.activeFrame).getPoint(pointId);
                 if (point != null) {
@@ -579,6 +603,8 @@ public abstract class AnimationData extends GeneralData implements AnimationData
                 }
             }
             return dataContainer.points.get(pointId);
+        } finally {
+            readLock.unlock();
         }
     }
 
@@ -586,7 +612,8 @@ public abstract class AnimationData extends GeneralData implements AnimationData
     private boolean pointBufferValid = false;
     @Override
     public final ExtendedVector[] getPoints() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             if (!pointBufferValid) {
                 if (pointBuffer.length != dataContainer.points.size()) {
                     pointBuffer = new ExtendedVector[dataContainer.points.size()];
@@ -598,6 +625,8 @@ public abstract class AnimationData extends GeneralData implements AnimationData
                 pointBufferValid = true;
             }
             return pointBuffer.clone();
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -605,7 +634,8 @@ public abstract class AnimationData extends GeneralData implements AnimationData
     private boolean lineBufferValid = false;
     @Override
     public final ExtendedVector[][] getLines() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             if (!lineBufferValid) {
                 if (lineBuffer.length != dataContainer.lines.size()) {
                     lineBuffer = new ExtendedVector[dataContainer.lines.size()][2];
@@ -619,86 +649,115 @@ public abstract class AnimationData extends GeneralData implements AnimationData
                 lineBufferValid = true;
             }
             return lineBuffer.clone();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final void undoA() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             historyManagerA.unapply();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final void redoA() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             historyManagerA.apply();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean canUndoA() {
-        synchronized (VitcoSettings.SYNC) {
+        readLock.lock();
+        try {
             return historyManagerA.canUndo();
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public final boolean canRedoA() {
-        synchronized (VitcoSettings.SYNC) {
+        readLock.lock();
+        try {
             return historyManagerA.canRedo();
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public final boolean selectFrame(int frameId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.frames.containsKey(frameId) || frameId == -1) {
                 historyManagerA.applyIntent(new SetActiveFrameIntent(frameId, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final int getSelectedFrame() {
-        synchronized (VitcoSettings.SYNC) {
+        readLock.lock();
+        try {
             return dataContainer.activeFrame;
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public final int createFrame(String frameName) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             int frameId = getFreeFrameId();
             historyManagerA.applyIntent(new CreateFrameIntent(frameId, frameName, false));
             return frameId;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean deleteFrame(int frameId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.frames.containsKey(frameId)) {
                 historyManagerA.applyIntent(new DeleteFrameIntent(frameId, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean renameFrame(int frameId, String newName) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.frames.containsKey(frameId)) {
                 historyManagerA.applyIntent(new RenameFrameIntent(frameId, newName, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -706,7 +765,8 @@ public abstract class AnimationData extends GeneralData implements AnimationData
     private boolean frameBufferValid = false;
     @Override
     public final Integer[] getFrames() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             if (!frameBufferValid) {
                 if (frameBuffer.length != dataContainer.frames.size()) {
                     frameBuffer = new Integer[dataContainer.frames.size()];
@@ -715,28 +775,36 @@ public abstract class AnimationData extends GeneralData implements AnimationData
                 frameBufferValid = true;
             }
             return frameBuffer.clone();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean resetFrame(int frameId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.frames.containsKey(frameId)) {
                 historyManagerA.applyIntent(new ResetFrameIntent(frameId, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final String getFrameName(int frameId) {
-        synchronized (VitcoSettings.SYNC) {
+        readLock.lock();
+        try {
             if (dataContainer.frames.containsKey(frameId)) {
                 return dataContainer.frames.get(frameId).getName();
             }
             return null;
+        } finally {
+            readLock.unlock();
         }
     }
 }
\ No newline at end of file
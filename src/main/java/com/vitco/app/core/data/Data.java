@@ -2,7 +2,6 @@ package com.vitco.app.core.data;
 
 import com.vitco.app.core.data.container.DataContainer;
 import com.vitco.app.manager.error.ErrorHandlerInterface;
-import com.vitco.app.settings.VitcoSettings;
 import com.vitco.app.util.file.FileTools;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -17,15 +16,21 @@ public final class Data extends VoxelHighlighting implements DataInterface {
 
     @Override
     public final void clearHistoryA() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             historyManagerA.clear();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final void clearHistoryV() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             historyManagerV.clear();
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -56,7 +61,8 @@ public final class Data extends VoxelHighlighting implements DataInterface {
 
     @Override
     public final void freshStart() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             // reset
             dataContainer = new DataContainer();
             // create initial layer and select it
@@ -67,53 +73,54 @@ public final class Data extends VoxelHighlighting implements DataInterface {
             initialNotification();
             // file has not changed yet
             hasChanged = false;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean loadFromFile(File file) {
-        synchronized (VitcoSettings.SYNC) {
-            boolean result = false;
-            // VSD file format
-            DataContainer loaded = new DataContainer(file, errorHandler);
-            if (loaded.hasLoaded) {
-                clearHistoryA();
-                clearHistoryV();
-                dataContainer = loaded;
-
-                result = true;
-            } else { // todo remove legacy support (later)
-                // old file format
-                Object loadedLegacy = FileTools.loadFromFile(file, errorHandler);
-                if (loadedLegacy != null) {
-                    clearHistoryA();
-                    clearHistoryV();
-                    dataContainer = (DataContainer) loadedLegacy;
-                    if (dataContainer.textures == null) {
-                        dataContainer.textures = new HashMap<Integer, ImageIcon>();
-                    }
-                    result = true;
-                }
-            }
-            if (result) {
-                invalidateA();
-                invalidateV(null);
-                initialNotification();
-                // file has not changed yet
-                hasChanged = false;
+        // read the file without holding the lock (hidden layers are decoded in the background)
+        DataContainer loaded = new DataContainer(file, errorHandler);
+        if (!loaded.hasLoaded) { // todo remove legacy support (later)
+            // old file format
+            loaded = (DataContainer) FileTools.loadFromFile(file, errorHandler);
+            if (loaded != null && loaded.textures == null) {
+                loaded.textures = new HashMap<Integer, ImageIcon>();
             }
-            return result;
+        }
+        if (loaded == null) {
+            return false;
+        }
+        writeLock.lock();
+        try {
+            clearHistoryA();
+            clearHistoryV();
+            dataContainer = loaded;
+            reservePendingVoxelIds();
+            loadPendingLayers();
+            invalidateA();
+            invalidateV(null);
+            initialNotification();
+            // file has not changed yet
+            hasChanged = false;
+            return true;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean saveToFile(File file) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = dataContainer.saveToVsdFile(file, errorHandler);
             if (result) {
                 hasChanged = false;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 }
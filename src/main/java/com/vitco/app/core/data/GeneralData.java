@@ -2,7 +2,6 @@ package com.vitco.app.core.data;
 
 import com.vitco.app.core.data.container.DataContainer;
 import com.vitco.app.core.data.notification.DataChangeAdapter;
-import com.vitco.app.settings.VitcoSettings;
 
 /**
  * Manages everything that has to do with general data
@@ -33,15 +32,21 @@ public class GeneralData extends ListenerData implements GeneralDataInterface {
 
     @Override
     public boolean hasChanged() {
-        synchronized (VitcoSettings.SYNC) {
+        readLock.lock();
+        try {
             return hasChanged;
+        } finally {
+            readLock.unlock();
         }
     }
 
     @Override
     public void resetHasChanged() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             hasChanged = false;
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -4,23 +4,36 @@ import com.vitco.app.core.data.notification.DataChangeListener;
 import com.vitco.app.core.data.notification.NotificationService;
 import com.vitco.app.settings.VitcoSettings;
 
+import java.util.concurrent.locks.Lock;
+
 /**
  * Abstract class that defines methods add Data Change Listeners.
  */
 public abstract class ListenerData implements ListenerDataInterface {
     protected final NotificationService notifier = new NotificationService();
 
+    // locks for the data (shared by all data objects)
+    // Note: a thread that holds the read lock must not request the write lock
+    protected final Lock readLock = VitcoSettings.DATA_LOCK.readLock();
+    protected final Lock writeLock = VitcoSettings.DATA_LOCK.writeLock();
+
     @Override
     public final void addDataChangeListener(DataChangeListener dcl) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             notifier.add(dcl);
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final void removeDataChangeListener(DataChangeListener dcl) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             notifier.remove(dcl);
+        } finally {
+            writeLock.unlock();
         }
     }
 }
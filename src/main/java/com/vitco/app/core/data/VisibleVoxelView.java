@@ -0,0 +1,169 @@
+package com.vitco.app.core.data;
+
+import com.vitco.app.core.data.container.Voxel;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Materialized views of the visible voxels (the voxel of the top most visible
+ * layer for every position): all visible voxels, the selected visible voxels
+ * and the visible voxels per plane.
+ *
+ * The views are updated per changed position. The arrays that are returned are
+ * snapshots that are shared by all callers and must not be modified. A new
+ * snapshot is only created for a view that changed.
+ */
+final class VisibleVoxelView {
+
+    // position -> voxel
+    private final TIntObjectHashMap<Voxel> visible = new TIntObjectHashMap<Voxel>();
+    private final TIntObjectHashMap<Voxel> selected = new TIntObjectHashMap<Voxel>();
+    // plane -> position -> voxel (for every axis)
+    private final PlaneIndex[] planes = new PlaneIndex[] {new PlaneIndex(), new PlaneIndex(), new PlaneIndex()};
+
+    // shared snapshot of an empty view
+    private static final Voxel[] EMPTY = new Voxel[0];
+
+    // the snapshots (null if outdated)
+    private Voxel[] visibleSnapshot = null;
+    private Voxel[] selectedSnapshot = null;
+
+    // the voxels in the planes of one axis (and their snapshots)
+    private static final class PlaneIndex {
+        private final TIntObjectHashMap<TIntObjectHashMap<Voxel>> voxels = new TIntObjectHashMap<TIntObjectHashMap<Voxel>>();
+        private final TIntObjectHashMap<Voxel[]> snapshots = new TIntObjectHashMap<Voxel[]>();
+
+        private void add(int plane, Voxel voxel) {
+            TIntObjectHashMap<Voxel> list = voxels.get(plane);
+            if (list == null) {
+                list = new TIntObjectHashMap<Voxel>();
+                voxels.put(plane, list);
+            }
+            list.put(voxel.posId, voxel);
+            snapshots.remove(plane);
+        }
+
+        private void remove(int plane, Voxel voxel) {
+            TIntObjectHashMap<Voxel> list = voxels.get(plane);
+            list.remove(voxel.posId);
+            if (list.isEmpty()) {
+                voxels.remove(plane);
+            }
+            snapshots.remove(plane);
+        }
+
+        private void clear() {
+            voxels.clear();
+            snapshots.clear();
+        }
+    }
+
+    // helper - the coordinate of the voxel on the axis
+    private static int getCoordinate(Voxel voxel, int axis) {
+        switch (axis) {
+            case 0: return voxel.x;
+            case 1: return voxel.y;
+            default: return voxel.z;
+        }
+    }
+
+    // remove all voxels
+    void clear() {
+        visible.clear();
+        selected.clear();
+        for (PlaneIndex index : planes) {
+            index.clear();
+        }
+        visibleSnapshot = null;
+        selectedSnapshot = null;
+    }
+
+    // add a voxel iff there is no visible voxel at its position yet
+    // (used to add the layers from top to bottom)
+    void addIfFree(Voxel voxel) {
+        if (!visible.containsKey(voxel.posId)) {
+            update(voxel.posId, voxel);
+        }
+    }
+
+    // set the visible voxel at a position (null ~ no voxel is visible)
+    void update(int posId, Voxel voxel) {
+        Voxel old = visible.get(posId);
+        if (old != voxel) {
+            if (old != null) {
+                visible.remove(posId);
+                for (int axis = 0; axis < 3; axis++) {
+                    planes[axis].remove(getCoordinate(old, axis), old);
+                }
+            }
+            if (voxel != null) {
+                visible.put(posId, voxel);
+                for (int axis = 0; axis < 3; axis++) {
+                    planes[axis].add(getCoordinate(voxel, axis), voxel);
+                }
+            }
+            visibleSnapshot = null;
+        }
+        // the selection state can change without the voxel changing
+        if (voxel != null && voxel.isSelected()) {
+            if (selected.put(posId, voxel) != voxel) {
+                selectedSnapshot = null;
+            }
+        } else if (selected.remove(posId) != null) {
+            selectedSnapshot = null;
+        }
+    }
+
+    // ------------
+
+    int getVisibleCount() {
+        return visible.size();
+    }
+
+    int getSelectedCount() {
+        return selected.size();
+    }
+
+    // the snapshots (or null if they need to be created, see below)
+    Voxel[] getVisible() {
+        return visibleSnapshot;
+    }
+
+    Voxel[] getSelected() {
+        return selectedSnapshot;
+    }
+
+    Voxel[] getPlane(int axis, int plane) {
+        PlaneIndex index = planes[axis];
+        Voxel[] result = index.snapshots.get(plane);
+        if (result == null && !index.voxels.containsKey(plane)) {
+            result = EMPTY;
+        }
+        return result;
+    }
+
+    // the snapshots (created if necessary)
+    Voxel[] createVisible() {
+        if (visibleSnapshot == null) {
+            visibleSnapshot = visible.values(new Voxel[visible.size()]);
+        }
+        return visibleSnapshot;
+    }
+
+    Voxel[] createSelected() {
+        if (selectedSnapshot == null) {
+            selectedSnapshot = selected.values(new Voxel[selected.size()]);
+        }
+        return selectedSnapshot;
+    }
+
+    Voxel[] createPlane(int axis, int plane) {
+        Voxel[] result = getPlane(axis, plane);
+        if (result == null) {
+            PlaneIndex index = planes[axis];
+            TIntObjectHashMap<Voxel> list = index.voxels.get(plane);
+            result = list.values(new Voxel[list.size()]);
+            index.snapshots.put(plane, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package com.vitco.app.core.data;
+
+import com.vitco.app.low.CubeIndexer;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Append-only journal of changed voxel positions.
+ *
+ * Every change appends the position id and an op code. The entries are numbered by
+ * an increasing version and kept in a ring buffer. Consumers remember the version
+ * they have read up to (their cursor) and pull the changes since then, so the cost of
+ * a change does not depend on the amount of consumers. If the entries since a cursor
+ * have been overwritten (or the journal was reset) the consumer needs a full refresh.
+ */
+final class VoxelChangeJournal {
+
+    // op codes (can be combined)
+    static final int CHANGED = 1; // the voxel at this position changed
+    static final int SELECTION_CHANGED = 2; // the selection state at this position changed
+
+    private final int mask;
+    private final int[] positions;
+    private final byte[] ops;
+
+    // the version of the next entry
+    private long head = 0;
+    // cursors older than this version can not be used
+    private long valid = 0;
+
+    // the size needs to be a power of two
+    VoxelChangeJournal(int size) {
+        assert Integer.bitCount(size) == 1;
+        mask = size - 1;
+        positions = new int[size];
+        ops = new byte[size];
+    }
+
+    // add a change
+    void append(int posId, int op) {
+        int slot = (int) (head & mask);
+        positions[slot] = posId;
+        ops[slot] = (byte) op;
+        head++;
+    }
+
+    // invalidate all cursors (everything changed)
+    void reset() {
+        append(0, 0);
+        valid = head;
+    }
+
+    // the current version (the cursor of a consumer that is up to date)
+    long getVersion() {
+        return head;
+    }
+
+    // true iff the changes since this cursor are still available
+    boolean isAvailable(long cursor) {
+        return cursor >= valid && head - cursor <= positions.length;
+    }
+
+    // collect the positions that changed since the cursor (with any of the given ops),
+    // only positions in the plane are collected if an axis is given (-1 ~ all positions)
+    // returns false if the changes are no longer available
+    boolean collect(long cursor, int opMask, int axis, int plane, TIntHashSet result) {
+        if (!isAvailable(cursor)) {
+            return false;
+        }
+        for (long version = cursor; version < head; version++) {
+            int slot = (int) (version & mask);
+            if ((ops[slot] & opMask) != 0 && (axis == -1 || CubeIndexer.getPos(positions[slot])[axis] == plane)) {
+                result.add(positions[slot]);
+            }
+        }
+        return true;
+    }
+}
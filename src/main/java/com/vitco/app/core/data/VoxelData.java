@@ -1,27 +1,36 @@
 package com.vitco.app.core.data;
 
+import com.vitco.app.core.data.container.DataContainer;
 import com.vitco.app.core.data.container.Voxel;
 import com.vitco.app.core.data.container.VoxelLayer;
 import com.vitco.app.core.data.history.HistoryChangeListener;
 import com.vitco.app.core.data.history.HistoryManager;
+import com.vitco.app.core.data.history.HistorySpillFile;
 import com.vitco.app.core.data.history.VoxelActionIntent;
+import com.vitco.app.core.data.history.VoxelDelta;
 import com.vitco.app.low.CubeIndexer;
+import com.vitco.app.low.fill.FloodFill;
 import com.vitco.app.settings.VitcoSettings;
 import com.vitco.app.util.graphic.GraphicTools;
 import com.vitco.app.util.misc.ArrayUtil;
 import com.vitco.app.util.misc.ColorTools;
+import com.vitco.app.util.misc.CompressedBitSet;
 import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntLongHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.procedure.TIntProcedure;
 import gnu.trove.set.hash.TIntHashSet;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Defines the voxel data interaction (layer, undo, etc)
@@ -32,6 +41,9 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     // contains the (history) listener event declaration for voxel and texture
     protected VoxelData() {
         super();
+        // limit the memory used by the history
+        historyManagerV.setMemoryBudget(VitcoSettings.VOXEL_HISTORY_MEMORY_BUDGET);
+        historyManagerV.setSpillBudget(VitcoSettings.VOXEL_HISTORY_SPILL_BUDGET);
         // notify when the data changes
         historyManagerV.addChangeListener(new HistoryChangeListener<VoxelActionIntent>() {
             @Override
@@ -71,96 +83,84 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     // position where the selection state has actually changed!)
     private final TIntHashSet currentSelectedVoxel = new TIntHashSet();
 
+    // journal of the changed positions (pulled by the views and the internal buffers)
+    private static final int CHANGE_JOURNAL_SIZE = 1 << 20;
+    private final VoxelChangeJournal changeJournal = new VoxelChangeJournal(CHANGE_JOURNAL_SIZE);
+
     // invalidate cache
     protected final void invalidateV(int[][] effected) {
         if (effected != null) {
-            // notification of changed visible voxels
-            for (TIntObjectHashMap<int[]> map : changedVisibleVoxel.values()) {
-                if (map != null) {
-                    for (int[] invalid : effected) {
-                        Integer key = CubeIndexer.getId(invalid[0], invalid[1], invalid[2]);
-                        if (!map.containsKey(key)) {
-                            map.put(key, invalid);
-                        }
-                    }
-                }
-            }
-
-            // notification of changed selected voxels
-            TIntObjectHashMap<int[]> invalidSelected = new TIntObjectHashMap<int[]>();
             for (int[] invalid : effected) {
+                // check if the selection state of this position has changed
                 Voxel voxel = searchVoxel(invalid, false);
-                if (voxel == null) {
-                    int key = CubeIndexer.getId(invalid[0], invalid[1], invalid[2]);
-                    if (currentSelectedVoxel.remove(key)) {
-                        invalidSelected.put(key, invalid);
-                    }
-                } else {
-                    int key = voxel.posId;
-                    if (voxel.isSelected()) {
-                        if (currentSelectedVoxel.add(key)) {
-                            invalidSelected.put(key, invalid);
-                        }
-                    } else {
-                        if (currentSelectedVoxel.remove(key)) {
-                            invalidSelected.put(key, invalid);
-                        }
-                    }
-                }
-            }
-            for (TIntObjectHashMap<int[]> map : changedSelectedVoxel.values()) {
-                if (map != null) {
-                    map.putAll(invalidSelected);
-                }
-            }
-
-            // notification of changed visible voxel for this plane
-            for (TIntIterator it = changedVisibleVoxelPlane.keySet().iterator(); it.hasNext();) {
-                int side = it.next();
-                int missingSide = 1;
-                switch (side) {
-                    case 0: missingSide = 2; break;
-                    case 2: missingSide = 0; break;
-                    default: break;
-                }
-                for (String requestId : changedVisibleVoxelPlane.get(side).keySet()) {
-                    for (int[] invalid : effected) {
-                        // make sure this is set
-                        if (!changedVisibleVoxelPlane.get(side).get(requestId).containsKey(invalid[missingSide])) {
-                            changedVisibleVoxelPlane.get(side).get(requestId).put(
-                                    invalid[missingSide], new TIntObjectHashMap<int[]>());
-                        }
-                        // fill the details
-                        int key = CubeIndexer.getId(invalid[0], invalid[1], invalid[2]);
-                        if (!changedVisibleVoxelPlane.get(side).get(requestId).get(invalid[missingSide]).containsKey(key)) {
-                            changedVisibleVoxelPlane.get(side).get(requestId).get(invalid[missingSide]).put(key, invalid);
-                        }
-                    }
-                }
+                int key = CubeIndexer.getId(invalid[0], invalid[1], invalid[2]);
+                boolean selectionChanged = voxel != null && voxel.isSelected()
+                        ? currentSelectedVoxel.add(key)
+                        : currentSelectedVoxel.remove(key);
+                changeJournal.append(key, selectionChanged
+                        ? VoxelChangeJournal.CHANGED | VoxelChangeJournal.SELECTION_CHANGED
+                        : VoxelChangeJournal.CHANGED);
             }
         } else {
             currentSelectedVoxel.clear();
-            changedSelectedVoxel.clear();
-            changedVisibleVoxel.clear();
-            changedVisibleVoxelPlane.clear();
+            changeJournal.reset();
         }
         layerBufferValid = false;
         layerNameBufferValid = false;
         layerVoxelBufferValid = false;
-        layerVoxelXYBufferValid = false;
-        layerVoxelXZBufferValid = false;
-        layerVoxelYZBufferValid = false;
-        selectedVoxelBufferValid = false;
-        visibleLayerVoxelInternalBufferValid = false;
         notifier.onVoxelDataChanged();
     }
 
     // holds the historyV data
     protected final HistoryManager<VoxelActionIntent> historyManagerV = new HistoryManager<VoxelActionIntent>();
 
-    // buffer for the selected voxels
-    private Voxel[] selectedVoxelBuffer = new Voxel[0];
-    private boolean selectedVoxelBufferValid = false;
+    // the visible voxels (all, selected and per plane), updated from the change journal
+    private final VisibleVoxelView visibleView = new VisibleVoxelView();
+    // the version of the change journal that the view reflects (-1 ~ not built yet)
+    private long visibleViewCursor = -1;
+
+    // bring the visible voxel view up to date (needs the write lock)
+    private void updateVisibleView() {
+        long version = changeJournal.getVersion();
+        if (visibleViewCursor == version) {
+            return;
+        }
+        TIntHashSet changed = new TIntHashSet();
+        if (visibleViewCursor != -1 && changeJournal.collect(visibleViewCursor, VoxelChangeJournal.CHANGED, -1, 0, changed)) {
+            // only update the changed positions
+            VoxelLayer[] layers = getVisibleLayers();
+            for (TIntIterator it = changed.iterator(); it.hasNext();) {
+                int posId = it.next();
+                visibleView.update(posId, findVoxel(layers, posId));
+            }
+        } else {
+            // rebuild (top most layer first)
+            visibleView.clear();
+            for (VoxelLayer layer : getVisibleLayers()) {
+                for (Voxel voxel : layer.getVoxels()) {
+                    visibleView.addIfFree(voxel);
+                }
+            }
+        }
+        visibleViewCursor = version;
+    }
+
+    // true iff the visible voxel view is up to date
+    private boolean isVisibleViewCurrent() {
+        return visibleViewCursor == changeJournal.getVersion();
+    }
+
+    // helper - the visible layers (top most layer first)
+    private VoxelLayer[] getVisibleLayers() {
+        ArrayList<VoxelLayer> result = new ArrayList<VoxelLayer>();
+        for (Integer layerId : dataContainer.layerOrder) {
+            VoxelLayer layer = dataContainer.layers.get(layerId);
+            if (layer.isVisible()) {
+                result.add(layer);
+            }
+        }
+        return result.toArray(new VoxelLayer[result.size()]);
+    }
 
     // ===========================================
 
@@ -210,13 +210,14 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
         protected void applyAction() {
             if (isFirstCall()) {
                 // remember effected positions
-                effected = new int[dataContainer.layers.get(layerId).getVoxels().length][];
-                // remove all points in this layer
                 Voxel[] voxels = dataContainer.layers.get(layerId).getVoxels();
+                effected = new int[voxels.length][];
                 for (int i = 0; i < voxels.length; i++) {
-                    Voxel voxel = voxels[i];
-                    historyManagerV.applyIntent(new RemoveVoxelIntent(voxel.id, true));
-                    effected[i] = voxel.getPosAsInt(); // store
+                    effected[i] = voxels[i].getPosAsInt(); // store
+                }
+                // remove all points in this layer
+                if (voxels.length > 0) {
+                    historyManagerV.applyIntent(new MassRemoveVoxelIntent(Voxel.convertVoxelsToIdArray(voxels), true));
                 }
                 // remember the position of this layer
                 layerPosition = dataContainer.layerOrder.indexOf(layerId);
@@ -382,6 +383,78 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
         }
     }
 
+    // base for intents that record all their voxel changes as one delta
+    // (the changes are made on the first call, afterwards the delta is replayed)
+    // Note: The voxel objects are replaced when a delta is replayed, so all
+    // intents need to look up voxels by id (and not keep the voxel objects)
+    private abstract class VoxelDeltaIntent extends VoxelActionIntent {
+        private VoxelDelta delta = null;
+
+        protected VoxelDeltaIntent(boolean attach) {
+            super(attach);
+        }
+
+        // make the changes (only called once)
+        protected abstract void record(VoxelDelta.Recorder recorder);
+
+        @Override
+        protected final void applyAction() {
+            if (isFirstCall()) {
+                VoxelDelta.Recorder recorder = new VoxelDelta.Recorder(dataContainer);
+                record(recorder);
+                delta = recorder.finish();
+            } else {
+                delta.apply(dataContainer);
+            }
+        }
+
+        @Override
+        protected final void unapplyAction() {
+            delta.revert(dataContainer);
+        }
+
+        @Override
+        public final int[][] effected() {
+            return delta.getEffected();
+        }
+
+        @Override
+        public final long getMemorySize() {
+            return delta == null ? DEFAULT_MEMORY_SIZE : delta.getMemorySize();
+        }
+
+        @Override
+        public final long spill(HistorySpillFile file) throws IOException {
+            return delta == null ? 0 : delta.spill(file);
+        }
+    }
+
+    // helper - remove voxels and add them at new positions (with the same id), voxels
+    // that are in the way are removed (voxels that no longer exist are ignored)
+    private void relocateVoxels(VoxelDelta.Recorder recorder, Voxel[] voxels, int[][] positions, Integer layerId) {
+        Voxel[] current = new Voxel[voxels.length];
+        for (int i = 0; i < voxels.length; i++) {
+            current[i] = dataContainer.getVoxel(voxels[i].id);
+            if (current[i] != null) {
+                recorder.remove(current[i]);
+            }
+        }
+        for (int i = 0; i < voxels.length; i++) {
+            Voxel voxel = current[i];
+            if (voxel != null) {
+                int newLayerId = layerId != null ? layerId : voxel.getLayerId();
+                Voxel toRemove = dataContainer.layers.get(newLayerId).search(positions[i]);
+                if (toRemove != null) {
+                    recorder.remove(toRemove);
+                }
+                Voxel moved = new Voxel(voxel.id, positions[i], voxel.getColor(), voxel.isSelected(), voxel.getTexture(), newLayerId);
+                moved.setAlpha(voxel.getAlpha());
+                moved.setTextureTransform(voxel.getRotation(), voxel.getFlip());
+                recorder.add(moved);
+            }
+        }
+    }
+
     // voxel intents
     private final class AddVoxelIntent extends VoxelActionIntent {
         private final Voxel voxel;
@@ -394,14 +467,13 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
         @Override
         protected void applyAction() {
-            dataContainer.voxels.put(voxel.id, voxel);
-            dataContainer.layers.get(voxel.getLayerId()).addVoxel(voxel);
+            dataContainer.addVoxel(voxel);
         }
 
         @Override
         protected void unapplyAction() {
-            dataContainer.voxels.remove(voxel.id);
-            dataContainer.layers.get(voxel.getLayerId()).removeVoxel(voxel);
+            // the voxel object might have been replaced in the meantime
+            dataContainer.removeVoxel(dataContainer.getVoxel(voxel.id));
         }
 
         @Override
@@ -421,17 +493,13 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
         @Override
         protected void applyAction() {
-            if (isFirstCall()) {
-                voxel = dataContainer.voxels.get(voxelId);
-            }
-            dataContainer.voxels.remove(voxel.id);
-            dataContainer.layers.get(voxel.getLayerId()).removeVoxel(voxel);
+            voxel = dataContainer.getVoxel(voxelId);
+            dataContainer.removeVoxel(voxel);
         }
 
         @Override
         protected void unapplyAction() {
-            dataContainer.voxels.put(voxel.id, voxel);
-            dataContainer.layers.get(voxel.getLayerId()).addVoxel(voxel);
+            dataContainer.addVoxel(voxel);
         }
 
         @Override
@@ -444,7 +512,7 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
         private final int voxelId;
         private final boolean selected;
         private boolean prevSelected;
-        private Voxel voxel;
+        private int[] pos;
 
         protected SelectVoxelIntent(int voxelId, boolean selected, boolean attach) {
             super(attach);
@@ -454,21 +522,22 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
         @Override
         protected void applyAction() {
+            Voxel voxel = dataContainer.getVoxel(voxelId);
             if (isFirstCall()) {
-                voxel = dataContainer.voxels.get(voxelId);
                 prevSelected = voxel.isSelected();
+                pos = voxel.getPosAsInt();
             }
-            voxel.setSelected(selected);
+            dataContainer.setVoxelSelected(voxel, selected);
         }
 
         @Override
         protected void unapplyAction() {
-            voxel.setSelected(prevSelected);
+            dataContainer.setVoxelSelected(dataContainer.getVoxel(voxelId), prevSelected);
         }
 
         @Override
         public int[][] effected() {
-            return new int[][]{voxel.getPosAsInt()};
+            return new int[][]{pos};
         }
     }
 
@@ -485,7 +554,7 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
         @Override
         protected void applyAction() {
             if (isFirstCall()) {
-                Voxel voxel = dataContainer.voxels.get(voxelId);
+                Voxel voxel = dataContainer.getVoxel(voxelId);
                 historyManagerV.applyIntent(new RemoveVoxelIntent(voxelId, true));
 
                 // remove if something is at new position in this layer
@@ -515,13 +584,14 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     }
 
     private final class ColorVoxelIntent extends VoxelActionIntent {
-        private final Voxel voxel;
+        private final int voxelId;
         private final Color newColor;
         private final Color oldColor;
 
         protected ColorVoxelIntent(int voxelId, Color newColor, boolean attach) {
             super(attach);
-            this.voxel = dataContainer.voxels.get(voxelId);
+            this.voxelId = voxelId;
+            Voxel voxel = dataContainer.getVoxel(voxelId);
             this.oldColor = voxel.getColor();
             this.newColor = newColor;
             this.effected = new int[][]{voxel.getPosAsInt()};
@@ -529,12 +599,12 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
         @Override
         protected void applyAction() {
-            voxel.setColor(newColor);
+            dataContainer.getVoxel(voxelId).setColor(newColor);
         }
 
         @Override
         protected void unapplyAction() {
-            voxel.setColor(oldColor);
+            dataContainer.getVoxel(voxelId).setColor(oldColor);
         }
 
         private int[][] effected = null;
@@ -545,31 +615,27 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     }
 
     private final class ColorShiftVoxelIntent extends VoxelActionIntent {
-        private final Voxel voxel;
+        private final int voxelId;
         private final Color newColor;
         private final Color oldColor;
 
         protected ColorShiftVoxelIntent(int voxelId, float[] hsbOffset, boolean attach) {
             super(attach);
-            this.voxel = dataContainer.voxels.get(voxelId);
+            this.voxelId = voxelId;
+            Voxel voxel = dataContainer.getVoxel(voxelId);
             this.oldColor = voxel.getColor();
-            float[] currentHSB = ColorTools.colorToHSB(this.oldColor);
-            this.newColor = ColorTools.hsbToColor(new float[] {
-                    (currentHSB[0] + hsbOffset[0] + 2) % 1,
-                    Math.max(0, Math.min(1, currentHSB[1] + hsbOffset[1])),
-                    Math.max(0, Math.min(1, currentHSB[2] + hsbOffset[2]))
-            });
+            this.newColor = shiftColor(this.oldColor, hsbOffset);
             this.effected = new int[][]{voxel.getPosAsInt()};
         }
 
         @Override
         protected void applyAction() {
-            voxel.setColor(newColor);
+            dataContainer.getVoxel(voxelId).setColor(newColor);
         }
 
         @Override
         protected void unapplyAction() {
-            voxel.setColor(oldColor);
+            dataContainer.getVoxel(voxelId).setColor(oldColor);
         }
 
         private int[][] effected = null;
@@ -583,7 +649,6 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
         private final int voxelId;
         private final int newAlpha;
         private int oldAlpha;
-        private Voxel voxel;
 
         protected AlphaVoxelIntent(int voxelId, int newAlpha, boolean attach) {
             super(attach);
@@ -593,8 +658,8 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
         @Override
         protected void applyAction() {
+            Voxel voxel = dataContainer.getVoxel(voxelId);
             if (isFirstCall()) {
-                voxel = dataContainer.voxels.get(voxelId);
                 oldAlpha = voxel.getAlpha();
                 // what is effected
                 effected = new int[][]{voxel.getPosAsInt()};
@@ -604,6 +669,7 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
         @Override
         protected void unapplyAction() {
+            Voxel voxel = dataContainer.getVoxel(voxelId);
             dataContainer.layers.get(voxel.getLayerId()).setVoxelAlpha(voxel, oldAlpha);
         }
 
@@ -625,17 +691,17 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
         @Override
         protected void applyAction() {
             if (isFirstCall()) {
-                ArrayList<int[]> effected = new ArrayList<int[]>();
-
                 // get all voxels and remove them
-                for (Voxel voxel : dataContainer.layers.get(layerId).getVoxels()) {
-                    effected.add(voxel.getPosAsInt());
-                    historyManagerV.applyIntent(new RemoveVoxelIntent(voxel.id, true));
+                Voxel[] voxels = dataContainer.layers.get(layerId).getVoxels();
+                if (voxels.length > 0) {
+                    historyManagerV.applyIntent(new MassRemoveVoxelIntent(Voxel.convertVoxelsToIdArray(voxels), true));
                 }
 
                 // what is effected
-                this.effected = new int[effected.size()][];
-                effected.toArray(this.effected);
+                effected = new int[voxels.length][];
+                for (int i = 0; i < voxels.length; i++) {
+                    effected[i] = voxels[i].getPosAsInt();
+                }
             }
         }
 
@@ -667,20 +733,24 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 historyManagerV.applyIntent(new CreateLayerIntent(mergedLayerId, "Merged", true));
 
                 // add the voxels to the new layer (top to bottom)
+                ArrayList<Voxel> merged = new ArrayList<Voxel>();
+                TIntHashSet mergedPos = new TIntHashSet();
                 for (int layerId : dataContainer.layerOrder) {
                     if (dataContainer.layers.get(layerId).isVisible()) { // only visible
                         Voxel[] voxels = getLayerVoxels(layerId); // get voxels
                         for (Voxel voxel : voxels) {
-                            if (dataContainer.layers.get(mergedLayerId).voxelPositionFree(voxel)) { // add if this voxel does not exist
+                            if (mergedPos.add(voxel.posId)) { // add if this voxel does not exist
                                 effected.add(voxel.getPosAsInt());
-                                historyManagerV.applyIntent( // we <need> a new id for this voxel
-                                        new AddVoxelIntent(getFreeVoxelId(), voxel.getPosAsInt(),
-                                                voxel.getColor(), voxel.isSelected(), voxel.getTexture(), mergedLayerId, true)
-                                );
+                                merged.add(voxel);
                             }
                         }
                     }
                 }
+                if (!merged.isEmpty()) { // the voxels get new ids
+                    Voxel[] voxels = new Voxel[merged.size()];
+                    merged.toArray(voxels);
+                    historyManagerV.applyIntent(new MassAddVoxelIntent(voxels, mergedLayerId, true));
+                }
 
                 // delete the visible layers (not the new one)
                 Integer[] layer = new Integer[dataContainer.layerOrder.size()];
@@ -939,13 +1009,14 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
     // texture a voxel with a given texture (id)
     private final class TextureVoxelIntent extends VoxelActionIntent {
-        private final Voxel voxel;
+        private final int voxelId;
         private final int[] oldVoxelTexture;
         private final int[] newVoxelTexture;
 
         protected TextureVoxelIntent(int voxelId, Integer voxelSide, int newTextureId, boolean attach) {
             super(attach);
-            this.voxel = dataContainer.voxels.get(voxelId);
+            this.voxelId = voxelId;
+            Voxel voxel = dataContainer.getVoxel(voxelId);
             this.oldVoxelTexture = voxel.getTexture();
             if (newTextureId != -1) { // otherwise unset texture
                 if (oldVoxelTexture == null || voxelSide == null) {
@@ -966,12 +1037,12 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
         @Override
         protected void applyAction() {
-            voxel.setTexture(newVoxelTexture);
+            dataContainer.getVoxel(voxelId).setTexture(newVoxelTexture);
         }
 
         @Override
         protected void unapplyAction() {
-            voxel.setTexture(oldVoxelTexture);
+            dataContainer.getVoxel(voxelId).setTexture(oldVoxelTexture);
         }
 
         private int[][] effected = null;
@@ -982,64 +1053,49 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     }
 
     // texture many voxel at the same time
-    private final class MassTextureVoxelIntent extends VoxelActionIntent  {
-        private final Integer[] voxelIds;
+    private final class MassTextureVoxelIntent extends VoxelDeltaIntent  {
+        private Integer[] voxelIds;
         private final int textureId;
 
         protected MassTextureVoxelIntent(Integer[] voxelIds, int textureId, boolean attach) {
             super(attach);
-
-            // what is effected (there could be duplicate positions here)
-            effected = new int[voxelIds.length][];
-            for (int i = 0; i < effected.length; i++) {
-                effected[i] = dataContainer.voxels.get(voxelIds[i]).getPosAsInt();
-            }
-
             this.voxelIds = voxelIds;
             this.textureId = textureId;
         }
 
         @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
-                for (Integer voxelId : voxelIds) {
-                    historyManagerV.applyIntent(new TextureVoxelIntent(voxelId, null, textureId, true));
-                }
+        protected void record(VoxelDelta.Recorder recorder) {
+            int[] texture = textureId == -1 ? null : new int[] {
+                    textureId, textureId, textureId,
+                    textureId, textureId, textureId
+            };
+            for (Integer voxelId : voxelIds) {
+                recorder.touch(voxelId).setTexture(texture);
             }
-        }
-
-        @Override
-        protected void unapplyAction() {
-            // nothing to do
-        }
-
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
+            voxelIds = null; // the changes are stored in the delta
         }
     }
 
     // rotate voxel texture
     private final class RotateVoxelTextureIntent extends VoxelActionIntent  {
-        private final Voxel voxel;
+        private final int voxelId;
         private final int voxelSide;
 
         protected RotateVoxelTextureIntent(int voxelId, int voxelSide, boolean attach) {
             super(attach);
-            this.voxel = dataContainer.voxels.get(voxelId);
+            this.voxelId = voxelId;
             this.voxelSide = voxelSide;
-            effected = new int[][]{voxel.getPosAsInt()};
+            effected = new int[][]{dataContainer.getVoxel(voxelId).getPosAsInt()};
         }
 
         @Override
         protected void applyAction() {
-            voxel.rotate(voxelSide);
+            dataContainer.getVoxel(voxelId).rotate(voxelSide);
         }
 
         @Override
         protected void unapplyAction() {
-            voxel.rotateReverse(voxelSide);
+            dataContainer.getVoxel(voxelId).rotateReverse(voxelSide);
         }
 
         private int[][] effected = null;
@@ -1051,24 +1107,24 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
     // flip voxel texture
     private final class FlipVoxelTextureIntent extends VoxelActionIntent  {
-        private final Voxel voxel;
+        private final int voxelId;
         private final int voxelSide;
 
         protected FlipVoxelTextureIntent(int voxelId, int voxelSide, boolean attach) {
             super(attach);
-            this.voxel = dataContainer.voxels.get(voxelId);
+            this.voxelId = voxelId;
             this.voxelSide = voxelSide;
-            effected = new int[][]{voxel.getPosAsInt()};
+            effected = new int[][]{dataContainer.getVoxel(voxelId).getPosAsInt()};
         }
 
         @Override
         protected void applyAction() {
-            voxel.flip(voxelSide);
+            dataContainer.getVoxel(voxelId).flip(voxelSide);
         }
 
         @Override
         protected void unapplyAction() {
-            voxel.flip(voxelSide);
+            dataContainer.getVoxel(voxelId).flip(voxelSide);
         }
 
         private int[][] effected = null;
@@ -1081,256 +1137,158 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     // layer events
 
     // move to new layer
-    private final class MigrateIntent extends VoxelActionIntent {
-        private final Voxel[] voxels;
+    private final class MigrateIntent extends VoxelDeltaIntent {
+        private Voxel[] voxels;
 
         protected MigrateIntent(Voxel[] voxels, boolean attach) {
             super(attach);
             this.voxels = voxels;
         }
 
-        private Integer[] convertVoxelsToIdArray(Voxel[] voxels) {
-            // what is effected (there *should* not be duplicate positions
-            // as they are all moved to one new layer)
-            effected = new int[voxels.length][];
-            for (int i = 0; i < effected.length; i++) {
-                effected[i] = voxels[i].getPosAsInt();
-            }
-
-            Integer[] voxelIds = new Integer[voxels.length];
-            int i = 0;
-            for (Voxel voxel : voxels) {
-                voxelIds[i++] = voxel.id;
-            }
-            return voxelIds;
-        }
-
         @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
-                // create a new layer
-                int layerId = getFreeLayerId();
-                historyManagerV.applyIntent(new CreateLayerIntent(layerId, "Migrated", true));
-                // remove all voxels
-                historyManagerV.applyIntent(
-                        new MassRemoveVoxelIntent(convertVoxelsToIdArray(voxels), true));
-                // add all voxels to new layer
-                historyManagerV.applyIntent(new MassAddVoxelIntent(voxels, layerId, true));
-                // select the new layer
-                historyManagerV.applyIntent(new SelectLayerIntent(layerId, true));
+        protected void record(VoxelDelta.Recorder recorder) {
+            // create a new layer
+            int layerId = getFreeLayerId();
+            historyManagerV.applyIntent(new CreateLayerIntent(layerId, "Migrated", true));
+            // move all voxels to the new layer
+            int[][] positions = new int[voxels.length][];
+            for (int i = 0; i < voxels.length; i++) {
+                positions[i] = voxels[i].getPosAsInt();
             }
-        }
-
-        @Override
-        protected void unapplyAction() {
-            // nothing to do
-        }
-
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
+            relocateVoxels(recorder, voxels, positions, layerId);
+            // select the new layer
+            historyManagerV.applyIntent(new SelectLayerIntent(layerId, true));
+            voxels = null; // the changes are stored in the delta
         }
     }
 
     // mass events
 
-    private final class MassSelectVoxelIntent extends VoxelActionIntent {
-        private final Integer[] voxelIds;
-        private final boolean selected;
+    // inverts the selection state of the voxels (only the ids are stored)
+    private final class SelectionIntent extends VoxelActionIntent {
+        private final CompressedBitSet voxelIds;
 
-        protected MassSelectVoxelIntent(Integer[] voxelIds, boolean selected, boolean attach) {
+        protected SelectionIntent(CompressedBitSet voxelIds, boolean attach) {
             super(attach);
-
-            // what is effected (there could be duplicate positions here)
-            effected = new int[voxelIds.length][];
-            for (int i = 0; i < effected.length; i++) {
-                effected[i] = dataContainer.voxels.get(voxelIds[i]).getPosAsInt();
-            }
-
             this.voxelIds = voxelIds;
-            this.selected = selected;
         }
 
         @Override
         protected void applyAction() {
-            if (isFirstCall()) {
-                for (Integer id : voxelIds) {
-                    historyManagerV.applyIntent(new SelectVoxelIntent(id, selected, true));
-                }
-            }
+            dataContainer.toggleVoxelSelection(voxelIds);
         }
 
         @Override
         protected void unapplyAction() {
-            // nothing to do
+            dataContainer.toggleVoxelSelection(voxelIds);
         }
 
-        private int[][] effected = null;
         @Override
         public int[][] effected() {
-            return effected;
+            // the voxels exist and don't move while this intent is applied
+            final int[][] result = new int[voxelIds.cardinality()][];
+            voxelIds.forEach(new TIntProcedure() {
+                private int i = 0;
+                @Override
+                public boolean execute(int id) {
+                    result[i++] = dataContainer.getVoxel(id).getPosAsInt();
+                    return true;
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public long getMemorySize() {
+            return DEFAULT_MEMORY_SIZE + voxelIds.getMemorySize();
         }
     }
 
-    private final class MassRemoveVoxelIntent extends VoxelActionIntent {
-        private final Integer[] voxelIds;
+    private final class MassRemoveVoxelIntent extends VoxelDeltaIntent {
+        private Integer[] voxelIds;
 
         protected MassRemoveVoxelIntent(Integer[] voxelIds, boolean attach) {
             super(attach);
-
-            // what is effected (there could be duplicate positions here)
-            effected = new int[voxelIds.length][];
-            for (int i = 0; i < effected.length; i++) {
-                effected[i] = dataContainer.voxels.get(voxelIds[i]).getPosAsInt();
-            }
-
             this.voxelIds = voxelIds;
         }
 
         @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
-                for (Integer id : voxelIds) {
-                    historyManagerV.applyIntent(new RemoveVoxelIntent(id, true));
+        protected void record(VoxelDelta.Recorder recorder) {
+            for (Integer id : voxelIds) {
+                Voxel voxel = dataContainer.getVoxel(id);
+                if (voxel != null) {
+                    recorder.remove(voxel);
                 }
             }
-        }
-
-        @Override
-        protected void unapplyAction() {
-            // nothing to do
-        }
-
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
+            voxelIds = null; // the changes are stored in the delta
         }
     }
 
     // if the layerid is null the voxel layerId will be used,
     // otherwise the provided layerid
     // the voxel id is never used (!)
-    private final class MassAddVoxelIntent extends VoxelActionIntent {
-        private final Voxel[] voxels;
+    private final class MassAddVoxelIntent extends VoxelDeltaIntent {
+        private Voxel[] voxels;
         private final Integer layerId;
 
         protected MassAddVoxelIntent(Voxel[] voxels, Integer layerId, boolean attach) {
             super(attach);
-
-            // what is effected (there could be duplicate positions here)
-            effected = new int[voxels.length][];
-            for (int i = 0; i < effected.length; i++) {
-                effected[i] = voxels[i].getPosAsInt();
-            }
-
             this.voxels = voxels;
             this.layerId = layerId;
         }
 
         @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
-                boolean layerIdSet = layerId != null;
-                for (Voxel voxel : voxels) {
-                    historyManagerV.applyIntent(
-                            new AddVoxelIntent(getFreeVoxelId(), voxel.getPosAsInt(),
-                                    voxel.getColor(), voxel.isSelected(), voxel.getTexture(), layerIdSet ? layerId : voxel.getLayerId(), true));
-                }
+        protected void record(VoxelDelta.Recorder recorder) {
+            boolean layerIdSet = layerId != null;
+            for (Voxel voxel : voxels) {
+                recorder.add(new Voxel(getFreeVoxelId(), voxel.getPosAsInt(), voxel.getColor(),
+                        voxel.isSelected(), voxel.getTexture(), layerIdSet ? layerId : voxel.getLayerId()));
             }
-        }
-
-        @Override
-        protected void unapplyAction() {
-            // nothing to do
-        }
-
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
+            voxels = null; // the changes are stored in the delta
         }
     }
 
-    private final class MassColorVoxelIntent extends VoxelActionIntent  {
-        private final Integer[] voxelIds;
+    private final class MassColorVoxelIntent extends VoxelDeltaIntent  {
+        private Integer[] voxelIds;
         private final Color color;
 
         protected MassColorVoxelIntent(Integer[] voxelIds, Color color, boolean attach) {
             super(attach);
-
-            // what is effected (there could be duplicate positions here)
-            effected = new int[voxelIds.length][];
-            for (int i = 0; i < effected.length; i++) {
-                effected[i] = dataContainer.voxels.get(voxelIds[i]).getPosAsInt();
-            }
-
             this.voxelIds = voxelIds;
             this.color = color;
         }
 
         @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
-                for (Integer voxelId : voxelIds) {
-                    historyManagerV.applyIntent(new ColorVoxelIntent(voxelId, color, true));
-                }
+        protected void record(VoxelDelta.Recorder recorder) {
+            for (Integer voxelId : voxelIds) {
+                recorder.touch(voxelId).setColor(color);
             }
-        }
-
-        @Override
-        protected void unapplyAction() {
-            // nothing to do
-        }
-
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
+            voxelIds = null; // the changes are stored in the delta
         }
     }
 
-    private final class MassColorShiftVoxelIntent extends VoxelActionIntent  {
-        private final Integer[] voxelIds;
+    private final class MassColorShiftVoxelIntent extends VoxelDeltaIntent  {
+        private Integer[] voxelIds;
         private final float[] hsbOffset;
 
         protected MassColorShiftVoxelIntent(Integer[] voxelIds, float[] hsbOffset, boolean attach) {
             super(attach);
-
-            // what is effected (there could be duplicate positions here)
-            effected = new int[voxelIds.length][];
-            for (int i = 0; i < effected.length; i++) {
-                effected[i] = dataContainer.voxels.get(voxelIds[i]).getPosAsInt();
-            }
-
             this.voxelIds = voxelIds;
             this.hsbOffset = hsbOffset;
         }
 
         @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
-                for (Integer voxelId : voxelIds) {
-                    historyManagerV.applyIntent(new ColorShiftVoxelIntent(voxelId, hsbOffset, true));
-                }
+        protected void record(VoxelDelta.Recorder recorder) {
+            for (Integer voxelId : voxelIds) {
+                Voxel voxel = recorder.touch(voxelId);
+                voxel.setColor(shiftColor(voxel.getColor(), hsbOffset));
             }
-        }
-
-        @Override
-        protected void unapplyAction() {
-            // nothing to do
-        }
-
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
+            voxelIds = null; // the changes are stored in the delta
         }
     }
 
-    private final class MassMoveVoxelIntent extends VoxelActionIntent  {
-        private final Voxel[] voxels;
+    private final class MassMoveVoxelIntent extends VoxelDeltaIntent  {
+        private Voxel[] voxels;
         private final int[] shift;
 
         protected MassMoveVoxelIntent(Voxel[] voxels, int[] shift, boolean attach) {
@@ -1340,58 +1298,25 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
         }
 
         @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
-
-                // what is effected (there could be duplicate positions here)
-                effected = new int[voxels.length*2][];
-
-                // generate the ids
-                Integer[] voxelIds = new Integer[voxels.length];
-                for (int i = 0; i < voxels.length; i++) {
-                    voxelIds[i] = voxels[i].id;
-                }
-                // remove all voxels
-                historyManagerV.applyIntent(new MassRemoveVoxelIntent(voxelIds, true));
-
-                // create new voxels (with new position) and delete
-                // existing voxels at those positions
-                Voxel[] shiftedVoxels = new Voxel[voxels.length];
-                for (int i = 0; i < voxels.length; i++) {
-                    Voxel voxel = voxels[i];
-                    int[] pos = voxel.getPosAsInt();
-                    effected[i] = voxel.getPosAsInt(); // what is effected
-                    pos[0] -= shift[0];
-                    pos[1] -= shift[1];
-                    pos[2] -= shift[2];
-                    effected[i + voxels.length] = pos.clone(); // what is effected
-                    shiftedVoxels[i] = new Voxel(voxel.id, pos, voxel.getColor(), voxel.isSelected(), voxel.getTexture(), voxel.getLayerId());
-                    // remove existing voxels in this layer
-                    Voxel result = dataContainer.layers.get(voxel.getLayerId()).search(pos);
-                    if (result != null) {
-                        historyManagerV.applyIntent(new RemoveVoxelIntent(result.id, true));
-                    }
-                }
-                // (re)add all the shifted voxels (null ~ the voxel layer id is used)
-                historyManagerV.applyIntent(new MassAddVoxelIntent(shiftedVoxels, null, true));
+        protected void record(VoxelDelta.Recorder recorder) {
+            // compute the new positions
+            int[][] positions = new int[voxels.length][];
+            for (int i = 0; i < voxels.length; i++) {
+                int[] pos = voxels[i].getPosAsInt();
+                pos[0] -= shift[0];
+                pos[1] -= shift[1];
+                pos[2] -= shift[2];
+                positions[i] = pos;
             }
-        }
-
-        @Override
-        protected void unapplyAction() {
-            // nothing to do
-        }
-
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
+            // move the voxels (and delete existing voxels at those positions)
+            relocateVoxels(recorder, voxels, positions, null);
+            voxels = null; // the changes are stored in the delta
         }
     }
 
     // rotate voxel around their center (but not the voxel "texture" itself)
-    private final class RotateVoxelCenterIntent extends VoxelActionIntent  {
-        private final Voxel[] voxels;
+    private final class RotateVoxelCenterIntent extends VoxelDeltaIntent  {
+        private Voxel[] voxels;
         private final int axe;
         private final float angle;
 
@@ -1403,190 +1328,244 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
         }
 
         @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
-
-                // what is effected (there could be duplicate positions here)
-                effected = new int[voxels.length*2][];
-
-                // generate the ids and find center
-                int[] centerMin = null;
-                int[] centerMax = null;
-                Integer[] voxelIds = new Integer[voxels.length];
-                for (int i = 0; i < voxels.length; i++) {
-                    voxelIds[i] = voxels[i].id;
-                    Voxel voxel = voxels[i];
-                    if (centerMin == null) {
-                        centerMin = voxel.getPosAsInt();
-                        centerMax = voxel.getPosAsInt();
-                    }
-                    centerMin[0] = Math.min(centerMin[0],voxel.x);
-                    centerMin[1] = Math.min(centerMin[1],voxel.y);
-                    centerMin[2] = Math.min(centerMin[2],voxel.z);
-                    centerMax[0] = Math.max(centerMax[0],voxel.x);
-                    centerMax[1] = Math.max(centerMax[1],voxel.y);
-                    centerMax[2] = Math.max(centerMax[2],voxel.z);
-                }
-                // calculate center - note: voxels.length must not be zero
-                assert centerMin != null;
-                float[] center = new float[] {
-                        (centerMin[0]/(float)2 + centerMax[0]/(float)2),
-                        (centerMin[1]/(float)2 + centerMax[1]/(float)2),
-                        (centerMin[2]/(float)2 + centerMax[2]/(float)2)
-                };
-
-                int rot1 = 0;
-                int rot2 = 2;
-                switch (axe) {
-                    case 2:
-                        rot1 = 0;
-                        rot2 = 1;
-                        break;
-                    case 1:
-                        rot1 = 0;
-                        rot2 = 2;
-                        break;
-                    case 0:
-                        rot1 = 1;
-                        rot2 = 2;
-                        break;
-                    default: break;
+        protected void record(VoxelDelta.Recorder recorder) {
+            // find center
+            int[] centerMin = null;
+            int[] centerMax = null;
+            for (Voxel voxel : voxels) {
+                if (centerMin == null) {
+                    centerMin = voxel.getPosAsInt();
+                    centerMax = voxel.getPosAsInt();
                 }
+                centerMin[0] = Math.min(centerMin[0],voxel.x);
+                centerMin[1] = Math.min(centerMin[1],voxel.y);
+                centerMin[2] = Math.min(centerMin[2],voxel.z);
+                centerMax[0] = Math.max(centerMax[0],voxel.x);
+                centerMax[1] = Math.max(centerMax[1],voxel.y);
+                centerMax[2] = Math.max(centerMax[2],voxel.z);
+            }
+            // calculate center - note: voxels.length must not be zero
+            assert centerMin != null;
+            float[] center = new float[] {
+                    (centerMin[0]/(float)2 + centerMax[0]/(float)2),
+                    (centerMin[1]/(float)2 + centerMax[1]/(float)2),
+                    (centerMin[2]/(float)2 + centerMax[2]/(float)2)
+            };
+
+            int rot1 = 0;
+            int rot2 = 2;
+            switch (axe) {
+                case 2:
+                    rot1 = 0;
+                    rot2 = 1;
+                    break;
+                case 1:
+                    rot1 = 0;
+                    rot2 = 2;
+                    break;
+                case 0:
+                    rot1 = 1;
+                    rot2 = 2;
+                    break;
+                default: break;
+            }
+
+            // compute the new positions
+            int[][] positions = new int[voxels.length][];
+            for (int i = 0; i < voxels.length; i++) {
+                int[] pos = voxels[i].getPosAsInt();
+
+                // rotate the point around the center
+                // todo check for duplicates (overlaps when rotating values other than 90, 180, 270)
+                double[] pt = {pos[rot1], pos[rot2]};
+                AffineTransform.getRotateInstance(Math.toRadians(angle), center[rot1], center[rot2])
+                        .transform(pt, 0, pt, 0, 1); // specifying to use this double[] to hold coords
+                pos[rot1] = (int)Math.round(pt[0]);
+                pos[rot2] = (int)Math.round(pt[1]);
+
+                positions[i] = pos;
+            }
+            // move the voxels (and delete existing voxels at those positions)
+            relocateVoxels(recorder, voxels, positions, null);
+            voxels = null; // the changes are stored in the delta
+        }
+    }
+
+    private final class MirrorVoxelIntent extends VoxelDeltaIntent  {
+        private Voxel[] voxels;
+        private final int axe;
 
-                // remove all voxels
-                historyManagerV.applyIntent(new MassRemoveVoxelIntent(voxelIds, true));
-
-                // create new voxels (with new position) and delete
-                // existing voxels at those positions
-                Voxel[] shiftedVoxels = new Voxel[voxels.length];
-                for (int i = 0; i < voxels.length; i++) {
-                    Voxel voxel = voxels[i];
-                    int[] pos = voxel.getPosAsInt();
-                    effected[i] = voxel.getPosAsInt(); // what is effected
-
-                    // rotate the point around the center
-                    // todo check for duplicates (overlaps when rotating values other than 90, 180, 270)
-                    double[] pt = {pos[rot1], pos[rot2]};
-                    AffineTransform.getRotateInstance(Math.toRadians(angle), center[rot1], center[rot2])
-                            .transform(pt, 0, pt, 0, 1); // specifying to use this double[] to hold coords
-                    pos[rot1] = (int)Math.round(pt[0]);
-                    pos[rot2] = (int)Math.round(pt[1]);
-
-                    effected[i + voxels.length] = pos.clone(); // what is effected
-                    shiftedVoxels[i] = new Voxel(voxel.id, pos, voxel.getColor(), voxel.isSelected(), voxel.getTexture(), voxel.getLayerId());
-                    // remove existing voxels in this layer
-                    Voxel result = dataContainer.layers.get(voxel.getLayerId()).search(pos);
-                    if (result != null) {
-                        historyManagerV.applyIntent(new RemoveVoxelIntent(result.id, true));
-                    }
-                }
-                // (re)add all the rotated voxels (null ~ the voxel layer id is used)
-                historyManagerV.applyIntent(new MassAddVoxelIntent(shiftedVoxels, null, true));
-            }
+        protected MirrorVoxelIntent(Voxel[] voxels, int axe, boolean attach) {
+            super(attach);
+            this.voxels = voxels;
+            this.axe = axe;
         }
 
         @Override
-        protected void unapplyAction() {
-            // nothing to do
+        protected void record(VoxelDelta.Recorder recorder) {
+            // find center
+            int[] centerMin = null;
+            int[] centerMax = null;
+            for (Voxel voxel : voxels) {
+                if (centerMin == null) {
+                    centerMin = voxel.getPosAsInt();
+                    centerMax = voxel.getPosAsInt();
+                }
+                centerMin[0] = Math.min(centerMin[0],voxel.x);
+                centerMin[1] = Math.min(centerMin[1],voxel.y);
+                centerMin[2] = Math.min(centerMin[2],voxel.z);
+                centerMax[0] = Math.max(centerMax[0],voxel.x);
+                centerMax[1] = Math.max(centerMax[1],voxel.y);
+                centerMax[2] = Math.max(centerMax[2],voxel.z);
+            }
+            // calculate center - note: voxels.length must not be zero
+            assert centerMin != null;
+            float[] center = new float[] {
+                    (centerMin[0]/(float)2 + centerMax[0]/(float)2),
+                    (centerMin[1]/(float)2 + centerMax[1]/(float)2),
+                    (centerMin[2]/(float)2 + centerMax[2]/(float)2)
+            };
+
+            // compute the new positions
+            int[][] positions = new int[voxels.length][];
+            for (int i = 0; i < voxels.length; i++) {
+                int[] pos = voxels[i].getPosAsInt();
+                // switch the point with the center
+                pos[axe] = Math.round(- pos[axe] + 2*center[axe]);
+                positions[i] = pos;
+            }
+            // move the voxels (and delete existing voxels at those positions)
+            relocateVoxels(recorder, voxels, positions, null);
+            voxels = null; // the changes are stored in the delta
         }
+    }
 
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
-        }
+    // ##################### PRIVATE HELPER FUNCTIONS
+    // shift a color by a hsb offset
+    private static Color shiftColor(Color color, float[] hsbOffset) {
+        float[] currentHSB = ColorTools.colorToHSB(color);
+        return ColorTools.hsbToColor(new float[] {
+                (currentHSB[0] + hsbOffset[0] + 2) % 1,
+                Math.max(0, Math.min(1, currentHSB[1] + hsbOffset[1])),
+                Math.max(0, Math.min(1, currentHSB[2] + hsbOffset[2]))
+        });
     }
 
-    private final class MirrorVoxelIntent extends VoxelActionIntent  {
-        private final Voxel[] voxels;
-        private final int axe;
+    // returns a free voxel id
+    private int lastVoxel = -1;
+    private int getFreeVoxelId() {
+        do {
+            lastVoxel++;
+        } while (dataContainer.containsVoxel(lastVoxel));
+        return lastVoxel;
+    }
 
-        protected MirrorVoxelIntent(Voxel[] voxels, int axe, boolean attach) {
-            super(attach);
-            this.voxels = voxels;
-            this.axe = axe;
+    // make sure that the ids of voxels in layers that are not loaded yet are never handed out
+    protected final void reservePendingVoxelIds() {
+        for (VoxelLayer layer : dataContainer.layers.values()) {
+            lastVoxel = Math.max(lastVoxel, layer.getPendingMaxVoxelId());
         }
+    }
 
-        @Override
-        protected void applyAction() {
-            if (isFirstCall()) {
+    // true while layers of the data might not be loaded yet (only set while holding the write lock,
+    // but read without holding a lock, see lockForReading)
+    private volatile boolean layersPending = false;
 
-                // what is effected (there could be duplicate positions here)
-                effected = new int[voxels.length*2][];
+    // helper - true iff a layer of the data is not loaded yet
+    private boolean hasPendingLayers() {
+        for (VoxelLayer layer : dataContainer.layers.values()) {
+            if (layer.isPending()) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                // generate the ids and find center
-                int[] centerMin = null;
-                int[] centerMax = null;
-                Integer[] voxelIds = new Integer[voxels.length];
-                for (int i = 0; i < voxels.length; i++) {
-                    voxelIds[i] = voxels[i].id;
-                    Voxel voxel = voxels[i];
-                    if (centerMin == null) {
-                        centerMin = voxel.getPosAsInt();
-                        centerMax = voxel.getPosAsInt();
+    // decode the layers that are not loaded yet in the background (needs to be called
+    // while holding the write lock). The voxels are decoded without holding a lock and
+    // are then added under the write lock, so queries only need the write lock until then.
+    protected final void loadPendingLayers() {
+        final DataContainer container = dataContainer;
+        final ArrayList<VoxelLayer> pendingLayers = new ArrayList<VoxelLayer>();
+        for (VoxelLayer layer : container.layers.values()) {
+            if (layer.isPending()) {
+                pendingLayers.add(layer);
+            }
+        }
+        layersPending = !pendingLayers.isEmpty();
+        if (pendingLayers.isEmpty()) {
+            return;
+        }
+        Thread thread = new Thread("Layer Loader") {
+            @Override
+            public void run() {
+                for (VoxelLayer layer : pendingLayers) {
+                    Voxel[] voxels;
+                    try {
+                        voxels = layer.decodePending();
+                    } catch (RuntimeException e) {
+                        // the layer stays pending and reports the error when it is accessed
+                        continue;
+                    }
+                    if (voxels != null) {
+                        writeLock.lock();
+                        try {
+                            // the data might have been replaced in the meantime
+                            if (dataContainer == container) {
+                                layer.loadDecoded(voxels);
+                            }
+                        } finally {
+                            writeLock.unlock();
+                        }
                     }
-                    centerMin[0] = Math.min(centerMin[0],voxel.x);
-                    centerMin[1] = Math.min(centerMin[1],voxel.y);
-                    centerMin[2] = Math.min(centerMin[2],voxel.z);
-                    centerMax[0] = Math.max(centerMax[0],voxel.x);
-                    centerMax[1] = Math.max(centerMax[1],voxel.y);
-                    centerMax[2] = Math.max(centerMax[2],voxel.z);
                 }
-                // calculate center - note: voxels.length must not be zero
-                assert centerMin != null;
-                float[] center = new float[] {
-                        (centerMin[0]/(float)2 + centerMax[0]/(float)2),
-                        (centerMin[1]/(float)2 + centerMax[1]/(float)2),
-                        (centerMin[2]/(float)2 + centerMax[2]/(float)2)
-                };
-
-                // remove all voxels
-                historyManagerV.applyIntent(new MassRemoveVoxelIntent(voxelIds, true));
-
-                // create new voxels (with new position) and delete
-                // existing voxels at those positions
-                Voxel[] shiftedVoxels = new Voxel[voxels.length];
-                for (int i = 0; i < voxels.length; i++) {
-                    Voxel voxel = voxels[i];
-                    int[] pos = voxel.getPosAsInt();
-                    effected[i] = voxel.getPosAsInt(); // what is effected
-
-                    // switch the point with the center
-                    pos[axe] = Math.round(- pos[axe] + 2*center[axe]);
-
-                    effected[i + voxels.length] = pos.clone(); // what is effected
-                    shiftedVoxels[i] = new Voxel(voxel.id, pos, voxel.getColor(), voxel.isSelected(), voxel.getTexture(), voxel.getLayerId());
-                    // remove existing voxels in this layer
-                    Voxel result = dataContainer.layers.get(voxel.getLayerId()).search(pos);
-                    if (result != null) {
-                        historyManagerV.applyIntent(new RemoveVoxelIntent(result.id, true));
+                // layers that failed to decode stay pending
+                writeLock.lock();
+                try {
+                    if (dataContainer == container) {
+                        layersPending = hasPendingLayers();
                     }
+                } finally {
+                    writeLock.unlock();
                 }
-                // (re)add all the rotated voxels (null ~ the voxel layer id is used)
-                historyManagerV.applyIntent(new MassAddVoxelIntent(shiftedVoxels, null, true));
             }
-        }
-
-        @Override
-        protected void unapplyAction() {
-            // nothing to do
-        }
+        };
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
 
-        private int[][] effected = null;
-        @Override
-        public int[][] effected() {
-            return effected;
+    // acquire a lock for queries (the returned lock needs to be released by the caller)
+    // Note: Layers that are not loaded yet add their voxels to the data when they are
+    // accessed, so the write lock is used until the layers are loaded (see loadPendingLayers).
+    // The flag is checked before any lock is taken, a read lock can not be upgraded.
+    private Lock lockForReading() {
+        if (!layersPending) {
+            readLock.lock();
+            if (!layersPending) {
+                return readLock;
+            }
+            // a file was loaded before the read lock was acquired (this can not
+            // happen if the read lock was already held, loading needs the write lock)
+            readLock.unlock();
         }
+        writeLock.lock();
+        // the layers might have been loaded on access
+        layersPending = hasPendingLayers();
+        return writeLock;
     }
 
-    // ##################### PRIVATE HELPER FUNCTIONS
-    // returns a free voxel id
-    private int lastVoxel = -1;
-    private int getFreeVoxelId() {
-        do {
-            lastVoxel++;
-        } while (dataContainer.voxels.containsKey(lastVoxel));
-        return lastVoxel;
+    // returns the first id of a block of free voxel ids
+    private int getFreeVoxelIdBlock(int count) {
+        int first = lastVoxel + 1;
+        for (int id = first; id < first + count; id++) {
+            if (dataContainer.containsVoxel(id)) {
+                // the block needs to start after the used id
+                first = id + 1;
+            }
+        }
+        lastVoxel = first + count - 1;
+        return first;
     }
 
     // returns a free layer id
@@ -1613,22 +1592,63 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
     @Override
     public final int addVoxelDirect(Color color, int[] pos) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             int result = -1;
             VoxelLayer layer = dataContainer.layers.get(dataContainer.selectedLayer);
             if (layer != null && layer.voxelPositionFree(pos)) {
                 result = getFreeVoxelId();
-                Voxel voxel = new Voxel(result, pos, color, false, null, dataContainer.selectedLayer);
-                dataContainer.voxels.put(voxel.id, voxel);
-                dataContainer.layers.get(voxel.getLayerId()).addVoxel(voxel);
+                dataContainer.addVoxel(new Voxel(result, pos, color, false, null, dataContainer.selectedLayer));
             }
             return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public final int addVoxelsDirect(int layerId, int[] positions, int[] colors) {
+        writeLock.lock();
+        try {
+            VoxelLayer layer = dataContainer.layers.get(layerId);
+            if (layer == null || colors.length == 0) {
+                return 0;
+            }
+            assert positions.length == colors.length * 3;
+            // the voxel colors (shared between voxel with the same color)
+            TIntObjectHashMap<Color> colorCache = new TIntObjectHashMap<Color>();
+            int nextId = getFreeVoxelIdBlock(colors.length);
+            int added = 0;
+            int[] pos = new int[3];
+            for (int i = 0, j = 0; i < colors.length; i++, j += 3) {
+                pos[0] = positions[j];
+                pos[1] = positions[j + 1];
+                pos[2] = positions[j + 2];
+                if (layer.voxelPositionFree(pos)) {
+                    Color color = colorCache.get(colors[i]);
+                    if (color == null) {
+                        color = new Color(colors[i]);
+                        colorCache.put(colors[i], color);
+                    }
+                    dataContainer.addVoxel(new Voxel(nextId++, pos, color, false, null, layerId));
+                    added++;
+                }
+            }
+            // return the ids that were not used
+            lastVoxel = nextId - 1;
+            if (added > 0) {
+                invalidateV(null);
+            }
+            return added;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final int addVoxel(Color color, int[] textureId, int[] pos) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             int result = -1;
             VoxelLayer layer = dataContainer.layers.get(dataContainer.selectedLayer);
             if (layer != null && layer.getSize() < VitcoSettings.MAX_VOXEL_COUNT_PER_LAYER && layer.voxelPositionFree(pos)) {
@@ -1636,23 +1656,24 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 historyManagerV.applyIntent(new AddVoxelIntent(result, pos, color, false, textureId, dataContainer.selectedLayer, false));
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean massAddVoxel(Voxel[] voxels) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             VoxelLayer layer = dataContainer.layers.get(dataContainer.selectedLayer);
             if (layer != null) {
                 ArrayList<Voxel> validVoxel = new ArrayList<Voxel>();
-                HashSet<String> voxelPos = new HashSet<String>();
+                TIntHashSet voxelPos = new TIntHashSet();
                 for (Voxel voxel : voxels) {
-                    String posHash = voxel.getPosAsString();
                     if (layer.voxelPositionFree(voxel)
-                            && !voxelPos.contains(posHash)) {
+                            && voxelPos.add(voxel.posId)) {
                         validVoxel.add(voxel);
-                        voxelPos.add(posHash);
                     }
                 }
                 if (validVoxel.size() > 0 && layer.getSize() + validVoxel.size() <= VitcoSettings.MAX_VOXEL_COUNT_PER_LAYER) {
@@ -1663,27 +1684,33 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 }
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean removeVoxel(int voxelId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
-            if (dataContainer.voxels.containsKey(voxelId)) {
+            if (dataContainer.containsVoxel(voxelId)) {
                 historyManagerV.applyIntent(new RemoveVoxelIntent(voxelId, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean massRemoveVoxel(Integer[] voxelIds) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             ArrayList<Integer> validVoxel = new ArrayList<Integer>();
             for (int voxelId : voxelIds) {
-                if (dataContainer.voxels.containsKey(voxelId)) {
+                if (dataContainer.containsVoxel(voxelId)) {
                     validVoxel.add(voxelId);
                 }
             }
@@ -1695,90 +1722,111 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
             } else {
                 return false;
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean moveVoxel(int voxelId, int[] newPos) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
-            Voxel voxel = dataContainer.voxels.get(voxelId);
+            Voxel voxel = dataContainer.getVoxel(voxelId);
             if (voxel != null) {
                 historyManagerV.applyIntent(new MoveVoxelIntent(voxel.id, newPos, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean massMoveVoxel(Voxel[] voxel, int[] shift) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (voxel.length > 0 && (shift[0] != 0 || shift[1] != 0 || shift[2] != 0)) {
                 historyManagerV.applyIntent(new MassMoveVoxelIntent(voxel, shift.clone(), false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     // rotate voxel around their center (but not the voxel "texture" itself)
     @Override
     public final boolean rotateVoxelCenter(Voxel[] voxel, int axe, float degree) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (voxel.length > 0 && degree/360 != 0 && axe <= 2 && axe >= 0) {
                 historyManagerV.applyIntent(new VoxelData.RotateVoxelCenterIntent(voxel, axe, degree, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean mirrorVoxel(Voxel[] voxel, int axe) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (voxel.length > 0 && axe <= 2 && axe >= 0) {
                 historyManagerV.applyIntent(new MirrorVoxelIntent(voxel, axe, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final Voxel getVoxel(int voxelId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             Voxel result = null;
-            if (dataContainer.voxels.containsKey(voxelId)) {
-                result = dataContainer.voxels.get(voxelId);
+            if (dataContainer.containsVoxel(voxelId)) {
+                result = dataContainer.getVoxel(voxelId);
             }
             return result;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final boolean setColor(int voxelId, Color color) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
-            if (dataContainer.voxels.containsKey(voxelId) &&
-                    (!dataContainer.voxels.get(voxelId).getColor().equals(color) ||
-                            dataContainer.voxels.get(voxelId).getTexture() != null)) {
+            if (dataContainer.containsVoxel(voxelId) &&
+                    (!dataContainer.getVoxel(voxelId).getColor().equals(color) ||
+                            dataContainer.getVoxel(voxelId).getTexture() != null)) {
                 historyManagerV.applyIntent(new ColorVoxelIntent(voxelId, color, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean massSetColor(Integer[] voxelIds, Color color) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             ArrayList<Integer> validVoxel = new ArrayList<Integer>();
             for (int voxelId : voxelIds) {
-                Voxel voxel = dataContainer.voxels.get(voxelId);
+                Voxel voxel = dataContainer.getVoxel(voxelId);
                 if (voxel != null && !voxel.getColor().equals(color)) {
                     validVoxel.add(voxelId);
                 }
@@ -1791,15 +1839,18 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
             } else {
                 return false;
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean massShiftColor(Integer[] voxelIds, float[] hsbOffset) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             ArrayList<Integer> validVoxel = new ArrayList<Integer>();
             for (int voxelId : voxelIds) {
-                Voxel voxel = dataContainer.voxels.get(voxelId);
+                Voxel voxel = dataContainer.getVoxel(voxelId);
                 if (voxel != null) {
                     validVoxel.add(voxelId);
                 }
@@ -1812,57 +1863,72 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
             } else {
                 return false;
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final Color getColor(int voxelId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             Color result = null;
-            if (dataContainer.voxels.containsKey(voxelId)) {
-                result = dataContainer.voxels.get(voxelId).getColor();
+            if (dataContainer.containsVoxel(voxelId)) {
+                result = dataContainer.getVoxel(voxelId).getColor();
             }
             return result;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final boolean setAlpha(int voxelId, int alpha) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
-            if (dataContainer.voxels.containsKey(voxelId) && dataContainer.voxels.get(voxelId).getAlpha() != alpha) {
+            if (dataContainer.containsVoxel(voxelId) && dataContainer.getVoxel(voxelId).getAlpha() != alpha) {
                 historyManagerV.applyIntent(new AlphaVoxelIntent(voxelId, alpha, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final int getAlpha(int voxelId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             int result = -1;
-            if (dataContainer.voxels.containsKey(voxelId)) {
-                result = dataContainer.voxels.get(voxelId).getAlpha();
+            if (dataContainer.containsVoxel(voxelId)) {
+                result = dataContainer.getVoxel(voxelId).getAlpha();
             }
             return result;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final int getLayer(int voxelId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             int result = -1;
-            if (dataContainer.voxels.containsKey(voxelId)) {
-                result = dataContainer.voxels.get(voxelId).getLayerId();
+            if (dataContainer.containsVoxel(voxelId)) {
+                result = dataContainer.getVoxel(voxelId).getLayerId();
             }
             return result;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final boolean clearV(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.layers.containsKey(layerId)) {
                 if (dataContainer.layers.get(layerId).getSize() > 0) {
@@ -1871,19 +1937,25 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 }
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final Voxel searchVoxel(int[] pos, int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             return dataContainer.layers.get(layerId).search(pos);
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final Voxel searchVoxel(int[] pos, boolean onlyCurrentLayer) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             if (onlyCurrentLayer) { // search only the current layers
                 VoxelLayer layer = dataContainer.layers.get(dataContainer.selectedLayer);
                 if (layer != null && layer.isVisible()) {
@@ -1903,114 +1975,249 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 }
             }
             return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public final int[] floodFill(Voxel start, boolean onlyCurrentLayer, int side, int maxRegion) {
+        Lock lock = lockForReading();
+        try {
+            // the layers to search (in correct order)
+            final VoxelLayer[] layerArray;
+            if (onlyCurrentLayer) {
+                ArrayList<VoxelLayer> layers = new ArrayList<VoxelLayer>();
+                VoxelLayer layer = dataContainer.layers.get(dataContainer.selectedLayer);
+                if (layer != null && layer.isVisible()) {
+                    layers.add(layer);
+                }
+                layerArray = layers.toArray(new VoxelLayer[layers.size()]);
+            } else {
+                layerArray = getVisibleLayers();
+            }
+            final Color color = start.getColor();
+            // find the positions
+            TIntArrayList positions = new TIntArrayList();
+            if (!FloodFill.fill(start.posId, side == -1 ? -1 : 2 - side, maxRegion, new FloodFill.Region() {
+                @Override
+                public boolean contains(int posId) {
+                    Voxel voxel = findVoxel(layerArray, posId);
+                    return voxel != null && voxel.getColor().equals(color) && voxel.getTexture() == null;
+                }
+            }, positions)) {
+                return null;
+            }
+            // convert to voxel ids
+            int[] result = new int[positions.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = findVoxel(layerArray, positions.getQuick(i)).id;
+            }
+            return result;
+        } finally {
+            lock.unlock();
         }
     }
 
+    // helper - find the voxel at the position in the first layer that has one
+    private static Voxel findVoxel(VoxelLayer[] layers, int posId) {
+        for (VoxelLayer layer : layers) {
+            Voxel result = layer.search(posId);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
     // ================================ selection of voxels
 
     // select a voxel
     @Override
     public final boolean setVoxelSelected(int voxelId, boolean selected) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
-            if (dataContainer.voxels.containsKey(voxelId) && dataContainer.voxels.get(voxelId).isSelected() != selected) {
+            if (dataContainer.containsVoxel(voxelId) && dataContainer.getVoxel(voxelId).isSelected() != selected) {
                 historyManagerV.applyIntent(new SelectVoxelIntent(voxelId, selected, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean isSelected(int voxelId) {
-        synchronized (VitcoSettings.SYNC) {
-            return dataContainer.voxels.containsKey(voxelId) && dataContainer.voxels.get(voxelId).isSelected();
+        Lock lock = lockForReading();
+        try {
+            return dataContainer.getSelection().contains(voxelId);
+        } finally {
+            lock.unlock();
         }
     }
 
-    private final HashMap<String, TIntObjectHashMap<int[]>> changedSelectedVoxel = new HashMap<String, TIntObjectHashMap<int[]>>();
+    // cursors into the change journal (per request id)
+    private final HashMap<String, Long> selectedCursors = new HashMap<String, Long>();
     @Override
     public final Voxel[][] getNewSelectedVoxel(String requestId) {
-        synchronized (VitcoSettings.SYNC) {
-            if (!changedSelectedVoxel.containsKey(requestId)) {
-                changedSelectedVoxel.put(requestId, null);
-            }
-            if (changedSelectedVoxel.get(requestId) == null) {
-                changedSelectedVoxel.put(requestId, new TIntObjectHashMap<int[]>());
+        writeLock.lock();
+        try {
+            Long cursor = selectedCursors.put(requestId, changeJournal.getVersion());
+            TIntHashSet changed = new TIntHashSet();
+            if (cursor == null || !changeJournal.collect(cursor, VoxelChangeJournal.SELECTION_CHANGED, -1, 0, changed)) {
                 return new Voxel[][] {null, getSelectedVoxels()};
+            }
+            return getChanges(changed, true);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // helper - convert changed positions into removed and added (or changed) voxels
+    private Voxel[][] getChanges(TIntHashSet changed, boolean selectedOnly) {
+        ArrayList<Voxel> removed = new ArrayList<Voxel>();
+        ArrayList<Voxel> added = new ArrayList<Voxel>();
+        for (TIntIterator it = changed.iterator(); it.hasNext();) {
+            short[] p = CubeIndexer.getPos(it.next());
+            int[] pos = new int[] {p[0], p[1], p[2]};
+            Voxel voxel = searchVoxel(pos, false);
+            if (voxel != null && (!selectedOnly || voxel.isSelected())) {
+                added.add(voxel);
             } else {
-                ArrayList<Voxel> removed = new ArrayList<Voxel>();
-                ArrayList<Voxel> added = new ArrayList<Voxel>();
-                for (int[] pos : changedSelectedVoxel.get(requestId).valueCollection()) {
-                    Voxel voxel = searchVoxel(pos, false);
-                    if (voxel != null && voxel.isSelected()) {
-                        added.add(voxel);
-                    } else {
-                        removed.add(new Voxel(-1, pos, null, false, null, -1));
-                    }
-                }
-                Voxel[][] result = new Voxel[2][];
-                result[0] = new Voxel[removed.size()];
-                removed.toArray(result[0]);
-                result[1] = new Voxel[added.size()];
-                added.toArray(result[1]);
-                changedSelectedVoxel.get(requestId).clear();
-                return result;
+                removed.add(new Voxel(-1, pos, null, false, null, -1));
             }
         }
+        Voxel[][] result = new Voxel[2][];
+        result[0] = new Voxel[removed.size()];
+        removed.toArray(result[0]);
+        result[1] = new Voxel[added.size()];
+        added.toArray(result[1]);
+        return result;
     }
 
     // get selected visible voxels
     @Override
     public final Voxel[] getSelectedVoxels() {
-        synchronized (VitcoSettings.SYNC) {
-            if (!selectedVoxelBufferValid) {
-                // get all presented voxels
-                Voxel voxels[] = _getVisibleLayerVoxel();
-                // filter the selected
-                ArrayList<Voxel> selected = new ArrayList<Voxel>();
-                for (Voxel voxel : voxels) {
-                    if (voxel.isSelected()) {
-                        selected.add(voxel);
-                    }
+        // fast path (the view is up to date)
+        readLock.lock();
+        try {
+            if (isVisibleViewCurrent()) {
+                Voxel[] result = visibleView.getSelected();
+                if (result != null) {
+                    return result;
                 }
-                selectedVoxelBuffer = new Voxel[selected.size()];
-                selected.toArray(selectedVoxelBuffer);
-                selectedVoxelBufferValid = true;
             }
-            return selectedVoxelBuffer.clone();
+        } finally {
+            readLock.unlock();
+        }
+        writeLock.lock();
+        try {
+            updateVisibleView();
+            return visibleView.createSelected();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean massSetVoxelSelected(Integer[] voxelIds, boolean selected) {
-        synchronized (VitcoSettings.SYNC) {
-            ArrayList<Integer> validVoxel = new ArrayList<Integer>();
-            for (Integer voxelId : voxelIds) {
-                if (dataContainer.voxels.containsKey(voxelId) && dataContainer.voxels.get(voxelId).isSelected() != selected) {
-                    validVoxel.add(voxelId);
-                }
+        CompressedBitSet ids = new CompressedBitSet();
+        for (Integer voxelId : voxelIds) {
+            if (voxelId >= 0) {
+                ids.add(voxelId);
             }
-            if (validVoxel.size() > 0) {
-                Integer[] valid = new Integer[validVoxel.size()];
-                validVoxel.toArray(valid);
-                historyManagerV.applyIntent(new MassSelectVoxelIntent(valid, selected, false));
+        }
+        return massSetVoxelSelected(ids, selected);
+    }
+
+    @Override
+    public final boolean massSetVoxelSelected(CompressedBitSet voxelIds, boolean selected) {
+        writeLock.lock();
+        try {
+            CompressedBitSet current = dataContainer.getSelection();
+            return applySelectionChange(selected ? voxelIds.andNot(current) : voxelIds.and(current));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public final boolean intersectVoxelSelection(CompressedBitSet voxelIds) {
+        writeLock.lock();
+        try {
+            return applySelectionChange(dataContainer.getSelection().andNot(voxelIds));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public final boolean setVoxelSelection(CompressedBitSet voxelIds) {
+        writeLock.lock();
+        try {
+            return applySelectionChange(dataContainer.getSelection().xor(voxelIds));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public final boolean clearVoxelSelection() {
+        writeLock.lock();
+        try {
+            return applySelectionChange(dataContainer.getSelection().copy());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public final CompressedBitSet getVoxelSelection() {
+        Lock lock = lockForReading();
+        try {
+            return dataContainer.getSelection().copy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // helper - invert the selection state of the voxels (ids of voxels that
+    // don't exist are ignored), returns true if anything changed
+    private boolean applySelectionChange(CompressedBitSet voxelIds) {
+        final CompressedBitSet missing = new CompressedBitSet();
+        voxelIds.forEach(new TIntProcedure() {
+            @Override
+            public boolean execute(int id) {
+                if (!dataContainer.containsVoxel(id)) {
+                    missing.add(id);
+                }
                 return true;
-            } else {
-                return false;
             }
+        });
+        if (!missing.isEmpty()) {
+            voxelIds = voxelIds.andNot(missing);
         }
+        if (voxelIds.isEmpty()) {
+            return false;
+        }
+        historyManagerV.applyIntent(new SelectionIntent(voxelIds, false));
+        return true;
     }
 
     @Override
     public final boolean migrateVoxels(Voxel[] voxels) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (voxels.length > 0 && voxels.length <= VitcoSettings.MAX_VOXEL_COUNT_PER_LAYER) {
                 historyManagerV.applyIntent(new MigrateIntent(voxels, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -2022,7 +2229,17 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     int layerVoxelBufferLastLayer;
     @Override
     public final Voxel[] getLayerVoxels(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        // fast path (the buffer is up to date)
+        readLock.lock();
+        try {
+            if (layerVoxelBufferValid && layerVoxelBufferLastLayer == layerId) {
+                return layerVoxelBuffer.clone();
+            }
+        } finally {
+            readLock.unlock();
+        }
+        writeLock.lock();
+        try {
             if (!layerVoxelBufferValid || layerVoxelBufferLastLayer != layerId) {
                 VoxelLayer layer = dataContainer.layers.get(layerId);
                 if (layer != null) {
@@ -2034,313 +2251,252 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 layerVoxelBufferLastLayer = layerId;
             }
             return layerVoxelBuffer.clone();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     // get the new visible voxels, NOTE: if first element of array is null
     // this means that everything is erased
-    private final HashMap<String, TIntObjectHashMap<int[]>> changedVisibleVoxel = new HashMap<String, TIntObjectHashMap<int[]>>();
+    private final HashMap<String, Long> visibleCursors = new HashMap<String, Long>();
     @Override
     public final Voxel[][] getNewVisibleLayerVoxel(String requestId) {
-        synchronized (VitcoSettings.SYNC) {
-            if (!changedVisibleVoxel.containsKey(requestId)) {
-                changedVisibleVoxel.put(requestId, null);
-            }
-            if (changedVisibleVoxel.get(requestId) == null) {
-                changedVisibleVoxel.put(requestId, new TIntObjectHashMap<int[]>());
-                return new Voxel[][] {null, _getVisibleLayerVoxel()};
-            } else {
-                ArrayList<Voxel> removed = new ArrayList<Voxel>();
-                ArrayList<Voxel> added = new ArrayList<Voxel>();
-                for (int[] pos : changedVisibleVoxel.get(requestId).valueCollection()) {
-                    Voxel voxel = searchVoxel(pos, false);
-                    if (voxel != null) {
-                        added.add(voxel);
-                    } else {
-                        removed.add(new Voxel(-1, pos, null, false, null, -1));
-                    }
-                }
-                Voxel[][] result = new Voxel[2][];
-                result[0] = new Voxel[removed.size()];
-                removed.toArray(result[0]);
-                result[1] = new Voxel[added.size()];
-                added.toArray(result[1]);
-                changedVisibleVoxel.get(requestId).clear();
-                return result;
+        writeLock.lock();
+        try {
+            Long cursor = visibleCursors.put(requestId, changeJournal.getVersion());
+            TIntHashSet changed = new TIntHashSet();
+            if (cursor == null || !changeJournal.collect(cursor, VoxelChangeJournal.CHANGED, -1, 0, changed)) {
+                updateVisibleView();
+                return new Voxel[][] {null, visibleView.createVisible()};
             }
+            return getChanges(changed, false);
+        } finally {
+            writeLock.unlock();
         }
     }
 
-    // internal function, heavy!
-    Voxel[] visibleLayerVoxelInternalBuffer = new Voxel[0];
-    boolean visibleLayerVoxelInternalBufferValid = false;
-    private Voxel[] _getVisibleLayerVoxel() {
-        if (!visibleLayerVoxelInternalBufferValid) {
-            VoxelLayer result = new VoxelLayer(-1, "tmp");
-            for (Integer layerId : dataContainer.layerOrder) {
-                if (dataContainer.layers.get(layerId).isVisible()) {
-                    Voxel[] voxels = dataContainer.layers.get(layerId).getVoxels();
-                    for (Voxel voxel : voxels) {
-                        if (result.voxelPositionFree(voxel)) {
-                            result.addVoxel(voxel);
-                        }
-                    }
-                }
-            }
-            visibleLayerVoxelInternalBuffer = result.getVoxels();
-            visibleLayerVoxelInternalBufferValid = true;
-        }
-        return visibleLayerVoxelInternalBuffer.clone();
-    }
-
     // returns visible voxels
     @Override
     public final Voxel[] getVisibleLayerVoxel() {
-        synchronized (VitcoSettings.SYNC) {
-            updateVisVoxTreeInternal();
-            return visibleLayerVoxelBuffer;
-        }
-    }
-
-    // helper to update buffers for visible voxels
-    private Voxel[] visibleLayerVoxelBuffer = new Voxel[0];
-    private boolean anyVoxelsVisibleBuffer = false;
-    private final HashMap<String, Voxel> visVoxelList = new HashMap<String, Voxel>();
-    private void updateVisVoxTreeInternal() {
-        Voxel[][] newV = getNewVisibleLayerVoxel("___internal___visible_list");
-        if (newV[0] == null) {
-            visVoxelList.clear();
-        } else {
-            for (Voxel removed : newV[0]) {
-                visVoxelList.remove(removed.getPosAsString());
+        // fast path (the view is up to date)
+        readLock.lock();
+        try {
+            if (isVisibleViewCurrent()) {
+                Voxel[] result = visibleView.getVisible();
+                if (result != null) {
+                    return result;
+                }
             }
+        } finally {
+            readLock.unlock();
         }
-        for (Voxel added : newV[1]) {
-            visVoxelList.put(added.getPosAsString(), added);
-        }
-        // update the buffer
-        if (newV[0]== null || newV[0].length > 0 || newV[1].length > 0) {
-            visibleLayerVoxelBuffer = new Voxel[visVoxelList.size()];
-            visVoxelList.values().toArray(visibleLayerVoxelBuffer);
-            anyVoxelsVisibleBuffer = visibleLayerVoxelBuffer.length > 0;
+        writeLock.lock();
+        try {
+            updateVisibleView();
+            return visibleView.createVisible();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     // true iff any voxel are visible
     @Override
     public final boolean anyLayerVoxelVisible() {
-        synchronized (VitcoSettings.SYNC) {
-            updateVisVoxTreeInternal();
-            return anyVoxelsVisibleBuffer;
+        // fast path (the view is up to date)
+        readLock.lock();
+        try {
+            if (isVisibleViewCurrent()) {
+                return visibleView.getVisibleCount() > 0;
+            }
+        } finally {
+            readLock.unlock();
+        }
+        writeLock.lock();
+        try {
+            updateVisibleView();
+            return visibleView.getVisibleCount() > 0;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     // true iff any voxel are selected
     @Override
     public final boolean anyVoxelSelected() {
-        synchronized (VitcoSettings.SYNC) {
-            if (!selectedVoxelBufferValid) {
-                return getSelectedVoxels().length > 0;
-            } else {
-                return selectedVoxelBuffer.length > 0;
+        // fast path (the view is up to date)
+        readLock.lock();
+        try {
+            if (isVisibleViewCurrent()) {
+                return visibleView.getSelectedCount() > 0;
             }
+        } finally {
+            readLock.unlock();
+        }
+        writeLock.lock();
+        try {
+            updateVisibleView();
+            return visibleView.getSelectedCount() > 0;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     // to invalidate the side view buffer
     @Override
     public final void invalidateSideViewBuffer(String requestId, Integer side, Integer plane) {
-        synchronized (VitcoSettings.SYNC) {
-            // make sure this plane is set
-            if (!changedVisibleVoxelPlane.containsKey(side)) {
-                changedVisibleVoxelPlane.put(side, new HashMap<String, TIntObjectHashMap<TIntObjectHashMap<int[]>>>());
-            }
-            // make sure the requestId is set
-            if (!changedVisibleVoxelPlane.get(side).containsKey(requestId)) {
-                changedVisibleVoxelPlane.get(side).put(requestId, new TIntObjectHashMap<TIntObjectHashMap<int[]>>());
-            }
-            // make sure this plane has no information stored (force complete refresh)
-            changedVisibleVoxelPlane.get(side).get(requestId).remove(plane);
+        writeLock.lock();
+        try {
+            // forget the cursor (force complete refresh)
+            TIntLongHashMap cursors = getSideCursors(requestId, side);
+            cursors.remove(plane);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // side -> requestId -> plane -> cursor into the change journal
+    private final TIntObjectHashMap<HashMap<String, TIntLongHashMap>> sideCursors
+            = new TIntObjectHashMap<HashMap<String, TIntLongHashMap>>();
+
+    // helper - get the plane cursors of a side view
+    private TIntLongHashMap getSideCursors(String requestId, int side) {
+        HashMap<String, TIntLongHashMap> cursors = sideCursors.get(side);
+        if (cursors == null) {
+            cursors = new HashMap<String, TIntLongHashMap>();
+            sideCursors.put(side, cursors);
         }
+        TIntLongHashMap result = cursors.get(requestId);
+        if (result == null) {
+            result = new TIntLongHashMap();
+            cursors.put(requestId, result);
+        }
+        return result;
     }
 
-    // side -> requestId -> plane -> positions
-    private final TIntObjectHashMap<HashMap<String, TIntObjectHashMap<TIntObjectHashMap<int[]>>>> changedVisibleVoxelPlane
-            = new TIntObjectHashMap<HashMap<String, TIntObjectHashMap<TIntObjectHashMap<int[]>>>>();
     @Override
     public final Voxel[][] getNewSideVoxel(String requestId, Integer side, Integer plane) {
-        synchronized (VitcoSettings.SYNC) {
-            // default result (delete all + empty)
-            Voxel[][] result = new Voxel[][]{null, new Voxel[0]};
-            // make sure this plane is set
-            if (!changedVisibleVoxelPlane.containsKey(side)) {
-                changedVisibleVoxelPlane.put(side, new HashMap<String, TIntObjectHashMap<TIntObjectHashMap<int[]>>>());
-            }
-            // make sure the requestId is set
-            if (!changedVisibleVoxelPlane.get(side).containsKey(requestId)) {
-                changedVisibleVoxelPlane.get(side).put(requestId, new TIntObjectHashMap<TIntObjectHashMap<int[]>>());
-            }
-
-            if (changedVisibleVoxelPlane.get(side).get(requestId).get(plane) == null) {
-                // if the plane is null, fetch all data and set it no empty
-                switch (side) {
-                    case 0:
-                        result = new Voxel[][] {null, getVoxelsXY(plane)};
-                        break;
-                    case 1:
-                        result = new Voxel[][] {null, getVoxelsXZ(plane)};
-                        break;
-                    case 2:
-                        result = new Voxel[][] {null, getVoxelsYZ(plane)};
-                        break;
-                    default: break;
-                }
-                // reset
-                changedVisibleVoxelPlane.get(side).get(requestId).put(plane, new TIntObjectHashMap<int[]>());
-            } else {
-                // if there are changed positions, notify only those positions
-                ArrayList<Voxel> removed = new ArrayList<Voxel>();
-                ArrayList<Voxel> added = new ArrayList<Voxel>();
-                for (int[] pos : changedVisibleVoxelPlane.get(side).get(requestId).get(plane).valueCollection()) {
-                    Voxel voxel = searchVoxel(pos, false);
-                    if (voxel != null) {
-                        added.add(voxel);
-                    } else {
-                        removed.add(new Voxel(-1, pos, null, false, null, -1));
-                    }
-                }
-                result = new Voxel[2][];
-                result[0] = new Voxel[removed.size()];
-                removed.toArray(result[0]);
-                result[1] = new Voxel[added.size()];
-                added.toArray(result[1]);
-                // these changes have now been forwarded
-                changedVisibleVoxelPlane.get(side).get(requestId).get(plane).clear();
-            }
-            // return the result
-            return result;
+        writeLock.lock();
+        try {
+            TIntLongHashMap cursors = getSideCursors(requestId, side);
+            boolean known = cursors.containsKey(plane);
+            long cursor = cursors.put(plane, changeJournal.getVersion());
+            // the axis that is fixed for this side
+            int axis = 1;
+            switch (side) {
+                case 0: axis = 2; break;
+                case 2: axis = 0; break;
+                default: break;
+            }
+            TIntHashSet changed = new TIntHashSet();
+            if (known && changeJournal.collect(cursor, VoxelChangeJournal.CHANGED, axis, plane, changed)) {
+                // notify only the changed positions
+                return getChanges(changed, false);
+            }
+            // fetch all data
+            switch (side) {
+                case 0:
+                    return new Voxel[][] {null, getVoxelsXY(plane)};
+                case 1:
+                    return new Voxel[][] {null, getVoxelsXZ(plane)};
+                case 2:
+                    return new Voxel[][] {null, getVoxelsYZ(plane)};
+                default:
+                    // default result (delete all + empty)
+                    return new Voxel[][]{null, new Voxel[0]};
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final Voxel[] getVoxelsXY(int z, int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             if (dataContainer.layers.containsKey(layerId)) {
                 return dataContainer.layers.get(layerId).getZPlane(z);
             }
             return null;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final Voxel[] getVoxelsXZ(int y, int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             if (dataContainer.layers.containsKey(layerId)) {
                 return dataContainer.layers.get(layerId).getYPlane(y);
             }
             return null;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final Voxel[] getVoxelsYZ(int x, int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             if (dataContainer.layers.containsKey(layerId)) {
                 return dataContainer.layers.get(layerId).getXPlane(x);
             }
             return null;
+        } finally {
+            lock.unlock();
         }
     }
 
-    int lastVoxelXYBufferZValue;
-    boolean layerVoxelXYBufferValid = false;
-    Voxel[] layerVoxelXYBuffer = new Voxel[0];
-    @Override
-    public final Voxel[] getVoxelsXY(int z) {
-        synchronized (VitcoSettings.SYNC) {
-            if (!layerVoxelXYBufferValid || z != lastVoxelXYBufferZValue) {
-
-                VoxelLayer result = new VoxelLayer(-1, "tmp");
-                for (Integer layerId : dataContainer.layerOrder) {
-                    if (dataContainer.layers.get(layerId).isVisible()) {
-                        Voxel[] voxels = dataContainer.layers.get(layerId).getZPlane(z);
-                        for (Voxel voxel : voxels) {
-                            if (result.voxelPositionFree(voxel)) {
-                                result.addVoxel(voxel);
-                            }
-                        }
-                    }
+    // get the visible voxels in a plane (axis: 0 = x, 1 = y, 2 = z)
+    private Voxel[] getVisiblePlane(int axis, int plane) {
+        // fast path (the view is up to date)
+        readLock.lock();
+        try {
+            if (isVisibleViewCurrent()) {
+                Voxel[] result = visibleView.getPlane(axis, plane);
+                if (result != null) {
+                    return result;
                 }
-                layerVoxelXYBuffer = result.getVoxels();
-                layerVoxelXYBufferValid = true;
-                lastVoxelXYBufferZValue = z;
             }
-            return layerVoxelXYBuffer.clone();
+        } finally {
+            readLock.unlock();
+        }
+        writeLock.lock();
+        try {
+            updateVisibleView();
+            return visibleView.createPlane(axis, plane);
+        } finally {
+            writeLock.unlock();
         }
     }
 
-    int lastVoxelXZBufferYValue;
-    boolean layerVoxelXZBufferValid = false;
-    Voxel[] layerVoxelXZBuffer = new Voxel[0];
     @Override
-    public final Voxel[] getVoxelsXZ(int y) {
-        synchronized (VitcoSettings.SYNC) {
-            if (!layerVoxelXZBufferValid || y != lastVoxelXZBufferYValue) {
+    public final Voxel[] getVoxelsXY(int z) {
+        return getVisiblePlane(2, z);
+    }
 
-                VoxelLayer result = new VoxelLayer(-1, "tmp");
-                for (Integer layerId : dataContainer.layerOrder) {
-                    if (dataContainer.layers.get(layerId).isVisible()) {
-                        Voxel[] voxels = dataContainer.layers.get(layerId).getYPlane(y);
-                        for (Voxel voxel : voxels) {
-                            if (result.voxelPositionFree(voxel)) {
-                                result.addVoxel(voxel);
-                            }
-                        }
-                    }
-                }
-                layerVoxelXZBuffer = result.getVoxels();
-                layerVoxelXZBufferValid = true;
-                lastVoxelXZBufferYValue = y;
-            }
-            return layerVoxelXZBuffer.clone();
-        }
+    @Override
+    public final Voxel[] getVoxelsXZ(int y) {
+        return getVisiblePlane(1, y);
     }
 
-    int lastVoxelYZBufferXValue;
-    boolean layerVoxelYZBufferValid = false;
-    Voxel[] layerVoxelYZBuffer = new Voxel[0];
     @Override
     public final Voxel[] getVoxelsYZ(int x) {
-        synchronized (VitcoSettings.SYNC) {
-            if (!layerVoxelYZBufferValid || x != lastVoxelYZBufferXValue) {
-
-                VoxelLayer result = new VoxelLayer(-1, "tmp");
-                for (Integer layerId : dataContainer.layerOrder) {
-                    if (dataContainer.layers.get(layerId).isVisible()) {
-                        Voxel[] voxels = dataContainer.layers.get(layerId).getXPlane(x);
-                        for (Voxel voxel : voxels) {
-                            if (result.voxelPositionFree(voxel)) {
-                                result.addVoxel(voxel);
-                            }
-                        }
-                    }
-                }
-                layerVoxelYZBuffer = result.getVoxels();
-                layerVoxelYZBufferValid = true;
-                lastVoxelYZBufferXValue = x;
-            }
-            return layerVoxelYZBuffer.clone();
-        }
+        return getVisiblePlane(0, x);
     }
 
     @Override
     public final int getVoxelCount(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             int result = 0;
             if (dataContainer.layers.containsKey(layerId)) {
                 result = dataContainer.layers.get(layerId).getSize();
             }
             return result;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -2348,45 +2504,61 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
     @Override
     public final void undoV() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             historyManagerV.unapply();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final void redoV() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             historyManagerV.apply();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean canUndoV() {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             return historyManagerV.canUndo();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final boolean canRedoV() {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             return historyManagerV.canRedo();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final int createLayer(String layerName) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             int layerId = getFreeLayerId();
             historyManagerV.applyIntent(new CreateLayerIntent(layerId, layerName, false));
             notifier.onLayerStateChanged();
             return layerId;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public  final boolean deleteLayer(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.layers.containsKey(layerId)) {
                 historyManagerV.applyIntent(new DeleteLayerIntent(layerId, false));
@@ -2394,12 +2566,15 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public  final boolean renameLayer(int layerId, String newName) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.layers.containsKey(layerId) && !newName.equals(dataContainer.layers.get(layerId).getName())) {
                 historyManagerV.applyIntent(new RenameLayerIntent(layerId, newName, false));
@@ -2407,13 +2582,18 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final String getLayerName(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             return dataContainer.layers.containsKey(layerId) ? dataContainer.layers.get(layerId).getName() : null;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -2421,7 +2601,17 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     private String[] layerNameBuffer = new String[]{};
     @Override
     public final String[] getLayerNames() {
-        synchronized (VitcoSettings.SYNC) {
+        // fast path (the buffer is up to date)
+        readLock.lock();
+        try {
+            if (layerNameBufferValid) {
+                return layerNameBuffer.clone();
+            }
+        } finally {
+            readLock.unlock();
+        }
+        writeLock.lock();
+        try {
             if (!layerNameBufferValid) {
                 if (layerNameBuffer.length != dataContainer.layers.size()) {
                     layerNameBuffer = new String[dataContainer.layers.size()];
@@ -2433,12 +2623,15 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 layerNameBufferValid = true;
             }
             return layerNameBuffer.clone();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean selectLayer(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if ((dataContainer.layers.containsKey(layerId) || layerId == -1) && dataContainer.selectedLayer != layerId) {
                 historyManagerV.applyIntent(new SelectLayerIntent(layerId, false));
@@ -2446,12 +2639,15 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean selectLayerSoft(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if ((dataContainer.layers.containsKey(layerId) || layerId == -1) && dataContainer.selectedLayer != layerId) {
                 dataContainer.selectedLayer = layerId;
@@ -2460,14 +2656,19 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final int getSelectedLayer() {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             // make sure the selected layer is always valid
             return dataContainer.layers.containsKey(dataContainer.selectedLayer) ? dataContainer.selectedLayer : -1;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -2475,7 +2676,17 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
     private Integer[] layerBuffer = new Integer[]{};
     @Override
     public final Integer[] getLayers() {
-        synchronized (VitcoSettings.SYNC) {
+        // fast path (the buffer is up to date)
+        readLock.lock();
+        try {
+            if (layerBufferValid) {
+                return layerBuffer.clone();
+            }
+        } finally {
+            readLock.unlock();
+        }
+        writeLock.lock();
+        try {
             if (!layerBufferValid) {
                 if (layerBuffer.length != dataContainer.layers.size()) {
                     layerBuffer = new Integer[dataContainer.layers.size()];
@@ -2484,12 +2695,15 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 layerBufferValid = true;
             }
             return layerBuffer.clone();
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean setVisible(int layerId, boolean b) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.layers.containsKey(layerId) && dataContainer.layers.get(layerId).isVisible() != b) {
                 historyManagerV.applyIntent(new LayerVisibilityIntent(layerId, b, false));
@@ -2497,23 +2711,29 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean getLayerVisible(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             boolean result = false;
             if (dataContainer.layers.containsKey(layerId)) {
                 result = dataContainer.layers.get(layerId).isVisible();
             }
             return result;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final boolean moveLayerUp(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (canMoveLayerUp(layerId)) {
                 historyManagerV.applyIntent(new MoveLayerIntent(layerId, true, false));
@@ -2521,12 +2741,15 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean moveLayerDown(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (canMoveLayerDown(layerId)) {
                 historyManagerV.applyIntent(new MoveLayerIntent(layerId, false, false));
@@ -2534,38 +2757,50 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean canMoveLayerUp(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             return dataContainer.layers.containsKey(layerId) && dataContainer.layerOrder.lastIndexOf(layerId) > 0;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final boolean canMoveLayerDown(int layerId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             return dataContainer.layers.containsKey(layerId) && dataContainer.layerOrder.lastIndexOf(layerId) < dataContainer.layerOrder.size() - 1;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final boolean mergeVisibleLayers() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             if (canMergeVisibleLayers()) {
                 historyManagerV.applyIntent(new MergeLayersIntent(false));
                 notifier.onLayerStateChanged();
                 return true;
             }
             return false;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean canMergeVisibleLayers() {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             // if there are more than one visible layer
             int visibleLayers = 0;
             for (int layerId : dataContainer.layerOrder) {
@@ -2577,6 +2812,8 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 }
             }
             return false;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -2584,7 +2821,8 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
 
     @Override
     public final void addTexture(BufferedImage image) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             // make sure that the graphic is a mutiple of 32
             int width = ((int)Math.ceil(image.getWidth() / 32f)) * 32;
             int height = ((int)Math.ceil(image.getHeight() / 32f)) * 32;
@@ -2597,15 +2835,18 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 texture = GraphicTools.deepCopy(image);
             }
             historyManagerV.applyIntent(new AddTextureGridIntent(texture, false));
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean removeTexture(int textureId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             // check that this texture is not used (return false if used)
-            for (Voxel voxel : dataContainer.voxels.values()) {
+            for (Voxel voxel : dataContainer.getVoxels()) {
                 if (ArrayUtil.contains(voxel.getTexture(), textureId)) {
                     return false;
                 }
@@ -2615,18 +2856,21 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean removeAllTexture() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.textures.size() > 0) {
 
                 // check which textures are not in use
                 ArrayList<Integer> unusedTextures = new ArrayList<Integer>(dataContainer.textures.keySet());
-                for (Voxel voxel : dataContainer.voxels.values()) {
+                for (Voxel voxel : dataContainer.getVoxels()) {
                     int[] textures = voxel.getTexture();
                     if (textures != null) {
                         for (Integer textureId : textures) {
@@ -2640,12 +2884,15 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 }
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean replaceTexture(int textureId, ImageIcon texture) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
             if (dataContainer.textures.containsKey(textureId) &&
                     texture.getIconWidth() == 32 && texture.getIconHeight() == 32) {
@@ -2653,44 +2900,56 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final Integer[] getTextureList() {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             Integer[] result = new Integer[dataContainer.textures.size()];
             dataContainer.textures.keySet().toArray(result);
             return result;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final TIntHashSet getVoxelColorList() {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             TIntHashSet result = new TIntHashSet();
-            for (Integer layerId : getLayers()) {
+            for (Integer layerId : dataContainer.layerOrder) {
                 result.addAll(dataContainer.layers.get(layerId).getVoxelColors());
             }
             return result;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final ImageIcon getTexture(Integer textureId) {
-        synchronized (VitcoSettings.SYNC) {
+        Lock lock = lockForReading();
+        try {
             Image internalImg = dataContainer.textures.get(textureId).getImage();
             BufferedImage result = new BufferedImage(
                     internalImg.getWidth(null), internalImg.getHeight(null),
                     BufferedImage.TYPE_INT_ARGB);
             result.getGraphics().drawImage(internalImg, 0, 0, null);
             return new ImageIcon(result);
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public final String getTextureHash(Integer textureId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             if (dataContainer.textures.containsKey(textureId)) {
                 if (dataContainer.textures.get(textureId).getDescription() == null) {
                     ImageIcon img = dataContainer.textures.get(textureId);
@@ -2703,12 +2962,15 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
             } else {
                 return "";
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final void selectTexture(int textureId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             if (textureId != -1 && dataContainer.textures.containsKey(textureId)) {
                 if (textureId != dataContainer.selectedTexture) {
                     historyManagerV.applyIntent(new SelectTextureIntent(textureId, false));
@@ -2718,50 +2980,62 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
                     historyManagerV.applyIntent(new SelectTextureIntent(-1, false));
                 }
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final void selectTextureSoft(int textureId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             if (dataContainer.selectedTexture != textureId &&
                     (textureId == -1 || dataContainer.textures.containsKey(textureId))) {
                 dataContainer.selectedTexture = textureId;
                 notifier.onTextureDataChanged();
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final int getSelectedTexture() {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             if (!dataContainer.textures.containsKey(dataContainer.selectedTexture)) {
                 selectTextureSoft(-1);
             }
             return dataContainer.selectedTexture;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean setTexture(int voxelId, int voxelSide, int textureId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
-            if (dataContainer.voxels.containsKey(voxelId) &&
-                    (dataContainer.voxels.get(voxelId).getTexture() == null ||
-                    dataContainer.voxels.get(voxelId).getTexture()[voxelSide] != textureId)) {
+            if (dataContainer.containsVoxel(voxelId) &&
+                    (dataContainer.getVoxel(voxelId).getTexture() == null ||
+                    dataContainer.getVoxel(voxelId).getTexture()[voxelSide] != textureId)) {
                 historyManagerV.applyIntent(new TextureVoxelIntent(voxelId, voxelSide, textureId, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public final boolean massSetTexture(Integer[] voxelIds, int textureId) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             ArrayList<Integer> validVoxel = new ArrayList<Integer>();
             for (int voxelId : voxelIds) {
-                if (dataContainer.voxels.containsKey(voxelId)) {
+                if (dataContainer.containsVoxel(voxelId)) {
                     validVoxel.add(voxelId);
                 }
             }
@@ -2773,45 +3047,56 @@ public abstract class VoxelData extends AnimationHighlight implements VoxelDataI
             } else {
                 return false;
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     // get texture id of a voxel
     @Override
     public final int[] getVoxelTextureIds(int voxelId) {
-        synchronized (VitcoSettings.SYNC) {
-            if (dataContainer.voxels.containsKey(voxelId)) {
-                return dataContainer.voxels.get(voxelId).getTexture();
+        Lock lock = lockForReading();
+        try {
+            if (dataContainer.containsVoxel(voxelId)) {
+                return dataContainer.getVoxel(voxelId).getTexture();
             }
             return null; // error
+        } finally {
+            lock.unlock();
         }
     }
 
     // flip the texture of a voxel
     @Override
     public final boolean flipVoxelTexture(int voxelId, int voxelSide) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
-            if (dataContainer.voxels.containsKey(voxelId) &&
-                    dataContainer.voxels.get(voxelId).getTexture() != null) {
+            if (dataContainer.containsVoxel(voxelId) &&
+                    dataContainer.getVoxel(voxelId).getTexture() != null) {
                 historyManagerV.applyIntent(new FlipVoxelTextureIntent(voxelId, voxelSide, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 
     // rotate the texture of a voxel
     @Override
     public final boolean rotateVoxelTexture(int voxelId, int voxelSide) {
-        synchronized (VitcoSettings.SYNC) {
+        writeLock.lock();
+        try {
             boolean result = false;
-            if (dataContainer.voxels.containsKey(voxelId) &&
-                    dataContainer.voxels.get(voxelId).getTexture() != null) {
+            if (dataContainer.containsVoxel(voxelId) &&
+                    dataContainer.getVoxel(voxelId).getTexture() != null) {
                 historyManagerV.applyIntent(new RotateVoxelTextureIntent(voxelId, voxelSide, false));
                 result = true;
             }
             return result;
+        } finally {
+            writeLock.unlock();
         }
     }
 }
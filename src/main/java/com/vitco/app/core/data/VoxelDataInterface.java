@@ -1,6 +1,7 @@
 package com.vitco.app.core.data;
 
 import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.util.misc.CompressedBitSet;
 import gnu.trove.set.hash.TIntHashSet;
 
 import javax.swing.*;
@@ -14,6 +15,10 @@ public interface VoxelDataInterface {
     // adds a voxel directly to the container (no history entry is created!)
     // only to be used for back imports etc
     int addVoxelDirect(Color color, int[] pos);
+    // adds voxels directly to a layer (no history entry is created!)
+    // positions are packed as x, y, z triples, colors as (a)rgb values. Positions that
+    // are already occupied are skipped. Returns the amount of voxels that were added
+    int addVoxelsDirect(int layerId, int[] positions, int[] colors);
     // adds a voxel to current layer and returns voxel id
     int addVoxel(Color color, int[] textureId, int[] pos);
     // deleted the voxel
@@ -39,11 +44,17 @@ public interface VoxelDataInterface {
     // returns a voxel if the current layer has a voxel at the position
     // layer needs to be visible
     Voxel searchVoxel(int[] pos, boolean onlyCurrentLayer);
+    // find the voxels that are connected to the start voxel and have the same color (and no texture),
+    // only voxels in the plane of the start voxel are considered for a side (-1 ~ all voxels)
+    // returns the voxel ids or null if there are more than maxRegion voxels (<= 0 ~ no limit)
+    int[] floodFill(Voxel start, boolean onlyCurrentLayer, int side, int maxRegion);
     // get all voxels in current layer
     Voxel[] getLayerVoxels(int layerId);
     // get changed voxels since last call
     Voxel[][] getNewVisibleLayerVoxel(String requestId);
     // get all visible layer voxels
+    // Note: The returned arrays of the visible voxels (all, selected and per plane) are
+    // shared snapshots and must not be modified
     Voxel[] getVisibleLayerVoxel();
     // true iff any voxels are visible
     boolean anyLayerVoxelVisible();
@@ -57,7 +68,7 @@ public interface VoxelDataInterface {
     Voxel[] getVoxelsXY(int z, int layerId);
     Voxel[] getVoxelsXZ(int y, int layerId);
     Voxel[] getVoxelsYZ(int x, int layerId);
-    // get voxel range (plane) of current layer
+    // get voxel range (plane) of the visible layers
     Voxel[] getVoxelsXY(int z);
     Voxel[] getVoxelsXZ(int y);
     Voxel[] getVoxelsYZ(int x);
@@ -117,6 +128,16 @@ public interface VoxelDataInterface {
     boolean setVoxelSelected(int voxelId, boolean selected);
     // select several voxels at once
     boolean massSetVoxelSelected(Integer[] voxelIds, boolean selected);
+    // add the voxels to (or remove them from) the selection
+    boolean massSetVoxelSelected(CompressedBitSet voxelIds, boolean selected);
+    // only keep the voxels selected that are in the set
+    boolean intersectVoxelSelection(CompressedBitSet voxelIds);
+    // select exactly the voxels in the set
+    boolean setVoxelSelection(CompressedBitSet voxelIds);
+    // deselect all voxels (including voxels in hidden layers)
+    boolean clearVoxelSelection();
+    // the ids of all selected voxels (copy)
+    CompressedBitSet getVoxelSelection();
     // remove several voxels at once
     boolean massRemoveVoxel(Integer[] voxelIds);
     // add several voxels at once
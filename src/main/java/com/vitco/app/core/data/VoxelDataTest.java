@@ -1,13 +1,18 @@
 package com.vitco.app.core.data;
 
 import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.low.CubeIndexer;
+import com.vitco.app.util.misc.CompressedBitSet;
+import gnu.trove.set.hash.TIntHashSet;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.awt.*;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Extensive test for voxel data.
@@ -58,6 +63,32 @@ public class VoxelDataTest {
         assert data.getVoxel(id3).id == id3;
     }
 
+    @Test
+    public void testAddVoxelsDirect() throws Exception {
+        int lid1 = data.createLayer("layer1");
+        int id1 = data.addVoxelDirect(Color.RED, new int[]{0,0,0});
+        assert id1 == -1;
+        data.selectLayer(lid1);
+        id1 = data.addVoxelDirect(Color.RED, new int[]{0,0,0});
+        // the first and the last position are already occupied
+        int added = data.addVoxelsDirect(lid1,
+                new int[]{0,0,0, 1,2,3, 4,5,6, 1,2,3},
+                new int[]{Color.BLUE.getRGB(), Color.GREEN.getRGB(), Color.BLUE.getRGB(), Color.RED.getRGB()});
+        assert added == 2;
+        assert data.getVoxelCount(lid1) == 3;
+        assert data.searchVoxel(new int[]{0,0,0}, lid1).id == id1;
+        assert data.searchVoxel(new int[]{1,2,3}, lid1).getColor().equals(Color.GREEN);
+        assert data.searchVoxel(new int[]{4,5,6}, lid1).getColor().equals(Color.BLUE);
+        // ids are not reused
+        data.addVoxelDirect(Color.RED, new int[]{7,7,7});
+        TIntHashSet ids = new TIntHashSet();
+        for (Voxel voxel : data.getLayerVoxels(lid1)) {
+            assert ids.add(voxel.id);
+        }
+        assert ids.size() == 4;
+        assert data.addVoxelsDirect(lid1 + 100, new int[]{9,9,9}, new int[]{0}) == 0;
+    }
+
     @Test
     public void testMoveVoxel() throws Exception {
         int lid1 = data.createLayer("layer1");
@@ -165,6 +196,245 @@ public class VoxelDataTest {
         assert data.getVoxelsXY(2).length == 1;
     }
 
+    @Test
+    public void testFloodFill() throws Exception {
+        int lid1 = data.createLayer("layer1");
+        int lid2 = data.createLayer("layer2");
+        data.selectLayer(lid1);
+        int id1 = data.addVoxel(Color.RED, null, new int[] {0,0,0});
+        int id2 = data.addVoxel(Color.RED, null, new int[] {1,0,0});
+        int id3 = data.addVoxel(Color.RED, null, new int[] {1,0,1});
+        int id4 = data.addVoxel(Color.RED, null, new int[] {1,1,1});
+        data.addVoxel(Color.GREEN, null, new int[] {2,0,0});
+        data.addVoxel(Color.RED, null, new int[] {3,0,0});
+        data.selectLayer(lid2);
+        int id5 = data.addVoxel(Color.RED, null, new int[] {2,0,0});
+        Voxel start = data.getVoxel(id1);
+        // the voxel in the top layer connects
+        int[] result = data.floodFill(start, false, -1, 0);
+        assert result.length == 6;
+        // only the current layer (which does not contain the start)
+        assert data.floodFill(start, true, -1, 0).length == 0;
+        data.selectLayer(lid1);
+        result = data.floodFill(start, true, -1, 0);
+        Arrays.sort(result);
+        assert Arrays.equals(result, new int[] {id1, id2, id3, id4});
+        // only the xy plane
+        result = data.floodFill(start, false, 0, 0);
+        Arrays.sort(result);
+        assert result.length == 4 && Arrays.binarySearch(result, id5) >= 0;
+        assert Arrays.binarySearch(result, id3) < 0 && Arrays.binarySearch(result, id4) < 0;
+        // too many voxels
+        assert data.floodFill(start, false, -1, 5) == null;
+        assert data.floodFill(start, false, -1, 6).length == 6;
+    }
+
+    // helper - describe voxels as sorted ids
+    private static String describeIds(Voxel[] voxels) {
+        int[] ids = new int[voxels.length];
+        for (int i = 0; i < voxels.length; i++) {
+            ids[i] = voxels[i].id;
+        }
+        Arrays.sort(ids);
+        return Arrays.toString(ids);
+    }
+
+    @Test
+    public void testVisibleViews() throws Exception {
+        int lid1 = data.createLayer("layer1");
+        int lid2 = data.createLayer("layer2");
+        Random rand = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            int layerId = rand.nextBoolean() ? lid1 : lid2;
+            Voxel[] layerVoxels = data.getLayerVoxels(layerId);
+            int[] pos = new int[] {rand.nextInt(4), rand.nextInt(4), rand.nextInt(4)};
+            switch (rand.nextInt(10)) {
+                case 0: case 1: case 2:
+                    data.selectLayer(layerId);
+                    data.addVoxel(rand.nextBoolean() ? Color.RED : Color.BLUE, null, pos);
+                    break;
+                case 3:
+                    if (layerVoxels.length > 0) {
+                        data.removeVoxel(layerVoxels[rand.nextInt(layerVoxels.length)].id);
+                    }
+                    break;
+                case 4: case 5:
+                    if (layerVoxels.length > 0) {
+                        data.setVoxelSelected(layerVoxels[rand.nextInt(layerVoxels.length)].id, rand.nextBoolean());
+                    }
+                    break;
+                case 6:
+                    if (layerVoxels.length > 0) {
+                        data.moveVoxel(layerVoxels[rand.nextInt(layerVoxels.length)].id, pos);
+                    }
+                    break;
+                case 7:
+                    data.setVisible(layerId, !data.getLayerVisible(layerId));
+                    break;
+                case 8:
+                    data.undoV();
+                    break;
+                default:
+                    // the snapshots are shared until something changes
+                    assert data.getVisibleLayerVoxel() == data.getVisibleLayerVoxel();
+                    assert data.getSelectedVoxels() == data.getSelectedVoxels();
+                    assert data.getVoxelsXY(pos[2]) == data.getVoxelsXY(pos[2]);
+                    break;
+            }
+            // compute the expected views from the layers
+            ArrayList<Voxel> visible = new ArrayList<Voxel>();
+            TIntHashSet seen = new TIntHashSet();
+            for (Integer lid : data.getLayers()) {
+                if (data.getLayerVisible(lid)) {
+                    for (Voxel voxel : data.getLayerVoxels(lid)) {
+                        if (seen.add(voxel.posId)) {
+                            visible.add(voxel);
+                        }
+                    }
+                }
+            }
+            ArrayList<Voxel> selected = new ArrayList<Voxel>();
+            ArrayList<Voxel> planeXY = new ArrayList<Voxel>();
+            ArrayList<Voxel> planeXZ = new ArrayList<Voxel>();
+            ArrayList<Voxel> planeYZ = new ArrayList<Voxel>();
+            for (Voxel voxel : visible) {
+                if (voxel.isSelected()) {
+                    selected.add(voxel);
+                }
+                if (voxel.z == pos[2]) {
+                    planeXY.add(voxel);
+                }
+                if (voxel.y == pos[1]) {
+                    planeXZ.add(voxel);
+                }
+                if (voxel.x == pos[0]) {
+                    planeYZ.add(voxel);
+                }
+            }
+            assert describeIds(data.getVisibleLayerVoxel()).equals(describeIds(visible.toArray(new Voxel[visible.size()])));
+            assert describeIds(data.getSelectedVoxels()).equals(describeIds(selected.toArray(new Voxel[selected.size()])));
+            assert describeIds(data.getVoxelsXY(pos[2])).equals(describeIds(planeXY.toArray(new Voxel[planeXY.size()])));
+            assert describeIds(data.getVoxelsXZ(pos[1])).equals(describeIds(planeXZ.toArray(new Voxel[planeXZ.size()])));
+            assert describeIds(data.getVoxelsYZ(pos[0])).equals(describeIds(planeYZ.toArray(new Voxel[planeYZ.size()])));
+            assert data.anyLayerVoxelVisible() == !visible.isEmpty();
+            assert data.anyVoxelSelected() == !selected.isEmpty();
+        }
+    }
+
+    // the selection set matches the selected flag of the voxels (also after undo and redo)
+    @Test
+    public void testSelectionSet() throws Exception {
+        int lid1 = data.createLayer("layer1");
+        int lid2 = data.createLayer("layer2");
+        Random rand = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            data.selectLayer(rand.nextBoolean() ? lid1 : lid2);
+            data.addVoxel(Color.RED, null, new int[]{rand.nextInt(20), rand.nextInt(20), rand.nextInt(20)});
+        }
+        Voxel[] voxels = data.getVisibleLayerVoxel();
+        CompressedBitSet all = Voxel.convertVoxelsToIdSet(data.getLayerVoxels(lid1))
+                .or(Voxel.convertVoxelsToIdSet(data.getLayerVoxels(lid2)));
+        CompressedBitSet expected = new CompressedBitSet();
+        ArrayList<CompressedBitSet> states = new ArrayList<CompressedBitSet>();
+        states.add(expected);
+        for (int i = 0; i < 100; i++) {
+            CompressedBitSet ids = new CompressedBitSet();
+            for (int j = rand.nextInt(500); j > 0; j--) {
+                ids.add(voxels[rand.nextInt(voxels.length)].id);
+            }
+            switch (rand.nextInt(6)) {
+                case 0: data.massSetVoxelSelected(ids, true); expected = expected.or(ids); break;
+                case 1: data.massSetVoxelSelected(ids, false); expected = expected.andNot(ids); break;
+                case 2: data.intersectVoxelSelection(ids); expected = expected.and(ids); break;
+                case 3: data.setVoxelSelection(ids); expected = ids; break;
+                case 4: data.setVoxelSelection(all); expected = all; break;
+                default: data.clearVoxelSelection(); expected = new CompressedBitSet(); break;
+            }
+            if (!expected.equals(states.get(states.size() - 1))) {
+                states.add(expected);
+            }
+            assert data.getVoxelSelection().equals(expected);
+        }
+        // a voxel is selected iff it is in the selection set
+        for (int undo = states.size() - 1; undo >= 0; undo--) {
+            CompressedBitSet selection = data.getVoxelSelection();
+            assert selection.equals(states.get(undo));
+            for (int layerId : new int[] {lid1, lid2}) {
+                for (Voxel voxel : data.getLayerVoxels(layerId)) {
+                    assert voxel.isSelected() == selection.contains(voxel.id);
+                    assert data.isSelected(voxel.id) == voxel.isSelected();
+                }
+            }
+            // only the visible voxels are returned
+            int count = 0;
+            for (Voxel voxel : data.getVisibleLayerVoxel()) {
+                if (selection.contains(voxel.id)) {
+                    count++;
+                }
+            }
+            assert data.getSelectedVoxels().length == count;
+            data.undoV();
+        }
+        // removing and restoring voxels updates the selection
+        while (data.canRedoV()) {
+            data.redoV();
+        }
+        CompressedBitSet selection = data.getVoxelSelection();
+        data.massRemoveVoxel(Voxel.convertVoxelsToIdArray(data.getLayerVoxels(lid2)));
+        assert data.getVoxelSelection().equals(selection.andNot(all.andNot(Voxel.convertVoxelsToIdSet(data.getLayerVoxels(lid1)))));
+        data.undoV();
+        assert data.getVoxelSelection().equals(selection);
+    }
+
+    @Test
+    public void testNewVoxels() throws Exception {
+        int lid1 = data.createLayer("layer1");
+        data.selectLayer(lid1);
+        int id1 = data.addVoxel(Color.RED, null, new int[] {0,0,0});
+        // the first request returns everything
+        Voxel[][] result = data.getNewVisibleLayerVoxel("a");
+        assert result[0] == null && result[1].length == 1;
+        result = data.getNewSideVoxel("a", 0, 0);
+        assert result[0] == null && result[1].length == 1;
+        result = data.getNewSelectedVoxel("a");
+        assert result[0] == null && result[1].length == 0;
+        // changes are forwarded to every request id
+        int id2 = data.addVoxel(Color.RED, null, new int[] {1,0,2});
+        data.removeVoxel(id1);
+        for (String requestId : new String[] {"a", "b"}) {
+            result = data.getNewVisibleLayerVoxel(requestId);
+            if (requestId.equals("a")) {
+                assert result[0].length == 1 && result[0][0].posId == CubeIndexer.getId(0, 0, 0);
+                assert result[1].length == 1 && result[1][0].id == id2;
+            } else {
+                assert result[0] == null && result[1].length == 1;
+            }
+            // nothing changed since the last request
+            result = data.getNewVisibleLayerVoxel(requestId);
+            assert result[0].length == 0 && result[1].length == 0;
+        }
+        // only the changes in the requested plane are returned
+        result = data.getNewSideVoxel("a", 0, 0);
+        assert result[0].length == 1 && result[1].length == 0;
+        result = data.getNewSideVoxel("a", 0, 2);
+        assert result[0] == null && result[1].length == 1;
+        data.invalidateSideViewBuffer("a", 0, 2);
+        result = data.getNewSideVoxel("a", 0, 2);
+        assert result[0] == null && result[1].length == 1;
+        // selection changes
+        data.massSetVoxelSelected(new Integer[] {id2}, true);
+        result = data.getNewSelectedVoxel("a");
+        assert result[0].length == 0 && result[1].length == 1 && result[1][0].id == id2;
+        result = data.getNewSideVoxel("a", 0, 2);
+        assert result[0].length == 0 && result[1].length == 1;
+        // clearing the history refreshes everything
+        data.clearHistoryV();
+        result = data.getNewVisibleLayerVoxel("a");
+        assert result[0] == null && result[1].length == 1;
+        result = data.getNewSelectedVoxel("a");
+        assert result[0] == null && result[1].length == 1;
+    }
+
     // tests for layers
 
     @Test
@@ -423,6 +693,21 @@ public class VoxelDataTest {
         // todo test undo/redo of this
     }
 
+    // helper - describe the state of voxels, sorted (the history replays voxel changes,
+    // so neither the voxel objects nor their order are necessarily the same after undo and redo)
+    private static String[] describeVoxels(Voxel[] voxels) {
+        String[] result = new String[voxels.length];
+        for (int i = 0; i < voxels.length; i++) {
+            Voxel voxel = voxels[i];
+            result[i] = voxel.id + " " + voxel.getPosAsString() + " " + voxel.getLayerId() + " "
+                    + voxel.getColor().getRGB() + " " + voxel.getAlpha() + " " + voxel.isSelected() + " "
+                    + Arrays.toString(voxel.getTexture()) + " " + Arrays.toString(voxel.getRotation()) + " "
+                    + Arrays.toString(voxel.getFlip());
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
     // big final test
     @Test
     public void randomeMess() throws Exception {
@@ -832,10 +1117,10 @@ public class VoxelDataTest {
             // store
             Integer[] layers = data.getLayers();
             String[] layerNames = data.getLayerNames();
-            Voxel[][] layerVoxel = new Voxel[layers.length][];
+            String[][] layerVoxel = new String[layers.length][];
             int c = 0;
             for (int i : layers) {
-                layerVoxel[c++] = data.getLayerVoxels(i);
+                layerVoxel[c++] = describeVoxels(data.getLayerVoxels(i));
             }
 
             // wind backwards
@@ -855,10 +1140,10 @@ public class VoxelDataTest {
             // store new version
             Integer[] layersN = data.getLayers();
             String[] layerNamesN = data.getLayerNames();
-            Voxel[][] layerVoxelN = new Voxel[layers.length][];
+            String[][] layerVoxelN = new String[layers.length][];
             c = 0;
             for (int i : layers) {
-                layerVoxelN[c++] = data.getLayerVoxels(i);
+                layerVoxelN[c++] = describeVoxels(data.getLayerVoxels(i));
             }
 
             // check
@@ -889,4 +1174,52 @@ public class VoxelDataTest {
         }
     }
 
+    // queries run concurrently with changes (no exceptions, consistent results)
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final int lid = data.createLayer("layer");
+        data.selectLayer(lid);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Throwable[] error = new Throwable[1];
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            final Random rand = new Random(t);
+            readers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!done.get()) {
+                            Voxel voxel = data.searchVoxel(new int[]{rand.nextInt(20), 0, rand.nextInt(20)}, false);
+                            assert voxel == null || data.getLayer(voxel.id) == lid || data.getVoxel(voxel.id) == null;
+                            for (Voxel visible : data.getVisibleLayerVoxel()) {
+                                assert visible != null;
+                            }
+                            data.getVoxelsXY(0);
+                            data.getLayerNames();
+                        }
+                    } catch (Throwable e) {
+                        error[0] = e;
+                    }
+                }
+            };
+            readers[t].start();
+        }
+        Random rand = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int[] pos = new int[]{rand.nextInt(20), 0, rand.nextInt(20)};
+            Voxel voxel = data.searchVoxel(pos, false);
+            if (voxel == null) {
+                data.addVoxel(Color.RED, null, pos);
+            } else {
+                data.removeVoxel(voxel.id);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assert error[0] == null;
+        assert data.getVisibleLayerVoxel().length == data.getVoxelCount(lid);
+    }
+
 }
@@ -1,44 +1,57 @@
 package com.vitco.app.core.data;
 
-import com.vitco.app.settings.VitcoSettings;
-
 import java.awt.*;
 import java.util.HashMap;
 
 /**
  * Functionality for voxel highlighting and selection of voxels.
+ *
+ * The highlighting uses its own lock (and not the data lock), so tools can update the
+ * highlighting while the data is read or changed. Listeners are notified after the lock
+ * is released.
  */
 public class VoxelHighlighting extends VoxelData implements VoxelHighlightingInterface {
 
+    // lock for the highlighting
+    private final Object highlightLock = new Object();
+
     private int[] pos = null;
 
     @Override
     public final void highlightVoxel(int[] pos) {
-        synchronized (VitcoSettings.SYNC) {
+        boolean changed = false;
+        synchronized (highlightLock) {
             if (this.pos == null || pos == null || (this.pos[0] != pos[0] || this.pos[1] != pos[1] || this.pos[2] != pos[2])) {
                 if (this.pos != null || pos != null) {
                     this.pos = pos != null ? pos.clone() : null;
-                    notifier.onVoxelHighlightingChanged();
+                    changed = true;
                 }
             }
         }
+        if (changed) {
+            notifier.onVoxelHighlightingChanged();
+        }
     }
 
     @Override
     public final int[] getHighlightedVoxel() {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (highlightLock) {
             return pos != null ? pos.clone() : null;
         }
     }
 
     @Override
     public final void removeVoxelHighlights() {
-        synchronized (VitcoSettings.SYNC) {
+        boolean changed = false;
+        synchronized (highlightLock) {
             if (pos != null) {
                 pos = null;
-                notifier.onVoxelHighlightingChanged();
+                changed = true;
             }
         }
+        if (changed) {
+            notifier.onVoxelHighlightingChanged();
+        }
     }
 
     // ================================
@@ -48,7 +61,7 @@ public class VoxelHighlighting extends VoxelData implements VoxelHighlightingInt
 
     @Override
     public final void setOutlineBox(String key, int[][] rect) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (highlightLock) {
             if (rect == null || rect[0] == null || rect[1] == null) {
                 boxOutlines.remove(key);
             } else {
@@ -63,13 +76,13 @@ public class VoxelHighlighting extends VoxelData implements VoxelHighlightingInt
                 boxOutlinesArray = new int[boxOutlines.size()][][];
             }
             boxOutlines.values().toArray(boxOutlinesArray);
-            notifier.onOutlineBoxesChanged();
         }
+        notifier.onOutlineBoxesChanged();
     }
 
     @Override
     public final int[][][] getOutlineBoxes() {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (highlightLock) {
             return boxOutlinesArray.clone();
         }
     }
@@ -80,17 +93,17 @@ public class VoxelHighlighting extends VoxelData implements VoxelHighlightingInt
 
     @Override
     public Rectangle getSelectionRect() {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (highlightLock) {
             return selectionRect;
         }
     }
 
     @Override
     public void setSelectionRect(Rectangle selectionRect) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (highlightLock) {
             this.selectionRect = selectionRect;
-            notifier.onSelectionRectChanged();
         }
+        notifier.onSelectionRectChanged();
     }
 
     // ================================
@@ -100,19 +113,23 @@ public class VoxelHighlighting extends VoxelData implements VoxelHighlightingInt
 
     @Override
     public final void setVoxelSelectionShift(int x, int y, int z) {
-        synchronized (VitcoSettings.SYNC) {
+        boolean changed = false;
+        synchronized (highlightLock) {
             if (voxelSelectionShift[0] != x || voxelSelectionShift[1] != y || voxelSelectionShift[2] != z) {
                 voxelSelectionShift[0] = x;
                 voxelSelectionShift[1] = y;
                 voxelSelectionShift[2] = z;
-                notifier.onVoxelSelectionShiftChanged();
+                changed = true;
             }
         }
+        if (changed) {
+            notifier.onVoxelSelectionShiftChanged();
+        }
     }
 
     @Override
     public final int[] getVoxelSelectionShift() {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (highlightLock) {
             return voxelSelectionShift.clone();
         }
     }
@@ -3,10 +3,16 @@ package com.vitco.app.core.data.container;
 import com.vitco.app.core.container.HackedObjectInputStream;
 import com.vitco.app.manager.error.ErrorHandlerInterface;
 import com.vitco.app.util.misc.AutoFileCloser;
+import com.vitco.app.util.misc.CompressedBitSet;
+import gnu.trove.impl.Constants;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.procedure.TIntProcedure;
 
 import javax.swing.*;
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
@@ -30,8 +36,11 @@ public final class DataContainer implements Serializable {
     public final HashMap<Integer, VoxelLayer> layers;
     // order of the layers
     public final ArrayList<Integer> layerOrder;
-    // holds all voxels (maps id to voxel)
-    public final HashMap<Integer, Voxel> voxels;
+    // maps the voxel ids to their layer and position (the voxels are stored in the layers)
+    private transient TIntLongHashMap voxels;
+    // the ids of the selected voxels (not stored, the selected
+    // flag of the voxels mirrors this set)
+    private transient CompressedBitSet selection = new CompressedBitSet();
 
     // ####################### DATA (Animation)
     // holds the points
@@ -53,7 +62,7 @@ public final class DataContainer implements Serializable {
         this(null, null);
     }
 
-    private static final class TmpData {
+    static final class TmpData {
         boolean result = false;
         // ############# create temporary to read from file
         HashMap<Integer, ImageIcon> textures = new HashMap<Integer, ImageIcon>();
@@ -62,7 +71,7 @@ public final class DataContainer implements Serializable {
         int selectedLayer = -1;
         HashMap<Integer, VoxelLayer> layers = new HashMap<Integer, VoxelLayer>();
         ArrayList<Integer> layerOrder = new ArrayList<Integer>();
-        HashMap<Integer, Voxel> voxels = new HashMap<Integer, Voxel>();
+        TIntLongHashMap voxels = createVoxelIndex();
         // ####################### DATA (Animation)
         HashMap<Integer, ExtendedVector> points = new HashMap<Integer, ExtendedVector>();
         HashMap<String, ExtendedLine> lines = new HashMap<String, ExtendedLine>();
@@ -78,6 +87,22 @@ public final class DataContainer implements Serializable {
         final TmpData tmpData = new TmpData();
 
         if (file != null && file.exists()) {
+            try {
+                new AutoFileCloser() {
+                    @Override protected void doWork() throws Throwable {
+                        // binary format (version 2)
+                        if (VsdFile.isBinary(file)) {
+                            FileChannel channel = autoClose(new FileInputStream(file).getChannel());
+                            VsdFile.read(channel, tmpData);
+                        }
+                    }
+                };
+            } catch (RuntimeException e) {
+                errorHandler.handle(e);
+            }
+        }
+
+        if (!tmpData.result && file != null && file.exists()) {
             try {
                 new AutoFileCloser() {
                     @Override protected void doWork() throws Throwable {
@@ -101,7 +126,8 @@ public final class DataContainer implements Serializable {
                                     } else if (token.equals("#layerOrder#")) {
                                         tmpData.layerOrder = (ArrayList<Integer>) input.readObject();
                                     } else if (token.equals("#voxels#")) {
-                                        tmpData.voxels = (HashMap<Integer, Voxel>) input.readObject();
+                                        // the voxels are also stored in the layers
+                                        input.readObject();
                                     } else if (token.equals("#points#")) {
                                         tmpData.points = (HashMap<Integer, ExtendedVector>) input.readObject();
                                     } else if (token.equals("#lines#")) {
@@ -114,6 +140,9 @@ public final class DataContainer implements Serializable {
                                         tmpData.frames = (HashMap<Integer, Frame>) input.readObject();
                                     }
                                 }
+                                for (VoxelLayer layer : tmpData.layers.values()) {
+                                    indexVoxels(tmpData.voxels, layer);
+                                }
                                 tmpData.result = true;
                             }
                         } catch (StreamCorruptedException ignored) {} // caused if the file format is invalid
@@ -143,63 +172,118 @@ public final class DataContainer implements Serializable {
         hasLoaded = tmpData.result;
     }
 
-    // save to file function
-    public final boolean saveToVsdFile(final File file, ErrorHandlerInterface errorHandler) {
-        final boolean[] result = {false};
-        try {
-            new AutoFileCloser() {
-                @Override protected void doWork() throws Throwable {
-                    OutputStream outputStream = autoClose(new FileOutputStream( file ));
-                    OutputStream buffer = autoClose(new BufferedOutputStream( outputStream ));
-                    ObjectOutputStream output = autoClose(new ObjectOutputStream( buffer ));
+    // ###################### VOXEL (add, remove and select)
+    // Note: These methods need to be used to change the voxels, so the selection stays in sync
 
-                    // write identifier
-                    output.writeUTF("**VSD2013**");
+    // helper to create the voxel index (returns -1 for unknown ids)
+    static TIntLongHashMap createVoxelIndex() {
+        return new TIntLongHashMap(Constants.DEFAULT_CAPACITY, 0.8f, -1, -1L);
+    }
 
-                    if (textures != null) {
-                        output.writeUTF("#textures#");
-                        output.writeObject(textures);
-                    }
+    // helper to add a voxel to the voxel index (layer id and position id)
+    static void indexVoxel(TIntLongHashMap index, Voxel voxel) {
+        index.put(voxel.id, ((long) voxel.getLayerId() << 32) | (voxel.posId & 0xFFFFFFFFL));
+    }
 
-                    output.writeUTF("#selectedTexture#");
-                    output.writeObject(selectedTexture);
+    // helper to add the voxels of a layer to the voxel index
+    static void indexVoxels(TIntLongHashMap index, VoxelLayer layer) {
+        for (Voxel voxel : layer.getVoxels()) {
+            indexVoxel(index, voxel);
+        }
+    }
 
-                    output.writeUTF("#selectedLayer#");
-                    output.writeObject(selectedLayer);
+    // get the voxel with this id (null if it does not exist)
+    public final Voxel getVoxel(int id) {
+        long entry = voxels.get(id);
+        if (entry == -1L) {
+            return null;
+        }
+        return layers.get((int) (entry >> 32)).search((int) entry);
+    }
 
-                    if (layers != null) {
-                        output.writeUTF("#layers#");
-                        output.writeObject(layers);
-                    }
-                    if (layerOrder != null) {
-                        output.writeUTF("#layerOrder#");
-                        output.writeObject(layerOrder);
-                    }
-                    if (voxels != null) {
-                        output.writeUTF("#voxels#");
-                        output.writeObject(voxels);
-                    }
-                    if (points != null) {
-                        output.writeUTF("#points#");
-                        output.writeObject(points);
-                    }
-                    if (lines != null) {
-                        output.writeUTF("#lines#");
-                        output.writeObject(lines);
-                    }
-                    if (pointsToLines != null) {
-                        output.writeUTF("#pointsToLines#");
-                        output.writeObject(pointsToLines);
-                    }
+    // true iff a voxel with this id exists
+    public final boolean containsVoxel(int id) {
+        return voxels.containsKey(id);
+    }
 
-                    output.writeUTF("#activeFrame#");
-                    output.writeObject(activeFrame);
+    // the amount of voxels
+    public final int getVoxelCount() {
+        return voxels.size();
+    }
 
-                    if (frames != null) {
-                        output.writeUTF("#frames#");
-                        output.writeObject(frames);
-                    }
+    // get all voxels (of all layers)
+    public final Voxel[] getVoxels() {
+        ArrayList<Voxel> result = new ArrayList<Voxel>(voxels.size());
+        for (VoxelLayer layer : layers.values()) {
+            result.addAll(Arrays.asList(layer.getVoxels()));
+        }
+        return result.toArray(new Voxel[result.size()]);
+    }
+
+    // add a voxel to the data and its layer
+    public final void addVoxel(Voxel voxel) {
+        indexVoxel(voxels, voxel);
+        layers.get(voxel.getLayerId()).addVoxel(voxel);
+        if (voxel.isSelected()) {
+            selection.add(voxel.id);
+        }
+    }
+
+    // remove a voxel from the data and its layer
+    public final void removeVoxel(Voxel voxel) {
+        if (layers.get(voxel.getLayerId()).removeVoxel(voxel)) {
+            voxels.remove(voxel.id);
+            selection.remove(voxel.id);
+        }
+    }
+
+    // set the selection state of a voxel
+    public final void setVoxelSelected(Voxel voxel, boolean selected) {
+        voxel.setSelected(selected);
+        if (selected) {
+            selection.add(voxel.id);
+        } else {
+            selection.remove(voxel.id);
+        }
+    }
+
+    // invert the selection state of the voxels (all ids need to exist)
+    public final void toggleVoxelSelection(CompressedBitSet voxelIds) {
+        voxelIds.forEach(new TIntProcedure() {
+            @Override
+            public boolean execute(int id) {
+                Voxel voxel = getVoxel(id);
+                voxel.setSelected(!voxel.isSelected());
+                return true;
+            }
+        });
+        selection = selection.xor(voxelIds);
+    }
+
+    // the ids of the selected voxels (must not be modified)
+    public final CompressedBitSet getSelection() {
+        return selection;
+    }
+
+    // initialize the selection and the voxel index when loading from file (legacy format)
+    // Note: the selected flag of the voxels is not stored either
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        selection = new CompressedBitSet();
+        voxels = createVoxelIndex();
+        for (VoxelLayer layer : layers.values()) {
+            indexVoxels(voxels, layer);
+        }
+    }
 
+    // save to file function (binary format, voxel blocks are deflate compressed)
+    public final boolean saveToVsdFile(final File file, ErrorHandlerInterface errorHandler) {
+        final boolean[] result = {false};
+        try {
+            new AutoFileCloser() {
+                @Override protected void doWork() throws Throwable {
+                    FileChannel channel = autoClose(new FileOutputStream(file).getChannel());
+                    VsdFile.write(DataContainer.this, channel, true);
                     result[0] = true;
                 }
             };
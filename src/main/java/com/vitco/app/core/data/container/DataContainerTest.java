@@ -0,0 +1,67 @@
+package com.vitco.app.core.data.container;
+
+import com.vitco.app.core.data.Data;
+import com.vitco.app.manager.error.ErrorHandler;
+import com.vitco.app.util.file.FileTools;
+import com.vitco.app.util.misc.CompressedBitSet;
+import org.junit.Test;
+
+import java.awt.*;
+import java.io.File;
+
+/**
+ * Test that a data container can be edited after loading it from file (legacy format).
+ */
+public class DataContainerTest {
+
+    @Test
+    public void testLegacyRoundTrip() throws Exception {
+        DataContainer container = new DataContainer();
+        container.layers.put(0, new VoxelLayer(0, "layer"));
+        container.layerOrder.add(0);
+        for (int i = 0; i < 10; i++) {
+            container.addVoxel(new Voxel(i, new int[] {i, 0, 0}, Color.RED, i % 2 == 0, null, 0));
+        }
+        assert container.getSelection().cardinality() == 5;
+
+        File file = File.createTempFile("legacy-test", ".vsd");
+        file.deleteOnExit();
+        ErrorHandler errorHandler = new ErrorHandler();
+        assert FileTools.saveToFile(file, container, errorHandler);
+        DataContainer loaded = (DataContainer) FileTools.loadFromFile(file, errorHandler);
+        assert loaded != null;
+
+        // the selection is not stored
+        assert loaded.getSelection() != null;
+        assert loaded.getSelection().isEmpty();
+        assert loaded.getVoxelCount() == 10;
+
+        // edit the loaded container
+        loaded.setVoxelSelected(loaded.getVoxel(3), true);
+        CompressedBitSet toggle = new CompressedBitSet();
+        toggle.add(3);
+        toggle.add(4);
+        loaded.toggleVoxelSelection(toggle);
+        assert !loaded.getSelection().contains(3);
+        assert loaded.getSelection().contains(4);
+        loaded.removeVoxel(loaded.getVoxel(4));
+        assert loaded.getSelection().isEmpty();
+        loaded.addVoxel(new Voxel(20, new int[] {0, 1, 0}, Color.BLUE, true, null, 0));
+        assert loaded.getSelection().contains(20);
+
+        // load the file through the data
+        Data data = new Data();
+        data.setErrorHandler(errorHandler);
+        assert data.loadFromFile(file);
+        assert data.getVoxelSelection().isEmpty();
+        CompressedBitSet ids = new CompressedBitSet();
+        ids.add(1);
+        ids.add(2);
+        assert data.massSetVoxelSelected(ids, true);
+        assert data.isSelected(1);
+        assert data.isSelected(2);
+        assert data.getVoxelSelection().cardinality() == 2;
+        assert data.removeVoxel(1);
+        assert data.getVoxelSelection().cardinality() == 1;
+    }
+}
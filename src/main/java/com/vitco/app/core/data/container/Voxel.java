@@ -1,24 +1,40 @@
 package com.vitco.app.core.data.container;
 
 import com.vitco.app.low.CubeIndexer;
+import com.vitco.app.util.misc.CompressedBitSet;
 
 import java.awt.*;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 
 /**
- * A Voxel instance, only getter are available (!)
+ * A Voxel instance.
+ *
+ * The voxels of a layer are stored in packed arrays (see VoxelLayer), a voxel that is
+ * returned by the layer is a view of the stored voxel: changes are written to the layer,
+ * the getters return the state the voxel had when the view was created (or last changed).
  */
 public final class Voxel implements Serializable {
     private static final long serialVersionUID = 1L;
-    private final int[] posI;
-    private transient String posS = null;
-    // make final when legacy support is removed
-    public transient final int x;
-    public transient final int y;
-    public transient final int z;
-    public transient final int posId; // position id
+    // the serialized form is the same as before the voxels were stored in layers (legacy vsd)
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("posI", int[].class),
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("color", Color.class),
+            new ObjectStreamField("alpha", int.class),
+            new ObjectStreamField("layerId", int.class),
+            new ObjectStreamField("textureIds", int[].class),
+            new ObjectStreamField("sideRotation", int[].class),
+            new ObjectStreamField("sideFlip", boolean[].class)
+    };
+    public final int x;
+    public final int y;
+    public final int z;
+    public final int posId; // position id
     public final int id; // id
     private Color color; // color of voxel
     private int alpha = -1; // alpha of this voxel
@@ -28,6 +44,9 @@ public final class Voxel implements Serializable {
     private int[] sideRotation = null;
     private boolean[] sideFlip = null;
 
+    // the layer that stores this voxel (null if not stored)
+    private transient VoxelLayer layer = null;
+
     public static Integer[] convertVoxelsToIdArray(Voxel[] voxels) {
         Integer[] voxelIds = new Integer[voxels.length];
         for (int i = 0; i < voxels.length; i++) {
@@ -36,45 +55,41 @@ public final class Voxel implements Serializable {
         return voxelIds;
     }
 
+    // convert voxels into a set of ids
+    public static CompressedBitSet convertVoxelsToIdSet(Voxel[] voxels) {
+        CompressedBitSet voxelIds = new CompressedBitSet();
+        for (Voxel voxel : voxels) {
+            voxelIds.add(voxel.id);
+        }
+        return voxelIds;
+    }
+
     // constructor (with texture)
     public Voxel(int id, int[] pos, Color color, boolean selected, int[] textureIds, int layerId) {
+        this(id, pos[0], pos[1], pos[2], color, selected, textureIds == null ? null : textureIds.clone(), layerId);
+    }
+
+    // constructor (the texture ids are not copied)
+    Voxel(int id, int x, int y, int z, Color color, boolean selected, int[] textureIds, int layerId) {
         this.id = id;
         this.color = color;
         this.layerId = layerId;
-        this.textureIds = textureIds == null ? null : textureIds.clone();
+        this.textureIds = textureIds;
         this.selected = selected;
-        posI = pos.clone();
-        posS = posI[0] + "_" + posI[1] + "_" + posI[2];
         // load the public values for fast access
-        x = pos[0];
-        y = pos[1];
-        z = pos[2];
+        this.x = x;
+        this.y = y;
+        this.z = z;
         // define position id
-        posId = CubeIndexer.getId(posI[0], posI[1], posI[2]);
+        posId = CubeIndexer.getId(x, y, z);
     }
 
-    // called after deserialization
-    private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject();
-        // build the string representation when loading from file
-        if (posS == null) {
-            posS = posI[0] + "_" + posI[1] + "_" + posI[2];
-        }
-        // read the transient final values after de-serialization
+    // helper - set a final value after de-serialization
+    private void setFinal(String name, int value) {
         try {
-            Field f = this.getClass().getDeclaredField("x");
-            f.setAccessible(true);
-            f.set(this, posI[0]);
-            f = this.getClass().getDeclaredField("y");
-            f.setAccessible(true);
-            f.set(this, posI[1]);
-            f = this.getClass().getDeclaredField("z");
-            f.setAccessible(true);
-            f.set(this, posI[2]);
-
-            f = this.getClass().getDeclaredField("posId");
+            Field f = Voxel.class.getDeclaredField(name);
             f.setAccessible(true);
-            f.set(this, CubeIndexer.getId(posI[0], posI[1], posI[2]));
+            f.set(this, value);
         } catch (NoSuchFieldException e) {
             // should never happen
             e.printStackTrace();
@@ -84,17 +99,63 @@ public final class Voxel implements Serializable {
         }
     }
 
+    // called before serialization
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("posI", new int[] {x, y, z});
+        fields.put("id", id);
+        fields.put("color", color);
+        fields.put("alpha", alpha);
+        fields.put("layerId", layerId);
+        fields.put("textureIds", textureIds);
+        fields.put("sideRotation", sideRotation);
+        fields.put("sideFlip", sideFlip);
+        out.writeFields();
+    }
+
+    // called after deserialization
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        int[] posI = (int[]) fields.get("posI", null);
+        // read the final values after de-serialization
+        setFinal("x", posI[0]);
+        setFinal("y", posI[1]);
+        setFinal("z", posI[2]);
+        setFinal("posId", CubeIndexer.getId(posI[0], posI[1], posI[2]));
+        setFinal("id", fields.get("id", 0));
+        setFinal("layerId", fields.get("layerId", 0));
+        color = (Color) fields.get("color", null);
+        alpha = fields.get("alpha", -1);
+        textureIds = (int[]) fields.get("textureIds", null);
+        sideRotation = (int[]) fields.get("sideRotation", null);
+        sideFlip = (boolean[]) fields.get("sideFlip", null);
+    }
+
+    // attach this voxel to the layer that stores it (null to detach)
+    final void setLayer(VoxelLayer layer) {
+        this.layer = layer;
+    }
+
+    // helper - write the changed state to the layer
+    private void store() {
+        if (layer != null) {
+            layer.update(this);
+        }
+    }
+
     // retrieve position
     public final int[] getPosAsInt() {
-        return posI.clone();
+        return new int[] {x, y, z};
     }
+    // the string representation is build on request (not stored per voxel)
     public final String getPosAsString() {
-        return posS;
+        return x + "_" + y + "_" + z;
     }
 
     // set the color of this voxel
     public final void setColor(Color color) {
         this.color = color;
+        store();
     }
 
     // get the color of this voxel
@@ -108,6 +169,7 @@ public final class Voxel implements Serializable {
             sideRotation = new int[6];
         }
         sideRotation[side] = (sideRotation[side] + 1)%4;
+        store();
     }
 
     // rotate this voxel (reverse)
@@ -116,6 +178,7 @@ public final class Voxel implements Serializable {
             sideRotation = new int[6];
         }
         sideRotation[side] = (sideRotation[side] + 3)%4;
+        store();
     }
 
     // get the rotation of this voxel
@@ -129,6 +192,7 @@ public final class Voxel implements Serializable {
             sideFlip = new boolean[6];
         }
         sideFlip[side] = !sideFlip[side];
+        store();
     }
 
     // get the flip of this voxel
@@ -136,6 +200,13 @@ public final class Voxel implements Serializable {
         return sideFlip == null ? null : sideFlip.clone();
     }
 
+    // restore the rotation and flip of this voxel (as returned by getRotation() and getFlip())
+    public final void setTextureTransform(int[] rotation, boolean[] flip) {
+        sideRotation = rotation == null ? null : rotation.clone();
+        sideFlip = flip == null ? null : flip.clone();
+        store();
+    }
+
     // set the texture of this voxel
     public final boolean setTexture(int[] textureIds) {
         if (textureIds == null || textureIds.length == 6) {
@@ -145,6 +216,7 @@ public final class Voxel implements Serializable {
                 sideRotation = null;
                 sideFlip = null;
             }
+            store();
             return true;
         }
         return false;
@@ -158,6 +230,7 @@ public final class Voxel implements Serializable {
     // set the alpha of this voxel
     public final void setAlpha(int alpha) {
         this.alpha = alpha;
+        store();
     }
 
     // get the color of this voxel
@@ -171,7 +244,7 @@ public final class Voxel implements Serializable {
     }
 
     // ===================================
-    // for this object instance only
+    // Note: the selection of voxels in the data is changed through the DataContainer
     private transient boolean selected = false;
 
     public final boolean isSelected() {
@@ -180,6 +253,7 @@ public final class Voxel implements Serializable {
 
     public final void setSelected(boolean b) {
         selected = b;
+        store();
     }
 
 }
@@ -1,31 +1,50 @@
 package com.vitco.app.core.data.container;
 
 import com.vitco.app.low.CubeIndexer;
+import com.vitco.app.low.engine.Chunk;
+import com.vitco.app.low.engine.Engine;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.awt.*;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /**
  * A layer that contains voxels.
  *
+ * The voxels are stored in packed chunk arrays (see Engine), the Voxel objects that
+ * are returned are created on request. Changes to these voxels are written to the layer.
+ *
  * Does not check for duplicates on insertion!
  */
 public final class VoxelLayer implements Serializable {
     private static final long serialVersionUID = 1L;
-
-    // list of all voxels
-    private final ArrayList<Voxel> voxelList = new ArrayList<Voxel>();
-    // string "index"
-    private transient TIntObjectHashMap<Voxel> index = new TIntObjectHashMap<Voxel>();
-    // side index
-    private transient TIntObjectHashMap<HashSet<Voxel>> sideX = new TIntObjectHashMap<HashSet<Voxel>>();
-    private transient TIntObjectHashMap<HashSet<Voxel>> sideY = new TIntObjectHashMap<HashSet<Voxel>>();
-    private transient TIntObjectHashMap<HashSet<Voxel>> sideZ = new TIntObjectHashMap<HashSet<Voxel>>();
+    // the serialized form is the same as before the voxels were stored in chunks (legacy vsd)
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("voxelList", ArrayList.class),
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("layerName", String.class),
+            new ObjectStreamField("visible", boolean.class)
+    };
+
+    // the voxels of this layer
+    private transient Engine engine = new Engine();
+    // the colors of the voxels (one instance per color value, only changed when voxels are changed)
+    private transient TIntObjectHashMap<Color> colors = new TIntObjectHashMap<Color>();
+
+    // loads the voxels of this layer on first access (null if the layer is loaded)
+    // Note: this is read without a lock when the voxels are decoded in the background
+    private transient volatile VoxelLoader pending = null;
+    // voxel count and highest voxel id of the layer while it is not loaded
+    private transient int pendingSize = 0;
+    private transient int pendingMaxVoxelId = -1;
 
     public final int id;
     private String layerName; // layerName of layer
@@ -37,156 +56,236 @@ public final class VoxelLayer implements Serializable {
         this.layerName = layerName;
     }
 
-    // helper to add voxel to index
-    private void indexVoxel(Voxel voxel) {
-        index.put(voxel.posId, voxel);
+    // used to load the voxels of a layer lazily
+    public interface VoxelLoader {
+        // decode the voxels (must not change the layer or the data)
+        Voxel[] decode(VoxelLayer layer);
+        // add the decoded voxels to the layer (and the data)
+        void install(VoxelLayer layer, Voxel[] voxels);
+    }
 
-        // side x
-        HashSet<Voxel> planeX = sideX.get(voxel.x);
-        if (planeX == null) {
-            planeX = new HashSet<Voxel>();
-            sideX.put(voxel.x, planeX);
-        }
-        planeX.add(voxel);
-        // side y
-        HashSet<Voxel> planeY = sideY.get(voxel.y);
-        if (planeY == null) {
-            planeY = new HashSet<Voxel>();
-            sideY.put(voxel.y, planeY);
-        }
-        planeY.add(voxel);
-        // side z
-        HashSet<Voxel> planeZ = sideZ.get(voxel.z);
-        if (planeZ == null) {
-            planeZ = new HashSet<Voxel>();
-            sideZ.put(voxel.z, planeZ);
+    // defer the loading of the voxels of this layer until they are accessed
+    public final void setPending(VoxelLoader loader, int size, int maxVoxelId) {
+        pending = loader;
+        pendingSize = size;
+        pendingMaxVoxelId = maxVoxelId;
+    }
+
+    // true iff the voxels of this layer are not loaded yet
+    public final boolean isPending() {
+        return pending != null;
+    }
+
+    // get the highest voxel id of the layer while it is not loaded (-1 otherwise)
+    public final int getPendingMaxVoxelId() {
+        return pending == null ? -1 : pendingMaxVoxelId;
+    }
+
+    // make sure the voxels of this layer are loaded
+    private void ensureLoaded() {
+        VoxelLoader loader = pending;
+        if (loader != null) {
+            loadDecoded(loader.decode(this));
         }
-        planeZ.add(voxel);
     }
 
-    private boolean unindexVoxel(Voxel voxel) {
-        boolean result = true;
+    // decode the voxels of this layer if it is not loaded yet (null otherwise)
+    // Note: This doesn't change the layer and can be called without holding the data lock
+    public final Voxel[] decodePending() {
+        VoxelLoader loader = pending;
+        return loader == null ? null : loader.decode(this);
+    }
 
-        if (null == index.remove(voxel.posId)) {
-            result = false;
+    // add the voxels returned by decodePending (ignored if the layer was loaded in the meantime)
+    public final void loadDecoded(Voxel[] voxels) {
+        VoxelLoader loader = pending;
+        if (loader != null) {
+            // reset first, the loader adds the voxels through this layer
+            pending = null;
+            loader.install(this, voxels);
         }
+    }
 
-        // side x
-        HashSet<Voxel> planeX = sideX.get(voxel.x);
-        if (planeX != null) {
-            planeX.remove(voxel);
-            if (planeX.isEmpty()) {
-                sideX.remove(voxel.x);
-            }
-        } else {
-            result = false; // should never happen
+    // used to iterate over the voxels of a plane without copying them
+    public interface VoxelVisitor {
+        void visit(Voxel voxel);
+    }
+
+    // helper - create the voxel object for a stored voxel
+    private Voxel createVoxel(Chunk chunk, int slot) {
+        Voxel voxel = new Voxel(chunk.getId(slot), chunk.getX(slot), chunk.getY(slot), chunk.getZ(slot),
+                colors.get(chunk.getColor(slot)), chunk.isSelected(slot),
+                engine.getTexture(chunk.getTextureSlot(slot)), id);
+        voxel.setAlpha(chunk.getAlpha(slot));
+        voxel.setTextureTransform(chunk.getRotation(slot), chunk.getFlip(slot));
+        voxel.setLayer(this);
+        return voxel;
+    }
+
+    // helper - write the state of a voxel object to a stored voxel
+    private void store(Chunk chunk, int slot, Voxel voxel) {
+        Color color = voxel.getColor();
+        int argb = color.getRGB();
+        if (colors.get(argb) != color) {
+            colors.put(argb, color);
         }
-        // side y
-        HashSet<Voxel> planeY = sideY.get(voxel.y);
-        if (planeY != null) {
-            planeY.remove(voxel);
-            if (planeY.isEmpty()) {
-                sideY.remove(voxel.y);
-            }
-        } else {
-            result = false; // should never happen
+        chunk.setColor(slot, argb);
+        chunk.setAlpha(slot, voxel.getAlpha());
+        chunk.setSelected(slot, voxel.isSelected());
+        chunk.setTransform(slot, voxel.getRotation(), voxel.getFlip());
+        chunk.setTextureSlot(slot, engine.getTextureSlot(voxel.getTexture()));
+    }
+
+    // write a changed voxel object to the layer (ignored if the voxel is no longer in this layer)
+    final void update(Voxel voxel) {
+        Chunk chunk = engine.getChunk(voxel.x, voxel.y, voxel.z);
+        int slot = chunk == null ? -1 : chunk.find(voxel.x, voxel.y, voxel.z);
+        if (slot != -1 && chunk.getId(slot) == voxel.id) {
+            store(chunk, slot, voxel);
         }
-        // side z
-        HashSet<Voxel> planeZ = sideZ.get(voxel.z);
-        if (planeZ != null) {
-            planeZ.remove(voxel);
-            if (planeZ.isEmpty()) {
-                sideZ.remove(voxel.z);
+    }
+
+    // helper to collect the voxels of a plane
+    private Voxel[] getPlane(int axis, int plane) {
+        final ArrayList<Voxel> result = new ArrayList<Voxel>();
+        visitPlane(axis, plane, new VoxelVisitor() {
+            @Override
+            public void visit(Voxel voxel) {
+                result.add(voxel);
             }
-        } else {
-            result = false; // should never happen
-        }
+        });
+        return result.toArray(new Voxel[result.size()]);
+    }
 
-        return result;
+    // helper to visit the voxels of a plane
+    private void visitPlane(int axis, int plane, final VoxelVisitor visitor) {
+        ensureLoaded();
+        engine.visitPlane(axis, plane, new Engine.SlotVisitor() {
+            @Override
+            public void visit(Chunk chunk, int slot) {
+                visitor.visit(createVoxel(chunk, slot));
+            }
+        });
     }
 
     public final Voxel[] getXPlane(int plane) {
-        HashSet<Voxel> planeX = sideX.get(plane);
-        if (planeX != null) {
-            Voxel[] result = new Voxel[planeX.size()];
-            planeX.toArray(result);
-            return result;
-        } else {
-            return new Voxel[0];
-        }
+        return getPlane(0, plane);
     }
 
     public final Voxel[] getYPlane(int plane) {
-        HashSet<Voxel> planeY = sideY.get(plane);
-        if (planeY != null) {
-            Voxel[] result = new Voxel[planeY.size()];
-            planeY.toArray(result);
-            return result;
-        } else {
-            return new Voxel[0];
-        }
+        return getPlane(1, plane);
     }
 
     public final Voxel[] getZPlane(int plane) {
-        HashSet<Voxel> planeZ = sideZ.get(plane);
-        if (planeZ != null) {
-            Voxel[] result = new Voxel[planeZ.size()];
-            planeZ.toArray(result);
-            return result;
-        } else {
-            return new Voxel[0];
-        }
+        return getPlane(2, plane);
+    }
+
+    // visit the voxels of a plane (the layer must not be changed while visiting)
+    public final void visitXPlane(int plane, VoxelVisitor visitor) {
+        visitPlane(0, plane, visitor);
+    }
+
+    public final void visitYPlane(int plane, VoxelVisitor visitor) {
+        visitPlane(1, plane, visitor);
+    }
+
+    public final void visitZPlane(int plane, VoxelVisitor visitor) {
+        visitPlane(2, plane, visitor);
+    }
+
+    // called before serialization
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ensureLoaded();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("voxelList", new ArrayList<Voxel>(Arrays.asList(getVoxels())));
+        fields.put("id", id);
+        fields.put("layerName", layerName);
+        fields.put("visible", visible);
+        out.writeFields();
     }
 
     // called after deserialization
-    private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject();
-        // build the indices when loading from file
-        if (sideX == null) {
-            sideX = new TIntObjectHashMap<HashSet<Voxel>>();
-        }
-        if (sideY == null) {
-            sideY = new TIntObjectHashMap<HashSet<Voxel>>();
-        }
-        if (sideZ == null) {
-            sideZ = new TIntObjectHashMap<HashSet<Voxel>>();
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        try {
+            Field f = VoxelLayer.class.getDeclaredField("id");
+            f.setAccessible(true);
+            f.set(this, fields.get("id", 0));
+        } catch (NoSuchFieldException e) {
+            // should never happen
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            // should never happen
+            e.printStackTrace();
         }
-        if (index == null) {
-            index = new TIntObjectHashMap<Voxel>();
-        }
-        for (Voxel voxel : voxelList) {
-            indexVoxel(voxel);
+        layerName = (String) fields.get("layerName", null);
+        visible = fields.get("visible", true);
+        // store the voxels when loading from file
+        engine = new Engine();
+        colors = new TIntObjectHashMap<Color>();
+        ArrayList<Voxel> voxelList = (ArrayList<Voxel>) fields.get("voxelList", null);
+        if (voxelList != null) {
+            for (Voxel voxel : voxelList) {
+                addVoxel(voxel);
+            }
         }
     }
 
+    // helper - find a voxel by position
+    private Voxel search(int x, int y, int z) {
+        ensureLoaded();
+        Chunk chunk = engine.getChunk(x, y, z);
+        int slot = chunk == null ? -1 : chunk.find(x, y, z);
+        return slot == -1 ? null : createVoxel(chunk, slot);
+    }
+
     public Voxel search(int[] pos) {
-        return index.get(CubeIndexer.getId(pos[0], pos[1], pos[2]));
+        return search(pos[0], pos[1], pos[2]);
+    }
+
+    // search position by CubeIndexer id
+    public Voxel search(int posId) {
+        short[] pos = CubeIndexer.getPos(posId);
+        return search(pos[0], pos[1], pos[2]);
     }
 
     // search position by using another voxel as reference
     public Voxel search(Voxel voxel) {
-        return index.get(voxel.posId);
+        return search(voxel.x, voxel.y, voxel.z);
     }
 
     public int getSize() {
-        return voxelList.size();
+        return pending == null ? engine.size() : pendingSize;
+    }
+
+    // helper - check if a position already contains a voxel
+    private boolean voxelPositionFree(int x, int y, int z) {
+        ensureLoaded();
+        Chunk chunk = engine.getChunk(x, y, z);
+        return chunk == null || chunk.find(x, y, z) == -1;
     }
 
     // check if a position already contains a voxel
     public boolean voxelPositionFree(int[] pos) {
-        return !index.containsKey(CubeIndexer.getId(pos[0], pos[1], pos[2]));
+        return voxelPositionFree(pos[0], pos[1], pos[2]);
     }
 
     // check position by using another voxel
     public boolean voxelPositionFree(Voxel voxel) {
-        return !index.containsKey(voxel.posId);
+        return voxelPositionFree(voxel.x, voxel.y, voxel.z);
     }
 
     // add a voxel iff that position is not already occupied
+    // (changes to the voxel object are written to the layer afterwards)
     public void addVoxel(Voxel voxel) {
+        ensureLoaded();
         assert voxelPositionFree(voxel);
-        indexVoxel(voxel);
-        voxelList.add(voxel);
+        if (engine.add(voxel.x, voxel.y, voxel.z, voxel.id, 0)) {
+            Chunk chunk = engine.getChunk(voxel.x, voxel.y, voxel.z);
+            store(chunk, chunk.find(voxel.x, voxel.y, voxel.z), voxel);
+            voxel.setLayer(this);
+        }
     }
 
     // set the color of a voxel
@@ -199,24 +298,43 @@ public final class VoxelLayer implements Serializable {
         voxel.setAlpha(alpha);
     }
 
-    // remove a voxel
+    // remove a voxel (the voxel object keeps its state)
     public final boolean removeVoxel(Voxel voxel) {
-        return voxelList.remove(voxel) && unindexVoxel(voxel);
+        ensureLoaded();
+        Chunk chunk = engine.getChunk(voxel.x, voxel.y, voxel.z);
+        int slot = chunk == null ? -1 : chunk.find(voxel.x, voxel.y, voxel.z);
+        if (slot == -1 || chunk.getId(slot) != voxel.id) {
+            return false;
+        }
+        engine.delete(voxel.x, voxel.y, voxel.z);
+        voxel.setLayer(null);
+        return true;
     }
 
     // get all voxels of this layer
     public final Voxel[] getVoxels() {
-        Voxel[] result = new Voxel[voxelList.size()];
-        voxelList.toArray(result);
+        ensureLoaded();
+        final Voxel[] result = new Voxel[engine.size()];
+        engine.visit(new Engine.SlotVisitor() {
+            private int i = 0;
+            @Override
+            public void visit(Chunk chunk, int slot) {
+                result[i++] = createVoxel(chunk, slot);
+            }
+        });
         return result;
     }
 
     // get all voxel colors of this layer
     public final TIntHashSet getVoxelColors() {
-        TIntHashSet result = new TIntHashSet();
-        for (Voxel voxel : voxelList) {
-            result.add(voxel.getColor().getRGB());
-        }
+        ensureLoaded();
+        final TIntHashSet result = new TIntHashSet();
+        engine.visit(new Engine.SlotVisitor() {
+            @Override
+            public void visit(Chunk chunk, int slot) {
+                result.add(chunk.getColor(slot));
+            }
+        });
         return result;
     }
 
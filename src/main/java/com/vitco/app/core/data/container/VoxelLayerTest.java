@@ -0,0 +1,105 @@
+package com.vitco.app.core.data.container;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Test that the voxel layer indices stay consistent when adding and removing voxels.
+ */
+public class VoxelLayerTest {
+
+    // helper - check that the planes contain exactly the expected voxels
+    private static void checkPlanes(VoxelLayer layer, ArrayList<Voxel> expected, int range) {
+        for (int plane = -range; plane <= range; plane++) {
+            HashSet<Integer> x = new HashSet<Integer>();
+            HashSet<Integer> y = new HashSet<Integer>();
+            HashSet<Integer> z = new HashSet<Integer>();
+            for (Voxel voxel : expected) {
+                if (voxel.x == plane) x.add(voxel.id);
+                if (voxel.y == plane) y.add(voxel.id);
+                if (voxel.z == plane) z.add(voxel.id);
+            }
+            Voxel[] planeX = layer.getXPlane(plane);
+            Voxel[] planeY = layer.getYPlane(plane);
+            Voxel[] planeZ = layer.getZPlane(plane);
+            assert planeX.length == x.size();
+            assert planeY.length == y.size();
+            assert planeZ.length == z.size();
+            for (Voxel voxel : planeX) assert x.contains(voxel.id) && voxel.x == plane;
+            for (Voxel voxel : planeY) assert y.contains(voxel.id) && voxel.y == plane;
+            for (Voxel voxel : planeZ) assert z.contains(voxel.id) && voxel.z == plane;
+        }
+    }
+
+    @Test
+    public void testRandomAddRemove() throws Exception {
+        Random rand = new Random(1234);
+        int range = 6;
+        VoxelLayer layer = new VoxelLayer(0, "test");
+        ArrayList<Voxel> expected = new ArrayList<Voxel>();
+        int id = 0;
+        for (int i = 0; i < 5000; i++) {
+            if (rand.nextInt(3) > 0 || expected.isEmpty()) {
+                int[] pos = new int[] {
+                        rand.nextInt(range * 2 + 1) - range,
+                        rand.nextInt(range * 2 + 1) - range,
+                        rand.nextInt(range * 2 + 1) - range
+                };
+                if (layer.voxelPositionFree(pos)) {
+                    Voxel voxel = new Voxel(id++, pos, Color.RED, false, null, 0);
+                    layer.addVoxel(voxel);
+                    expected.add(voxel);
+                }
+            } else {
+                Voxel voxel = expected.remove(rand.nextInt(expected.size()));
+                assert layer.removeVoxel(voxel);
+                assert !layer.removeVoxel(voxel);
+                assert layer.voxelPositionFree(voxel);
+            }
+            if (i % 500 == 0) {
+                checkPlanes(layer, expected, range);
+            }
+        }
+        assert layer.getSize() == expected.size();
+        for (Voxel voxel : expected) {
+            assert layer.search(voxel).id == voxel.id;
+        }
+        checkPlanes(layer, expected, range);
+    }
+
+    @Test
+    public void testVoxelViews() throws Exception {
+        VoxelLayer layer = new VoxelLayer(0, "test");
+        Voxel added = new Voxel(1, new int[] {3, -40, 7}, Color.RED, false, null, 0);
+        layer.addVoxel(added);
+        // changes to the added voxel and to the returned voxels are stored
+        added.setAlpha(100);
+        Voxel view = layer.search(new int[] {3, -40, 7});
+        assert view != added && view.id == 1;
+        assert view.getColor() == Color.RED && view.getAlpha() == 100;
+        view.setColor(Color.BLUE);
+        view.setTexture(new int[] {1, 2, 3, 4, 5, 6});
+        view.rotate(2);
+        view.flip(3);
+        Voxel other = layer.search(view);
+        assert other.getColor() == Color.BLUE;
+        assert Arrays.equals(other.getTexture(), new int[] {1, 2, 3, 4, 5, 6});
+        assert Arrays.equals(other.getRotation(), new int[] {0, 0, 1, 0, 0, 0});
+        assert Arrays.equals(other.getFlip(), new boolean[] {false, false, false, true, false, false});
+        // the removed voxel keeps its state, but changes are no longer stored
+        assert layer.removeVoxel(view);
+        assert view.getColor() == Color.BLUE;
+        layer.addVoxel(new Voxel(2, new int[] {3, -40, 7}, Color.GREEN, false, null, 0));
+        view.setColor(Color.YELLOW);
+        other.setColor(Color.YELLOW);
+        assert !layer.removeVoxel(other);
+        Voxel replaced = layer.search(view);
+        assert replaced.id == 2 && replaced.getColor() == Color.GREEN && replaced.getTexture() == null;
+    }
+
+}
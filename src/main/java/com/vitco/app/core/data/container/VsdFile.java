@@ -0,0 +1,588 @@
+package com.vitco.app.core.data.container;
+
+import com.vitco.app.low.CubeIndexer;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary (version 2) vsd file format.
+ *
+ * The file consists of a header followed by sections. Every section has a tag, a flag byte
+ * (deflate compressed or not), the raw length and the stored length. Voxel are stored
+ * per layer in columns (ids, position ids, colors, ...), textures as png blobs and the
+ * (small) animation data as serialized objects.
+ */
+final class VsdFile {
+
+    // identifies the binary format ("VSD2")
+    static final int MAGIC = 0x56534432;
+    // current version of the binary format
+    // (version 2 added the highest voxel id to the layer directory)
+    private static final int VERSION = 2;
+
+    // section tags
+    static final int SECTION_END = 0;
+    static final int SECTION_META = 1;
+    static final int SECTION_TEXTURE = 2;
+    static final int SECTION_LAYERS = 3;
+    static final int SECTION_VOXELS = 4;
+    static final int SECTION_ANIMATION = 5;
+
+    // section flags
+    static final byte FLAG_DEFLATE = 1;
+
+    // size of a section header (tag, flags, raw length, stored length)
+    static final int SECTION_HEADER_SIZE = 13;
+
+    // voxel block flags (which optional columns are present)
+    private static final byte COLUMN_ALPHA = 1;
+    private static final byte COLUMN_TEXTURE = 2;
+    private static final byte COLUMN_ROTATION = 4;
+    private static final byte COLUMN_FLIP = 8;
+
+    private VsdFile() {}
+
+    // ====================
+    // writing
+
+    // write a section to the channel
+    private static void writeSection(FileChannel channel, int tag, ByteArrayOutputStream content, boolean deflate) throws IOException {
+        byte[] raw = content.toByteArray();
+        byte[] stored = raw;
+        int storedLength = raw.length;
+        if (deflate) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            deflater.setInput(raw);
+            deflater.finish();
+            stored = new byte[Math.max(64, raw.length + raw.length / 1000 + 64)];
+            storedLength = 0;
+            while (!deflater.finished()) {
+                if (storedLength == stored.length) {
+                    byte[] tmp = new byte[stored.length * 2];
+                    System.arraycopy(stored, 0, tmp, 0, storedLength);
+                    stored = tmp;
+                }
+                storedLength += deflater.deflate(stored, storedLength, stored.length - storedLength);
+            }
+            deflater.end();
+        }
+        ByteBuffer header = ByteBuffer.allocate(SECTION_HEADER_SIZE);
+        header.putInt(tag).put(deflate ? FLAG_DEFLATE : 0).putInt(raw.length).putInt(storedLength);
+        header.flip();
+        writeFully(channel, header);
+        writeFully(channel, ByteBuffer.wrap(stored, 0, storedLength));
+    }
+
+    // helper - read a part of the file into a heap buffer
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of vsd file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // helper - make sure the buffer is written completely
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // helper - write an int column
+    private static void writeColumn(DataOutputStream out, int[] column, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length * 4);
+        buffer.asIntBuffer().put(column, 0, length);
+        out.write(buffer.array());
+    }
+
+    // write the voxel of a layer as columns
+    private static ByteArrayOutputStream encodeVoxels(VoxelLayer layer) throws IOException {
+        Voxel[] voxels = layer.getVoxels();
+        int count = voxels.length;
+        int[] ids = new int[count];
+        int[] positions = new int[count];
+        int[] colors = new int[count];
+        int[] alpha = new int[count];
+        byte flags = 0;
+        int textured = 0;
+        int rotated = 0;
+        int flipped = 0;
+        for (int i = 0; i < count; i++) {
+            Voxel voxel = voxels[i];
+            ids[i] = voxel.id;
+            positions[i] = voxel.posId;
+            colors[i] = voxel.getColor().getRGB();
+            alpha[i] = voxel.getAlpha();
+            if (alpha[i] != -1) {
+                flags |= COLUMN_ALPHA;
+            }
+            if (voxel.getTexture() != null) {
+                flags |= COLUMN_TEXTURE;
+                textured++;
+            }
+            if (voxel.getRotation() != null) {
+                flags |= COLUMN_ROTATION;
+                rotated++;
+            }
+            if (voxel.getFlip() != null) {
+                flags |= COLUMN_FLIP;
+                flipped++;
+            }
+        }
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream(count * 12 + 16);
+        DataOutputStream out = new DataOutputStream(content);
+        out.writeInt(layer.id);
+        out.writeInt(count);
+        out.writeByte(flags);
+        writeColumn(out, ids, count);
+        writeColumn(out, positions, count);
+        writeColumn(out, colors, count);
+        if ((flags & COLUMN_ALPHA) != 0) {
+            writeColumn(out, alpha, count);
+        }
+        // the sparse columns store the index of the voxel followed by the values
+        if ((flags & COLUMN_TEXTURE) != 0) {
+            out.writeInt(textured);
+            for (int i = 0; i < count; i++) {
+                int[] texture = voxels[i].getTexture();
+                if (texture != null) {
+                    out.writeInt(i);
+                    for (int side = 0; side < 6; side++) {
+                        out.writeInt(texture[side]);
+                    }
+                }
+            }
+        }
+        if ((flags & COLUMN_ROTATION) != 0) {
+            out.writeInt(rotated);
+            for (int i = 0; i < count; i++) {
+                int[] rotation = voxels[i].getRotation();
+                if (rotation != null) {
+                    out.writeInt(i);
+                    for (int side = 0; side < 6; side++) {
+                        out.writeByte(rotation[side]);
+                    }
+                }
+            }
+        }
+        if ((flags & COLUMN_FLIP) != 0) {
+            out.writeInt(flipped);
+            for (int i = 0; i < count; i++) {
+                boolean[] flip = voxels[i].getFlip();
+                if (flip != null) {
+                    out.writeInt(i);
+                    int mask = 0;
+                    for (int side = 0; side < 6; side++) {
+                        if (flip[side]) {
+                            mask |= 1 << side;
+                        }
+                    }
+                    out.writeByte(mask);
+                }
+            }
+        }
+        out.flush();
+        return content;
+    }
+
+    // write a texture as png
+    private static ByteArrayOutputStream encodeTexture(int textureId, ImageIcon texture) throws IOException {
+        BufferedImage image = new BufferedImage(
+                texture.getIconWidth(), texture.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.drawImage(texture.getImage(), 0, 0, null);
+        g2.dispose();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream(png.size() + 8);
+        DataOutputStream out = new DataOutputStream(content);
+        out.writeInt(textureId);
+        out.writeInt(png.size());
+        png.writeTo(out);
+        out.flush();
+        return content;
+    }
+
+    // write the data container to the channel
+    static void write(DataContainer container, FileChannel channel, boolean deflate) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        writeFully(channel, header);
+
+        // general information
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        out.writeInt(container.selectedTexture);
+        out.writeInt(container.selectedLayer);
+        out.writeInt(container.activeFrame);
+        out.flush();
+        writeSection(channel, SECTION_META, content, false);
+
+        // textures (png is already compressed)
+        if (container.textures != null) {
+            for (Integer textureId : container.textures.keySet()) {
+                writeSection(channel, SECTION_TEXTURE, encodeTexture(textureId, container.textures.get(textureId)), false);
+            }
+        }
+
+        // layer directory (in layer order)
+        content = new ByteArrayOutputStream();
+        out = new DataOutputStream(content);
+        out.writeInt(container.layerOrder.size());
+        for (Integer layerId : container.layerOrder) {
+            VoxelLayer layer = container.layers.get(layerId);
+            out.writeInt(layer.id);
+            out.writeUTF(layer.getName());
+            out.writeBoolean(layer.isVisible());
+            out.writeInt(layer.getSize());
+            int maxVoxelId = layer.getPendingMaxVoxelId();
+            for (Voxel voxel : layer.getVoxels()) {
+                maxVoxelId = Math.max(maxVoxelId, voxel.id);
+            }
+            out.writeInt(maxVoxelId);
+        }
+        out.flush();
+        writeSection(channel, SECTION_LAYERS, content, false);
+
+        // voxel blocks
+        for (Integer layerId : container.layerOrder) {
+            writeSection(channel, SECTION_VOXELS, encodeVoxels(container.layers.get(layerId)), deflate);
+        }
+
+        // animation data
+        content = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(content);
+        objectOut.writeObject(container.points);
+        objectOut.writeObject(container.lines);
+        objectOut.writeObject(container.pointsToLines);
+        objectOut.writeObject(container.frames);
+        objectOut.flush();
+        writeSection(channel, SECTION_ANIMATION, content, deflate);
+
+        writeSection(channel, SECTION_END, new ByteArrayOutputStream(), false);
+    }
+
+    // ====================
+    // reading
+
+    // true iff the file starts with the binary format identifier
+    static boolean isBinary(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.length() >= 8 && raf.readInt() == MAGIC;
+        } finally {
+            raf.close();
+        }
+    }
+
+    // helper - copy the remaining content of a buffer
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    // read the content of a section (decompressed)
+    static ByteBuffer readSection(ByteBuffer stored, byte flags, int rawLength) throws IOException {
+        if ((flags & FLAG_DEFLATE) == 0) {
+            return stored;
+        }
+        byte[] compressed = toBytes(stored);
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int len = inflater.inflate(raw, read, rawLength - read);
+                if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += len;
+            }
+            if (read != rawLength) {
+                throw new IOException("Corrupted vsd section.");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted vsd section.", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    // helper - read an int column
+    private static int[] readColumn(ByteBuffer buffer, int length) {
+        int[] result = new int[length];
+        buffer.asIntBuffer().get(result);
+        buffer.position(buffer.position() + length * 4);
+        return result;
+    }
+
+    // helper - read a string that was written with writeUTF
+    private static String readUTF(ByteBuffer buffer) throws IOException {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length + 2];
+        bytes[0] = (byte) (length >> 8);
+        bytes[1] = (byte) length;
+        buffer.get(bytes, 2, length);
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+
+    // decode a voxel block (does not modify any shared data, so blocks can be decoded concurrently)
+    static Voxel[] decodeVoxels(ByteBuffer buffer) {
+        int layerId = buffer.getInt();
+        int count = buffer.getInt();
+        byte flags = buffer.get();
+        int[] ids = readColumn(buffer, count);
+        int[] positions = readColumn(buffer, count);
+        int[] colors = readColumn(buffer, count);
+        int[] alpha = (flags & COLUMN_ALPHA) != 0 ? readColumn(buffer, count) : null;
+        int[][] textures = new int[count][];
+        if ((flags & COLUMN_TEXTURE) != 0) {
+            for (int i = 0, len = buffer.getInt(); i < len; i++) {
+                int index = buffer.getInt();
+                textures[index] = new int[6];
+                for (int side = 0; side < 6; side++) {
+                    textures[index][side] = buffer.getInt();
+                }
+            }
+        }
+
+        // create the voxel
+        Voxel[] voxels = new Voxel[count];
+        TIntObjectHashMap<Color> colorCache = new TIntObjectHashMap<Color>();
+        for (int i = 0; i < count; i++) {
+            Color color = colorCache.get(colors[i]);
+            if (color == null) {
+                color = new Color(colors[i], true);
+                colorCache.put(colors[i], color);
+            }
+            short[] pos = CubeIndexer.getPos(positions[i]);
+            Voxel voxel = new Voxel(ids[i], new int[] {pos[0], pos[1], pos[2]}, color, false, textures[i], layerId);
+            if (alpha != null) {
+                voxel.setAlpha(alpha[i]);
+            }
+            voxels[i] = voxel;
+        }
+
+        // restore texture orientation
+        if ((flags & COLUMN_ROTATION) != 0) {
+            for (int i = 0, len = buffer.getInt(); i < len; i++) {
+                Voxel voxel = voxels[buffer.getInt()];
+                for (int side = 0; side < 6; side++) {
+                    for (int r = buffer.get(); r > 0; r--) {
+                        voxel.rotate(side);
+                    }
+                }
+            }
+        }
+        if ((flags & COLUMN_FLIP) != 0) {
+            for (int i = 0, len = buffer.getInt(); i < len; i++) {
+                Voxel voxel = voxels[buffer.getInt()];
+                int mask = buffer.get();
+                for (int side = 0; side < 6; side++) {
+                    if ((mask & (1 << side)) != 0) {
+                        voxel.flip(side);
+                    }
+                }
+            }
+        }
+
+        return voxels;
+    }
+
+    // add decoded voxel to the layer (and the voxel index)
+    static void addVoxels(VoxelLayer layer, TIntLongHashMap voxelIndex, Voxel[] voxels) {
+        for (Voxel voxel : voxels) {
+            DataContainer.indexVoxel(voxelIndex, voxel);
+            layer.addVoxel(voxel);
+        }
+    }
+
+    // a voxel block that is only decoded once the layer is accessed
+    private static final class PendingBlock implements VoxelLayer.VoxelLoader {
+        private final byte[] stored;
+        private final byte flags;
+        private final int rawLength;
+        private final TIntLongHashMap voxelIndex;
+
+        private PendingBlock(byte[] stored, byte flags, int rawLength, TIntLongHashMap voxelIndex) {
+            this.stored = stored;
+            this.flags = flags;
+            this.rawLength = rawLength;
+            this.voxelIndex = voxelIndex;
+        }
+
+        @Override
+        public Voxel[] decode(VoxelLayer layer) {
+            try {
+                return decodeVoxels(readSection(ByteBuffer.wrap(stored), flags, rawLength));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load the voxel of layer \"" + layer.getName() + "\".", e);
+            }
+        }
+
+        @Override
+        public void install(VoxelLayer layer, Voxel[] voxels) {
+            addVoxels(layer, voxelIndex, voxels);
+        }
+    }
+
+    // decode the layer directory (returns the voxel count and the highest voxel id of the layers in layer order)
+    static int[][] decodeLayers(ByteBuffer buffer, int version, HashMap<Integer, VoxelLayer> layers, ArrayList<Integer> layerOrder) throws IOException {
+        int count = buffer.getInt();
+        int[][] result = new int[count][];
+        for (int i = 0; i < count; i++) {
+            VoxelLayer layer = new VoxelLayer(buffer.getInt(), readUTF(buffer));
+            layer.setVisible(buffer.get() != 0);
+            int voxelCount = buffer.getInt();
+            // the highest voxel id is unknown for old files
+            int maxVoxelId = version >= 2 ? buffer.getInt() : Integer.MAX_VALUE;
+            result[i] = new int[] {voxelCount, maxVoxelId};
+            layers.put(layer.id, layer);
+            layerOrder.add(layer.id);
+        }
+        return result;
+    }
+
+    // read the file into the temporary data
+    // The sections are read into heap buffers (the file is not kept open or mapped). Visible
+    // layers are decoded concurrently, hidden layers keep their (compressed) block and are
+    // decoded later (see VoxelLayer.VoxelLoader).
+    @SuppressWarnings("unchecked")
+    static void read(FileChannel channel, DataContainer.TmpData tmpData) throws IOException, ClassNotFoundException {
+        long size = channel.size();
+        if (size < 8) {
+            return;
+        }
+        ByteBuffer header = readFully(channel, 0, 8);
+        if (header.getInt() != MAGIC) {
+            return;
+        }
+        int version = header.getInt();
+        if (version > VERSION) {
+            throw new IOException("The vsd file was written by a newer version (format version " + version + ").");
+        }
+        long position = 8;
+
+        // voxel count and highest voxel id of the layers (in layer order)
+        int[][] layerInfo = new int[0][];
+        int voxelSection = 0;
+        // the voxel blocks of visible layers that are being decoded
+        ArrayList<Integer> decodedLayers = new ArrayList<Integer>();
+        ArrayList<Future<Voxel[]>> decodedVoxels = new ArrayList<Future<Voxel[]>>();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            while (true) {
+                if (size - position < SECTION_HEADER_SIZE) {
+                    throw new EOFException("Unexpected end of vsd file.");
+                }
+                ByteBuffer sectionHeader = readFully(channel, position, SECTION_HEADER_SIZE);
+                position += SECTION_HEADER_SIZE;
+                int tag = sectionHeader.getInt();
+                final byte flags = sectionHeader.get();
+                final int rawLength = sectionHeader.getInt();
+                int storedLength = sectionHeader.getInt();
+                if (tag == SECTION_END) {
+                    break;
+                }
+                if (storedLength < 0 || storedLength > size - position) {
+                    throw new EOFException("Unexpected end of vsd file.");
+                }
+                ByteBuffer stored = readFully(channel, position, storedLength);
+                position += storedLength;
+                switch (tag) {
+                    case SECTION_META:
+                        stored = readSection(stored, flags, rawLength);
+                        tmpData.selectedTexture = stored.getInt();
+                        tmpData.selectedLayer = stored.getInt();
+                        tmpData.activeFrame = stored.getInt();
+                        break;
+                    case SECTION_TEXTURE:
+                        stored = readSection(stored, flags, rawLength);
+                        int textureId = stored.getInt();
+                        int pngLength = stored.getInt();
+                        if (pngLength < 0 || pngLength > stored.remaining()) {
+                            throw new IOException("Corrupted vsd texture section.");
+                        }
+                        byte[] png = new byte[pngLength];
+                        stored.get(png);
+                        // null if the image can not be decoded
+                        BufferedImage texture = ImageIO.read(new ByteArrayInputStream(png));
+                        if (texture == null) {
+                            throw new IOException("Corrupted vsd texture section.");
+                        }
+                        tmpData.textures.put(textureId, new ImageIcon(texture));
+                        break;
+                    case SECTION_LAYERS:
+                        layerInfo = decodeLayers(readSection(stored, flags, rawLength), version, tmpData.layers, tmpData.layerOrder);
+                        break;
+                    case SECTION_VOXELS:
+                        // the voxel blocks are stored in layer order
+                        int layerId = tmpData.layerOrder.get(voxelSection);
+                        int[] info = layerInfo[voxelSection++];
+                        VoxelLayer layer = tmpData.layers.get(layerId);
+                        if (layer.isVisible() || info[1] == Integer.MAX_VALUE) {
+                            final ByteBuffer block = stored;
+                            decodedLayers.add(layerId);
+                            decodedVoxels.add(executor.submit(new Callable<Voxel[]>() {
+                                @Override
+                                public Voxel[] call() throws Exception {
+                                    return decodeVoxels(readSection(block, flags, rawLength));
+                                }
+                            }));
+                        } else {
+                            // keep the (compressed) block until the layer is loaded
+                            layer.setPending(new PendingBlock(stored.array(), flags, rawLength, tmpData.voxels), info[0], info[1]);
+                        }
+                        break;
+                    case SECTION_ANIMATION:
+                        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                                toBytes(readSection(stored, flags, rawLength))));
+                        tmpData.points = (HashMap<Integer, ExtendedVector>) in.readObject();
+                        tmpData.lines = (HashMap<String, ExtendedLine>) in.readObject();
+                        tmpData.pointsToLines = (HashMap<Integer, ArrayList<ExtendedLine>>) in.readObject();
+                        tmpData.frames = (HashMap<Integer, Frame>) in.readObject();
+                        break;
+                    default: break; // unknown sections are skipped
+                }
+            }
+
+            // add the decoded voxel to their layers
+            for (int i = 0; i < decodedLayers.size(); i++) {
+                try {
+                    addVoxels(tmpData.layers.get(decodedLayers.get(i)), tmpData.voxels, decodedVoxels.get(i).get());
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Loading of the vsd file was interrupted.");
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to decode the vsd file.", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        tmpData.result = true;
+    }
+}
@@ -0,0 +1,200 @@
+package com.vitco.app.core.data.container;
+
+import com.vitco.app.core.data.Data;
+import com.vitco.app.settings.VitcoSettings;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test that the binary vsd format restores the data.
+ */
+public class VsdFileTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Random rand = new Random(7);
+        Data data = new Data();
+        // add a texture
+        BufferedImage texture = new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB);
+        texture.setRGB(3, 4, Color.RED.getRGB());
+        data.addTexture(texture);
+        // fill two layers
+        int hidden = data.createLayer("hidden");
+        data.setVisible(hidden, false);
+        for (Integer layerId : data.getLayers()) {
+            data.selectLayer(layerId);
+            for (int i = 0; i < 2000; i++) {
+                data.addVoxel(new Color(rand.nextInt(0xFFFFFF)), null,
+                        new int[] {rand.nextInt(40) - 20, rand.nextInt(40) - 20, rand.nextInt(40) - 20});
+            }
+        }
+        Voxel textured = data.getLayerVoxels(data.getSelectedLayer())[0];
+        data.setTexture(textured.id, 2, data.getTextureList()[0]);
+        data.rotateVoxelTexture(textured.id, 2);
+        data.flipVoxelTexture(textured.id, 2);
+        data.setAlpha(textured.id, 77);
+
+        File file = File.createTempFile("vsd2-test", ".vsd");
+        file.deleteOnExit();
+        assert data.saveToFile(file);
+        assert VsdFile.isBinary(file);
+
+        Data loaded = new Data();
+        assert loaded.loadFromFile(file);
+
+        assert Arrays.equals(data.getLayers(), loaded.getLayers());
+        assert Arrays.equals(data.getLayerNames(), loaded.getLayerNames());
+        assert data.getSelectedLayer() == loaded.getSelectedLayer();
+        assert data.getTextureHash(data.getTextureList()[0]).equals(loaded.getTextureHash(loaded.getTextureList()[0]));
+        for (Integer layerId : data.getLayers()) {
+            assert data.getLayerVisible(layerId) == loaded.getLayerVisible(layerId);
+            Voxel[] voxels = data.getLayerVoxels(layerId);
+            assert voxels.length == loaded.getVoxelCount(layerId);
+            // (decodes hidden layers)
+            assert voxels.length == loaded.getLayerVoxels(layerId).length;
+            for (Voxel voxel : voxels) {
+                Voxel other = loaded.getVoxel(voxel.id);
+                assert other != null;
+                assert other.posId == voxel.posId;
+                assert other.getLayerId() == voxel.getLayerId();
+                assert other.getColor().equals(voxel.getColor());
+                assert other.getAlpha() == voxel.getAlpha();
+                assert Arrays.equals(other.getTexture(), voxel.getTexture());
+                assert Arrays.equals(other.getRotation(), voxel.getRotation());
+                assert Arrays.equals(other.getFlip(), voxel.getFlip());
+            }
+        }
+    }
+
+    @Test
+    public void testLazyHiddenLayer() throws Exception {
+        Data data = new Data();
+        int hidden = data.createLayer("hidden");
+        data.selectLayer(hidden);
+        for (int i = 0; i < 100; i++) {
+            data.addVoxel(Color.RED, null, new int[] {i, 0, 0});
+        }
+        data.setVisible(hidden, false);
+        File file = File.createTempFile("vsd2-lazy-test", ".vsd");
+        file.deleteOnExit();
+        assert data.saveToFile(file);
+
+        Data loaded = new Data();
+        assert loaded.loadFromFile(file);
+        assert loaded.getVoxelCount(hidden) == 100;
+        // new voxel ids must not collide with the ids of the hidden layer
+        int visible = loaded.createLayer("visible");
+        loaded.selectLayer(visible);
+        int id = loaded.addVoxel(Color.BLUE, null, new int[] {0, 5, 0});
+        for (Voxel voxel : data.getLayerVoxels(hidden)) {
+            assert voxel.id != id;
+        }
+        // the hidden layer is decoded on access (or in the background)
+        assert loaded.getLayerVoxels(hidden).length == 100;
+        assert loaded.getVoxel(data.getLayerVoxels(hidden)[0].id) != null;
+        assert loaded.getVoxel(id).getColor().equals(Color.BLUE);
+    }
+
+    @Test
+    public void testBackgroundLoading() throws Exception {
+        Data data = new Data();
+        int hidden = data.createLayer("hidden");
+        data.selectLayer(hidden);
+        for (int i = 0; i < 100; i++) {
+            data.addVoxel(Color.RED, null, new int[] {i, 0, 0});
+        }
+        data.setVisible(hidden, false);
+        int voxelId = data.getLayerVoxels(hidden)[0].id;
+        File file = File.createTempFile("vsd2-background-test", ".vsd");
+        file.deleteOnExit();
+        assert data.saveToFile(file);
+
+        // the hidden layer is loaded without accessing it
+        Data loaded = new Data();
+        assert loaded.loadFromFile(file);
+        long time = System.currentTimeMillis();
+        while (loaded.getVoxel(voxelId) == null) {
+            assert System.currentTimeMillis() - time < 10000;
+            Thread.sleep(10);
+        }
+        assert loaded.getVoxelCount(hidden) == 100;
+        assert loaded.getLayerVoxels(hidden).length == 100;
+
+        // once the layers are loaded, queries only use the read lock (and can be nested in it)
+        VitcoSettings.DATA_LOCK.readLock().lock();
+        try {
+            assert loaded.getVoxel(voxelId) != null;
+            assert !VitcoSettings.DATA_LOCK.isWriteLockedByCurrentThread();
+        } finally {
+            VitcoSettings.DATA_LOCK.readLock().unlock();
+        }
+    }
+
+    @Test
+    public void testNewerVersion() throws Exception {
+        Data data = new Data();
+        data.addVoxel(Color.RED, null, new int[] {0, 0, 0});
+        File file = File.createTempFile("vsd2-version-test", ".vsd");
+        file.deleteOnExit();
+        assert data.saveToFile(file);
+        // change the version of the file
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(4);
+            raf.writeInt(99);
+            // reading the file must fail with a clear message
+            try {
+                VsdFile.read(raf.getChannel(), new DataContainer.TmpData());
+                assert false;
+            } catch (IOException e) {
+                assert e.getMessage().contains("newer version");
+            }
+        } finally {
+            raf.close();
+        }
+        // the file can be overwritten after reading it
+        assert data.saveToFile(file);
+        assert new Data().loadFromFile(file);
+    }
+
+    @Test
+    public void testCorruptTexture() throws Exception {
+        Data data = new Data();
+        data.addTexture(new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB));
+        data.addVoxel(Color.RED, null, new int[] {0, 0, 0});
+        File file = File.createTempFile("vsd2-texture-test", ".vsd");
+        file.deleteOnExit();
+        assert data.saveToFile(file);
+        // overwrite the signature of the png (the texture section is stored uncompressed)
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            byte[] content = new byte[(int) raf.length()];
+            raf.readFully(content);
+            int signature = -1;
+            for (int i = 0; i < content.length - 3 && signature == -1; i++) {
+                if (content[i] == (byte) 0x89 && content[i + 1] == 'P' && content[i + 2] == 'N' && content[i + 3] == 'G') {
+                    signature = i;
+                }
+            }
+            assert signature != -1;
+            raf.seek(signature);
+            raf.write(new byte[8]);
+            // reading the file must fail as a format error
+            try {
+                VsdFile.read(raf.getChannel(), new DataContainer.TmpData());
+                assert false;
+            } catch (IOException e) {
+                assert e.getMessage().contains("texture");
+            }
+        } finally {
+            raf.close();
+        }
+    }
+}
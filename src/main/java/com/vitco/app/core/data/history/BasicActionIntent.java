@@ -1,9 +1,14 @@
 package com.vitco.app.core.data.history;
 
+import java.io.IOException;
+
 /**
  * Base intent that allows to specify actions further.
  */
 public abstract class BasicActionIntent {
+    // estimated memory used by a simple intent (in bytes)
+    protected static final long DEFAULT_MEMORY_SIZE = 128;
+
     // true if this is the first time apply is called
     private boolean first_call = true;
     // true if this intent is attached to surrounding intents
@@ -35,4 +40,16 @@ public abstract class BasicActionIntent {
 
     // action to be defined by child class
     protected abstract void unapplyAction();
+
+    // estimated memory used by this intent (in bytes)
+    public long getMemorySize() {
+        return DEFAULT_MEMORY_SIZE;
+    }
+
+    // move the data of this intent to the spill file (if supported), the data
+    // needs to be loaded again when the intent is applied or unapplied
+    // returns the amount of bytes written to the file
+    public long spill(HistorySpillFile file) throws IOException {
+        return 0;
+    }
 }
@@ -1,9 +1,14 @@
 package com.vitco.app.core.data.history;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
  * Manages BasicActionIntents. History manager.
+ *
+ * The history can be given a memory budget. If it is exceeded, the data of the oldest intents
+ * is moved to a temporary file (if a spill budget is set) and afterwards the oldest groups of
+ * intents are removed (they can no longer be undone).
  */
 public class HistoryManager<T extends BasicActionIntent> {
 
@@ -11,14 +16,41 @@ public class HistoryManager<T extends BasicActionIntent> {
     private int historyPosition = -1;
     private ArrayList<T> history = new ArrayList<T>();
 
+    // estimated memory used by the history (in bytes)
+    private long memoryUsage = 0;
+    private long memoryBudget = Long.MAX_VALUE;
+    // maximum size of the spill file (zero disables spilling)
+    private long spillBudget = 0;
+    private HistorySpillFile spillFile = null;
+
     public void clear() {
         if (frozen) {return;}
         historyPosition = -1;
         history = new ArrayList<T>();
+        memoryUsage = 0;
+        closeSpillFile();
         // invalidate the cache
         notifyListener(null);
     }
 
+    // set the memory budget of this history (in bytes)
+    public final void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        enforceBudget();
+    }
+
+    // set the maximum size of the temporary file that old history
+    // is moved to (in bytes), zero disables the file
+    public final void setSpillBudget(long spillBudget) {
+        this.spillBudget = spillBudget;
+        enforceBudget();
+    }
+
+    // estimated memory used by the history (in bytes)
+    public final long getMemoryUsage() {
+        return memoryUsage;
+    }
+
     public final boolean canUndo() {
         return !frozen && (historyPosition > -1);
     }
@@ -38,6 +70,10 @@ public class HistoryManager<T extends BasicActionIntent> {
     public final void setHistory(ArrayList<T> history) {
         if (frozen) {return;}
         this.history = new ArrayList<T>(history);
+        memoryUsage = 0;
+        for (T intent : history) {
+            memoryUsage += intent.getMemorySize();
+        }
     }
 
     public final void setHistoryPosition(int historyPosition) {
@@ -59,18 +95,23 @@ public class HistoryManager<T extends BasicActionIntent> {
             return;
         }
         // delete all "re-dos"
-        while (history.size() > historyPosition + 1) {
-            history.remove(historyPosition + 1);
+        if (history.size() > historyPosition + 1) {
+            for (int i = historyPosition + 1, len = history.size(); i < len; i++) {
+                memoryUsage -= history.get(i).getMemorySize();
+            }
+            history.subList(historyPosition + 1, history.size()).clear();
         }
         // apply the intent
         actionIntent.apply();
         historyPosition++;
         // and add it to the history
         history.add(actionIntent);
+        memoryUsage += actionIntent.getMemorySize();
         // invalidate the cache if the intent is not attached
         // (for the main intent)
         if (!actionIntent.attach) {
             notifyListener(actionIntent);
+            enforceBudget();
         }
     }
 
@@ -84,13 +125,14 @@ public class HistoryManager<T extends BasicActionIntent> {
         }
         if (history.size() > historyPosition + 1) { // we can still "redo"
             historyPosition++; // move one "up"
-            history.get(historyPosition).apply(); // redo action
+            applyTracked(history.get(historyPosition)); // redo action
             // make sure the attached histories are applied
             while (history.size() > historyPosition + 1 && history.get(historyPosition).attach) {
                 historyPosition++; // move one "up"
-                history.get(historyPosition).apply(); // redo action
+                applyTracked(history.get(historyPosition)); // redo action
             }
             notifyListener(history.get(historyPosition)); // ok
+            enforceBudget();
         }
 
     }
@@ -107,22 +149,85 @@ public class HistoryManager<T extends BasicActionIntent> {
             T mainAction = history.get(historyPosition);
             _unapply();
             notifyListener(mainAction);
+            enforceBudget();
         }
     }
 
     // helper
     private void _unapply() {
         if (historyPosition > -1) { // we can still undo
-            history.get(historyPosition).unapply(); // undo action
+            unapplyTracked(history.get(historyPosition)); // undo action
             historyPosition--; // move one "down"
             // make sure the attached histories are applied
             while (historyPosition > -1 && history.get(historyPosition).attach) {
-                history.get(historyPosition).unapply(); // undo action
+                unapplyTracked(history.get(historyPosition)); // undo action
                 historyPosition--; // move one "down"
             }
         }
     }
 
+    // helper - apply an intent that is already in the history
+    // (the memory changes if the data is loaded from the spill file)
+    private void applyTracked(T intent) {
+        long size = intent.getMemorySize();
+        intent.apply();
+        memoryUsage += intent.getMemorySize() - size;
+    }
+
+    // helper - unapply an intent that is in the history
+    private void unapplyTracked(T intent) {
+        long size = intent.getMemorySize();
+        intent.unapply();
+        memoryUsage += intent.getMemorySize() - size;
+    }
+
+    // make sure the history is within the memory budget, the data of the oldest intents
+    // is moved to the spill file first (if enabled), afterwards the oldest groups are removed
+    private void enforceBudget() {
+        if (frozen || memoryUsage <= memoryBudget) {
+            return;
+        }
+        for (int i = 0, len = history.size(); i < len && memoryUsage > memoryBudget
+                && spillBudget > 0 && (spillFile == null || spillFile.length() < spillBudget); i++) {
+            T intent = history.get(i);
+            long size = intent.getMemorySize();
+            try {
+                if (spillFile == null) {
+                    spillFile = new HistorySpillFile();
+                }
+                intent.spill(spillFile);
+            } catch (IOException e) {
+                // can not write the file, only remove old history from now on
+                spillBudget = 0;
+            }
+            memoryUsage += intent.getMemorySize() - size;
+        }
+        while (memoryUsage > memoryBudget) {
+            // find the end of the oldest group
+            int end = 0;
+            while (end < history.size() && history.get(end).attach) {
+                end++;
+            }
+            // the last applied group and groups that can be redone are never removed
+            if (end >= historyPosition) {
+                break;
+            }
+            for (int i = 0; i <= end; i++) {
+                memoryUsage -= history.get(i).getMemorySize();
+            }
+            history.subList(0, end + 1).clear();
+            historyPosition -= end + 1;
+        }
+    }
+
+    // helper - delete the spill file
+    private void closeSpillFile() {
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+        }
+    }
+
     private final ArrayList<HistoryChangeListener<T>> listeners
             = new ArrayList<HistoryChangeListener<T>>();
     public final void addChangeListener(HistoryChangeListener<T> hcl) {
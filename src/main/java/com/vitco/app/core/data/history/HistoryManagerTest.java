@@ -0,0 +1,156 @@
+package com.vitco.app.core.data.history;
+
+import com.vitco.app.core.data.container.DataContainer;
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.core.data.container.VoxelLayer;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Test the memory budget of the history and the voxel delta.
+ */
+public class HistoryManagerTest {
+
+    // intent that adds a value to a list and uses the given amount of memory
+    private static final class ListIntent extends BasicActionIntent {
+        private final ArrayList<Integer> list;
+        private final int value;
+        private final long size;
+
+        private ListIntent(ArrayList<Integer> list, int value, long size, boolean attach) {
+            super(attach);
+            this.list = list;
+            this.value = value;
+            this.size = size;
+        }
+
+        @Override
+        protected void applyAction() {
+            list.add(value);
+        }
+
+        @Override
+        protected void unapplyAction() {
+            list.remove(list.size() - 1);
+        }
+
+        @Override
+        public long getMemorySize() {
+            return size;
+        }
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        HistoryManager<BasicActionIntent> historyManager = new HistoryManager<BasicActionIntent>();
+        historyManager.setMemoryBudget(1000);
+        ArrayList<Integer> list = new ArrayList<Integer>();
+        for (int i = 0; i < 10; i++) {
+            // groups of two intents
+            historyManager.applyIntent(new ListIntent(list, i, 100, true));
+            historyManager.applyIntent(new ListIntent(list, i, 100, false));
+        }
+        // only the newest groups are kept
+        assert historyManager.getMemoryUsage() == 1000;
+        assert historyManager.getHistory().size() == 10;
+        assert historyManager.getHistoryPosition() == 9;
+        for (int i = 0; i < 5; i++) {
+            historyManager.unapply();
+        }
+        assert !historyManager.canUndo();
+        assert list.size() == 10;
+        // groups that can be redone are not removed
+        historyManager.applyIntent(new ListIntent(list, 10, 900, false));
+        assert list.size() == 11;
+        assert historyManager.getHistory().size() == 1;
+        assert historyManager.getMemoryUsage() == 900;
+        // the last group is always kept
+        historyManager.applyIntent(new ListIntent(list, 11, 2000, false));
+        assert historyManager.getHistory().size() == 1;
+        historyManager.unapply();
+        assert list.size() == 11;
+        assert !historyManager.canUndo();
+    }
+
+    // helper - create a container with one layer
+    private static DataContainer createContainer() {
+        DataContainer container = new DataContainer();
+        container.layers.put(0, new VoxelLayer(0, "layer"));
+        container.layerOrder.add(0);
+        return container;
+    }
+
+    // helper - describe the voxels of a container
+    private static String describe(DataContainer container) {
+        StringBuilder result = new StringBuilder();
+        for (int id = 0; id < 100; id++) {
+            Voxel voxel = container.getVoxel(id);
+            if (voxel != null) {
+                assert container.layers.get(voxel.getLayerId()).search(voxel).id == voxel.id;
+                result.append(id).append(":").append(voxel.getPosAsString()).append(",")
+                        .append(voxel.getColor().getRGB()).append(",").append(voxel.getAlpha()).append(",")
+                        .append(voxel.isSelected()).append(",")
+                        .append(Arrays.toString(voxel.getTexture())).append(",")
+                        .append(Arrays.toString(voxel.getRotation())).append(",")
+                        .append(Arrays.toString(voxel.getFlip())).append(";");
+            }
+        }
+        assert container.getVoxelCount() == container.layers.get(0).getSize();
+        return result.toString();
+    }
+
+    @Test
+    public void testVoxelDelta() throws Exception {
+        DataContainer container = createContainer();
+        VoxelDelta.Recorder recorder = new VoxelDelta.Recorder(container);
+        for (int i = 0; i < 10; i++) {
+            recorder.add(new Voxel(i, new int[] {i, -i, i * 2}, new Color(i * 20, 0, 0), i % 2 == 0, null, 0));
+        }
+        VoxelDelta add = recorder.finish();
+        String added = describe(container);
+
+        // change, move and remove voxels
+        recorder = new VoxelDelta.Recorder(container);
+        recorder.touch(1).setColor(Color.BLUE);
+        recorder.touch(2).setAlpha(100);
+        recorder.touch(3).setTexture(new int[] {1, 2, 3, 4, 5, 6});
+        container.getVoxel(3).rotate(2);
+        container.getVoxel(3).flip(4);
+        recorder.touch(4).setSelected(true);
+        recorder.remove(container.getVoxel(5));
+        Voxel voxel = container.getVoxel(6);
+        recorder.remove(voxel);
+        recorder.add(new Voxel(6, new int[] {5, -5, 10}, voxel.getColor(), false, null, 0));
+        recorder.add(new Voxel(20, new int[] {50, 50, 50}, Color.GREEN, false, null, 0));
+        VoxelDelta change = recorder.finish();
+        assert change.size() == 7;
+        String changed = describe(container);
+
+        HistorySpillFile file = new HistorySpillFile();
+        try {
+            for (int i = 0; i < 2; i++) {
+                change.revert(container);
+                assert describe(container).equals(added);
+                add.revert(container);
+                assert describe(container).equals("");
+                add.apply(container);
+                assert describe(container).equals(added);
+                change.apply(container);
+                assert describe(container).equals(changed);
+                // spill the data (it is loaded again when needed)
+                long memory = change.getMemorySize();
+                long written = change.spill(file);
+                // the data is only written once
+                assert i == 0 ? written > 0 : written == 0;
+                add.spill(file);
+                assert change.isSpilled();
+                assert change.getMemorySize() < memory;
+            }
+        } finally {
+            file.close();
+        }
+    }
+}
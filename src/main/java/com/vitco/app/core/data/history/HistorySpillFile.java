@@ -0,0 +1,58 @@
+package com.vitco.app.core.data.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Temporary file that holds history data that was moved out of memory.
+ *
+ * Data is only appended (a record is never rewritten). The file is deleted
+ * when it is closed or when the program exits.
+ */
+public final class HistorySpillFile {
+
+    private final File file;
+    private final RandomAccessFile data;
+    // current length of the file
+    private long length = 0;
+
+    public HistorySpillFile() throws IOException {
+        file = File.createTempFile("vitco-history", ".tmp");
+        file.deleteOnExit();
+        data = new RandomAccessFile(file, "rw");
+    }
+
+    // append a record, returns the offset of the record
+    public synchronized long write(byte[] bytes) throws IOException {
+        long offset = length;
+        data.seek(offset);
+        data.write(bytes);
+        length += bytes.length;
+        return offset;
+    }
+
+    // read a record
+    public synchronized byte[] read(long offset, int size) throws IOException {
+        byte[] result = new byte[size];
+        data.seek(offset);
+        data.readFully(result);
+        return result;
+    }
+
+    // the amount of bytes written to this file
+    public synchronized long length() {
+        return length;
+    }
+
+    // close and delete this file
+    public synchronized void close() {
+        try {
+            data.close();
+        } catch (IOException e) {
+            // nothing we can do
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
@@ -0,0 +1,390 @@
+package com.vitco.app.core.data.history;
+
+import com.vitco.app.core.data.container.DataContainer;
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.low.CubeIndexer;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Compact record of all the voxel changes of one action.
+ *
+ * For every changed voxel (id) the state before and after the action is stored in packed
+ * int arrays (position id, layer id, argb, alpha and flags).
+ * Arrays that are equal before and after the action (e.g. the positions if only the color
+ * changed) are stored once and textures are stored sparse. Applying or reverting the action
+ * is a single replay of these arrays.
+ *
+ * The arrays can be moved to a spill file, they are loaded again when they are needed.
+ */
+public final class VoxelDelta {
+
+    // the arrays of a state
+    private static final int POS = 0;
+    private static final int LAYER = 1;
+    private static final int ARGB = 2;
+    private static final int ALPHA = 3;
+    private static final int META = 4;
+    private static final int TEXTURED = 5; // entries with texture data (ascending)
+    private static final int TEXTURE_DATA = 6;
+    private static final int STATE_ARRAYS = 7;
+
+    // flags of the meta value
+    private static final int PRESENT = 1;
+    private static final int SELECTED = 1 << 1;
+    private static final int HAS_TEXTURE = 1 << 2;
+    private static final int HAS_ROTATION = 1 << 3;
+    private static final int HAS_FLIP = 1 << 4;
+    // texture data per entry (texture id, rotation and flip for all sides)
+    private static final int TEXTURE_STRIDE = 18;
+
+    // estimated memory used by the object and array headers
+    private static final long OVERHEAD = 256;
+
+    // amount of changed voxels
+    private final int size;
+    // the changed voxels and their states (null while spilled)
+    private int[] ids;
+    private int[][] before;
+    private int[][] after;
+
+    // location of the data in the spill file
+    private HistorySpillFile spillFile = null;
+    private long spillOffset;
+    private int spillSize;
+
+    private VoxelDelta(int[] ids, int[][] before, int[][] after) {
+        this.size = ids.length;
+        this.ids = ids;
+        this.before = before;
+        this.after = after;
+        // only store arrays once if they didn't change
+        for (int i = 0; i < STATE_ARRAYS; i++) {
+            if (Arrays.equals(before[i], after[i])) {
+                after[i] = before[i];
+            }
+        }
+    }
+
+    // the amount of changed voxels
+    public final int size() {
+        return size;
+    }
+
+    // ==================
+    // recording
+
+    // collects the state of voxels
+    private static final class StateBuilder {
+        private final TIntArrayList[] lists = new TIntArrayList[STATE_ARRAYS];
+        {
+            for (int i = 0; i < STATE_ARRAYS; i++) {
+                lists[i] = new TIntArrayList();
+            }
+        }
+
+        // add the state of a voxel (null if the voxel does not exist)
+        private void add(Voxel voxel) {
+            if (voxel == null) {
+                lists[POS].add(0);
+                lists[LAYER].add(0);
+                lists[ARGB].add(0);
+                lists[ALPHA].add(0);
+                lists[META].add(0);
+                return;
+            }
+            int entry = lists[POS].size();
+            int[] texture = voxel.getTexture();
+            int[] rotation = voxel.getRotation();
+            boolean[] flip = voxel.getFlip();
+            int meta = PRESENT;
+            if (voxel.isSelected()) {
+                meta |= SELECTED;
+            }
+            if (texture != null || rotation != null || flip != null) {
+                lists[TEXTURED].add(entry);
+                TIntArrayList data = lists[TEXTURE_DATA];
+                for (int side = 0; side < 6; side++) {
+                    data.add(texture == null ? 0 : texture[side]);
+                    data.add(rotation == null ? 0 : rotation[side]);
+                    data.add(flip == null || !flip[side] ? 0 : 1);
+                }
+                meta |= (texture != null ? HAS_TEXTURE : 0) | (rotation != null ? HAS_ROTATION : 0) | (flip != null ? HAS_FLIP : 0);
+            }
+            lists[POS].add(voxel.posId);
+            lists[LAYER].add(voxel.getLayerId());
+            lists[ARGB].add(voxel.getColor().getRGB());
+            lists[ALPHA].add(voxel.getAlpha());
+            lists[META].add(meta);
+        }
+
+        private int[][] build() {
+            int[][] result = new int[STATE_ARRAYS][];
+            for (int i = 0; i < STATE_ARRAYS; i++) {
+                result[i] = lists[i].toArray();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Records the changes of an action. All changes to the voxels need to be done
+     * through this recorder (or the voxel needs to be touched before it is changed).
+     */
+    public static final class Recorder {
+        private final DataContainer container;
+        private final TIntArrayList ids = new TIntArrayList();
+        private final TIntHashSet known = new TIntHashSet();
+        private final StateBuilder before = new StateBuilder();
+
+        public Recorder(DataContainer container) {
+            this.container = container;
+        }
+
+        // remember the state of a voxel before it is changed, returns the
+        // current voxel with this id (or null if it does not exist)
+        public final Voxel touch(int voxelId) {
+            Voxel voxel = container.getVoxel(voxelId);
+            if (known.add(voxelId)) {
+                ids.add(voxelId);
+                before.add(voxel);
+            }
+            return voxel;
+        }
+
+        // remove a voxel
+        public final void remove(Voxel voxel) {
+            touch(voxel.id);
+            container.removeVoxel(voxel);
+        }
+
+        // add a voxel (the id and the position in the layer need to be free)
+        public final void add(Voxel voxel) {
+            touch(voxel.id);
+            container.addVoxel(voxel);
+        }
+
+        // create the delta (from the recorded state and the current state)
+        public final VoxelDelta finish() {
+            StateBuilder after = new StateBuilder();
+            for (int i = 0, len = ids.size(); i < len; i++) {
+                after.add(container.getVoxel(ids.getQuick(i)));
+            }
+            return new VoxelDelta(ids.toArray(), before.build(), after.build());
+        }
+    }
+
+    // ==================
+    // replay
+
+    // apply the changes
+    public final void apply(DataContainer container) {
+        ensureLoaded();
+        restore(container, after);
+    }
+
+    // revert the changes
+    public final void revert(DataContainer container) {
+        ensureLoaded();
+        restore(container, before);
+    }
+
+    // set all voxels to the given state
+    private void restore(DataContainer container, int[][] state) {
+        int[] pos = state[POS];
+        int[] layer = state[LAYER];
+        int[] argb = state[ARGB];
+        int[] alpha = state[ALPHA];
+        int[] meta = state[META];
+        int[] textured = state[TEXTURED];
+        int[] textureData = state[TEXTURE_DATA];
+        // remove the voxels that don't exist in that state or that have a different
+        // position (first, so the positions are free when the voxels are added)
+        for (int i = 0; i < size; i++) {
+            Voxel voxel = container.getVoxel(ids[i]);
+            if (voxel != null && ((meta[i] & PRESENT) == 0 || voxel.posId != pos[i] || voxel.getLayerId() != layer[i])) {
+                container.removeVoxel(voxel);
+            }
+        }
+        // add or update the voxels
+        Color color = null;
+        for (int i = 0, t = 0; i < size; i++) {
+            int[] texture = null;
+            int[] rotation = null;
+            boolean[] flip = null;
+            if (t < textured.length && textured[t] == i) {
+                int offset = t * TEXTURE_STRIDE;
+                if ((meta[i] & HAS_TEXTURE) != 0) {
+                    texture = new int[6];
+                }
+                if ((meta[i] & HAS_ROTATION) != 0) {
+                    rotation = new int[6];
+                }
+                if ((meta[i] & HAS_FLIP) != 0) {
+                    flip = new boolean[6];
+                }
+                for (int side = 0; side < 6; side++, offset += 3) {
+                    if (texture != null) {
+                        texture[side] = textureData[offset];
+                    }
+                    if (rotation != null) {
+                        rotation[side] = textureData[offset + 1];
+                    }
+                    if (flip != null) {
+                        flip[side] = textureData[offset + 2] == 1;
+                    }
+                }
+                t++;
+            }
+            if ((meta[i] & PRESENT) == 0) {
+                continue;
+            }
+            // consecutive voxels often share the color
+            if (color == null || color.getRGB() != argb[i]) {
+                color = new Color(argb[i], true);
+            }
+            boolean selected = (meta[i] & SELECTED) != 0;
+            Voxel voxel = container.getVoxel(ids[i]);
+            if (voxel == null) {
+                short[] p = CubeIndexer.getPos(pos[i]);
+                voxel = new Voxel(ids[i], new int[] {p[0], p[1], p[2]}, color, selected, texture, layer[i]);
+                container.addVoxel(voxel);
+            } else {
+                voxel.setColor(color);
+                container.setVoxelSelected(voxel, selected);
+                voxel.setTexture(texture);
+            }
+            voxel.setAlpha(alpha[i]);
+            voxel.setTextureTransform(rotation, flip);
+        }
+    }
+
+    // the positions that are effected by this delta (there could be duplicates)
+    public final int[][] getEffected() {
+        ensureLoaded();
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if ((before[META][i] & PRESENT) != 0) {
+                count++;
+            }
+            if ((after[META][i] & PRESENT) != 0 && (before[POS][i] != after[POS][i] || (before[META][i] & PRESENT) == 0)) {
+                count++;
+            }
+        }
+        int[][] result = new int[count][];
+        int c = 0;
+        for (int i = 0; i < size; i++) {
+            if ((before[META][i] & PRESENT) != 0) {
+                short[] p = CubeIndexer.getPos(before[POS][i]);
+                result[c++] = new int[] {p[0], p[1], p[2]};
+            }
+            if ((after[META][i] & PRESENT) != 0 && (before[POS][i] != after[POS][i] || (before[META][i] & PRESENT) == 0)) {
+                short[] p = CubeIndexer.getPos(after[POS][i]);
+                result[c++] = new int[] {p[0], p[1], p[2]};
+            }
+        }
+        return result;
+    }
+
+    // ==================
+    // memory
+
+    // estimated memory used by this delta (in bytes)
+    public final long getMemorySize() {
+        if (ids == null) {
+            return OVERHEAD;
+        }
+        long result = OVERHEAD + ids.length * 4L;
+        for (int i = 0; i < STATE_ARRAYS; i++) {
+            result += before[i].length * 4L;
+            if (after[i] != before[i]) {
+                result += after[i].length * 4L;
+            }
+        }
+        return result;
+    }
+
+    // true if the data only exists in the spill file
+    public final boolean isSpilled() {
+        return ids == null;
+    }
+
+    // move the data to the spill file, returns the amount of bytes written
+    // Note: the data is only written once, so spilling again after the
+    // data was loaded again doesn't need to write anything
+    public final long spill(HistorySpillFile file) throws IOException {
+        if (ids == null) {
+            return 0;
+        }
+        if (spillFile != null) {
+            ids = null;
+            before = null;
+            after = null;
+            return 0;
+        }
+        // layout: ids, before arrays, after arrays (length -1 ~ same as before)
+        int ints = 1 + ids.length;
+        for (int i = 0; i < STATE_ARRAYS; i++) {
+            ints += 2 + before[i].length + (after[i] != before[i] ? after[i].length : 0);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(ints * 4);
+        IntBuffer data = buffer.asIntBuffer();
+        data.put(ids.length).put(ids);
+        for (int i = 0; i < STATE_ARRAYS; i++) {
+            data.put(before[i].length).put(before[i]);
+        }
+        for (int i = 0; i < STATE_ARRAYS; i++) {
+            if (after[i] == before[i]) {
+                data.put(-1);
+            } else {
+                data.put(after[i].length).put(after[i]);
+            }
+        }
+        spillOffset = file.write(buffer.array());
+        spillSize = buffer.capacity();
+        spillFile = file;
+        ids = null;
+        before = null;
+        after = null;
+        return spillSize;
+    }
+
+    // load the data from the spill file (if necessary)
+    private void ensureLoaded() {
+        if (ids != null) {
+            return;
+        }
+        IntBuffer data;
+        try {
+            data = ByteBuffer.wrap(spillFile.read(spillOffset, spillSize)).asIntBuffer();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read the history from the spill file.", e);
+        }
+        int[] ids = new int[data.get()];
+        data.get(ids);
+        int[][] before = new int[STATE_ARRAYS][];
+        for (int i = 0; i < STATE_ARRAYS; i++) {
+            before[i] = new int[data.get()];
+            data.get(before[i]);
+        }
+        int[][] after = new int[STATE_ARRAYS][];
+        for (int i = 0; i < STATE_ARRAYS; i++) {
+            int length = data.get();
+            if (length == -1) {
+                after[i] = before[i];
+            } else {
+                after[i] = new int[length];
+                data.get(after[i]);
+            }
+        }
+        this.before = before;
+        this.after = after;
+        this.ids = ids;
+    }
+}
@@ -1,13 +1,14 @@
 package com.vitco.app.core.data.notification;
 
-import java.util.HashSet;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * Notification Service, deals with and notifies listeners.
  */
 public final class NotificationService implements NotificationServiceInterface {
 
-    private final HashSet<DataChangeListener> listeners = new HashSet<DataChangeListener>();
+    // listeners can be notified from different threads (e.g. highlighting and data changes)
+    private final CopyOnWriteArraySet<DataChangeListener> listeners = new CopyOnWriteArraySet<DataChangeListener>();
 
     // add a listener
     @Override
@@ -69,7 +69,7 @@ public abstract class AbstractAdapter extends MouseAdapter {
 
     @Override
     public void mousePressed(final MouseEvent e) {
-        asyncActionManager.addAsyncAction(new AsyncAction() {
+        asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
             @Override
             public void performAction() {
                 if (adapterActive) {
@@ -80,7 +80,7 @@ public abstract class AbstractAdapter extends MouseAdapter {
     }
     @Override
     public void mouseReleased(final MouseEvent e) {
-        asyncActionManager.addAsyncAction(new AsyncAction() {
+        asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
             @Override
             public void performAction() {
                 if (adapterActive) {
@@ -91,7 +91,7 @@ public abstract class AbstractAdapter extends MouseAdapter {
     }
     @Override
     public void mouseEntered(final MouseEvent e) {
-        asyncActionManager.addAsyncAction(new AsyncAction() {
+        asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
             @Override
             public void performAction() {
                 if (adapterActive) {
@@ -103,7 +103,7 @@ public abstract class AbstractAdapter extends MouseAdapter {
     }
     @Override
     public void mouseExited(final MouseEvent e) {
-        asyncActionManager.addAsyncAction(new AsyncAction() {
+        asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
             @Override
             public void performAction() {
                 if (adapterActive) {
@@ -115,7 +115,7 @@ public abstract class AbstractAdapter extends MouseAdapter {
     }
     @Override
     public void mouseWheelMoved(final MouseWheelEvent e) {
-        asyncActionManager.addAsyncAction(new AsyncAction() {
+        asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
             @Override
             public void performAction() {
                 if (adapterActive) {
@@ -126,7 +126,7 @@ public abstract class AbstractAdapter extends MouseAdapter {
     }
     @Override
     public void mouseDragged(final MouseEvent e) {
-        asyncActionManager.addAsyncAction(new AsyncAction() {
+        asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
             @Override
             public void performAction() {
                 if (adapterActive) {
@@ -137,7 +137,7 @@ public abstract class AbstractAdapter extends MouseAdapter {
     }
     @Override
     public void mouseMoved(final MouseEvent e) {
-        asyncActionManager.addAsyncAction(new AsyncAction() {
+        asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
             @Override
             public void performAction() {
                 if (adapterActive) {
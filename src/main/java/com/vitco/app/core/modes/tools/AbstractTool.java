@@ -92,7 +92,7 @@ public abstract class AbstractTool {
             KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(new KeyEventDispatcher() {
                 @Override
                 public boolean dispatchKeyEvent(final KeyEvent e) {
-                    asyncActionManager.addAsyncAction(new AsyncAction() {
+                    asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                         @Override
                         public void performAction() {
                             if (ctrlDown != e.isControlDown() || altDown != e.isAltDown() || shiftDown != e.isShiftDown()) {
@@ -114,7 +114,7 @@ public abstract class AbstractTool {
             // handle mouse events (global)
             Toolkit.getDefaultToolkit().addAWTEventListener(new AWTEventListener() {
                 public void eventDispatched (final AWTEvent event) {
-                    asyncActionManager.addAsyncAction(new AsyncAction() {
+                    asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                         @Override
                         public void performAction() {
                             if (event instanceof MouseEvent) {
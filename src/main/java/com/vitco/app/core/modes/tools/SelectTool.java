@@ -4,11 +4,10 @@ import com.threed.jpct.SimpleVector;
 import com.vitco.app.core.container.DrawContainer;
 import com.vitco.app.core.data.container.Voxel;
 import com.vitco.app.settings.VitcoSettings;
+import com.vitco.app.util.misc.CompressedBitSet;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.LinkedList;
 
 /**
  * Defines the basic select tool.
@@ -44,7 +43,7 @@ public class SelectTool extends AbstractVoxelTool {
                 Math.max(c1.y, c2.y)
         );
 
-        java.util.List<Integer> searchResult = new LinkedList<Integer>();
+        CompressedBitSet searchResult = new CompressedBitSet();
 
         if (!start.equals(stop)) {
             Voxel[] voxels;
@@ -66,28 +65,16 @@ public class SelectTool extends AbstractVoxelTool {
                     break;
             }
 
-            // use all voxles
-            for (Voxel voxel : voxels) {
-                SimpleVector vec = container.convert3D2D(new SimpleVector(
-                        voxel.x * VitcoSettings.VOXEL_SIZE,
-                        voxel.y * VitcoSettings.VOXEL_SIZE,
-                        voxel.z * VitcoSettings.VOXEL_SIZE));
-                if (vec != null) {
-                    if (vec.x >= start.x && vec.x <= stop.x && vec.y >= start.y && vec.y <= stop.y) {
-                        searchResult.add(voxel.id);
-                    }
-                }
-            }
+            // use all voxels that are projected into the rectangle
+            container.getVoxelsInRect(voxels, new Rectangle(start.x, start.y, stop.x - start.x, stop.y - start.y), searchResult);
         }
 
         // execute the select
-        Integer[] toSet = new Integer[searchResult.size()];
-        searchResult.toArray(toSet);
-        if (toSet.length > 0) {
+        if (!searchResult.isEmpty()) {
             // reset selection shift
             data.setVoxelSelectionShift(0,0,0);
             // select voxels
-            data.massSetVoxelSelected(toSet, select);
+            data.massSetVoxelSelected(searchResult, select);
         }
 
     }
@@ -233,7 +220,7 @@ public class SelectTool extends AbstractVoxelTool {
     protected void shiftRelease(MouseEvent e) {
         // use the voxels to select the new color
         if (lastVoxelPos != null && initialVoxelPos != null) {
-            ArrayList<Integer> list = new ArrayList<Integer>();
+            CompressedBitSet list = new CompressedBitSet();
             for (int x = Math.min(initialVoxelPos[0], lastVoxelPos[0]),
                          maxx = Math.max(initialVoxelPos[0], lastVoxelPos[0]); x <= maxx; x++ ) {
                 for (int y = Math.min(initialVoxelPos[1], lastVoxelPos[1]),
@@ -251,13 +238,11 @@ public class SelectTool extends AbstractVoxelTool {
             }
             // set the selection
             // execute the select
-            Integer[] toSet = new Integer[list.size()];
-            list.toArray(toSet);
-            if (toSet.length > 0) {
+            if (!list.isEmpty()) {
                 // reset selection shift
                 data.setVoxelSelectionShift(0,0,0);
                 // select voxels
-                data.massSetVoxelSelected(toSet, !mouse3down);
+                data.massSetVoxelSelected(list, !mouse3down);
             }
         }
         // hide preview
@@ -88,8 +88,9 @@ public abstract class AbstractCWorld extends World {
     // enable/disable the border on all objects in the world (main view)
     public abstract void setBorder(boolean border);
 
-    // refresh world (partially) - returns true if fully refreshed
-    public abstract boolean refreshWorld();
+    // refresh world (partially, trying to take no longer than the budget in ns)
+    // returns true if fully refreshed
+    public abstract boolean refreshWorld(long budget);
 
     // get voxel by hit position
     public abstract int[] getVoxelPos(Integer objectId, float posx, float posy, float posz);
@@ -5,15 +5,18 @@ import com.vitco.app.core.data.container.Voxel;
 import com.vitco.app.core.world.container.BorderObject3D;
 import com.vitco.app.core.world.container.VoxelManager;
 import com.vitco.app.low.hull.HullManagerExt;
-import com.vitco.app.low.triangulate.Grid2TriPolyFast;
-import com.vitco.app.low.triangulate.util.Grid2PolyHelper;
+import com.vitco.app.low.triangulate.Grid2TriStrategy;
+import com.vitco.app.low.triangulate.util.BitGrid;
+import com.vitco.app.low.triangulate.util.TriangleBuffer;
 import com.vitco.app.settings.VitcoSettings;
 import com.vitco.app.util.graphic.SharedImageFactory;
 import org.poly2tri.Poly2Tri;
-import org.poly2tri.triangulation.delaunay.DelaunayTriangle;
 
 import java.awt.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This is a world wrapper that provides easy voxel interaction
@@ -100,13 +103,122 @@ public class CWorld extends AbstractCWorld {
         }
     }
 
-    // the maximum amount of areas that are drawn in one call
-    private final static int maxAreaDraw = 10;
+    // bounds of the amount of areas that are drawn in one call (per orientation)
+    private final static int MIN_AREA_DRAW = 1;
+    private final static int MAX_AREA_DRAW = 500;
+    // the maximum amount of areas that are drawn in one call (per orientation),
+    // adapted to the time budget of the refresh calls
+    private int maxAreaDraw = 10;
+
+    // pool that is used to triangulate the outdated areas concurrently
+    // (the threads are daemon threads and shared by all worlds)
+    private final static ForkJoinPool meshingPool = new ForkJoinPool();
+
+    // the algorithm that is used to triangulate the areas
+    private final static Grid2TriStrategy meshingStrategy = Grid2TriStrategy.POLY_FAST;
+
+    // the grid that is used to triangulate (one per meshing thread)
+    private final static ThreadLocal<BitGrid> meshingGrid = new ThreadLocal<BitGrid>() {
+        @Override
+        protected BitGrid initialValue() {
+            return new BitGrid();
+        }
+    };
+
+    // triangle buffers that are not in use (the buffers are reused by all areas)
+    private final static ConcurrentLinkedQueue<TriangleBuffer> freeBuffers = new ConcurrentLinkedQueue<TriangleBuffer>();
+
+    // an outdated area that needs to be rebuilt, the triangulation is computed
+    // on the meshing pool and the result is applied to the world afterwards
+    private static final class AreaMesh extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // the area this mesh belongs to
+        private final int orientation;
+        private final int axis;
+        private final Integer plane;
+        private final String areaKey;
+        // the faces in this area (copy, so the voxel manager can change)
+        private final ArrayList<Voxel> faceList;
+
+        // rect that contains all voxel faces
+        private int min1 = 0;
+        private int min2 = 0;
+        private int w = 0;
+        private int h = 0;
+        // the computed triangles (taken from the free buffers)
+        private TriangleBuffer tris = null;
+
+        private AreaMesh(int orientation, Integer plane, String areaKey, Collection<Voxel> faceList) {
+            this.orientation = orientation;
+            this.axis = orientation/2;
+            this.plane = plane;
+            this.areaKey = areaKey;
+            this.faceList = new ArrayList<Voxel>(faceList);
+        }
+
+        @Override
+        protected void compute() {
+            // determine size of rect that contains all voxel faces
+            boolean first = true;
+            int max1 = 0;
+            int max2 = 0;
+            for (Voxel face : faceList) {
+                int[] pos2D = VoxelManager.convert3D2D(face, axis);
+                if (first) {
+                    min1 = pos2D[0];
+                    max1 = pos2D[0];
+                    min2 = pos2D[1];
+                    max2 = pos2D[1];
+                    first = false;
+                } else {
+                    min1 = Math.min(min1,pos2D[0]);
+                    max1 = Math.max(max1, pos2D[0]);
+                    min2 = Math.min(min2,pos2D[1]);
+                    max2 = Math.max(max2, pos2D[1]);
+                }
+            }
+            w = max1 - min1 + 1;
+            h = max2 - min2 + 1;
+
+            // triangulate the faces
+            BitGrid data = meshingGrid.get();
+            data.reset(w, h);
+            for (Voxel face : faceList) {
+                int[] pos2D = VoxelManager.convert3D2D(face, axis);
+                data.set(pos2D[0] - min1, pos2D[1] - min2);
+            }
+            tris = freeBuffers.poll();
+            if (tris == null) {
+                tris = new TriangleBuffer();
+            }
+            tris.clear();
+            meshingStrategy.triangulate(data, tris);
+        }
+    }
+
+    // remove the object of an area from the world (if it exists)
+    private void removeArea(String areaKey) {
+        Integer oldId = plane2WorldId.remove(areaKey);
+        if (oldId != null) {
+            // only remove texture in non-wireframe world
+            if (!simpleMode) {
+                BorderObject3D obj = (BorderObject3D) getObject(oldId);
+                // remove other information
+                removeObject(oldId);
+                obj.freeTexture();
+            } else {
+                // remove other information
+                removeObject(oldId);
+            }
+            worldId2Side.remove(oldId);
+        }
+    }
 
     // handle all planes (in one direction, determined by side)
-    // returns true iff all areas are handled
-    private boolean handleOrientedPlane(int orientation) {
-        int axis = orientation/2;
+    // areas that need a new triangulation are added to the mesh list
+    // returns the amount of handled areas (all areas are handled if this is less than maxAreaDraw)
+    private int handleOrientedPlane(int orientation, ArrayList<AreaMesh> meshes) {
         // processed entries are cleaned here in this function (!)
         HashMap<Integer, HashMap<Point, Boolean>> outdatedPlanes = voxelManager.getInvalidPlanes(orientation);
 
@@ -131,108 +243,11 @@ public class CWorld extends AbstractCWorld {
                     if (faceList != null) {
                         // this should never happen as the faceManager deletes unused faceLists
                         assert !faceList.isEmpty();
-                        // determine size of rect that contains all voxel faces
-                        boolean first = true;
-                        int min1 = 0;
-                        int max1 = 0;
-                        int min2 = 0;
-                        int max2 = 0;
-                        for (Voxel face : faceList) {
-                            int[] pos2D = VoxelManager.convert3D2D(face, axis);
-                            if (first) {
-                                min1 = pos2D[0];
-                                max1 = pos2D[0];
-                                min2 = pos2D[1];
-                                max2 = pos2D[1];
-                                first = false;
-                            } else {
-                                min1 = Math.min(min1,pos2D[0]);
-                                max1 = Math.max(max1, pos2D[0]);
-                                min2 = Math.min(min2,pos2D[1]);
-                                max2 = Math.max(max2, pos2D[1]);
-                            }
-                        }
-                        int w = max1 - min1 + 1;
-                        int h = max2 - min2 + 1;
-
-                        // --------------
-                        ArrayList<DelaunayTriangle> tris = new ArrayList<DelaunayTriangle>();
-                        boolean[][] data = new boolean[w][h];
-                        for (Voxel face : faceList) {
-                            int[] pos2D = VoxelManager.convert3D2D(face, axis);
-                            data[pos2D[0] - min1][pos2D[1] - min2] = true;
-//                            // consider textured faces separately (needed?)
-//                            if (face.getTexture() == null) {
-//                                data[pos2D[0] - min1][pos2D[1] - min2] = true;
-//                            } else {
-//                                int pX = pos2D[0] - min1;
-//                                int pY = pos2D[1] - min2;
-//                                // add the textured faces separately
-//                                tris.add(new DelaunayTriangle(new PolygonPoint(pX, pY), new PolygonPoint(pX + 1, pY), new PolygonPoint(pX, pY + 1)));
-//                                tris.add(new DelaunayTriangle(new PolygonPoint(pX + 1, pY), new PolygonPoint(pX + 1, pY + 1), new PolygonPoint(pX, pY + 1)));
-//                            }
-                        }
-                        tris.addAll(Grid2TriPolyFast.triangulate(Grid2PolyHelper.convert(data)));
-//                        tris.addAll(Grid2TriGreedyOptimal.triangulate(data));
-                        // --------------
-                        // todo: remove
-//                        // build image to compute triangle overlay
-//                        TiledImage src = SharedImageFactory.getTiledImage(w, h);
-//                        for (Voxel face : faceList) {
-//                            int[] pos2D = VoxelManager.convert3D2D(face, axis);
-//                            src.setSample(pos2D[0] - min1, pos2D[1] - min2, 0, 1);
-//                        }
-//                        // triangulate the image
-//                        ArrayList<DelaunayTriangle> tris = Grid2Tri.triangulate(Grid2Tri.doVectorize(src));
-//                        // reset image
-//                        for (Voxel face : faceList) {
-//                            int[] pos2D = VoxelManager.convert3D2D(face, axis);
-//                            src.setSample(pos2D[0] - min1, pos2D[1] - min2, 0, 0);
-//                        }
-//                        // --------------
-
-                        // build the plane
-                        BorderObject3D box = new BorderObject3D(
-                                tris, faceList,
-                                min1, min2, w, h, orientation, axis,
-                                outdatedPlane, simpleMode, side, culling,
-                                hasBorder, hullManager
-                        );
-                        // remove old version of this side (if exists)
-                        Integer oldId = plane2WorldId.get(areaKey);
-                        if (oldId != null) {
-                            // only remove texture in non-wireframe world
-                            if (!simpleMode) {
-                                BorderObject3D obj = (BorderObject3D) getObject(oldId);
-                                // remove other information
-                                removeObject(oldId);
-                                obj.freeTexture();
-                            } else {
-                                // remove other information
-                                removeObject(oldId);
-                            }
-                            worldId2Side.remove(oldId);
-                        }
-                        // add new plane
-                        int newWorldId = addObject(box);
-                        plane2WorldId.put(areaKey, newWorldId);
-                        worldId2Side.put(newWorldId, orientation);
+                        // the triangulation is done concurrently (after all areas are collected)
+                        meshes.add(new AreaMesh(orientation, outdatedPlane, areaKey, faceList));
                     } else {
                         // remove old version of this side (if exists)
-                        Integer oldId = plane2WorldId.remove(areaKey);
-                        if (oldId != null) {
-                            // only remove texture in non-wireframe world
-                            if (!simpleMode) {
-                                BorderObject3D obj = (BorderObject3D) getObject(oldId);
-                                // remove other information
-                                removeObject(oldId);
-                                obj.freeTexture();
-                            } else {
-                                // remove other information
-                                removeObject(oldId);
-                            }
-                            worldId2Side.remove(oldId);
-                        }
+                        removeArea(areaKey);
                     }
                 } else if (!simpleMode) {
                     // only do texture refresh (soft)
@@ -250,14 +265,44 @@ public class CWorld extends AbstractCWorld {
             }
         }
         //faceManager.clearInvalidAreas(orientation);
-        return progressCounter < maxAreaDraw;
+        return progressCounter;
+    }
+
+    // triangulate the areas concurrently and replace the objects in the world
+    private void buildAreas(ArrayList<AreaMesh> meshes) {
+        for (AreaMesh mesh : meshes) {
+            meshingPool.execute(mesh);
+        }
+        // the objects are created and swapped in this thread (in order)
+        for (AreaMesh mesh : meshes) {
+            mesh.join();
+            // build the plane
+            BorderObject3D box = new BorderObject3D(
+                    mesh.tris, mesh.faceList,
+                    mesh.min1, mesh.min2, mesh.w, mesh.h, mesh.orientation, mesh.axis,
+                    mesh.plane, simpleMode, side, culling,
+                    hasBorder, hullManager
+            );
+            // the triangles are no longer needed
+            freeBuffers.offer(mesh.tris);
+            mesh.tris = null;
+            // remove old version of this side (if exists)
+            removeArea(mesh.areaKey);
+            // add new plane
+            int newWorldId = addObject(box);
+            plane2WorldId.put(mesh.areaKey, newWorldId);
+            worldId2Side.put(newWorldId, mesh.orientation);
+        }
     }
 
     // refresh world (partially) - returns true if fully refreshed
     @Override
-    public boolean refreshWorld() {
+    public boolean refreshWorld(long budget) {
+        long time = System.nanoTime();
         // if this counter is six, the world is ready
         int ready = 0;
+        // amount of handled areas
+        int handled = 0;
 
         // clear the voxel manager if necessary (needs to be done in sync!)
         if (worldNeedsClear) {
@@ -281,6 +326,9 @@ public class CWorld extends AbstractCWorld {
             plane2WorldId.clear();
         }
 
+        // the areas that need to be triangulated
+        ArrayList<AreaMesh> meshes = new ArrayList<AreaMesh>();
+
         // handle the updating
         if (side == -1) {
             for (int i = 0; i < 6; i++) {
@@ -290,7 +338,9 @@ public class CWorld extends AbstractCWorld {
                 for (Voxel voxel : hullManager.getHullRemovals(i)) {
                     voxelManager.removeFace(i, voxel);
                 }
-                if (handleOrientedPlane(i)) {
+                int count = handleOrientedPlane(i, meshes);
+                handled += count;
+                if (count < maxAreaDraw) {
                     ready++;
                 }
             }
@@ -302,11 +352,28 @@ public class CWorld extends AbstractCWorld {
             for (Voxel voxel : hullManager.getHullRemovals(orientation)) {
                 voxelManager.removeFace(orientation, voxel);
             }
-            if (handleOrientedPlane(orientation)) {
+            int count = handleOrientedPlane(orientation, meshes);
+            handled += count;
+            if (count < maxAreaDraw) {
                 ready = 6;
             }
         }
 
+        // build the outdated areas
+        buildAreas(meshes);
+
+        // upload the changed textures
+        if (!simpleMode) {
+            TextureAtlas.flush();
+        }
+
+        // adapt the amount of areas to the budget (using the time per area of this call)
+        if (handled > 0) {
+            long timePerArea = Math.max(1, (System.nanoTime() - time) / handled);
+            int target = (int) Math.min(MAX_AREA_DRAW, budget / timePerArea);
+            maxAreaDraw = Math.max(MIN_AREA_DRAW, Math.min(MAX_AREA_DRAW, (maxAreaDraw + target) / 2));
+        }
+
         return ready == 6;
 
     }
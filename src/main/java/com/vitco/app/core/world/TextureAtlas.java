@@ -0,0 +1,233 @@
+package com.vitco.app.core.world;
+
+import com.threed.jpct.ITextureEffect;
+import com.threed.jpct.Texture;
+import com.vitco.app.settings.VitcoSettings;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Packs the area textures into a few large shared texture pages.
+ *
+ * Identical textures are shared (by hash) and counted. A texture gets a sub rectangle
+ * of a page (allocated in shelves of the same height). Freed rectangles are reused for
+ * textures of the same size. Changes are only copied into the page texture for the
+ * changed rectangles when flush() is called.
+ */
+public final class TextureAtlas {
+
+    // prevent instantiation
+    private TextureAtlas() {}
+
+    // a sub rectangle of a page that holds one texture
+    public static final class Slot {
+        private final Page page;
+        private final int x;
+        private final int y;
+        private final int w;
+        private final int h;
+        // the hash of the texture in this slot
+        private String hash;
+        // how often the texture is used
+        private int count = 0;
+
+        private Slot(Page page, int x, int y, int w, int h) {
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+        }
+
+        // the id of the page texture
+        public int getTextureId() {
+            return WorldManager.getTextureId(page.name);
+        }
+
+        // convert an u value of the texture (0 - 1) to the page
+        public float getU(float u) {
+            return (x + u * w) / page.width;
+        }
+
+        // convert a v value of the texture (0 - 1) to the page
+        public float getV(float v) {
+            return (y + v * h) / page.height;
+        }
+    }
+
+    // a page texture
+    private static final class Page implements ITextureEffect {
+        private final String name;
+        private final int width;
+        private final int height;
+        // the pixels of this page (copied into the texture on flush)
+        private final int[] pixels;
+        // the shelves of this page (y, height, used width)
+        private final ArrayList<int[]> shelves = new ArrayList<int[]>();
+        private int usedHeight = 0;
+        // free slots by size
+        private final HashMap<String, ArrayList<Slot>> free = new HashMap<String, ArrayList<Slot>>();
+        // the amount of slots in use
+        private int used = 0;
+        // the area that changed since the last flush
+        private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+        private boolean dirty = false;
+
+        private Page(String name, int width, int height) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            Texture texture = new Texture(image, false);
+            texture.setEffect(this);
+            WorldManager.loadTexture(name, texture);
+        }
+
+        // find a free slot, returns null if this page is full
+        private Slot allocate(int w, int h) {
+            ArrayList<Slot> list = free.get(w + "_" + h);
+            if (list != null && !list.isEmpty()) {
+                return list.remove(list.size() - 1);
+            }
+            for (int[] shelf : shelves) {
+                if (shelf[1] == h && shelf[2] + w <= width) {
+                    Slot slot = new Slot(this, shelf[2], shelf[0], w, h);
+                    shelf[2] += w;
+                    return slot;
+                }
+            }
+            if (w <= width && usedHeight + h <= height) {
+                shelves.add(new int[] {usedHeight, h, w});
+                Slot slot = new Slot(this, 0, usedHeight, w, h);
+                usedHeight += h;
+                return slot;
+            }
+            return null;
+        }
+
+        // make a slot available again
+        private void free(Slot slot) {
+            String key = slot.w + "_" + slot.h;
+            ArrayList<Slot> list = free.get(key);
+            if (list == null) {
+                list = new ArrayList<Slot>();
+                free.put(key, list);
+            }
+            list.add(slot);
+        }
+
+        // copy an image into a slot
+        private void write(Slot slot, BufferedImage image) {
+            int[] source = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            int sourceWidth = image.getWidth();
+            for (int row = 0; row < slot.h; row++) {
+                System.arraycopy(source, row * sourceWidth, pixels, (slot.y + row) * width + slot.x, slot.w);
+            }
+            if (dirty) {
+                dirtyMinX = Math.min(dirtyMinX, slot.x);
+                dirtyMinY = Math.min(dirtyMinY, slot.y);
+                dirtyMaxX = Math.max(dirtyMaxX, slot.x + slot.w);
+                dirtyMaxY = Math.max(dirtyMaxY, slot.y + slot.h);
+            } else {
+                dirtyMinX = slot.x;
+                dirtyMinY = slot.y;
+                dirtyMaxX = slot.x + slot.w;
+                dirtyMaxY = slot.y + slot.h;
+                dirty = true;
+            }
+        }
+
+        // upload the changed area
+        private void flush() {
+            if (dirty) {
+                Texture texture = WorldManager.getTexture(name);
+                if (texture != null) {
+                    texture.applyEffect();
+                }
+                dirty = false;
+            }
+        }
+
+        @Override
+        public void init(Texture texture) {}
+
+        @Override
+        public void apply(int[] dest, int[] source) {
+            // only the changed rows are copied
+            int w = dirtyMaxX - dirtyMinX;
+            for (int row = dirtyMinY; row < dirtyMaxY; row++) {
+                int offset = row * width + dirtyMinX;
+                System.arraycopy(pixels, offset, dest, offset, w);
+            }
+        }
+
+        @Override
+        public boolean containsAlpha() {
+            // needs to be true (otherwise there is a color flip happening)
+            return true;
+        }
+    }
+
+    // all pages
+    private static final ArrayList<Page> pages = new ArrayList<Page>();
+    // the slots by texture hash
+    private static final HashMap<String, Slot> slots = new HashMap<String, Slot>();
+    // used to name the pages
+    private static int pageCount = 0;
+
+    // get a slot that holds the image (the hash identifies the image content)
+    // the slot needs to be released when it is no longer used
+    public static Slot acquire(String hash, BufferedImage image) {
+        Slot slot = slots.get(hash);
+        if (slot == null) {
+            int w = image.getWidth();
+            int h = image.getHeight();
+            for (Page page : pages) {
+                slot = page.allocate(w, h);
+                if (slot != null) {
+                    break;
+                }
+            }
+            if (slot == null) {
+                // textures that are larger than a page get their own page
+                Page page = new Page("__atlas_" + (pageCount++) + "__",
+                        Math.max(VitcoSettings.TEXTURE_ATLAS_PAGE_SIZE, w),
+                        Math.max(VitcoSettings.TEXTURE_ATLAS_PAGE_SIZE, h));
+                pages.add(page);
+                slot = page.allocate(w, h);
+            }
+            slot.hash = hash;
+            slot.page.used++;
+            slot.page.write(slot, image);
+            slots.put(hash, slot);
+        }
+        slot.count++;
+        return slot;
+    }
+
+    // release a slot
+    public static void release(Slot slot) {
+        if (--slot.count == 0) {
+            slots.remove(slot.hash);
+            Page page = slot.page;
+            if (--page.used == 0) {
+                // remove unused pages
+                pages.remove(page);
+                WorldManager.removeTexture(page.name);
+            } else {
+                page.free(slot);
+            }
+        }
+    }
+
+    // copy all changes into the page textures
+    public static void flush() {
+        for (Page page : pages) {
+            page.flush();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.vitco.app.core.world;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Test the allocation of the texture atlas.
+ */
+public class TextureAtlasTest {
+
+    // helper - create an image
+    private static BufferedImage image(int w, int h, int rgb) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void testAllocation() throws Exception {
+        // identical textures are shared
+        TextureAtlas.Slot a = TextureAtlas.acquire("test_a", image(64, 32, 0xFF0000));
+        assert TextureAtlas.acquire("test_a", image(64, 32, 0xFF0000)) == a;
+        TextureAtlas.Slot b = TextureAtlas.acquire("test_b", image(64, 32, 0x00FF00));
+        assert b != a;
+        // textures of the same height are placed next to each other
+        assert b.getTextureId() == a.getTextureId();
+        assert b.getV(0) == a.getV(0);
+        assert b.getU(0) == a.getU(1);
+        assert b.getV(1) - b.getV(0) == 32f / 1024;
+        // freed places are reused
+        TextureAtlas.release(b);
+        TextureAtlas.Slot c = TextureAtlas.acquire("test_c", image(64, 32, 0x0000FF));
+        assert c.getU(0) == b.getU(0) && c.getV(0) == b.getV(0);
+        // the shared texture is only freed when it is no longer used
+        TextureAtlas.release(a);
+        assert TextureAtlas.acquire("test_a", image(64, 32, 0xFF0000)) == a;
+        TextureAtlas.release(a);
+        TextureAtlas.release(a);
+        TextureAtlas.Slot d = TextureAtlas.acquire("test_d", image(64, 32, 0xFFFFFF));
+        assert d.getU(0) == a.getU(0) && d.getV(0) == a.getV(0);
+        // large textures get their own page
+        TextureAtlas.Slot large = TextureAtlas.acquire("test_large", image(2048, 64, 0xFFFFFF));
+        assert large.getTextureId() != a.getTextureId();
+        assert large.getU(0) == 0 && large.getU(1) == 1;
+        TextureAtlas.flush();
+        TextureAtlas.release(large);
+        TextureAtlas.release(c);
+        TextureAtlas.release(d);
+    }
+}
@@ -9,7 +9,6 @@ import com.vitco.app.util.misc.SaveResourceLoader;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
 import java.util.HashMap;
 
 /**
@@ -18,78 +17,6 @@ import java.util.HashMap;
 public final class WorldManager {
     private final static TextureManager textureManager = TextureManager.getInstance();
 
-    // -------------------------------
-    // Manage efficient textures (they are updated without huge amount of data allocation)
-
-    // links textures to their effect
-    private static final HashMap<Texture, Effect> effectList = new HashMap<Texture, Effect>();
-
-    // an effect implementation to allow for efficient updating
-    private final static class Effect implements ITextureEffect {
-        private Texture texture = null;
-        @Override
-        public void init(Texture texture) {
-            this.texture = texture;
-        }
-
-        BufferedImage img = null;
-        private void setImage(BufferedImage img) {
-            this.img = img;
-            texture.applyEffect();
-        }
-
-        @Override
-        public void apply(int[] dest, int[] source) {
-            int[] pixels = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
-            System.arraycopy(pixels, 0, dest, 0, pixels.length);
-            int diff = dest.length - pixels.length;
-            System.arraycopy(pixels, pixels.length - diff, dest, pixels.length, diff);
-            // we don't need the reference anymore
-            // this is here in case the setImage call is async (!)
-            this.img = null;
-        }
-
-        @Override
-        public boolean containsAlpha() {
-            // needs to be true (otherwise there is a color flip happening)
-            return true;
-        }
-    }
-
-    // load a texture to the world (from image)
-    public static void loadEfficientTexture(String name, BufferedImage image, boolean useAlpha) {
-        // check if we can replace
-        Texture texture = !containsTexture(name) ? null : textureManager.getTexture(name);
-        if (texture == null ||
-                texture.getWidth() != image.getWidth() ||
-                texture.getHeight() != image.getHeight()) {
-            if (texture != null) {
-                // remove old
-                effectList.remove(texture);
-            }
-            // create texture with effect
-            texture = new Texture(image, useAlpha);
-            Effect effect = new Effect();
-            texture.setEffect(effect);
-            effectList.put(texture,effect);
-            // load the texture
-            loadTexture(name, texture);
-        } else {
-            Effect effect = effectList.get(texture);
-            effect.setImage(image);
-        }
-    }
-
-    public static boolean removeEfficientTexture(String name) {
-        if (containsTexture(name)) {
-            effectList.remove(textureManager.getTexture(name));
-            // remove the texture
-            textureManager.removeTexture(name);
-            return true;
-        }
-        return false;
-    }
-
     // ------------------------------
     // tiles are images that are placed on sides of voxels
 
@@ -158,6 +85,10 @@ public final class WorldManager {
         return textureManager.getTextureID(name);
     }
 
+    public static Texture getTexture(String name) {
+        return containsTexture(name) ? textureManager.getTexture(name) : null;
+    }
+
     // ---------------------------
 
     // static constructor
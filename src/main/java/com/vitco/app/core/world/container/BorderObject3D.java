@@ -6,10 +6,9 @@ import com.threed.jpct.SimpleVector;
 import com.threed.jpct.TextureInfo;
 import com.vitco.app.core.data.container.Voxel;
 import com.vitco.app.low.hull.HullManager;
+import com.vitco.app.low.triangulate.util.TriangleBuffer;
 import com.vitco.app.settings.VitcoSettings;
 import com.vitco.app.util.misc.ConversionTools;
-import org.poly2tri.triangulation.delaunay.DelaunayTriangle;
-import org.poly2tri.triangulation.point.TPoint;
 
 import java.awt.*;
 import java.util.ArrayList;
@@ -23,16 +22,15 @@ public class BorderObject3D extends Object3D {
     private static final long serialVersionUID = 1L;
 
     // get the rounded points of a triangle as an int array
-    private static int[] getRoundedPoints(DelaunayTriangle triangle) {
+    private static int[] getRoundedPoints(TriangleBuffer tris, int triangle) {
         // rounding is needed since the triangulation can result in non integers
-        return new int[] {
-                Math.round(triangle.points[0].getXf()),
-                Math.round(triangle.points[0].getYf()),
-                Math.round(triangle.points[1].getXf()),
-                Math.round(triangle.points[1].getYf()),
-                Math.round(triangle.points[2].getXf()),
-                Math.round(triangle.points[2].getYf())
-        };
+        int[] result = new int[6];
+        for (int i = 0; i < 3; i++) {
+            int vertex = tris.getIndex(triangle, i);
+            result[i*2] = Math.round((float) tris.getX(vertex));
+            result[i*2 + 1] = Math.round((float) tris.getY(vertex));
+        }
+        return result;
     }
 
     // get the center direction for a triangle described by points and a center
@@ -49,11 +47,18 @@ public class BorderObject3D extends Object3D {
 
     // returns the outside directions for those points that are "outside"
     private static byte[] getOutsideDirections(
-            HashSet<Point> seenTrianglePoints, DelaunayTriangle triangle, int[] roundedTrianglePoints) {
+            HashSet<Point> seenTrianglePoints, TriangleBuffer tris, int triangle, int[] roundedTrianglePoints) {
 
-        TPoint triangle_center = triangle.centroid();
+        // the centroid of the triangle
+        double centerX = 0;
+        double centerY = 0;
+        for (int i = 0; i < 3; i++) {
+            int vertex = tris.getIndex(triangle, i);
+            centerX += tris.getX(vertex);
+            centerY += tris.getY(vertex);
+        }
         boolean[] centerDirection =
-                getCenterDirection(roundedTrianglePoints, triangle_center.getXf(), triangle_center.getYf());
+                getCenterDirection(roundedTrianglePoints, (float) (centerX / 3), (float) (centerY / 3));
 
         byte[] outsideDirection = new byte[6];
 
@@ -103,7 +108,10 @@ public class BorderObject3D extends Object3D {
     // refresh the texture of this object
     public final void refreshTextureInterpolation() {
         assert textureObject != null;
-        textureObject.refreshTexture(null, this);
+        if (textureObject.refreshTexture(null)) {
+            // the texture moved in the texture atlas
+            updateTextureCoordinates();
+        }
     }
 
     // called when this object is no longer needed
@@ -157,7 +165,7 @@ public class BorderObject3D extends Object3D {
     }
 
     // generate triangles and use adjustable edge interpolation
-    private void generateAdvanced(ArrayList<DelaunayTriangle> triangleList, Collection<Voxel> faceList,
+    private void generateAdvanced(TriangleBuffer tris, Collection<Voxel> faceList,
                                   int minx, int miny, int w, int h, Integer orientation, Integer axis,
                                   Integer plane, int side, HullManager<Voxel> hullManager) {
 
@@ -177,7 +185,7 @@ public class BorderObject3D extends Object3D {
         );
 
         // generate the texture (and remember seen triangle points)
-        textureObject.refreshTexture(seenTrianglePoints, this);
+        textureObject.refreshTexture(seenTrianglePoints);
 
         // the texture id
         int textureId = textureObject.getTextureId();
@@ -201,11 +209,11 @@ public class BorderObject3D extends Object3D {
         float move = orientation%2 == 0 ? 0.5f : -0.5f;
 
         // iterate over triangles
-        for (DelaunayTriangle tri : triangleList) {
+        for (int tri = 0, count = tris.getTriangleCount(); tri < count; tri++) {
             // get the rounded points
-            int[] roundedTrianglePoints = getRoundedPoints(tri);
+            int[] roundedTrianglePoints = getRoundedPoints(tris, tri);
             // get the outside direction
-            byte[] outside_direction = getOutsideDirections(seenTrianglePoints, tri, roundedTrianglePoints);
+            byte[] outside_direction = getOutsideDirections(seenTrianglePoints, tris, tri, roundedTrianglePoints);
             // the the interpolated points
             SimpleVector[] interpTrianglePoints = getTrianglePointsInterpolated(axis, plane, move, roundedTrianglePoints, minx, miny, outside_direction);
             // get the appropriate interpolation for the texture
@@ -215,28 +223,26 @@ public class BorderObject3D extends Object3D {
             // add the triangle to this object
             this.addTriangle(
                     interpTrianglePoints[sx0],
-                    (roundedTrianglePoints[x0] + outside_direction[x0]*textureInterpolation + 1)/textureSizeX,
-                    (roundedTrianglePoints[y0] + outside_direction[y0]*textureInterpolation + 1)/textureSizeY,
+                    textureObject.getU((roundedTrianglePoints[x0] + outside_direction[x0]*textureInterpolation + 1)/textureSizeX),
+                    textureObject.getV((roundedTrianglePoints[y0] + outside_direction[y0]*textureInterpolation + 1)/textureSizeY),
                     interpTrianglePoints[sx1],
-                    (roundedTrianglePoints[x1] + outside_direction[x1]*textureInterpolation + 1)/textureSizeX,
-                    (roundedTrianglePoints[y1] + outside_direction[y1]*textureInterpolation + 1)/textureSizeY,
+                    textureObject.getU((roundedTrianglePoints[x1] + outside_direction[x1]*textureInterpolation + 1)/textureSizeX),
+                    textureObject.getV((roundedTrianglePoints[y1] + outside_direction[y1]*textureInterpolation + 1)/textureSizeY),
                     interpTrianglePoints[2],
-                    (roundedTrianglePoints[4] + outside_direction[4]*textureInterpolation + 1)/textureSizeX,
-                    (roundedTrianglePoints[5] + outside_direction[5]*textureInterpolation + 1)/textureSizeY,
+                    textureObject.getU((roundedTrianglePoints[4] + outside_direction[4]*textureInterpolation + 1)/textureSizeX),
+                    textureObject.getV((roundedTrianglePoints[5] + outside_direction[5]*textureInterpolation + 1)/textureSizeY),
                     textureId
             );
 
-            if (canHaveBorder) {
-                // memorize the uv positions
-                uvPositions.add(new float[] {
-                        roundedTrianglePoints[x0] + 1, outside_direction[x0],
-                        roundedTrianglePoints[y0] + 1, outside_direction[y0],
-                        roundedTrianglePoints[x1] + 1, outside_direction[x1],
-                        roundedTrianglePoints[y1] + 1, outside_direction[y1],
-                        roundedTrianglePoints[4] + 1, outside_direction[4],
-                        roundedTrianglePoints[5] + 1, outside_direction[5]
-                });
-            }
+            // memorize the uv positions
+            uvPositions.add(new float[] {
+                    roundedTrianglePoints[x0] + 1, outside_direction[x0],
+                    roundedTrianglePoints[y0] + 1, outside_direction[y0],
+                    roundedTrianglePoints[x1] + 1, outside_direction[x1],
+                    roundedTrianglePoints[y1] + 1, outside_direction[y1],
+                    roundedTrianglePoints[4] + 1, outside_direction[4],
+                    roundedTrianglePoints[5] + 1, outside_direction[5]
+            });
         }
 
         // set the additional color
@@ -245,11 +251,11 @@ public class BorderObject3D extends Object3D {
     }
 
     // generate triangles without any interpolation
-    private void generateSimple(ArrayList<DelaunayTriangle> triangleList, int minx, int miny,
+    private void generateSimple(TriangleBuffer tris, int minx, int miny,
                                 Integer orientation, Integer axis, Integer plane) {
         float move = orientation%2 == 0 ? 0.5f : -0.5f;
-        for (DelaunayTriangle triangle : triangleList) {
-            int[] roundedTrianglePoints = getRoundedPoints(triangle);
+        for (int tri = 0, count = tris.getTriangleCount(); tri < count; tri++) {
+            int[] roundedTrianglePoints = getRoundedPoints(tris, tri);
             SimpleVector[] simpleVectors = getTrianglePoints(axis, plane, move, roundedTrianglePoints, minx, miny);
             this.addTriangle(simpleVectors[inverted?1:0],simpleVectors[inverted?0:1],simpleVectors[2]);
         }
@@ -277,33 +283,39 @@ public class BorderObject3D extends Object3D {
     public final void setBorder(boolean border) {
         if (canHaveBorder && hasBorder != border) {
             hasBorder = border;
-            float textureInterpolation = hasBorder
-                    ? VitcoSettings.BORDER_INSET_VALUE
-                    : -VitcoSettings.TEXTURE_INTERPOLATION_VALUE;
-            int textureId = textureObject.getTextureId();
-            for (int i = 0, size = uvPositions.size(); i < size; i++) {
-                float[] uvInfo = uvPositions.get(i);
-                polygonManager.setPolygonTexture(i, new TextureInfo(textureId,
-                        (uvInfo[0] + uvInfo[1]*textureInterpolation)/textureSizeX,
-                        (uvInfo[2] + uvInfo[3]*textureInterpolation)/textureSizeY,
-                        (uvInfo[4] + uvInfo[5]*textureInterpolation)/textureSizeX,
-                        (uvInfo[6] + uvInfo[7]*textureInterpolation)/textureSizeY,
-                        (uvInfo[8] + uvInfo[9]*textureInterpolation)/textureSizeX,
-                        (uvInfo[10] + uvInfo[11]*textureInterpolation)/textureSizeY
-                ));
-            }
+            updateTextureCoordinates();
+        }
+    }
+
+    // set the texture coordinates of all triangles (w.r.t. the border state
+    // and the place of the texture in the texture atlas)
+    private void updateTextureCoordinates() {
+        float textureInterpolation = canHaveBorder && hasBorder
+                ? VitcoSettings.BORDER_INSET_VALUE
+                : -VitcoSettings.TEXTURE_INTERPOLATION_VALUE;
+        int textureId = textureObject.getTextureId();
+        for (int i = 0, size = uvPositions.size(); i < size; i++) {
+            float[] uvInfo = uvPositions.get(i);
+            polygonManager.setPolygonTexture(i, new TextureInfo(textureId,
+                    textureObject.getU((uvInfo[0] + uvInfo[1]*textureInterpolation)/textureSizeX),
+                    textureObject.getV((uvInfo[2] + uvInfo[3]*textureInterpolation)/textureSizeY),
+                    textureObject.getU((uvInfo[4] + uvInfo[5]*textureInterpolation)/textureSizeX),
+                    textureObject.getV((uvInfo[6] + uvInfo[7]*textureInterpolation)/textureSizeY),
+                    textureObject.getU((uvInfo[8] + uvInfo[9]*textureInterpolation)/textureSizeX),
+                    textureObject.getV((uvInfo[10] + uvInfo[11]*textureInterpolation)/textureSizeY)
+            ));
         }
     }
 
     // ------------------------------------
 
-    // constructor
-    public BorderObject3D(ArrayList<DelaunayTriangle> tris, Collection<Voxel> faceList,
+    // constructor (the triangles are only read, so the buffer can be reused afterwards)
+    public BorderObject3D(TriangleBuffer tris, Collection<Voxel> faceList,
                           int minx, int miny, int w, int h, Integer orientation, Integer axis,
                           Integer plane, boolean simpleMode, int side,
                           boolean culling, boolean hasBorder, HullManager<Voxel> hullManager) {
         // construct this object 3D with correct triangle count
-        super(tris.size());
+        super(tris.getTriangleCount());
 
         // compute inversion and store border state
         this.inverted = orientation%2 == (orientation/2 == 1 ? 0 : 1);
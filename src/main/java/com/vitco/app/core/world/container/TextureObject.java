@@ -1,6 +1,7 @@
 package com.vitco.app.core.world.container;
 
 import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.core.world.TextureAtlas;
 import com.vitco.app.core.world.WorldManager;
 import com.vitco.app.low.hull.HullManager;
 import com.vitco.app.util.graphic.GraphicTools;
@@ -8,9 +9,10 @@ import com.vitco.app.util.graphic.SharedImageFactory;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 
 /**
@@ -29,11 +31,9 @@ public class TextureObject implements Serializable {
     private final int h;
     private final int textureSizeX;
     private final int textureSizeY;
-    private int textureId;
     private String textureName = null;
-
-    // counts how often the textures are used
-    private static final HashMap<String, Integer> textureCount = new HashMap<String, Integer>();
+    // the place of the texture in the texture atlas
+    private TextureAtlas.Slot slot = null;
 
     // constructor
     public TextureObject(int minx, int miny, Collection<Voxel> faceList,
@@ -52,13 +52,23 @@ public class TextureObject implements Serializable {
     }
 
     public int getTextureId() {
-        return textureId;
+        return slot.getTextureId();
+    }
+
+    // convert an u value of this texture (0 - 1) to the texture atlas
+    public float getU(float u) {
+        return slot.getU(u);
+    }
+
+    // convert a v value of this texture (0 - 1) to the texture atlas
+    public float getV(float v) {
+        return slot.getV(v);
     }
 
     // helper to draw pixel interpolation where necessary (so black outline is only visible when appropriate)
     private void interpolatePixel(int[] pos2D, Voxel face, int axis, HullManager hullManager,
                                   int orientation, boolean containsTexture, Graphics2D g2,
-                                  int x, int y, BufferedImage textureImage, int offsetx, int offsety) {
+                                  int x, int y, int[] pixels, int offsetx, int offsety) {
         int[] pos = VoxelManager.convert2D3D(pos2D[0] + offsetx, pos2D[1] + offsety, face.getPosAsInt()[axis], axis);
         short[] posS = new short[] {(short) pos[0], (short) pos[1], (short) pos[2]};
         if (hullManager.containsBorder(posS, orientation)) {
@@ -66,7 +76,7 @@ public class TextureObject implements Serializable {
                 g2.setColor(face.getColor());
                 g2.fillRect((x + 1 + offsetx)*32, (y + 1 + offsety)*32, 32, 32);
             } else {
-                textureImage.setRGB(x + 1 + offsetx, y + 1 + offsety, face.getColor().getRGB());
+                pixels[(y + 1 + offsety) * textureSizeX + x + 1 + offsetx] = face.getColor().getRGB() & 0xFFFFFF;
             }
         }
     }
@@ -78,23 +88,18 @@ public class TextureObject implements Serializable {
 
     // sets the current texture unused
     private void setCurrentTextureUnused() {
-        int count = textureCount.get(textureName);
-        if (count == 1) {
-            WorldManager.removeEfficientTexture(textureName);
-            textureCount.remove(textureName);
-        } else {
-            textureCount.put(textureName, count - 1);
-        }
+        TextureAtlas.release(slot);
     }
 
     // generates a texture
     // the seen points are stored in the seen hashmap
-    public final void refreshTexture(HashSet<Point> seenTrianglePoints, BorderObject3D obj) {
+    // returns true if the texture moved in the texture atlas
+    public final boolean refreshTexture(HashSet<Point> seenTrianglePoints) {
         // create black image
         BufferedImage textureImage = SharedImageFactory.getBufferedImage(textureSizeX, textureSizeY);
-        Graphics2D g2 = (Graphics2D) textureImage.getGraphics();
-        g2.setColor(Color.BLACK);
-        g2.fillRect(0, 0, textureSizeX, textureSizeY);
+        int[] pixels = ((DataBufferInt) textureImage.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, 0);
+        Graphics2D g2 = null;
 
         boolean containsTexture = false;
 
@@ -115,7 +120,6 @@ public class TextureObject implements Serializable {
                 BufferedImage largeTextureImage = SharedImageFactory.getBufferedImage(textureSizeEnlargedX, textureSizeEnlargedY);
                 largeTextureImage.getGraphics().drawImage(textureImage, 0, 0, textureSizeEnlargedX, textureSizeEnlargedY, null);
                 textureImage = largeTextureImage;
-                g2.dispose();
                 g2 = (Graphics2D) textureImage.getGraphics();
             }
             if (containsTexture) {
@@ -188,7 +192,7 @@ public class TextureObject implements Serializable {
                 }
             } else {
                 // set the pixel
-                textureImage.setRGB(x + 1, y + 1, face.getColor().getRGB());
+                pixels[(y + 1) * textureSizeX + x + 1] = face.getColor().getRGB() & 0xFFFFFF;
             }
 
             if (!isTexture) {
@@ -197,37 +201,37 @@ public class TextureObject implements Serializable {
                 // check if this is edge pixel
                 if (x == 0 && y == 0) {
                     interpolatePixel(pos2D, face, axis, hullManager, orientation,
-                            containsTexture, g2, x, y, textureImage, -1, -1);
+                            containsTexture, g2, x, y, pixels, -1, -1);
                 }
                 if (x == w - 1 && y == h - 1) {
                     interpolatePixel(pos2D, face, axis, hullManager, orientation,
-                            containsTexture, g2, x, y, textureImage, 1, 1);
+                            containsTexture, g2, x, y, pixels, 1, 1);
                 }
                 if (x == 0 && y == h - 1) {
                     interpolatePixel(pos2D, face, axis, hullManager, orientation,
-                            containsTexture, g2, x, y, textureImage, -1, 1);
+                            containsTexture, g2, x, y, pixels, -1, 1);
                 }
                 if (x == w - 1 && y == 0) {
                     interpolatePixel(pos2D, face, axis, hullManager, orientation,
-                            containsTexture, g2, x, y, textureImage, 1, -1);
+                            containsTexture, g2, x, y, pixels, 1, -1);
                 }
 
                 if (x == 0) {
                     interpolatePixel(pos2D, face, axis, hullManager, orientation,
-                            containsTexture, g2, x, y, textureImage, -1, 0);
+                            containsTexture, g2, x, y, pixels, -1, 0);
                 }
                 if (x == w - 1) {
                     interpolatePixel(pos2D, face, axis, hullManager, orientation,
-                            containsTexture, g2, x, y, textureImage, 1, 0);
+                            containsTexture, g2, x, y, pixels, 1, 0);
                 }
 
                 if (y == 0) {
                     interpolatePixel(pos2D, face, axis, hullManager, orientation,
-                            containsTexture, g2, x, y, textureImage, 0, -1);
+                            containsTexture, g2, x, y, pixels, 0, -1);
                 }
                 if (y == h - 1) {
                     interpolatePixel(pos2D, face, axis, hullManager, orientation,
-                            containsTexture, g2, x, y, textureImage, 0, 1);
+                            containsTexture, g2, x, y, pixels, 0, 1);
                 }
 
                 // =======================
@@ -238,32 +242,25 @@ public class TextureObject implements Serializable {
                 seenTrianglePoints.add(new Point(x,y));
             }
         }
-        g2.dispose();
+        if (g2 != null) {
+            g2.dispose();
+        }
 
         // get the hash of the texture as texture key
         String textureNameNew = GraphicTools.getHash(textureImage);
 
         if (!textureNameNew.equals(textureName)) {
-
-            // update count and load if necessary
-            Integer count = textureCount.get(textureNameNew);
-            if (count == null) {
-                count = 0;
-                // load the texture
-                WorldManager.loadEfficientTexture(textureNameNew, textureImage, false);
-            }
-            textureCount.put(textureNameNew, count + 1);
-            // get the id for this texture
-            textureId = WorldManager.getTextureId(textureNameNew);
-            // update the texture of the object
-            obj.setTexture(textureNameNew);
+            // get the new place (before the old one is released, so it can not be reused)
+            TextureAtlas.Slot oldSlot = slot;
+            slot = TextureAtlas.acquire(textureNameNew, textureImage);
             // remove existing (old) texture information
-            if (textureName != null) {
-                setCurrentTextureUnused();
+            if (oldSlot != null) {
+                TextureAtlas.release(oldSlot);
             }
             // assign the new texture name
             textureName = textureNameNew;
+            return slot != oldSlot;
         }
-
+        return false;
     }
 }
@@ -0,0 +1,103 @@
+package com.vitco.app.export;
+
+import com.vitco.app.core.data.container.Voxel;
+import com.vitco.app.low.hull.HullManager;
+
+/**
+ * Dense snapshot of voxels inside a bounding box.
+ *
+ * Stores the colors in a flat array and the visible faces of every voxel as bit mask, so
+ * exporters can walk all cells of the box without looking up voxel (or neighbours) in the data.
+ * The face bits use the orientation of the HullManager borders (0 = +x, 1 = -x, 2 = +y,
+ * 3 = -y, 4 = +z, 5 = -z).
+ */
+public final class DenseVolume {
+
+    // face orientations
+    public static final int POS_X = 0;
+    public static final int NEG_X = 1;
+    public static final int POS_Y = 2;
+    public static final int NEG_Y = 3;
+    public static final int POS_Z = 4;
+    public static final int NEG_Z = 5;
+
+    // flag (in the face array) that indicates that the cell is used
+    private static final byte USED = 1 << 6;
+
+    private final int minX, minY, minZ;
+    private final int sizeX, sizeY, sizeZ;
+
+    // colors of the cells (rgb as returned by Color.getRGB())
+    private final int[] colors;
+    // visible faces of the cells (and whether the cell is used)
+    private final byte[] faces;
+
+    // constructor - all voxels are used to determine the visible faces,
+    // but only the voxels inside the box (min and max inclusive) are stored
+    public DenseVolume(Voxel[] voxels, int[] min, int[] max) {
+        minX = min[0];
+        minY = min[1];
+        minZ = min[2];
+        // empty boxes (min > max) result in a size of zero
+        sizeX = (int) Math.max(0L, (long) max[0] - min[0] + 1);
+        sizeY = (int) Math.max(0L, (long) max[1] - min[1] + 1);
+        sizeZ = (int) Math.max(0L, (long) max[2] - min[2] + 1);
+        colors = new int[sizeX * sizeY * sizeZ];
+        faces = new byte[colors.length];
+
+        // compute the borders
+        HullManager<Void> hullManager = new HullManager<Void>();
+        for (Voxel voxel : voxels) {
+            hullManager.update(voxel.posId, null);
+        }
+
+        // fill the cells
+        for (Voxel voxel : voxels) {
+            int cell = getCell(voxel.x, voxel.y, voxel.z);
+            if (cell != -1) {
+                byte mask = USED;
+                for (int i = 0; i < 6; i++) {
+                    if (hullManager.containsBorder(voxel.posId, i)) {
+                        mask |= 1 << i;
+                    }
+                }
+                faces[cell] = mask;
+                colors[cell] = voxel.getColor().getRGB();
+            }
+        }
+    }
+
+    // get the cell index of a position (-1 if the position is outside the box)
+    private int getCell(int x, int y, int z) {
+        int lx = x - minX;
+        int ly = y - minY;
+        int lz = z - minZ;
+        if (lx < 0 || ly < 0 || lz < 0 || lx >= sizeX || ly >= sizeY || lz >= sizeZ) {
+            return -1;
+        }
+        return lx + (lz + ly * sizeZ) * sizeX;
+    }
+
+    // true iff the position contains a voxel
+    public final boolean contains(int x, int y, int z) {
+        int cell = getCell(x, y, z);
+        return cell != -1 && faces[cell] != 0;
+    }
+
+    // get the color of a position (only valid if the position contains a voxel)
+    public final int getColor(int x, int y, int z) {
+        int cell = getCell(x, y, z);
+        return cell == -1 ? 0 : colors[cell];
+    }
+
+    // get the visible faces of a position as bit mask (bit "i" set iff face "i" is visible)
+    public final int getFaces(int x, int y, int z) {
+        int cell = getCell(x, y, z);
+        return cell == -1 ? 0 : faces[cell] & ~USED;
+    }
+
+    // true iff the face of the voxel at this position is visible
+    public final boolean hasFace(int x, int y, int z, int orientation) {
+        return (getFaces(x, y, z) & (1 << orientation)) != 0;
+    }
+}
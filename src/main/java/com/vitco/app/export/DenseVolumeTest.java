@@ -0,0 +1,51 @@
+package com.vitco.app.export;
+
+import com.vitco.app.core.data.container.Voxel;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Test the dense voxel snapshot against direct neighbour lookups.
+ */
+public class DenseVolumeTest {
+
+    @Test
+    public void testAgainstNeighbours() throws Exception {
+        Random rand = new Random(3);
+        HashSet<String> known = new HashSet<String>();
+        ArrayList<Voxel> list = new ArrayList<Voxel>();
+        for (int i = 0; i < 3000; i++) {
+            int[] pos = new int[] {rand.nextInt(20) - 10, rand.nextInt(20) - 10, rand.nextInt(20) - 10};
+            if (known.add(pos[0] + "_" + pos[1] + "_" + pos[2])) {
+                list.add(new Voxel(i, pos, new Color(rand.nextInt(0xFFFFFF)), false, null, 0));
+            }
+        }
+        Voxel[] voxels = new Voxel[list.size()];
+        list.toArray(voxels);
+        // the box does not contain all voxels
+        DenseVolume volume = new DenseVolume(voxels, new int[] {-8, -10, -10}, new int[] {9, 5, 9});
+        int[][] offsets = new int[][] {{1,0,0}, {-1,0,0}, {0,1,0}, {0,-1,0}, {0,0,1}, {0,0,-1}};
+        for (Voxel voxel : voxels) {
+            boolean inside = voxel.x >= -8 && voxel.y <= 5;
+            assert volume.contains(voxel.x, voxel.y, voxel.z) == inside;
+            if (inside) {
+                assert volume.getColor(voxel.x, voxel.y, voxel.z) == voxel.getColor().getRGB();
+                for (int i = 0; i < 6; i++) {
+                    boolean empty = !known.contains((voxel.x + offsets[i][0]) + "_" +
+                            (voxel.y + offsets[i][1]) + "_" + (voxel.z + offsets[i][2]));
+                    assert volume.hasFace(voxel.x, voxel.y, voxel.z, i) == empty;
+                }
+            }
+        }
+        // empty volume
+        DenseVolume empty = new DenseVolume(new Voxel[0],
+                new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE},
+                new int[] {Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE});
+        assert !empty.contains(0, 0, 0);
+    }
+
+}
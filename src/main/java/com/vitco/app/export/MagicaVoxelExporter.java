@@ -83,7 +83,7 @@ public class MagicaVoxelExporter extends AbstractExporter {
         fileOut.writeIntRev(getCount());
 
         // ensure generated file is deterministic
-        Voxel[] voxels = data.getVisibleLayerVoxel();
+        Voxel[] voxels = data.getVisibleLayerVoxel().clone();
         Arrays.sort(voxels, Comparator.comparingInt(o -> o.posId));
 
         // write voxel data
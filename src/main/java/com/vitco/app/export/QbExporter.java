@@ -84,11 +84,15 @@ public class QbExporter extends AbstractExporter {
             fileOut.writeByte((byte) layerName.length());
             fileOut.writeASCIIString(layerName);
 
-            int[][] meta = get_meta(layerId);
+            Voxel[] voxels = data.getLayerVoxels(layerId);
+            int[][] meta = get_meta(voxels);
             int[] min = meta[0];
             int[] max = meta[1];
             int[] size = meta[2];
 
+            // snapshot of the layer (colors and visible faces)
+            DenseVolume volume = new DenseVolume(voxels, min, max);
+
             // write size
             fileOut.writeIntRev(size[ax1]);
             fileOut.writeIntRev(size[1]);
@@ -107,33 +111,33 @@ public class QbExporter extends AbstractExporter {
                     for (int c2 = min[ax1]; c2 <= max[ax1]; c2++) {
                         int x = this.useRightHandedZAxisOrientation ? c2 : c1;
                         int z = this.useRightHandedZAxisOrientation ? c1 : c2;
-                        Voxel voxel = data.searchVoxel(new int[]{x, y, z}, layerId);
                         int newColor;
-                        if (voxel == null) {
+                        if (!volume.contains(x, y, z)) {
                             newColor = TRANSPARENT_VOXEL;
                         } else {
                             byte visible = 1;
                             if (this.useVisMaskEncoding) {
-                                if (data.searchVoxel(new int[]{x - 1, y, z}, layerId) == null) {
+                                int faces = volume.getFaces(x, y, z);
+                                if ((faces & (1 << DenseVolume.NEG_X)) != 0) {
                                     visible = ByteHelper.setBit(visible, this.useRightHandedZAxisOrientation ? 5 : 1);
                                 }
-                                if (data.searchVoxel(new int[]{x + 1, y, z}, layerId) == null) {
+                                if ((faces & (1 << DenseVolume.POS_X)) != 0) {
                                     visible = ByteHelper.setBit(visible, this.useRightHandedZAxisOrientation ? 6 : 2);
                                 }
-                                if (data.searchVoxel(new int[]{x, y + 1, z}, layerId) == null) {
+                                if ((faces & (1 << DenseVolume.POS_Y)) != 0) {
                                     visible = ByteHelper.setBit(visible, 3);
                                 }
-                                if (data.searchVoxel(new int[]{x, y - 1, z}, layerId) == null) {
+                                if ((faces & (1 << DenseVolume.NEG_Y)) != 0) {
                                     visible = ByteHelper.setBit(visible, 4);
                                 }
-                                if (data.searchVoxel(new int[]{x, y, z - 1}, layerId) == null) {
+                                if ((faces & (1 << DenseVolume.NEG_Z)) != 0) {
                                     visible = ByteHelper.setBit(visible, this.useRightHandedZAxisOrientation ? 2 : 5);
                                 }
-                                if (data.searchVoxel(new int[]{x, y, z + 1}, layerId) == null) {
+                                if ((faces & (1 << DenseVolume.POS_Z)) != 0) {
                                     visible = ByteHelper.setBit(visible, this.useRightHandedZAxisOrientation ? 1 : 6);
                                 }
                             }
-                            newColor = voxel.getColor().getRGB();
+                            newColor = volume.getColor(x, y, z);
                             newColor = ((this.useVisMaskEncoding ? visible : 0xFF) << 24) | (newColor & 0x000000FF) << 16 | (newColor & 0x0000FF00) | (newColor & 0x00FF0000) >> 16;
                         }
 
@@ -160,14 +164,14 @@ public class QbExporter extends AbstractExporter {
         return true;
     }
 
-    private int[][] get_meta(int layerId) {
+    private int[][] get_meta(Voxel[] voxels) {
         int[] min, max, size;
         if (!useBoxAsMatrix) { // determine actual size by using the voxels
             min = new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
             max = new int[]{Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
             size = new int[]{0, 0, 0};
             boolean hasVoxel = false;
-            for (Voxel voxel : data.getLayerVoxels(layerId)) {
+            for (Voxel voxel : voxels) {
                 min[0] = Math.min(voxel.x, min[0]);
                 min[1] = Math.min(voxel.y, min[1]);
                 min[2] = Math.min(voxel.z, min[2]);
@@ -1,7 +1,6 @@
 package com.vitco.app.export;
 
 import com.vitco.app.core.data.Data;
-import com.vitco.app.core.data.container.Voxel;
 import com.vitco.app.layout.content.console.ConsoleInterface;
 import com.vitco.app.util.components.progressbar.ProgressDialog;
 import com.vitco.app.util.misc.BiMap;
@@ -45,18 +44,21 @@ public class VoxVoxLapExporter extends AbstractExporter {
         int[] min = getMin();
         int[] max = getMax();
 
+        // snapshot of the visible voxels
+        DenseVolume volume = new DenseVolume(data.getVisibleLayerVoxel(), min, max);
+
         // write the voxel data
+        byte[] row = new byte[Math.max(0, max[1] - min[1] + 1)];
         for (int x = min[0]; x <= max[0]; x++) {
             for (int z = max[2]; z > min[2] - 1; z--) {
-                for (int y = min[1]; y <= max[1]; y++) {
-                    Voxel voxel = data.searchVoxel(new int[]{x,y,z}, false);
-                    if (voxel == null) {
-                        fileOut.writeByte((byte)255);
+                for (int y = min[1], i = 0; y <= max[1]; y++, i++) {
+                    if (volume.contains(x, y, z)) {
+                        row[i] = colorPalette.get(volume.getColor(x, y, z)).byteValue();
                     } else {
-                        int colorId = colorPalette.get(voxel.getColor().getRGB());
-                        fileOut.writeByte((byte) colorId);
+                        row[i] = (byte) 255;
                     }
                 }
+                fileOut.writeBytes(row);
             }
         }
 
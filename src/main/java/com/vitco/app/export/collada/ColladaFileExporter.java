@@ -11,32 +11,40 @@ import com.vitco.app.util.components.progressbar.ProgressDialog;
 import com.vitco.app.util.components.progressbar.ProgressReporter;
 import com.vitco.app.util.file.FileTools;
 import com.vitco.app.util.misc.DateTools;
-import com.vitco.app.util.xml.XmlFile;
-import gnu.trove.iterator.TIntIterator;
 import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 
 import javax.imageio.ImageIO;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.util.HashSet;
 
 /**
  * Export data to COLLADA file ( with optional settings )
+ *
+ * The document is streamed to the file (StAX), the geometry arrays are written straight
+ * from the triangle managers, so no document tree or large strings are held in memory.
  */
 public class ColladaFileExporter extends ProgressReporter {
     // contains the data that will be used to write this collada file
     private final ExportDataManager exportDataManager;
 
-    // the xml Collada file that we're building
-    private final XmlFile xmlFile = new XmlFile("COLLADA");
-
     // prefix for the texture files (this should include the file name to prevent
     // overwriting of textures that belong to different files)
     private final String texturePrefix;
 
+    // name of the exported file (used to create the object names)
+    private final String name;
+
+    // export settings
+    private final boolean useYUP;
+    private final boolean exportOrthogonalVertexNormals;
+    private final boolean useVertexColoring;
+
     // whether to prefix all object names with the file name
     private final boolean prefixObjectNamesWithFileName;
 
@@ -50,27 +58,115 @@ public class ColladaFileExporter extends ProgressReporter {
         super(dialog, console);
         this.exportDataManager = exportDataManager;
         this.texturePrefix = texturePrefix;
+        this.name = name;
+        this.useYUP = useYUP;
+        this.exportOrthogonalVertexNormals = exportOrthogonalVertexNormals;
+        this.useVertexColoring = useVertexColoring;
         this.prefixObjectNamesWithFileName = prefixObjectNamesWithFileName;
         this.objectScale = objectScale;
-        // initialize the xml file
-        setActivity("Creating File Data...", true);
-        initXmlFile(useYUP, useVertexColoring);
-        // create the object in the scene
-        setActivity("Creating Objects...", true);
-        writeObjects(name, useYUP);
-        if (!useVertexColoring) {
-            // write the texture information
-            setActivity("Creating Textures...", true);
-            writeTextures();
+    }
+
+    // helper that writes indented xml elements to a stream writer
+    private static final class ElementWriter {
+        private final XMLStreamWriter out;
+        // depth of the current element
+        private int depth = 0;
+        // true iff the current element has child elements
+        private boolean hasChildren = false;
+
+        private ElementWriter(XMLStreamWriter out) {
+            this.out = out;
         }
 
-        // write the mesh + uv of the object (triangles)
-        setActivity("Creating Coordinates and UVs / Vertex Colors...", true);
-        writeCoordinates(useYUP, exportOrthogonalVertexNormals, useVertexColoring);
+        // start a new line with the current indentation
+        private void newLine() throws XMLStreamException {
+            if (depth > 0) {
+                StringBuilder indent = new StringBuilder("\n");
+                for (int i = 0; i < depth; i++) {
+                    indent.append("    ");
+                }
+                out.writeCharacters(indent.toString());
+            }
+        }
+
+        // write attributes in the form "name=value"
+        private void attributes(String[] attributes) throws XMLStreamException {
+            for (String attr : attributes) {
+                String[] toSet = attr.split("=", 2);
+                out.writeAttribute(toSet[0], toSet[1]);
+            }
+        }
+
+        // open an element
+        public void start(String name, String... attributes) throws XMLStreamException {
+            newLine();
+            out.writeStartElement(name);
+            attributes(attributes);
+            depth++;
+            hasChildren = false;
+        }
+
+        // close the current element
+        public void end() throws XMLStreamException {
+            depth--;
+            if (hasChildren) {
+                newLine();
+            }
+            out.writeEndElement();
+            hasChildren = true;
+        }
+
+        // write an element without content
+        public void empty(String name, String... attributes) throws XMLStreamException {
+            newLine();
+            out.writeEmptyElement(name);
+            attributes(attributes);
+            hasChildren = true;
+        }
+
+        // write an element with text content
+        public void text(String name, String text, String... attributes) throws XMLStreamException {
+            start(name, attributes);
+            out.writeCharacters(text);
+            end();
+        }
+
+        // open an element and return a writer for its (large) text content,
+        // the writer needs to be flushed and the element closed with end()
+        public Writer startText(String name, String... attributes) throws XMLStreamException {
+            start(name, attributes);
+            return new BufferedWriter(new Writer() {
+                @Override
+                public void write(char[] cbuf, int off, int len) throws IOException {
+                    try {
+                        out.writeCharacters(cbuf, off, len);
+                    } catch (XMLStreamException e) {
+                        throw new IOException(e);
+                    }
+                }
+
+                @Override
+                public void flush() {}
+
+                @Override
+                public void close() {}
+            }, 1 << 16);
+        }
     }
 
-    // create the object in the scene
-    private void writeObjects(String name, boolean useYUP) {
+    // obtain all texture ids
+    private int[] getTextureIds() {
+        TIntHashSet textureIds = new TIntHashSet();
+        for (TexTriangleManager texTriangleManager : exportDataManager.getTriangleManager()) {
+            for (int[] textureId : texTriangleManager.getTextureIds()) {
+                textureIds.add(textureId[0]);
+            }
+        }
+        return textureIds.toArray();
+    }
+
+    // write the object nodes of the scene
+    private void writeObjects(ElementWriter xml, int[] textureIds) throws XMLStreamException {
         String cleanName = name.replace(" ", "_").replaceAll("[^a-zA-Z0-9_\\-\\.]", "");
         String[] layerNames = exportDataManager.getLayerNames();
         HashSet<String> knownObjectIds = new HashSet<>();
@@ -87,378 +183,357 @@ public class ColladaFileExporter extends ProgressReporter {
             }
             knownObjectIds.add(objectId);
             // create the object
-            xmlFile.resetTopNode("library_visual_scenes/visual_scene/node[-1]");
-            xmlFile.addAttributes("", new String[]{
+            xml.start("node",
                     "id=" + objectId,
                     "name=" + (this.prefixObjectNamesWithFileName ? cleanName + "." : "") + cleanLayerName,
-                    "type=NODE"
-            });
-            xmlFile.addAttrAndTextContent("translate", new String[]{"sid=location"},
+                    "type=NODE");
+            xml.text("translate",
                     (-objectScale * offset[0] * 2) + " " +
                             (-objectScale * (useYUP ? offset[1] : offset[2]) * 2) + " " +
-                            (-objectScale * (useYUP ? -offset[2] : offset[1]) * 2));
-            xmlFile.addAttrAndTextContent("rotate[-1]", new String[]{"sid=rotationZ"}, "0 0 1 0");
-            xmlFile.addAttrAndTextContent("rotate[-1]", new String[]{"sid=rotationY"}, "0 1 0 0");
-            xmlFile.addAttrAndTextContent("rotate[-1]", new String[]{"sid=rotationX"}, "1 0 0 0");
+                            (-objectScale * (useYUP ? -offset[2] : offset[1]) * 2),
+                    "sid=location");
+            xml.text("rotate", "0 0 1 0", "sid=rotationZ");
+            xml.text("rotate", "0 1 0 0", "sid=rotationY");
+            xml.text("rotate", "1 0 0 0", "sid=rotationX");
             // scale the object
-            xmlFile.addAttrAndTextContent("scale", new String[]{"sid=scale"}, objectScale + " " + objectScale + " " + objectScale);
-
+            xml.text("scale", objectScale + " " + objectScale + " " + objectScale, "sid=scale");
 
             // add the material to the object
-            xmlFile.setTopNode("instance_geometry[-1]");
-            xmlFile.addAttributes("", new String[]{
+            xml.start("instance_geometry",
                     "url=#Plane-tex-mesh-" + layerRef,
                     "sid=" + objectId,
-                    "name=" + cleanLayerName
-            });
+                    "name=" + cleanLayerName);
+            if (textureIds.length > 0) {
+                xml.start("bind_material");
+                xml.start("technique_common");
+                for (int id : textureIds) {
+                    // create texture reference in object
+                    xml.start("instance_material",
+                            "symbol=lambert" + id + "-material",
+                            "target=#lambert" + id + "-material");
+                    // add the uv mapping
+                    xml.empty("bind_vertex_input",
+                            "semantic=TEX0",
+                            "input_semantic=TEXCOORD",
+                            "input_set=0");
+                    xml.end();
+                }
+                xml.end();
+                xml.end();
+            }
+            xml.end();
+            xml.end();
         }
     }
 
-    // helper to register a texture image
-    private void addTexture(int id) {
-        // write the image to the library
-        xmlFile.resetTopNode("library_images/image[-1]");
-        xmlFile.addAttributes("", new String[]{
-                "id=" + texturePrefix + id + "-image",
-                "name=" + texturePrefix + id + "-image"
-        });
-        xmlFile.addTextContent("init_from",  "file://" + texturePrefix + id + ".png");
-
-        TexTriangleManager[] triangleManager = exportDataManager.getTriangleManager();
-        for (int layerRef = 0; layerRef < triangleManager.length; layerRef++) {
-            // create texture reference in object
-            xmlFile.resetTopNode("library_visual_scenes/visual_scene/node[" + layerRef + "]/instance_geometry" +
-                    "/bind_material/technique_common/instance_material[-1]");
-            xmlFile.addAttributes("", new String[]{
-                    "symbol=lambert" + id + "-material",
-                    "target=#lambert" + id + "-material"
-            });
-            // add the uv mapping
-            xmlFile.addAttributes("bind_vertex_input", new String[]{
-                    "semantic=TEX0",
-                    "input_semantic=TEXCOORD",
-                    "input_set=0"
-            });
+    // write the texture images
+    private void writeImages(ElementWriter xml, int[] textureIds) throws XMLStreamException {
+        xml.start("library_images");
+        for (int id : textureIds) {
+            xml.start("image",
+                    "id=" + texturePrefix + id + "-image",
+                    "name=" + texturePrefix + id + "-image");
+            xml.text("init_from", "file://" + texturePrefix + id + ".png");
+            xml.end();
         }
+        xml.end();
+    }
 
-        // add the material
-        xmlFile.resetTopNode("library_materials/material[-1]");
-        xmlFile.addAttributes("", new String[]{
-                "id=lambert" + id + "-material",
-                "name=lambert" + id
-        });
-        xmlFile.addAttributes("instance_effect", new String[]{
-                "url=#lambert" + id + "-fx"
-        });
-
-        // write the image effect
-        xmlFile.resetTopNode("library_effects/effect[-1]");
-        xmlFile.addAttributes("", new String[]{
-                "id=lambert" + id + "-fx"
-        });
-        xmlFile.setTopNode("profile_COMMON");
-        // ----
-        xmlFile.setTopNode("newparam[-1]");
-        xmlFile.addAttributes("", new String[]{"sid=" + texturePrefix + id + "-surface"});
-        xmlFile.addAttributes("surface", new String[]{"type=2D"});
-        xmlFile.addTextContent("surface/init_from",  texturePrefix + id + "-image");
-        // ----
-        xmlFile.goUp();
-        xmlFile.setTopNode("newparam[-1]");
-        xmlFile.addAttributes("", new String[]{"sid=" + texturePrefix + id + "-sampler"});
-        xmlFile.addTextContent("sampler2D/source", texturePrefix + id + "-surface");
-        xmlFile.addTextContent("sampler2D/wrap_s", "WRAP");
-        xmlFile.addTextContent("sampler2D/wrap_t", "WRAP");
-        xmlFile.addTextContent("sampler2D/minfilter", "NEAREST");
-        xmlFile.addTextContent("sampler2D/magfilter", "NEAREST");
-        // ----
-        xmlFile.goUp();
-        xmlFile.setTopNode("technique[-1]");
-        xmlFile.addAttributes("", new String[]{"sid=common"});
-        xmlFile.addTextContent("lambert/emission/color", "0 0 0 1");
-        xmlFile.addTextContent("lambert/ambient/color", "0 0 0 1");
-        xmlFile.addAttributes("lambert/diffuse/texture", new String[]{
-                "texture=" + texturePrefix + id + "-sampler",
-                "texcoord=TEX0"
-        });
+    // write the texture effects
+    private void writeEffects(ElementWriter xml, int[] textureIds) throws XMLStreamException {
+        xml.start("library_effects");
+        for (int id : textureIds) {
+            xml.start("effect", "id=lambert" + id + "-fx");
+            xml.start("profile_COMMON");
+            // ----
+            xml.start("newparam", "sid=" + texturePrefix + id + "-surface");
+            xml.start("surface", "type=2D");
+            xml.text("init_from", texturePrefix + id + "-image");
+            xml.end();
+            xml.end();
+            // ----
+            xml.start("newparam", "sid=" + texturePrefix + id + "-sampler");
+            xml.start("sampler2D");
+            xml.text("source", texturePrefix + id + "-surface");
+            xml.text("wrap_s", "WRAP");
+            xml.text("wrap_t", "WRAP");
+            xml.text("minfilter", "NEAREST");
+            xml.text("magfilter", "NEAREST");
+            xml.end();
+            xml.end();
+            // ----
+            xml.start("technique", "sid=common");
+            xml.start("lambert");
+            xml.start("emission");
+            xml.text("color", "0 0 0 1");
+            xml.end();
+            xml.start("ambient");
+            xml.text("color", "0 0 0 1");
+            xml.end();
+            xml.start("diffuse");
+            xml.empty("texture",
+                    "texture=" + texturePrefix + id + "-sampler",
+                    "texcoord=TEX0");
+            xml.end();
+            xml.end();
+            xml.end();
+            // ----
+            xml.end();
+            xml.end();
+        }
+        xml.end();
     }
 
-    // write the different textures
-    private void writeTextures() {
-        // obtain all texture ids
-        TIntHashSet textureIds = new TIntHashSet();
-        for (TexTriangleManager texTriangleManager : exportDataManager.getTriangleManager()) {
-            for (int[] textureId : texTriangleManager.getTextureIds()) {
-                textureIds.add(textureId[0]);
-            }
+    // write the texture materials
+    private void writeMaterials(ElementWriter xml, int[] textureIds) throws XMLStreamException {
+        xml.start("library_materials");
+        for (int id : textureIds) {
+            xml.start("material",
+                    "id=lambert" + id + "-material",
+                    "name=lambert" + id);
+            xml.empty("instance_effect", "url=#lambert" + id + "-fx");
+            xml.end();
         }
-        // write texture file names to xml file
-        for (TIntIterator it = textureIds.iterator(); it.hasNext(); ) {
-            addTexture(it.next());
+        xml.end();
+    }
+
+    // helper - write a float source with accessor
+    private static void writeAccessor(ElementWriter xml, String sourceId, int count, String... params) throws XMLStreamException {
+        xml.start("technique_common");
+        xml.start("accessor",
+                "source=#" + sourceId + "-array",
+                "count=" + count,
+                "stride=" + params.length);
+        for (String param : params) {
+            xml.empty("param", "name=" + param, "type=float");
         }
+        xml.end();
+        xml.end();
     }
 
     // write the coordinates
-    private void writeCoordinates(boolean useYUP, boolean exportOrthogonalVertexNormals, boolean useVertexColoring) {
+    private void writeCoordinates(ElementWriter xml) throws XMLStreamException, IOException {
         TexTriangleManager[] triangleManager = exportDataManager.getTriangleManager();
         for (int layerRef = 0; layerRef < triangleManager.length; layerRef++) {
             TexTriangleManager texTriangleManager = triangleManager[layerRef];
             TIntIntHashMap colorMap = new TIntIntHashMap();
             String gId = "Plane-tex-mesh-" + layerRef;
 
-            // reset top node
-            xmlFile.resetTopNode("library_geometries/geometry[-1]");
-            xmlFile.addAttributes("", new String[]{
+            xml.start("geometry",
                     "id=" + gId,
-                    "name=Plane-tex"
-            });
-            xmlFile.setTopNode("mesh");
+                    "name=Plane-tex");
+            xml.start("mesh");
 
             // Object-positions
-            xmlFile.addAttributes("source[-1]", new String[]{
-                    "id=" + gId + "-positions"
-            });
-            xmlFile.addAttrAndTextContent("source[" + 0 + "]/float_array",
-                    new String[]{
-                            "id=" + gId + "-positions-array",
-                            "count=" + texTriangleManager.getUniquePointCount() * 3},
-                    texTriangleManager.getUniquePointString(true));
-            xmlFile.addAttributes("source[" + 0 + "]/technique_common/accessor", new String[]{
-                    "source=#" + gId + "-positions-array",
-                    "count=" + texTriangleManager.getUniquePointCount(),
-                    "stride=3"
-            });
-            xmlFile.addAttributes("source[" + 0 + "]/technique_common/accessor/param[-1]",
-                    new String[]{"name=X", "type=float"});
-            xmlFile.addAttributes("source[" + 0 + "]/technique_common/accessor/param[-1]",
-                    new String[]{"name=Y", "type=float"});
-            xmlFile.addAttributes("source[" + 0 + "]/technique_common/accessor/param[-1]",
-                    new String[]{"name=Z", "type=float"});
+            xml.start("source", "id=" + gId + "-positions");
+            Writer text = xml.startText("float_array",
+                    "id=" + gId + "-positions-array",
+                    "count=" + texTriangleManager.getUniquePointCount() * 3);
+            texTriangleManager.writeUniquePoints(text, true);
+            text.flush();
+            xml.end();
+            writeAccessor(xml, gId + "-positions", texTriangleManager.getUniquePointCount(), "X", "Y", "Z");
+            xml.end();
 
             if (useVertexColoring) {
                 // --- write the colors
                 int[][] colors = texTriangleManager.getSampleRgbs();
-                StringBuilder colorString = new StringBuilder();
+                xml.start("source", "id=" + gId + "-colors");
+                text = xml.startText("float_array",
+                        "id=" + gId + "-colors-array",
+                        "count=" + (colors.length * 3));
                 for (int i = 0; i < colors.length; i++) {
                     int[] color = colors[i];
                     colorMap.put(color[0], i);
                     Color rgb = new Color(color[0]);
-                    int r = rgb.getRed();
-                    int g = rgb.getGreen();
-                    int b = rgb.getBlue();
                     if (i > 0) {
-                        colorString.append(" ");
+                        text.write(" ");
                     }
-                    colorString.append(r / (float) 255).append(" ").append(g / (float) 255).append(" ").append(b / (float) 255);
+                    text.write(rgb.getRed() / (float) 255 + " " + rgb.getGreen() / (float) 255 + " " + rgb.getBlue() / (float) 255);
                 }
-                xmlFile.addAttributes("source[-1]", new String[]{
-                        "id=" + gId + "-colors"
-                });
-                xmlFile.addAttrAndTextContent("source[" + 1 + "]/float_array",
-                        new String[]{
-                                "id=" + gId + "-colors-array",
-                                "count=" + (colors.length * 3)}, colorString.toString());
-
-                xmlFile.addAttributes("source[" + 1 + "]/technique_common/accessor", new String[]{
-                        "source=#" + gId + "-colors-array",
-                        "count=" + colors.length,
-                        "stride=3"
-                });
-                xmlFile.addAttributes("source[" + 1 + "]/technique_common/accessor/param[-1]",
-                        new String[]{"name=R", "type=float"});
-                xmlFile.addAttributes("source[" + 1 + "]/technique_common/accessor/param[-1]",
-                        new String[]{"name=G", "type=float"});
-                xmlFile.addAttributes("source[" + 1 + "]/technique_common/accessor/param[-1]",
-                        new String[]{"name=B", "type=float"});
+                text.flush();
+                xml.end();
+                writeAccessor(xml, gId + "-colors", colors.length, "R", "G", "B");
+                xml.end();
             } else {
                 // --- write the uvs
-                xmlFile.addAttributes("source[-1]", new String[]{
-                        "id=" + gId + "-uvs"
-                });
-                xmlFile.addAttrAndTextContent("source[" + 1 + "]/float_array",
-                        new String[]{
-                                "id=" + gId + "-uvs-array",
-                                "count=" + (texTriangleManager.getUniqueUVCount() * 2)},
-                        texTriangleManager.getUniqueUVString(false));
-
-                xmlFile.addAttributes("source[" + 1 + "]/technique_common/accessor", new String[]{
-                        "source=#" + gId + "-uvs-array",
-                        "count=" + texTriangleManager.getUniqueUVCount(),
-                        "stride=2"
-                });
-                xmlFile.addAttributes("source[" + 1 + "]/technique_common/accessor/param[-1]",
-                        new String[]{"name=S", "type=float"});
-                xmlFile.addAttributes("source[" + 1 + "]/technique_common/accessor/param[-1]",
-                        new String[]{"name=T", "type=float"});
+                xml.start("source", "id=" + gId + "-uvs");
+                text = xml.startText("float_array",
+                        "id=" + gId + "-uvs-array",
+                        "count=" + (texTriangleManager.getUniqueUVCount() * 2));
+                texTriangleManager.writeUniqueUVs(text, false);
+                text.flush();
+                xml.end();
+                writeAccessor(xml, gId + "-uvs", texTriangleManager.getUniqueUVCount(), "S", "T");
+                xml.end();
             }
 
             if (exportOrthogonalVertexNormals) {
                 // -- write the normals
-                xmlFile.addAttributes("source[-1]", new String[]{
-                        "id=" + gId + "-normals"
-                });
-                xmlFile.addAttrAndTextContent("source[" + 2 + "]/float_array",
-                        new String[]{"id=" + gId + "-normals-array", "count=18"},
-                        useYUP ? "-1 0 0 1 0 0 0 -1 0 0 1 0 0 0 1 0 0 -1 " : "-1 0 0 1 0 0 0 0 -1 0 0 1 0 -1 0 0 1 0 "
-                );
-                xmlFile.addAttributes("source[" + 2 + "]/technique_common/accessor", new String[]{
-                        "source=#" + gId + "-normals-array",
-                        "count=6",
-                        "stride=3"
-                });
-                xmlFile.addAttributes("source[" + 2 + "]/technique_common/accessor/param[-1]",
-                        new String[]{"name=X", "type=float"});
-                xmlFile.addAttributes("source[" + 2 + "]/technique_common/accessor/param[-1]",
-                        new String[]{"name=Y", "type=float"});
-                xmlFile.addAttributes("source[" + 2 + "]/technique_common/accessor/param[-1]",
-                        new String[]{"name=Z", "type=float"});
+                xml.start("source", "id=" + gId + "-normals");
+                xml.text("float_array",
+                        useYUP ? "-1 0 0 1 0 0 0 -1 0 0 1 0 0 0 1 0 0 -1 " : "-1 0 0 1 0 0 0 0 -1 0 0 1 0 -1 0 0 1 0 ",
+                        "id=" + gId + "-normals-array", "count=18");
+                writeAccessor(xml, gId + "-normals", 6, "X", "Y", "Z");
+                xml.end();
             }
 
             // vertices (generic information)
-            xmlFile.addAttributes("vertices", new String[]{
-                    "id=" + gId + "-vertices"
-            });
-            xmlFile.addAttributes("vertices/input", new String[]{
+            xml.start("vertices", "id=" + gId + "-vertices");
+            xml.empty("input",
                     "semantic=POSITION",
-                    "source=#" + gId + "-positions"
-            });
+                    "source=#" + gId + "-positions");
+            xml.end();
 
             if (useVertexColoring) {
                 // write data
-                xmlFile.resetTopNode("library_geometries/geometry[" + layerRef + "]/mesh/triangles[-1]");
-                xmlFile.addAttributes("", new String[]{
+                xml.start("triangles",
                         "material=" + gId + "-colors-material",
-                        "count=" + texTriangleManager.getTriangleCount()
-                });
-                xmlFile.addAttributes("input[-1]", new String[]{
+                        "count=" + texTriangleManager.getTriangleCount());
+                xml.empty("input",
                         "semantic=VERTEX",
                         "source=#" + gId + "-vertices",
-                        "offset=" + 0
-                });
-                xmlFile.addAttributes("input[-1]", new String[]{
+                        "offset=" + 0);
+                xml.empty("input",
                         "semantic=COLOR",
                         "source=#" + gId + "-colors",
-                        "offset=" + 1
-                });
+                        "offset=" + 1);
                 if (exportOrthogonalVertexNormals) {
-                    xmlFile.addAttributes("input[-1]", new String[]{
+                    xml.empty("input",
                             "semantic=NORMAL",
                             "source=#" + gId + "-normals",
-                            "offset=" + 2
-                    });
+                            "offset=" + 2);
                 }
-                xmlFile.addTextContent("p", texTriangleManager.getTrianglePolygonList(
-                        null, colorMap, exportOrthogonalVertexNormals, true));
+                text = xml.startText("p");
+                texTriangleManager.writeTrianglePolygonList(text, null, colorMap, exportOrthogonalVertexNormals, true);
+                text.flush();
+                xml.end();
+                xml.end();
             } else {
                 // write one poly list for each texture
                 for (int[] identifier : texTriangleManager.getTextureIds()) {
                     // write data
-                    xmlFile.resetTopNode("library_geometries/geometry[" + layerRef + "]/mesh/triangles[-1]");
-                    xmlFile.addAttributes("", new String[]{
+                    xml.start("triangles",
                             "material=" + gId + "-lambert" + identifier[0] + "-material",
-                            "count=" + identifier[1]
-                    });
-                    xmlFile.addAttributes("input[-1]", new String[]{
+                            "count=" + identifier[1]);
+                    xml.empty("input",
                             "semantic=VERTEX",
                             "source=#" + gId + "-vertices",
-                            "offset=" + 0
-                    });
-                    xmlFile.addAttributes("input[-1]", new String[]{
+                            "offset=" + 0);
+                    xml.empty("input",
                             "semantic=TEXCOORD",
                             "source=#" + gId + "-uvs",
                             "offset=" + 1,
-                            "set=0"
-                    });
+                            "set=0");
                     if (exportOrthogonalVertexNormals) {
-                        xmlFile.addAttributes("input[-1]", new String[]{
+                        xml.empty("input",
                                 "semantic=NORMAL",
                                 "source=#" + gId + "-normals",
-                                "offset=" + 2
-                        });
+                                "offset=" + 2);
                     }
-                    xmlFile.addTextContent("p", texTriangleManager.getTrianglePolygonList(
-                            identifier[0], null, exportOrthogonalVertexNormals, false));
+                    text = xml.startText("p");
+                    texTriangleManager.writeTrianglePolygonList(text, identifier[0], null, exportOrthogonalVertexNormals, false);
+                    text.flush();
+                    xml.end();
+                    xml.end();
                 }
             }
+
+            xml.end();
+            xml.end();
         }
     }
 
     // -----------------------
 
-    // initialize the XML file
-    private void initXmlFile(boolean useYUP, boolean useVertexColoring) {
+    // write the document
+    private void writeDocument(ElementWriter xml) throws XMLStreamException, IOException {
         // basic information
-        xmlFile.addAttributes("", new String[] {
+        xml.start("COLLADA",
                 "xmlns=http://www.collada.org/2005/11/COLLADASchema",
-                "version=1.4.1"});
+                "version=1.4.1");
 
         // basic information
-        xmlFile.resetTopNode("asset");
-        xmlFile.addTextContent("contributor/author", "VoxelShop User");
-        xmlFile.addTextContent("contributor/authoring_tool", "VoxelShop V" + VitcoSettings.VERSION_ID);
+        setActivity("Creating File Data...", true);
+        xml.start("asset");
+        xml.start("contributor");
+        xml.text("author", "VoxelShop User");
+        xml.text("authoring_tool", "VoxelShop V" + VitcoSettings.VERSION_ID);
+        xml.end();
         String now = DateTools.now("yyyy-MM-dd'T'HH:mm:ss");
-        xmlFile.addTextContent("created", now);
-        xmlFile.addTextContent("modified", now);
-        xmlFile.addAttributes("unit", new String[] {"name=meter","meter=1"});
+        xml.text("created", now);
+        xml.text("modified", now);
+        xml.empty("unit", "name=meter", "meter=1");
         // blender default (can not be changed since blender ignores it!)
-        if (useYUP) {
-            xmlFile.addTextContent("up_axis", "Y_UP");
-        } else {
-            xmlFile.addTextContent("up_axis", "Z_UP");
-        }
-
+        xml.text("up_axis", useYUP ? "Y_UP" : "Z_UP");
+        xml.end();
 
         // =========================
 
+        int[] textureIds = useVertexColoring ? new int[0] : getTextureIds();
         if (!useVertexColoring) {
-            // will hold the used images (library)
-            // (this will be deleted later on if there is no
-            // texture image used for this dae file)
-            xmlFile.resetTopNode("library_images");
-
-            // will hold all the color "effect" information
-            xmlFile.resetTopNode("library_effects");
-
-            // will contain the materials linked to the color information
-            xmlFile.resetTopNode("library_materials");
+            // write the texture information
+            setActivity("Creating Textures...", true);
+            writeImages(xml, textureIds);
+            writeEffects(xml, textureIds);
+            writeMaterials(xml, textureIds);
         }
 
-        // will contain geometries (mesh) of the object
-        xmlFile.resetTopNode("library_geometries");
+        // write the mesh + uv of the object (triangles)
+        setActivity("Creating Coordinates and UVs / Vertex Colors...", true);
+        xml.start("library_geometries");
+        writeCoordinates(xml);
+        xml.end();
 
         // =========================
 
-        // contains the scene
-        xmlFile.resetTopNode("library_visual_scenes/visual_scene");
-        xmlFile.addAttributes("", new String[] {
+        // create the object in the scene
+        setActivity("Creating Objects...", true);
+        xml.start("library_visual_scenes");
+        xml.start("visual_scene",
                 "id=Scene",
-                "name=Scene"
-        });
+                "name=Scene");
+        writeObjects(xml, textureIds);
+        xml.end();
+        xml.end();
 
         // link the library_visual_scenes node
-        xmlFile.resetTopNode("scene");
-        xmlFile.addAttributes("instance_visual_scene", new String[]{"url=#Scene"});
+        xml.start("scene");
+        xml.empty("instance_visual_scene", "url=#Scene");
+        xml.end();
+
+        xml.end();
     }
 
     // save this file
     public boolean writeToFile(File file, ErrorHandlerInterface errorHandler) {
-        return xmlFile.writeToFile(file, errorHandler);
+        boolean result = false;
+        try {
+            OutputStream stream = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+            try {
+                XMLStreamWriter out = XMLOutputFactory.newInstance().createXMLStreamWriter(stream, "UTF-8");
+                out.writeStartDocument("UTF-8", "1.0");
+                writeDocument(new ElementWriter(out));
+                out.writeEndDocument();
+                out.close();
+                result = true;
+            } finally {
+                stream.close();
+            }
+        } catch (XMLStreamException e) {
+            errorHandler.handle(e);
+        } catch (IOException e) {
+            errorHandler.handle(e);
+        }
+        return result;
     }
 
     // write texture files
     public boolean writeTexturesToFolder(File folder, ErrorHandlerInterface errorHandler) {
-        // obtain all texture ids
-        TIntHashSet textureIds = new TIntHashSet();
-        for (TexTriangleManager texTriangleManager : exportDataManager.getTriangleManager()) {
-            for (int[] textureId : texTriangleManager.getTextureIds()) {
-                textureIds.add(textureId[0]);
-            }
-        }
         // write files to disk
         TriTextureManager triTextureManager = exportDataManager.getTextureManager();
         try {
-            for (TIntIterator it = textureIds.iterator(); it.hasNext(); ) {
-                int textureId = it.next();
+            for (int textureId : getTextureIds()) {
                 TriTexture texture = triTextureManager.getTexture(textureId);
                 BufferedImage textureImage = texture.getImage();
                 ImageIO.write(textureImage, "png", new File(
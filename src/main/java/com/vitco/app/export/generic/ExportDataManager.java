@@ -24,6 +24,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Encapsulates the voxel data and manages restructuring, preparing it for exporting.
@@ -383,214 +385,275 @@ public class ExportDataManager extends ProgressReporter {
         return result;
     }
 
-    // extract the necessary information from the hull manager
-    private void extract(final int algorithm) {
-        setActivity("Extracting Mesh...", false);
-        // loop over all managers
-        for (int i = 0; i < hullManagers.size(); i++) {
-            final int finalI = i;
-            HullManagerExt<Voxel> hullManager = hullManagers.get(i);
-            final TexTriangleManager triangleManager = new TexTriangleManager();
-            triangleManagers.add(triangleManager);
-            // loop over all sides
-            for (int side = 0; side < 6; side++) {
-                final int finalSide = side;
-
-                // get borders into specific direction and
-                // calculate orientation related variables
-                short[][] hull = removeHoles ? hullManager.getExteriorHull(side) : hullManager.getHull(side);
-                final int directionId = side / 2;
-                final boolean orientationPositive = side % 2 != (directionId == 1 ? 1 : 0);
-                final int offset = side % 2 != 1 ? 1 : 0;
-
-                // extract planes
-                HashMap<Short, TObjectIntHashMap<short[]>> planes = new HashMap<Short, TObjectIntHashMap<short[]>>();
-                for (short[] border : hull) {
-                    TObjectIntHashMap<short[]> plane = planes.get(border[directionId]);
-                    if (plane == null) {
-                        plane = new TObjectIntHashMap<short[]>();
-                        planes.put(border[directionId], plane);
-                    }
+    // triangles of a plane (per color) and the min/max (minA, minB, maxA, maxB) of every color
+    private static final class PlaneResult {
+        private final TIntObjectHashMap<short[]> minMaxMap = new TIntObjectHashMap<short[]>();
+        private final TIntObjectHashMap<Collection<DelaunayTriangle>> trisArray = new TIntObjectHashMap<Collection<DelaunayTriangle>>();
+    }
 
-                    // if we use textures we use "0" as placeholder for all colors
-                    plane.put(border, triangulateByColor ? hullManager.get(border).getColor().getRGB() : 0);
-                }
+    // triangulates one plane (the planes are independent, so they can be processed concurrently)
+    private final class PlaneTask extends RecursiveTask<PlaneResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final HullManagerExt<Voxel> hullManager;
+        private final TObjectIntHashMap<short[]> plane;
+        private final short planeId;
+        private final int side;
+        private final int algorithm;
+        private final int id1;
+        private final int id2;
+        private final int id3;
+
+        private PlaneTask(HullManagerExt<Voxel> hullManager, TObjectIntHashMap<short[]> plane, short planeId,
+                          int side, int algorithm, int id1, int id2, int id3) {
+            this.hullManager = hullManager;
+            this.plane = plane;
+            this.planeId = planeId;
+            this.side = side;
+            this.algorithm = algorithm;
+            this.id1 = id1;
+            this.id2 = id2;
+            this.id3 = id3;
+        }
 
-                // select the corresponding ids for the orientation
-                final int id1;
-                final int id2;
-                final int id3;
-                switch (directionId) {
-                    case 0:
-                        id1 = 1;
-                        id2 = 2;
-                        id3 = 0;
-                        break;
-                    case 1:
-                        id1 = 0;
-                        id2 = 2;
-                        id3 = 1;
-                        break;
-                    default: //case 2
-                        id1 = 0;
-                        id2 = 1;
-                        id3 = 2;
-                        break;
+        @Override
+        protected PlaneResult compute() {
+            final PlaneResult result = new PlaneResult();
+            final TIntObjectHashMap<short[]> minMaxMap = result.minMaxMap;
+            // remove the values that are pending as remove (remove is stronger!)
+            plane.forEachEntry(new TObjectIntProcedure<short[]>() {
+                @Override
+                public boolean execute(short[] position, int rgb) {
+                    short[] minMax = minMaxMap.get(rgb);
+                    if (minMax == null) {
+                        minMax = new short[] {
+                                Short.MAX_VALUE, Short.MAX_VALUE, Short.MIN_VALUE, Short.MIN_VALUE
+                        };
+                        minMaxMap.put(rgb, minMax);
+                    }
+                    minMax[0] = (short) Math.min(minMax[0], position[id1]);
+                    minMax[1] = (short) Math.min(minMax[1], position[id2]);
+                    minMax[2] = (short) Math.max(minMax[2], position[id1]);
+                    minMax[3] = (short) Math.max(minMax[3], position[id2]);
+                    return true;
                 }
+            });
+
+            // maps colors to data sets
+            final TIntObjectHashMap<boolean[][]> dataArray = new TIntObjectHashMap<boolean[][]>();
 
-                // loop over planes
-                int progressCount = 0;
-                float elementCount = planes.size();
-                for (final Map.Entry<Short, TObjectIntHashMap<short[]>> entries : planes.entrySet()) {
-                    setProgress((side / 6f) * 100 + ((progressCount / elementCount) / 6f) * 100);
-                    progressCount++;
-                    // maps colors to min/max (minA, minB, maxA, maxB)
-                    final TIntObjectHashMap<short[]> minMaxMap = new TIntObjectHashMap<short[]>();
-                    // remove the values that are pending as remove (remove is stronger!)
-                    entries.getValue().forEachEntry(new TObjectIntProcedure<short[]>() {
-                        @Override
-                        public boolean execute(short[] position, int rgb) {
-                            short[] minMax = minMaxMap.get(rgb);
-                            if (minMax == null) {
-                                minMax = new short[] {
-                                        Short.MAX_VALUE, Short.MAX_VALUE, Short.MIN_VALUE, Short.MIN_VALUE
-                                };
-                                minMaxMap.put(rgb, minMax);
+            plane.forEachEntry(new TObjectIntProcedure<short[]>() {
+
+                @Override
+                public boolean execute(short[] position, int rgb) {
+                    short[] minMax = minMaxMap.get(rgb);
+                    boolean[][] data = dataArray.get(rgb);
+                    if (data == null) {
+                        data = new boolean[minMax[2] - minMax[0] + 1][minMax[3] - minMax[1] + 1];
+                        dataArray.put(rgb, data);
+                    }
+                    data[position[id1] - minMax[0]][position[id2] - minMax[1]] = true;
+                    return true;
+                }
+            });
+
+            dataArray.forEachEntry(new TIntObjectProcedure<boolean[][]>() {
+                @Override
+                public boolean execute(int rgb, boolean[][] data) {
+                    short[] minMax = minMaxMap.get(rgb);
+                    Collection<DelaunayTriangle> tris;
+                    switch (algorithm) {
+                        case ExportDataManager.MINIMAL_RECT_ALGORITHM:
+                            tris = Grid2TriGreedyOptimal.triangulate(data);
+                            break;
+                        case ExportDataManager.NAIVE_ALGORITHM:
+                            tris = Grid2TriNaive.triangulate(data);
+                            break;
+                        default:
+                            // generate triangles
+                            short[][][] polys = Grid2PolyHelper.convert(data);
+                            if (fixTJunctions) {
+                                // fix 3D t-junction problems
+                                int planeAbove = planeId + (side % 2 == 0 ? 1 : -1);
+                                // Note: This *should* work the same if only outside is used (i.e. holes are removed)
+                                polys = fix3DTJunctionProblems(hullManager, polys, planeId, (short) planeAbove, id1, id2, id3, minMax[0], minMax[1]);
                             }
-                            minMax[0] = (short) Math.min(minMax[0], position[id1]);
-                            minMax[1] = (short) Math.min(minMax[1], position[id2]);
-                            minMax[2] = (short) Math.max(minMax[2], position[id1]);
-                            minMax[3] = (short) Math.max(minMax[3], position[id2]);
-                            return true;
+                            // extract triangles
+                            tris = Grid2TriPolyFast.triangulate(polys);
+                            break;
+                    }
+                    result.trisArray.put(rgb, tris);
+                    return true;
+                }
+            });
+            return result;
+        }
+    }
+
+    // extract the necessary information from the hull manager
+    // Note: The planes are triangulated concurrently, but the results are merged in
+    // the same order as a sequential extraction (the exported file is deterministic)
+    private void extract(final int algorithm) {
+        setActivity("Extracting Mesh...", false);
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            // loop over all managers
+            for (int i = 0; i < hullManagers.size(); i++) {
+                HullManagerExt<Voxel> hullManager = hullManagers.get(i);
+                TexTriangleManager triangleManager = new TexTriangleManager();
+                triangleManagers.add(triangleManager);
+
+                // schedule the planes of all sides
+                ArrayList<ArrayList<Short>> planeIds = new ArrayList<ArrayList<Short>>();
+                ArrayList<ArrayList<PlaneTask>> tasks = new ArrayList<ArrayList<PlaneTask>>();
+                for (int side = 0; side < 6; side++) {
+                    // get borders into specific direction
+                    short[][] hull = removeHoles ? hullManager.getExteriorHull(side) : hullManager.getHull(side);
+                    int directionId = side / 2;
+
+                    // extract planes
+                    HashMap<Short, TObjectIntHashMap<short[]>> planes = new HashMap<Short, TObjectIntHashMap<short[]>>();
+                    for (short[] border : hull) {
+                        TObjectIntHashMap<short[]> plane = planes.get(border[directionId]);
+                        if (plane == null) {
+                            plane = new TObjectIntHashMap<short[]>();
+                            planes.put(border[directionId], plane);
                         }
-                    });
 
-                    // maps colors to data sets
-                    final TIntObjectHashMap<boolean[][]> dataArray = new TIntObjectHashMap<boolean[][]>();
+                        // if we use textures we use "0" as placeholder for all colors
+                        plane.put(border, triangulateByColor ? hullManager.get(border).getColor().getRGB() : 0);
+                    }
 
-                    entries.getValue().forEachEntry(new TObjectIntProcedure<short[]>() {
+                    // select the corresponding ids for the orientation
+                    int[] ids = getOrientationIds(directionId);
+
+                    ArrayList<Short> sidePlaneIds = new ArrayList<Short>();
+                    ArrayList<PlaneTask> sideTasks = new ArrayList<PlaneTask>();
+                    for (Map.Entry<Short, TObjectIntHashMap<short[]>> entries : planes.entrySet()) {
+                        PlaneTask task = new PlaneTask(hullManager, entries.getValue(), entries.getKey(),
+                                side, algorithm, ids[0], ids[1], ids[2]);
+                        pool.execute(task);
+                        sidePlaneIds.add(entries.getKey());
+                        sideTasks.add(task);
+                    }
+                    planeIds.add(sidePlaneIds);
+                    tasks.add(sideTasks);
+                }
 
-                        @Override
-                        public boolean execute(short[] position, int rgb) {
-                            short[] minMax = minMaxMap.get(rgb);
-                            boolean[][] data = dataArray.get(rgb);
-                            if (data == null) {
-                                data = new boolean[minMax[2] - minMax[0] + 1][minMax[3] - minMax[1] + 1];
-                                dataArray.put(rgb, data);
-                            }
-                            data[position[id1] - minMax[0]][position[id2] - minMax[1]] = true;
-                            return true;
-                        }
-                    });
-
-                    final TIntObjectHashMap<Collection<DelaunayTriangle>> trisArray = new TIntObjectHashMap<Collection<DelaunayTriangle>>();
-
-                    dataArray.forEachEntry(new TIntObjectProcedure<boolean[][]>() {
-                        @Override
-                        public boolean execute(int rgb, boolean[][] data) {
-                            short[] minMax = minMaxMap.get(rgb);
-                            Collection<DelaunayTriangle> tris;
-                            switch (algorithm) {
-                                case ExportDataManager.MINIMAL_RECT_ALGORITHM:
-                                    tris = Grid2TriGreedyOptimal.triangulate(data);
-                                    break;
-                                case ExportDataManager.NAIVE_ALGORITHM:
-                                    tris = Grid2TriNaive.triangulate(data);
-                                    break;
-                                default:
-                                    // generate triangles
-                                    short[][][] polys = Grid2PolyHelper.convert(data);
-                                    if (fixTJunctions) {
-                                        // fix 3D t-junction problems
-                                        int planeAbove = entries.getKey() + (finalSide % 2 == 0 ? 1 : -1);
-                                        // Note: This *should* work the same if only outside is used (i.e. holes are removed)
-                                        polys = fix3DTJunctionProblems(hullManager, polys, entries.getKey(), (short) planeAbove, id1, id2, id3, minMax[0], minMax[1]);
-                                    }
-                                    // extract triangles
-                                    tris = Grid2TriPolyFast.triangulate(polys);
-                                    break;
-                            }
-                            trisArray.put(rgb, tris);
-                            return true;
-                        }
-                    });
-
-                    trisArray.forEachEntry(new TIntObjectProcedure<Collection<DelaunayTriangle>>() {
-                        @Override
-                        public boolean execute(int rgb, Collection<DelaunayTriangle> tris) {
-                            short[] minMax = minMaxMap.get(rgb);
-
-                            for (DelaunayTriangle tri : tris) {
-
-                                // create the triangle
-                                TexTriangle texTri = new TexTriangle(tri, triangleManager, finalSide);
-
-                                // create the texture (wrapper) for this triangle
-                                TexTriUV[] uvs = texTri.getUVs();
-                                TriTexture triTexture = new TriTexture(
-                                        // Note: The triangulation points might have rounding errors (!)
-                                        // So we <need> to round these values (casting to int is not sufficient!)
-                                        uvs[0], Math.round(minMax[0] + tri.points[0].getXf()), Math.round(minMax[1] + tri.points[0].getYf()),
-                                        uvs[1], Math.round(minMax[0] + tri.points[1].getXf()), Math.round(minMax[1] + tri.points[1].getYf()),
-                                        uvs[2], Math.round(minMax[0] + tri.points[2].getXf()), Math.round(minMax[1] + tri.points[2].getYf()),
-                                        finalSide,
-                                        entries.getKey(),
-                                        usePadding,
-                                        texTri, data,
-                                        textureManager,
-                                        exportTexturedVoxels,
-                                        useSkewedUvs
-                                );
-
-                                // set the texture for this triangle
-                                texTri.setTexture(triTexture);
-
-                                // add to the texture manager
-                                textureManager.addTexture(triTexture);
-
-                                // translate to triangle in 3D space
-                                for (int p = 0; p < 3; p++) {
-                                    TexTriPoint point = texTri.getPoint(p);
-                                    float[] coord = point.getCoords();
-                                    point.set(directionId, entries.getKey() + offset);
-                                    point.set(id1, minMax[0] + coord[0]);
-                                    point.set(id2, minMax[1] + coord[1]);
-                                }
+                // merge the results (in order)
+                for (int side = 0; side < 6; side++) {
+                    ArrayList<PlaneTask> sideTasks = tasks.get(side);
+                    float elementCount = sideTasks.size();
+                    for (int j = 0; j < sideTasks.size(); j++) {
+                        setProgress((side / 6f) * 100 + ((j / elementCount) / 6f) * 100);
+                        addTriangles(i, triangleManager, side, planeIds.get(side).get(j), sideTasks.get(j).join());
+                        // free the memory of the plane
+                        sideTasks.set(j, null);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 
-                                // invert the triangle when necessary (correct back-face culling)
-                                if (orientationPositive) {
-                                    texTri.invert();
-                                }
+    // helper - get the ids (id1, id2, id3) for the orientation
+    private static int[] getOrientationIds(int directionId) {
+        switch (directionId) {
+            case 0:
+                return new int[] {1, 2, 0};
+            case 1:
+                return new int[] {0, 2, 1};
+            default: //case 2
+                return new int[] {0, 1, 2};
+        }
+    }
 
-                                // change positions so that the exported file is accurate
-                                texTri.swap(1, 2);
-                                texTri.invert(0);
-                                texTri.invert(1);
-                                texTri.invert(2);
+    // add the triangles of a plane to the triangle (and texture) manager
+    private void addTriangles(final int managerId, final TexTriangleManager triangleManager, final int side,
+                              final short planeId, PlaneResult planeResult) {
+        // calculate orientation related variables
+        final int directionId = side / 2;
+        final boolean orientationPositive = side % 2 != (directionId == 1 ? 1 : 0);
+        final int offset = side % 2 != 1 ? 1 : 0;
+        int[] ids = getOrientationIds(directionId);
+        final int id1 = ids[0];
+        final int id2 = ids[1];
+        final TIntObjectHashMap<short[]> minMaxMap = planeResult.minMaxMap;
+
+        planeResult.trisArray.forEachEntry(new TIntObjectProcedure<Collection<DelaunayTriangle>>() {
+            @Override
+            public boolean execute(int rgb, Collection<DelaunayTriangle> tris) {
+                short[] minMax = minMaxMap.get(rgb);
+
+                for (DelaunayTriangle tri : tris) {
+
+                    // create the triangle
+                    TexTriangle texTri = new TexTriangle(tri, triangleManager, side);
+
+                    // create the texture (wrapper) for this triangle
+                    TexTriUV[] uvs = texTri.getUVs();
+                    TriTexture triTexture = new TriTexture(
+                            // Note: The triangulation points might have rounding errors (!)
+                            // So we <need> to round these values (casting to int is not sufficient!)
+                            uvs[0], Math.round(minMax[0] + tri.points[0].getXf()), Math.round(minMax[1] + tri.points[0].getYf()),
+                            uvs[1], Math.round(minMax[0] + tri.points[1].getXf()), Math.round(minMax[1] + tri.points[1].getYf()),
+                            uvs[2], Math.round(minMax[0] + tri.points[2].getXf()), Math.round(minMax[1] + tri.points[2].getYf()),
+                            side,
+                            planeId,
+                            usePadding,
+                            texTri, data,
+                            textureManager,
+                            exportTexturedVoxels,
+                            useSkewedUvs
+                    );
+
+                    // set the texture for this triangle
+                    texTri.setTexture(triTexture);
+
+                    // add to the texture manager
+                    textureManager.addTexture(triTexture);
+
+                    // translate to triangle in 3D space
+                    for (int p = 0; p < 3; p++) {
+                        TexTriPoint point = texTri.getPoint(p);
+                        float[] coord = point.getCoords();
+                        point.set(directionId, planeId + offset);
+                        point.set(id1, minMax[0] + coord[0]);
+                        point.set(id2, minMax[1] + coord[1]);
+                    }
 
-                                texTri.move(centers.get(finalI)[0] + 0.5f, centers.get(finalI)[2] + 0.5f, centers.get(finalI)[1] + 0.5f);
+                    // invert the triangle when necessary (correct back-face culling)
+                    if (orientationPositive) {
+                        texTri.invert();
+                    }
 
-                                if (useYUP) {
-                                    texTri.swap(1, 2);
-                                    texTri.invert(2);
-                                }
+                    // change positions so that the exported file is accurate
+                    texTri.swap(1, 2);
+                    texTri.invert(0);
+                    texTri.invert(1);
+                    texTri.invert(2);
 
-                                // scale to create integers
-                                texTri.scale(2);
+                    texTri.move(centers.get(managerId)[0] + 0.5f, centers.get(managerId)[2] + 0.5f, centers.get(managerId)[1] + 0.5f);
 
-                                // convert to integer values
-                                texTri.round();
+                    if (useYUP) {
+                        texTri.swap(1, 2);
+                        texTri.invert(2);
+                    }
 
-                                // add to known triangles
-                                triangleManager.addTriangle(texTri);
-                            }
+                    // scale to create integers
+                    texTri.scale(2);
 
-                            return true;
-                        }
-                    });
+                    // convert to integer values
+                    texTri.round();
+
+                    // add to known triangles
+                    triangleManager.addTriangle(texTri);
                 }
+
+                return true;
             }
-        }
+        });
     }
 
 }
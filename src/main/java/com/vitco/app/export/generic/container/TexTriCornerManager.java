@@ -2,6 +2,7 @@ package com.vitco.app.export.generic.container;
 
 import com.vitco.app.util.misc.BiMap;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -51,20 +52,15 @@ public class TexTriCornerManager<T extends TexTriCornerInfo> {
         return knownUnique.get(cornerInfo);
     }
 
-    // get string with unique cornerInfo
-    public final String getString(boolean asInt) {
+    // write the unique cornerInfo (separated by spaces)
+    public final void write(Appendable out, boolean asInt) throws IOException {
         validate();
-        StringBuilder stringBuilder = new StringBuilder();
-        boolean first = true;
         for (int i = 0, len = knownUnique.size(); i < len; i++) {
-            if (!first) {
-                stringBuilder.append(" ");
-            } else {
-                first = false;
+            if (i > 0) {
+                out.append(' ');
             }
-            stringBuilder.append(knownUnique.getKey(i).toString(asInt));
+            out.append(knownUnique.getKey(i).toString(asInt));
         }
-        return stringBuilder.toString();
     }
 
     // get the amount of unique corner info objects in this manager
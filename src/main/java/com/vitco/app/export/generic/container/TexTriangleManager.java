@@ -3,6 +3,7 @@ package com.vitco.app.export.generic.container;
 import gnu.trove.iterator.TIntIntIterator;
 import gnu.trove.map.hash.TIntIntHashMap;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -73,39 +74,42 @@ public class TexTriangleManager {
 
     // ----------------
 
-    // get the triangle coordinate list
+    // write the triangle coordinate list
     // (i.e. "[p1_ uv1 p2 uv2 p3 uv3]_tri1 [p1_ uv1 p2 uv2 p3 uv3]_tri2 ...")
-    public final String getTrianglePolygonList(Integer groupId, TIntIntHashMap colorMap, boolean exportOrthogonalVertexNormals, boolean useVertexColoring) {
-        StringBuilder stringBuilder = new StringBuilder();
+    public final void writeTrianglePolygonList(Appendable out, Integer groupId, TIntIntHashMap colorMap,
+                                               boolean exportOrthogonalVertexNormals, boolean useVertexColoring) throws IOException {
         boolean first = true;
+        int[] colTexInfo = new int[3];
         for (TexTriangle tri : triangles) {
             // only consider triangles with the specific texture id
             if ((groupId == null || tri.getTexture().getId() == groupId)) {
                 if (!first) {
-                    stringBuilder.append(" ");
+                    out.append(' ');
                 } else {
                     first = false;
                 }
-                int[] colTexInfo;
                 if (!useVertexColoring) {
                     TexTriUV[] uvs = tri.getUVs();
-                    colTexInfo = new int[] {uvs[0].getId(), uvs[1].getId(), uvs[2].getId()};
+                    colTexInfo[0] = uvs[0].getId();
+                    colTexInfo[1] = uvs[1].getId();
+                    colTexInfo[2] = uvs[2].getId();
                 } else {
                     int colorPos = colorMap.get(tri.getTexture().getSampleRGB());
-                    colTexInfo = new int[] {colorPos, colorPos, colorPos};
+                    colTexInfo[0] = colorPos;
+                    colTexInfo[1] = colorPos;
+                    colTexInfo[2] = colorPos;
                 }
                 for (int i = 0; i < 3; i++) {
-                    stringBuilder.append(tri.getPoint(i).getId()).append(" ").append(colTexInfo[i]);
+                    out.append(String.valueOf(tri.getPoint(i).getId())).append(' ').append(String.valueOf(colTexInfo[i]));
                     if (exportOrthogonalVertexNormals) {
-                        stringBuilder.append(" ").append(tri.getOrientation());
+                        out.append(' ').append(String.valueOf(tri.getOrientation()));
                     }
                     if (i < 2) {
-                        stringBuilder.append(" ");
+                        out.append(' ');
                     }
                 }
             }
         }
-        return stringBuilder.toString();
     }
 
     // ----------------
@@ -128,9 +132,9 @@ public class TexTriangleManager {
         return uvManager.getId(uv);
     }
 
-    // get string with unique uvs
-    public final String getUniqueUVString(boolean asInt) {
-        return uvManager.getString(asInt);
+    // write the unique uvs
+    public final void writeUniqueUVs(Appendable out, boolean asInt) throws IOException {
+        uvManager.write(out, asInt);
     }
 
     // get the amount of unique uvs
@@ -158,9 +162,9 @@ public class TexTriangleManager {
         return pointManager.getId(point);
     }
 
-    // get string with unique points
-    public final String getUniquePointString(boolean asInt) {
-        return pointManager.getString(asInt);
+    // write the unique points
+    public final void writeUniquePoints(Appendable out, boolean asInt) throws IOException {
+        pointManager.write(out, asInt);
     }
 
     // get the amount of unique points
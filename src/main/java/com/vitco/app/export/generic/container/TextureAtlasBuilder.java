@@ -0,0 +1,307 @@
+package com.vitco.app.export.generic.container;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Combines the textures of the TriTextureManager into one atlas.
+ *
+ * Textures that are contained in other textures become children. The remaining textures
+ * are merged, always the first texture with its most similar texture (jaccard similarity
+ * of the colors). Candidates are found with the color signatures and the pixel count bound
+ * of the similarity and are evaluated in parallel. The result is the same as comparing all
+ * pairs in order (so the export stays deterministic).
+ */
+final class TextureAtlasBuilder {
+
+    // amount of candidates that are evaluated at once
+    private static final int BLOCK_SIZE = 1024;
+    // amount of candidates a task evaluates without splitting
+    private static final int TASK_SIZE = 32;
+
+    private final ForkJoinPool pool;
+
+    TextureAtlasBuilder(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // ===================
+    // containment
+
+    // find the containment positions of a texture with a range of other textures
+    private static final class ContainmentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final TriTexture texture;
+        private final TriTexture[] others;
+        private final boolean[] removed;
+        private final int from;
+        private final int to;
+        // the position of other in texture or of texture in other
+        private final int[][] inside;
+        private final int[][] outside;
+        private final int offset;
+
+        private ContainmentTask(TriTexture texture, TriTexture[] others, boolean[] removed, int from, int to,
+                                int[][] inside, int[][] outside, int offset) {
+            this.texture = texture;
+            this.others = others;
+            this.removed = removed;
+            this.from = from;
+            this.to = to;
+            this.inside = inside;
+            this.outside = outside;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ContainmentTask(texture, others, removed, from, mid, inside, outside, offset),
+                        new ContainmentTask(texture, others, removed, mid, to, inside, outside, offset));
+                return;
+            }
+            for (int j = from; j < to; j++) {
+                int[] in = null;
+                int[] out = null;
+                if (!removed[j]) {
+                    TriTexture other = others[j];
+                    if (texture.mayContain(other)) {
+                        in = texture.findChildPosition(other);
+                    }
+                    if (in == null && other.mayContain(texture)) {
+                        out = other.findChildPosition(texture);
+                    }
+                }
+                inside[j - offset] = in;
+                outside[j - offset] = out;
+            }
+        }
+    }
+
+    // make textures children of textures that contain them (the textures need to be
+    // sorted, smallest first), returns the remaining textures (in the same order)
+    ArrayList<TriTexture> mergeContained(ArrayList<TriTexture> textures, TriTexture.TickAction tickAction) {
+        TriTexture[] list = textures.toArray(new TriTexture[textures.size()]);
+        int len = list.length;
+        boolean[] removed = new boolean[len];
+        int[][] inside = new int[BLOCK_SIZE][];
+        int[][] outside = new int[BLOCK_SIZE][];
+        for (int i = 0; i < len; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            tickAction.onTick(i, len);
+            TriTexture texture = list[i];
+            // the positions don't change when other textures become children, so
+            // they can be computed for a block and then be applied in order
+            block: for (int start = i + 1; start < len; start += BLOCK_SIZE) {
+                int end = Math.min(len, start + BLOCK_SIZE);
+                pool.invoke(new ContainmentTask(texture, list, removed, start, end, inside, outside, start));
+                for (int j = start; j < end; j++) {
+                    if (inside[j - start] != null) {
+                        texture.makeChild(list[j], inside[j - start]);
+                        removed[j] = true;
+                    } else if (outside[j - start] != null) {
+                        list[j].makeChild(texture, outside[j - start]);
+                        removed[i] = true;
+                        break block;
+                    }
+                }
+            }
+        }
+        ArrayList<TriTexture> result = new ArrayList<TriTexture>();
+        for (int i = 0; i < len; i++) {
+            if (!removed[i]) {
+                result.add(list[i]);
+            }
+        }
+        return result;
+    }
+
+    // ===================
+    // similarity
+
+    // compute the similarity of a texture with several other textures
+    private static final class SimilarityTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final TriTexture texture;
+        private final TriTexture[] others;
+        private final int[] candidates;
+        private final float[] result;
+        private final int from;
+        private final int to;
+
+        private SimilarityTask(TriTexture texture, TriTexture[] others, int[] candidates, float[] result, int from, int to) {
+            this.texture = texture;
+            this.others = others;
+            this.candidates = candidates;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SimilarityTask(texture, others, candidates, result, from, mid),
+                        new SimilarityTask(texture, others, candidates, result, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                result[i] = texture.jaccard(others[candidates[i]]);
+            }
+        }
+    }
+
+    // the textures that can still be merged (ordered by the position in the list and
+    // indexed by pixel count)
+    private static final class Candidates {
+        private final TriTexture[] textures;
+        private final boolean[] removed;
+        private final int[] pixelCount;
+        // the textures ordered by pixel count
+        private int[] byCount;
+        // amount of textures that are left and that were removed from byCount
+        private int size;
+        private int removedFromIndex = 0;
+        // the first texture that is left
+        private int first = 0;
+
+        private Candidates(ArrayList<TriTexture> list) {
+            textures = list.toArray(new TriTexture[list.size()]);
+            removed = new boolean[textures.length];
+            pixelCount = new int[textures.length];
+            for (int i = 0; i < textures.length; i++) {
+                pixelCount[i] = textures[i].getPixelCount();
+            }
+            size = textures.length;
+            Integer[] order = new Integer[textures.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return pixelCount[o1] - pixelCount[o2];
+                }
+            });
+            byCount = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                byCount[i] = order[i];
+            }
+        }
+
+        private void remove(int id) {
+            removed[id] = true;
+            size--;
+            while (first < removed.length && removed[first]) {
+                first++;
+            }
+            // drop the removed textures from the index from time to time
+            if (++removedFromIndex > byCount.length / 2) {
+                TIntArrayList left = new TIntArrayList(size);
+                for (int candidate : byCount) {
+                    if (!removed[candidate]) {
+                        left.add(candidate);
+                    }
+                }
+                byCount = left.toArray();
+                removedFromIndex = 0;
+            }
+        }
+
+        // the first position in byCount with a pixel count of at least count
+        private int search(int count) {
+            int low = 0, high = byCount.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (pixelCount[byCount[mid]] < count) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    // helper - the upper bound of the jaccard similarity for two pixel counts
+    private static float bound(int count1, int count2) {
+        return Math.min(count1, count2) / (float) Math.max(count1, count2);
+    }
+
+    // find the most similar texture (the first one if there are several)
+    private int findMostSimilar(TriTexture texture, Candidates candidates) {
+        int count = texture.getPixelCount();
+        int[] byCount = candidates.byCount;
+        int[] block = new int[BLOCK_SIZE];
+        float[] similarity = new float[BLOCK_SIZE];
+        float best = 0;
+        int bestId = candidates.first;
+        // visit the textures with the highest bound first (the pixel count closest to
+        // this texture) until no other texture can be more similar
+        int down = candidates.search(count) - 1;
+        int up = down + 1;
+        while (down >= 0 || up < byCount.length) {
+            int size = 0;
+            while (size < BLOCK_SIZE && (down >= 0 || up < byCount.length)) {
+                float boundDown = down >= 0 ? bound(count, candidates.pixelCount[byCount[down]]) : -1;
+                float boundUp = up < byCount.length ? bound(count, candidates.pixelCount[byCount[up]]) : -1;
+                if (Math.max(boundDown, boundUp) < best) {
+                    down = -1;
+                    up = byCount.length;
+                    break;
+                }
+                int id = boundDown >= boundUp ? byCount[down--] : byCount[up++];
+                if (!candidates.removed[id]) {
+                    block[size++] = id;
+                }
+            }
+            pool.invoke(new SimilarityTask(texture, candidates.textures, block, similarity, 0, size));
+            for (int i = 0; i < size; i++) {
+                if (similarity[i] > best || (similarity[i] == best && best > 0 && block[i] < bestId)) {
+                    best = similarity[i];
+                    bestId = block[i];
+                }
+            }
+        }
+        return bestId;
+    }
+
+    // merge the textures (largest first) into one texture, returns that texture
+    TriTexture merge(ArrayList<TriTexture> textures, TriTextureManager textureManager, TriTexture.TickAction tickAction) {
+        TriTexture texture = textures.get(0);
+        Candidates candidates = new Candidates(new ArrayList<TriTexture>(textures.subList(1, textures.size())));
+        int total = candidates.size;
+        while (candidates.size > 0) {
+            tickAction.onTick(total - candidates.size + 1, total);
+            int mergeToId = findMostSimilar(texture, candidates);
+            TriTexture mergeTo = candidates.textures[mergeToId];
+            // check if we can make this a child
+            // otherwise we combine the textures
+            // Note: this can succeed b/c once merged textures might allow new children
+            if (texture.makeChild(mergeTo, null)) {
+                candidates.remove(mergeToId);
+            } else if (mergeTo.makeChild(texture, null)) {
+                // continue with the next texture in the list
+                texture = candidates.textures[candidates.first];
+                candidates.remove(candidates.first);
+            } else {
+                // generate the new TriTexture
+                TriTexture parentTexture = new TriTexture(texture, mergeTo, textureManager);
+                candidates.remove(mergeToId);
+                texture = parentTexture;
+                // register texture
+                textureManager.addTexture(parentTexture);
+            }
+        }
+        return texture;
+    }
+}
@@ -155,6 +155,18 @@ public class TriTexture {
         return parentTexture != null;
     }
 
+    // quick check if the passed texture could be a child
+    // (false if it can not be a child, see makeChild)
+    public final boolean mayContain(TriTexture child) {
+        return imageComparator.mayContain(child.imageComparator);
+    }
+
+    // find the position of the passed texture in this texture (or null if the
+    // texture is not contained), this does not change the textures
+    public final int[] findChildPosition(TriTexture child) {
+        return imageComparator.getPosition(child.imageComparator, null);
+    }
+
     // make the passed texture a child (if possible)
     // return true on success
     public final boolean makeChild(TriTexture child, int pos[]) {
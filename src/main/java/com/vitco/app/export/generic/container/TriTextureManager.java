@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Manages a list of textures and implements compression techniques for the textures.
@@ -133,81 +134,38 @@ public class TriTextureManager extends ProgressReporter {
                 return Math.max(o1.width, o1.height) - Math.max(o2.width, o2.height);
             }
         });
-        int len = textures.size();
-        int originalLength = len;
-        setActivity("Merging Textures...", false);
-        for (int i = 0; i < len; i++) {
-            for (int j = i + 1; j < len; j++) {
-                if (len%100 == 0) {setProgress(((originalLength - len - i)/(float)originalLength)*100);}
-                TriTexture tex1 = textures.get(i);
-                TriTexture tex2 = textures.get(j);
-                if (tex1.makeChild(tex2, null)) {
-                    textures.remove(j);
-                    j--;
-                    len--;
-                } else if (tex2.makeChild(tex1, null)) {
-                    textures.remove(i);
-                    i--;
-                    len--;
-                    break;
-                }
+        TriTexture.TickAction tickAction = new TriTexture.TickAction() {
+            @Override
+            void onTick(int current, int target) {
+                setProgress((float)current/target * 100);
             }
-        }
+        };
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            TextureAtlasBuilder builder = new TextureAtlasBuilder(pool);
+            setActivity("Merging Textures...", false);
+            textures = builder.mergeContained(textures, tickAction);
 
-        //System.out.println("Obtained " + textures.size() + " unique textures after merging.");
+            //System.out.println("Obtained " + textures.size() + " unique textures after merging.");
 
-        // sort by size (largest first) - better combining having the "smaller ones in the back"
-        Collections.sort(textures, new Comparator<TriTexture>() {
-            @Override
-            public int compare(TriTexture o1, TriTexture o2) {
-                return Math.max(o2.width, o2.height) - Math.max(o1.width, o1.height);
-            }
-        });
-        // -- combine remaining "parent" textures into one image
-        int lengthBeforeCombining = len;
-        setActivity("Combining Textures...", false);
-        while (len > 1) {
-            setProgress(((lengthBeforeCombining - len + 1)/(float)lengthBeforeCombining) * 100);
-            // find the texture with the biggest jaccard similarity
-            TriTexture texture = textures.get(0);
-            TriTexture mergeTo = textures.get(1);
-            int mergeToId = 1;
-            float similarity = texture.jaccard(mergeTo);
-            for (int i = 2; i < len; i++) {
-                TriTexture compareTo = textures.get(i);
-                float newSim = texture.jaccard(compareTo);
-                // note: this gets the largest most similar neighbour
-                if (newSim > similarity) {
-                    similarity = newSim;
-                    mergeTo = compareTo;
-                    mergeToId = i;
+            // sort by size (largest first) - better combining having the "smaller ones in the back"
+            Collections.sort(textures, new Comparator<TriTexture>() {
+                @Override
+                public int compare(TriTexture o1, TriTexture o2) {
+                    return Math.max(o2.width, o2.height) - Math.max(o1.width, o1.height);
                 }
+            });
+            // -- combine remaining "parent" textures into one image
+            setActivity("Combining Textures...", false);
+            if (textures.size() > 1) {
+                builder.merge(textures, this, tickAction);
             }
-            // check if we can make this a child
-            // otherwise we combine the textures
-            // Note: this can succeed b/c once merged textures might allow new children
-            if (texture.makeChild(mergeTo, null)) {
-                textures.remove(mergeToId);
-            } else if (mergeTo.makeChild(texture, null)) {
-                textures.remove(0); // can this succeed? probably not
-            } else {
-                // generate the new TriTexture
-                TriTexture parentTexture = new TriTexture(texture, mergeTo, this);
-                // remove textures
-                textures.remove(mergeToId);
-                textures.remove(0);
-                // add new parent to front
-                textures.add(0, parentTexture);
-                // register texture
-                this.addTexture(parentTexture);
-            }
-            len--;
+        } finally {
+            pool.shutdown();
         }
 
         // invalidate texture list (for id generation)
         invalidate();
-
-        //System.out.println("Pixel Count: " + textures.get(0).getPixelCount());
     }
 
     // update uv maps
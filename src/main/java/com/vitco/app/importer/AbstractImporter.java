@@ -1,14 +1,14 @@
 package com.vitco.app.importer;
 
 import com.vitco.app.core.data.Data;
+import com.vitco.app.low.CubeIndexer;
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
 
-import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 
 /**
  * Importer contract for (all?) voxel formats
@@ -26,41 +26,62 @@ public abstract class AbstractImporter {
     // contains a layer object
     public final static class Layer {
         public final String name;
-        // contains the voxel that were read
-        private ArrayList<int[]> voxel = new ArrayList<int[]>();
+        // contains the voxel that were read (positions as x, y, z triples)
+        private final TIntArrayList positions = new TIntArrayList();
+        private final TIntArrayList colors = new TIntArrayList();
         // constructor
         private Layer(String name) {
             this.name = name;
         }
 
         // for sanity testing
-        private final HashSet<String> known = new HashSet<String>();
+        private final TIntHashSet known = new TIntHashSet();
 
         private void addVoxel(int x, int y, int z, int color) {
-            voxel.add(new int[]{x,y,z,color});
+            positions.add(x);
+            positions.add(y);
+            positions.add(z);
+            colors.add(color);
             // for sanity testing
-            assert known.add(x+"_"+y+"_"+z);
+            assert known.add(CubeIndexer.getId(x, y, z));
         }
 
         // ----
 
         public final boolean isEmpty() {
-            return voxel.isEmpty();
+            return colors.isEmpty();
         }
 
         int i = 0;
         public final int[] next() {
-            return voxel.get(i++);
+            int p = i * 3;
+            return new int[] {positions.get(p), positions.get(p + 1), positions.get(p + 2), colors.get(i++)};
         }
 
         public final boolean hasNext() {
-            return i < voxel.size();
+            return i < colors.size();
         }
 
         public final void reset() {
             i = 0;
         }
 
+        // get the positions of all voxel (x, y, z triples), shifted by the offset
+        public final int[] getPositions(int offX, int offY, int offZ) {
+            int[] result = positions.toArray();
+            for (int p = 0; p < result.length; p += 3) {
+                result[p] += offX;
+                result[p + 1] += offY;
+                result[p + 2] += offZ;
+            }
+            return result;
+        }
+
+        // get the colors of all voxel
+        public final int[] getColors() {
+            return colors.toArray();
+        }
+
         private boolean visible = true;
         public void setVisible(boolean flag) {
             this.visible = flag;
@@ -162,8 +183,8 @@ public abstract class AbstractImporter {
         activeLayer = new Layer(layerName);
         layerList.add(activeLayer);
         FileIn fileIn = new FileIn(file);
-        try (RandomAccessFileIn raf = new RandomAccessFileIn(file, "r")) {
-            hasLoaded = read(fileIn, raf);
+        try {
+            hasLoaded = read(fileIn);
         } finally {
             fileIn.finish();
         }
@@ -172,33 +193,21 @@ public abstract class AbstractImporter {
     // load the data in this importer into "data"
     public void loadInto(Data data, boolean shiftToCenter) {
         if (this.hasLoaded()) {
+            int[] offset = new int[3];
             if (shiftToCenter) {
                 int[] center = this.getWeightedCenter();
                 int[] highest = this.getHighest();
-                for (AbstractImporter.Layer layer : this.getVoxel()) {
-                    int layerId = data.createLayer(layer.name);
-                    data.selectLayer(layerId);
-                    data.setVisible(layerId, layer.isVisible());
-                    for (int[] vox; layer.hasNext();) {
-                        vox = layer.next();
-                        data.addVoxelDirect(new Color(vox[3]),
-                                new int[] {vox[0] - center[0], vox[1] - highest[1], vox[2] - center[2]});
-                    }
-                }
-            } else {
-                for (AbstractImporter.Layer layer : this.getVoxel()) {
-                    int layerId = data.createLayer(layer.name);
-                    data.selectLayer(layerId);
-                    data.setVisible(layerId, layer.isVisible());
-                    for (int[] vox; layer.hasNext();) {
-                        vox = layer.next();
-                        data.addVoxelDirect(new Color(vox[3]),new int[] {vox[0], vox[1], vox[2]});
-                    }
-                }
+                offset = new int[] {-center[0], -highest[1], -center[2]};
+            }
+            for (AbstractImporter.Layer layer : this.getVoxel()) {
+                int layerId = data.createLayer(layer.name);
+                data.selectLayer(layerId);
+                data.setVisible(layerId, layer.isVisible());
+                data.addVoxelsDirect(layerId, layer.getPositions(offset[0], offset[1], offset[2]), layer.getColors());
             }
         }
     }
 
     // read file - returns true if file has loaded correctly
-    protected abstract boolean read(FileIn fileIn, RandomAccessFileIn raf) throws IOException;
+    protected abstract boolean read(FileIn fileIn) throws IOException;
 }
@@ -1,7 +1,6 @@
 package com.vitco.app.importer;
 
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
 
 import java.awt.*;
 import java.io.File;
@@ -47,7 +46,7 @@ public class BinVoxImporter extends AbstractImporter {
 
     // read file - returns true if file has loaded correctly
     @Override
-    protected boolean read(FileIn fileIn, RandomAccessFileIn raf) throws IOException {
+    protected boolean read(FileIn fileIn) throws IOException {
         // header
         String line = fileIn.readLine();
         if (!line.startsWith("#binvox")) { // not a bin vox format
@@ -2,7 +2,6 @@ package com.vitco.app.importer;
 
 import com.vitco.app.importer.dataStatic.CCVxlStatic;
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
 
 import java.io.File;
 import java.io.IOException;
@@ -40,14 +39,14 @@ public class CCVxlImporter extends AbstractImporter {
     }
 
     // read the voxel information for a specific layer
-    private void readVoxelData(RandomAccessFileIn s, VxlLimb l) throws IOException {
+    private void readVoxelData(FileIn s, VxlLimb l) throws IOException {
         int baseSize = l.size[0] * l.size[1];
         int[] colStart = new int[baseSize];
         for (int i = 0; i < baseSize; i++) {
-            colStart[i] = s.readInt32();
+            colStart[i] = s.readIntRev();
         }
-        s.seek(4 * baseSize, RandomAccessFileIn.CURRENT);
-        int dataStart = (int) s.getFilePointer();
+        s.skipBytes(4 * baseSize);
+        int dataStart = (int) s.getPosition();
 
         // Count the voxels in this limb
         l.voxelCount = 0;
@@ -57,14 +56,14 @@ public class CCVxlImporter extends AbstractImporter {
                 continue;
             }
 
-            s.seek(dataStart + colStart[i], RandomAccessFileIn.BEGINNING);
+            s.seek(dataStart + colStart[i]);
             int z = 0;
             do {
                 z += s.readUInt8();
                 int count = s.readUInt8();
                 z += count;
                 l.voxelCount += count;
-                s.seek(2 * count + 1, RandomAccessFileIn.CURRENT);
+                s.skipBytes(2 * count + 1);
             } while (z < l.size[2]);
         }
 
@@ -74,7 +73,7 @@ public class CCVxlImporter extends AbstractImporter {
             if (colStart[i] == -1)
                 continue;
 
-            s.seek(dataStart + colStart[i], RandomAccessFileIn.BEGINNING);
+            s.seek(dataStart + colStart[i]);
 
             int x = i % l.size[0];
             int y = i / l.size[0];
@@ -103,37 +102,37 @@ public class CCVxlImporter extends AbstractImporter {
 
     // read file - returns true if file has loaded correctly
     @Override
-    protected boolean read(FileIn fileIn, RandomAccessFileIn s) throws IOException {
+    protected boolean read(FileIn s) throws IOException {
 
         // identifier
-        if (!s.readASCII(16).startsWith("Voxel Animation")) {
+        if (!s.readASCIIString(16).startsWith("Voxel Animation")) {
             return false;
         }
 
         // read basic information
-        s.readUInt32();
-        int limbCount = s.readUInt32();
-        s.readUInt32();
-        int bodySize = s.readUInt32();
-        s.seek(770, RandomAccessFileIn.CURRENT);
+        s.readIntRevUnsigned();
+        int limbCount = s.readIntRevUnsigned();
+        s.readIntRevUnsigned();
+        int bodySize = s.readIntRevUnsigned();
+        s.skipBytes(770);
 
         // Read Limb (layer) headers
         VxlLimb[] limbs = new VxlLimb[limbCount];
         for (int i = 0; i < limbCount; i++) {
             limbs[i] = new VxlLimb();
-            limbs[i].name = s.readASCII(16).trim();
-            s.seek(12, RandomAccessFileIn.CURRENT);
+            limbs[i].name = s.readASCIIString(16).trim();
+            s.skipBytes(12);
         }
 
         // skip to the limb (layer) footers
-        s.seek(802 + 28 * limbCount + bodySize, RandomAccessFileIn.BEGINNING);
+        s.seek(802 + 28 * limbCount + bodySize);
 
         int[] limbDataOffset = new int[limbCount];
         for (int i = 0; i < limbCount; i++) {
-            limbDataOffset[i] = s.readUInt32();
-            s.seek(8, RandomAccessFileIn.CURRENT);
+            limbDataOffset[i] = s.readIntRevUnsigned();
+            s.skipBytes(8);
             limbs[i].scale = s.readFloat();
-            s.seek(48, RandomAccessFileIn.CURRENT);
+            s.skipBytes(48);
 
             limbs[i].bounds = new float[6];
             for (int j = 0; j < 6; j++) {
@@ -147,7 +146,7 @@ public class CCVxlImporter extends AbstractImporter {
         for (int i = 0; i < limbCount; i++) {
             // add a new layer
             addLayer(limbs[i].name);
-            s.seek(802 + 28*limbCount + limbDataOffset[i], RandomAccessFileIn.BEGINNING);
+            s.seek(802 + 28*limbCount + limbDataOffset[i]);
             readVoxelData(s, limbs[i]);
         }
 
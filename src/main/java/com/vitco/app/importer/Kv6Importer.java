@@ -1,7 +1,6 @@
 package com.vitco.app.importer;
 
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
 
 import java.awt.*;
 import java.io.File;
@@ -24,7 +23,7 @@ public class Kv6Importer extends AbstractImporter {
     // ---------
 
     @Override
-    protected boolean read(FileIn fileIn, RandomAccessFileIn raf) throws IOException {
+    protected boolean read(FileIn fileIn) throws IOException {
         // check that this is a valid file (header correct)
         if (fileIn.readIntRev() != 0x6c78764b) {
             return false;
@@ -1,7 +1,6 @@
 package com.vitco.app.importer;
 
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
 
 import java.awt.*;
 import java.io.File;
@@ -18,7 +17,7 @@ public class KvxImporter extends AbstractImporter {
     }
 
     @Override
-    protected boolean read(FileIn fileIn, RandomAccessFileIn raf) throws IOException {
+    protected boolean read(FileIn fileIn) throws IOException {
         fileIn.readIntRev(); //int numbytes = fileIn.readIntRev();
 
         // read the dimensions
@@ -73,14 +72,16 @@ public class KvxImporter extends AbstractImporter {
         }
 
         // Read the color palette (always at the end of the file)
-        raf.seek(raf.length() - 768);
+        long voxelStart = fileIn.getPosition();
+        fileIn.seek(fileIn.length() - 768);
         int[] colPalette = new int[256];
         for (int i = 0; i < 256; i++) {
-            int r = Math.min(255, Math.max(0, Math.round((raf.read() * 255) / 63f)));
-            int g = Math.min(255, Math.max(0, Math.round((raf.read() * 255) / 63f)));
-            int b = Math.min(255, Math.max(0, Math.round((raf.read() * 255) / 63f)));
+            int r = Math.min(255, Math.max(0, Math.round((fileIn.readByteUnsigned() * 255) / 63f)));
+            int g = Math.min(255, Math.max(0, Math.round((fileIn.readByteUnsigned() * 255) / 63f)));
+            int b = Math.min(255, Math.max(0, Math.round((fileIn.readByteUnsigned() * 255) / 63f)));
             colPalette[i] = new Color(r, g, b).getRGB();
         }
+        fileIn.seek(voxelStart);
 
         int lastZ = 0;
         int lastCol = 0;
@@ -1,7 +1,6 @@
 package com.vitco.app.importer;
 
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -19,7 +18,7 @@ public class PnxImporter extends AbstractImporter {
     }
 
     @Override
-    protected boolean read(FileIn fileIn, RandomAccessFileIn raf) throws IOException {
+    protected boolean read(FileIn fileIn) throws IOException {
 
         // read overall size
         fileIn.readIntRev(); fileIn.readIntRev(); fileIn.readIntRev();
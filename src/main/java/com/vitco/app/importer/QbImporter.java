@@ -1,7 +1,6 @@
 package com.vitco.app.importer;
 
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
 
 import java.awt.*;
 import java.io.File;
@@ -22,7 +21,7 @@ public class QbImporter extends AbstractImporter {
     private static final int NEXT_SLICE_FLAG = 6;
 
     @Override
-    protected boolean read(FileIn fileIn, RandomAccessFileIn raf) throws IOException {
+    protected boolean read(FileIn fileIn) throws IOException {
         fileIn.readIntRevUnsigned(); //int version = fileIn.readIntRevUnsigned();
         //System.out.println("version: " + version);
         int colorFormat = fileIn.readIntRevUnsigned();
@@ -1,7 +1,6 @@
 package com.vitco.app.importer;
 
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
 
 import java.awt.*;
 import java.io.File;
@@ -29,7 +28,7 @@ public class RawVoxImporter extends AbstractImporter {
 
     // read file - returns true if file has loaded correctly
     @Override
-    protected boolean read(FileIn fileIn, RandomAccessFileIn raf) throws IOException {
+    protected boolean read(FileIn fileIn) throws IOException {
 
         // header
         String header = fileIn.readASCIIString(4);
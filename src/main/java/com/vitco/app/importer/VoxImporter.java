@@ -1,7 +1,6 @@
 package com.vitco.app.importer;
 
 import com.vitco.app.util.file.FileIn;
-import com.vitco.app.util.file.RandomAccessFileIn;
 
 import java.awt.*;
 import java.io.File;
@@ -43,36 +42,35 @@ public class VoxImporter extends AbstractImporter {
 
     // read file - returns true if file has loaded correctly
     @Override
-    protected boolean read(FileIn fileIn, RandomAccessFileIn raf) throws IOException {
+    protected boolean read(FileIn fileIn) throws IOException {
 
         // check magic number
         byte[] check = new byte[4];
-        raf.read(check);
+        fileIn.read(check);
         String checkSum = new String(check, "ASCII");
         if (!checkSum.equals("VOX ")) {
 
             // voxlap engine (slab6)
-            raf.seek(0);
-            int sx = Integer.reverseBytes(raf.readInt());
-            int sy = Integer.reverseBytes(raf.readInt());
-            int sz = Integer.reverseBytes(raf.readInt());
-
-            // read over integer values
-            fileIn.skipBytes(12);
+            fileIn.seek(0);
+            int sx = fileIn.readIntRev();
+            int sy = fileIn.readIntRev();
+            int sz = fileIn.readIntRev();
 
             // =====================
             // VOXLAP ENGINE *.vox FORMAT
             // =====================
 
             // Read the color palette (always at the end of the file)
-            raf.seek(raf.length() - 768);
+            long voxelStart = fileIn.getPosition();
+            fileIn.seek(fileIn.length() - 768);
             int[] colPalette = new int[256];
             for (int i = 0; i < 256; i++) {
-                int r = Math.min(255,Math.max(0,Math.round((raf.read() * 255)/63f)));
-                int g = Math.min(255,Math.max(0,Math.round((raf.read() * 255)/63f)));
-                int b = Math.min(255,Math.max(0,Math.round((raf.read() * 255)/63f)));
+                int r = Math.min(255,Math.max(0,Math.round((fileIn.readByteUnsigned() * 255)/63f)));
+                int g = Math.min(255,Math.max(0,Math.round((fileIn.readByteUnsigned() * 255)/63f)));
+                int b = Math.min(255,Math.max(0,Math.round((fileIn.readByteUnsigned() * 255)/63f)));
                 colPalette[i] = new Color(r, g, b).getRGB();
             }
+            fileIn.seek(voxelStart);
 
             // read the voxel
             for (int x = 0; x < sx; x++) {
@@ -88,9 +86,6 @@ public class VoxImporter extends AbstractImporter {
             }
 
             return true;
-        } else {
-            // skip over chechsum
-            fileIn.skipBytes(4);
         }
 
         // =====================
@@ -259,7 +259,8 @@ public class LayerView extends ViewPrototype implements LayerViewInterface {
 
         // update now
         synchronized (thisInstance) {
-            synchronized (VitcoSettings.SYNC) {
+            VitcoSettings.DATA_LOCK.writeLock().lock();
+            try {
                 selectedLayer = data.getSelectedLayer();
                 layers = data.getLayers();
                 layerCount = layers.length;
@@ -270,6 +271,8 @@ public class LayerView extends ViewPrototype implements LayerViewInterface {
                     layerVoxelCounts[i] =  data.getVoxelCount(layers[i]);
                     layerVisibilities[i] =  data.getLayerVisible(layers[i]);
                 }
+            } finally {
+                VitcoSettings.DATA_LOCK.writeLock().unlock();
             }
         }
         // update table when data changes
@@ -277,7 +280,8 @@ public class LayerView extends ViewPrototype implements LayerViewInterface {
 
             private void refresh(final int msDelay) {
                 synchronized (thisInstance) {
-                    synchronized (VitcoSettings.SYNC) {
+                    VitcoSettings.DATA_LOCK.writeLock().lock();
+                    try {
                         selectedLayer = data.getSelectedLayer();
                         layers = data.getLayers();
                         layerCount = layers.length;
@@ -288,6 +292,8 @@ public class LayerView extends ViewPrototype implements LayerViewInterface {
                             layerVoxelCounts[i] =  data.getVoxelCount(layers[i]);
                             layerVisibilities[i] =  data.getLayerVisible(layers[i]);
                         }
+                    } finally {
+                        VitcoSettings.DATA_LOCK.writeLock().unlock();
                     }
                 }
                 // refresh this group
@@ -308,8 +314,8 @@ public class LayerView extends ViewPrototype implements LayerViewInterface {
                     }
 
                     @Override
-                    public boolean ready() {
-                        return System.currentTimeMillis() - msDelay > time;
+                    public long getReadyTime() {
+                        return time + msDelay;
                     }
                 });
             }
@@ -312,7 +312,7 @@ public class MainView extends EngineInteractionPrototype implements MainViewInte
         MouseAdapter mouseAdapter = new MouseAdapter() {
             @Override
             public void mouseWheelMoved(final MouseWheelEvent e) { // scroll = zoom in and out
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         int rotation = e.getWheelRotation();
@@ -339,7 +339,7 @@ public class MainView extends EngineInteractionPrototype implements MainViewInte
 
             @Override
             public void mousePressed(final MouseEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         switch (e.getModifiers() & (MouseEvent.BUTTON1_MASK | MouseEvent.BUTTON2_MASK | MouseEvent.BUTTON3_MASK)) {
@@ -354,7 +354,7 @@ public class MainView extends EngineInteractionPrototype implements MainViewInte
 
             @Override
             public void mouseReleased(final MouseEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         switch (e.getModifiers() & (MouseEvent.BUTTON1_MASK | MouseEvent.BUTTON2_MASK | MouseEvent.BUTTON3_MASK)) {
@@ -369,7 +369,7 @@ public class MainView extends EngineInteractionPrototype implements MainViewInte
 
             @Override
             public void mouseDragged(final MouseEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         Point rotateMouseButton = null;
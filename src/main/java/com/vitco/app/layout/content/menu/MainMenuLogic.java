@@ -1189,7 +1189,8 @@ public class MainMenuLogic extends MenuLogicPrototype implements MenuLogicInterf
         actionManager.registerAction("fill_voxels_action", new StateActionPrototype() {
             @Override
             public void action(ActionEvent actionEvent) {
-                synchronized (VitcoSettings.SYNC) {
+                VitcoSettings.DATA_LOCK.writeLock().lock();
+                try {
                     // compute the hull manager
                     HullManagerExt<String> hullManager = new HullManagerExt<String>();
                     for (Voxel voxel : data.getVisibleLayerVoxel()) {
@@ -1206,6 +1207,8 @@ public class MainMenuLogic extends MenuLogicPrototype implements MenuLogicInterf
                         voxels[i] = new Voxel(-1, new int[]{pos[0], pos[1], pos[2]}, color, false, null, data.getSelectedLayer());
                     }
                     data.massAddVoxel(voxels);
+                } finally {
+                    VitcoSettings.DATA_LOCK.writeLock().unlock();
                 }
             }
 
@@ -1218,7 +1221,8 @@ public class MainMenuLogic extends MenuLogicPrototype implements MenuLogicInterf
         actionManager.registerAction("hollow_voxels_action", new StateActionPrototype() {
             @Override
             public void action(ActionEvent actionEvent) {
-                synchronized (VitcoSettings.SYNC) {
+                VitcoSettings.DATA_LOCK.writeLock().lock();
+                try {
                     // compute the hull manager
                     HullManagerExt<String> hullManager = new HullManagerExt<String>();
                     for (Voxel voxel : data.getVisibleLayerVoxel()) {
@@ -1237,6 +1241,8 @@ public class MainMenuLogic extends MenuLogicPrototype implements MenuLogicInterf
                         voxelIds[i] = voxel.id;
                     }
                     data.massRemoveVoxel(voxelIds);
+                } finally {
+                    VitcoSettings.DATA_LOCK.writeLock().unlock();
                 }
             }
 
@@ -10,15 +10,14 @@ import com.vitco.app.manager.action.types.StateActionPrototype;
 import com.vitco.app.manager.pref.PrefChangeListener;
 import com.vitco.app.settings.VitcoSettings;
 import com.vitco.app.util.misc.ColorTools;
+import com.vitco.app.util.misc.CompressedBitSet;
 import gnu.trove.set.hash.THashSet;
 
 import javax.annotation.PostConstruct;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 
 public class SelectBarLogic extends MenuLogicPrototype implements MenuLogicInterface {
 
@@ -142,8 +141,7 @@ public class SelectBarLogic extends MenuLogicPrototype implements MenuLogicInter
                         data.setVoxelSelectionShift(0,0,0);
                     } else {
                         // mass deselect
-                        Integer[] voxelIds = Voxel.convertVoxelsToIdArray(data.getSelectedVoxels());
-                        data.massSetVoxelSelected(voxelIds, false);
+                        data.clearVoxelSelection();
                     }
                 }
             }
@@ -171,35 +169,12 @@ public class SelectBarLogic extends MenuLogicPrototype implements MenuLogicInter
 
         abstract class SelectLogicAction extends StateActionPrototype {
 
-            public abstract Integer[] getVoxelsToSelect();
+            public abstract CompressedBitSet getVoxelsToSelect();
 
             @Override
             public void action(ActionEvent actionEvent) {
-                // todo make this an intent (select layer) -> to prevent two history entries
-                // deselect voxels (this is necessary if there are voxel selected that are not in the current layer)
-                Integer[] selected = Voxel.convertVoxelsToIdArray(data.getSelectedVoxels());
-                Integer[] toSelect = getVoxelsToSelect();
-
-                if (selected.length > 0) {
-                    HashSet<Integer> toDeselectList = new HashSet<Integer>(Arrays.asList(selected));
-                    HashSet<Integer> toSelectList = new HashSet<Integer>(Arrays.asList(toSelect));
-                    toSelectList.removeAll(toDeselectList);
-                    toDeselectList.removeAll(Arrays.asList(toSelect));
-
-                    if (!toDeselectList.isEmpty()) {
-                        Integer[] toDeselectArray = new Integer[toDeselectList.size()];
-                        toDeselectList.toArray(toDeselectArray);
-                        data.massSetVoxelSelected(toDeselectArray, false);
-                    }
-
-                    toSelect = new Integer[toSelectList.size()];
-                    toSelectList.toArray(toSelect);
-                }
-
-                // select voxels
-                if (toSelect.length != 0) {
-                    data.massSetVoxelSelected(toSelect, true);
-                }
+                // replace the selection (this also deselects voxel that are not in the current layer)
+                data.setVoxelSelection(getVoxelsToSelect());
             }
         };
 
@@ -207,8 +182,8 @@ public class SelectBarLogic extends MenuLogicPrototype implements MenuLogicInter
         actionGroupManager.addAction("selection_interaction", "selection_tool_select_all", new SelectLogicAction() {
 
             @Override
-            public Integer[] getVoxelsToSelect() {
-                return Voxel.convertVoxelsToIdArray(data.getLayerVoxels(data.getSelectedLayer()));
+            public CompressedBitSet getVoxelsToSelect() {
+                return Voxel.convertVoxelsToIdSet(data.getLayerVoxels(data.getSelectedLayer()));
             }
 
             @Override
@@ -219,8 +194,8 @@ public class SelectBarLogic extends MenuLogicPrototype implements MenuLogicInter
 
         actionGroupManager.addAction("selection_interaction", "selection_tool_select_all_layers_all", new SelectLogicAction() {
 
-            public Integer[] getVoxelsToSelect() {
-                return Voxel.convertVoxelsToIdArray(data.getVisibleLayerVoxel());
+            public CompressedBitSet getVoxelsToSelect() {
+                return Voxel.convertVoxelsToIdSet(data.getVisibleLayerVoxel());
             }
 
             @Override
@@ -244,18 +219,14 @@ public class SelectBarLogic extends MenuLogicPrototype implements MenuLogicInter
                         colors.add(color);
                     }
                     // identify which voxels to select
-                    ArrayList<Integer> toSelect = new ArrayList<Integer>();
+                    CompressedBitSet toSelect = new CompressedBitSet();
                     for (Voxel voxel : data.getVisibleLayerVoxel()) {
                         if (colors.contains(voxel.getColor())) {
                             toSelect.add(voxel.id);
                         }
                     }
                     // select voxels
-                    if (toSelect.size() != 0) {
-                        Integer[] toSelectArray = new Integer[toSelect.size()];
-                        toSelect.toArray(toSelectArray);
-                        data.massSetVoxelSelected(toSelectArray, true);
-                    }
+                    data.massSetVoxelSelected(toSelect, true);
                 }
             }
             @Override
@@ -350,7 +350,7 @@ public class SideView extends EngineInteractionPrototype implements SideViewInte
         container.addMouseWheelListener(new MouseAdapter() {
             @Override
             public void mouseWheelMoved(final MouseWheelEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         int rotation = e.getWheelRotation();
@@ -377,7 +377,7 @@ public class SideView extends EngineInteractionPrototype implements SideViewInte
             // =======================
             @Override
             public void mouseEntered(MouseEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         preferences.storeObject("engine_view_voxel_preview_plane", side*2);
@@ -386,7 +386,7 @@ public class SideView extends EngineInteractionPrototype implements SideViewInte
             }
             @Override
             public void mouseExited(MouseEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         preferences.storeObject("engine_view_voxel_preview_plane", -1);
@@ -400,7 +400,7 @@ public class SideView extends EngineInteractionPrototype implements SideViewInte
 
             @Override
             public void mousePressed(final MouseEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         if ((e.getModifiers() & (MouseEvent.BUTTON1_MASK | MouseEvent.BUTTON2_MASK)) != 0) {
@@ -414,7 +414,7 @@ public class SideView extends EngineInteractionPrototype implements SideViewInte
 
             @Override
             public void mouseReleased(MouseEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         mouse_down_point = null;
@@ -424,7 +424,7 @@ public class SideView extends EngineInteractionPrototype implements SideViewInte
 
             @Override
             public void mouseDragged(final MouseEvent e) {
-                asyncActionManager.addAsyncAction(new AsyncAction() {
+                asyncActionManager.addAsyncAction(new AsyncAction(AsyncAction.PRIORITY_INPUT) {
                     @Override
                     public void performAction() {
                         if (mouse_down_point != null) {
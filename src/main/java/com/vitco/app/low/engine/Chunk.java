@@ -1,8 +1,308 @@
 package com.vitco.app.low.engine;
 
+import com.vitco.app.util.misc.IntegerTools;
+import gnu.trove.impl.Constants;
+import gnu.trove.map.hash.TShortShortHashMap;
+
+import java.util.Arrays;
+
 /**
  * A chunk of voxel ( e.g. 32 ^ 3 )
+ *
+ * The voxel are stored in packed primitive arrays that are indexed by slot. The slots are
+ * dense (a removed voxel is replaced by the last one), so the arrays only grow with the
+ * amount of voxel. The cells of the chunk (x + z * CHUNK_SIZE + y * CHUNK_SIZE ^ 2) are
+ * mapped to the slots by a hash map while the chunk is sparse and by a table once it is dense.
+ *
+ * Selection, rotation and flip are packed into one int per voxel and textures are
+ * referenced by the slot of the texture combination in the engine. These arrays and the
+ * alpha values are only allocated once a voxel needs them.
  */
 public class Chunk {
     protected final static int CHUNK_SIZE = 32;
+    private final static int CHUNK_SIZE_SQ = CHUNK_SIZE * CHUNK_SIZE;
+    private final static int CELL_COUNT = CHUNK_SIZE_SQ * CHUNK_SIZE;
+
+    // switch to the cell table when the hash map would need about the same memory
+    // (and back to the hash map once the chunk is clearly sparse again)
+    private final static int DENSE_SIZE = CELL_COUNT / 6;
+    private final static int SPARSE_SIZE = DENSE_SIZE / 2;
+    private final static short NO_SLOT = -1;
+
+    // layout of the meta value (zero is the default state)
+    private final static int SELECTED = 1;
+    private final static int HAS_ROTATION = 1 << 1;
+    private final static int HAS_FLIP = 1 << 2;
+    private final static int ROTATION_SHIFT = 3; // two bits per side
+    private final static int FLIP_SHIFT = 15; // one bit per side
+
+    // the origin of this chunk
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+
+    // amount of voxel in this chunk
+    private int size = 0;
+    // cell, id and color of the voxel (per slot)
+    private short[] cells = new short[8];
+    private int[] ids = new int[8];
+    private int[] colors = new int[8];
+    // alpha, meta value and texture slot of the voxel (only allocated when needed)
+    private int[] alphas = null;
+    private int[] meta = null;
+    private int[] textures = null;
+
+    // maps the cells to the slots (only one of these is used)
+    private TShortShortHashMap sparse = createSparse();
+    private short[] dense = null;
+
+    protected Chunk(int chunkX, int chunkY, int chunkZ) {
+        minX = chunkX * CHUNK_SIZE;
+        minY = chunkY * CHUNK_SIZE;
+        minZ = chunkZ * CHUNK_SIZE;
+    }
+
+    // helper to create the cell map (returns -1 for unknown cells)
+    private static TShortShortHashMap createSparse() {
+        return new TShortShortHashMap(Constants.DEFAULT_CAPACITY, 0.8f, NO_SLOT, NO_SLOT);
+    }
+
+    // get the cell of a position (that is inside this chunk)
+    private static int getCell(int x, int y, int z) {
+        return IntegerTools.ifloormod2(x, CHUNK_SIZE)
+                + IntegerTools.ifloormod2(z, CHUNK_SIZE) * CHUNK_SIZE
+                + IntegerTools.ifloormod2(y, CHUNK_SIZE) * CHUNK_SIZE_SQ;
+    }
+
+    // helper - get the slot of a cell (-1 if the cell is empty)
+    private int getSlot(int cell) {
+        return dense != null ? dense[cell] : sparse.get((short) cell);
+    }
+
+    // helper - set the slot of a cell
+    private void setSlot(int cell, int slot) {
+        if (dense != null) {
+            dense[cell] = (short) slot;
+        } else {
+            sparse.put((short) cell, (short) slot);
+        }
+    }
+
+    // helper - switch between the hash map and the table
+    private void updateCellMap() {
+        if (dense == null && size > DENSE_SIZE) {
+            dense = new short[CELL_COUNT];
+            Arrays.fill(dense, NO_SLOT);
+            for (int slot = 0; slot < size; slot++) {
+                dense[cells[slot]] = (short) slot;
+            }
+            sparse = null;
+        } else if (dense != null && size < SPARSE_SIZE) {
+            sparse = createSparse();
+            for (int slot = 0; slot < size; slot++) {
+                sparse.put(cells[slot], (short) slot);
+            }
+            dense = null;
+        }
+    }
+
+    // get the slot of the voxel at a position (-1 if there is no voxel)
+    public final int find(int x, int y, int z) {
+        return getSlot(getCell(x, y, z));
+    }
+
+    // add a voxel (the position needs to be free), returns the slot
+    public final int add(int x, int y, int z, int id, int color) {
+        int cell = getCell(x, y, z);
+        assert getSlot(cell) == NO_SLOT;
+        if (size == cells.length) {
+            int capacity = Math.min(CELL_COUNT, size + (size >> 1));
+            cells = Arrays.copyOf(cells, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+            if (alphas != null) {
+                alphas = Arrays.copyOf(alphas, capacity);
+            }
+            if (meta != null) {
+                meta = Arrays.copyOf(meta, capacity);
+            }
+            if (textures != null) {
+                textures = Arrays.copyOf(textures, capacity);
+            }
+        }
+        int slot = size++;
+        cells[slot] = (short) cell;
+        ids[slot] = id;
+        colors[slot] = color;
+        if (alphas != null) {
+            alphas[slot] = -1;
+        }
+        if (meta != null) {
+            meta[slot] = 0;
+        }
+        if (textures != null) {
+            textures[slot] = 0;
+        }
+        setSlot(cell, slot);
+        updateCellMap();
+        return slot;
+    }
+
+    // remove a voxel (the last voxel takes the free slot)
+    public final void remove(int slot) {
+        int cell = cells[slot];
+        int last = --size;
+        if (slot != last) {
+            cells[slot] = cells[last];
+            ids[slot] = ids[last];
+            colors[slot] = colors[last];
+            if (alphas != null) {
+                alphas[slot] = alphas[last];
+            }
+            if (meta != null) {
+                meta[slot] = meta[last];
+            }
+            if (textures != null) {
+                textures[slot] = textures[last];
+            }
+            setSlot(cells[slot], slot);
+        }
+        if (dense != null) {
+            dense[cell] = NO_SLOT;
+        } else {
+            sparse.remove((short) cell);
+        }
+        updateCellMap();
+    }
+
+    // get the amount of voxel in this chunk
+    public final int getSize() {
+        return size;
+    }
+
+    // get the position of a voxel
+    public final int getX(int slot) {
+        return minX + cells[slot] % CHUNK_SIZE;
+    }
+
+    public final int getY(int slot) {
+        return minY + cells[slot] / CHUNK_SIZE_SQ;
+    }
+
+    public final int getZ(int slot) {
+        return minZ + (cells[slot] / CHUNK_SIZE) % CHUNK_SIZE;
+    }
+
+    // get the id of a voxel
+    public final int getId(int slot) {
+        return ids[slot];
+    }
+
+    // get the color of a voxel (argb)
+    public final int getColor(int slot) {
+        return colors[slot];
+    }
+
+    // set the color of a voxel (argb)
+    public final void setColor(int slot, int color) {
+        colors[slot] = color;
+    }
+
+    // helper - change the bits of the meta value of a voxel
+    private void setMeta(int slot, int mask, int value) {
+        if (meta == null) {
+            if (value == 0) {
+                return;
+            }
+            meta = new int[cells.length];
+        }
+        meta[slot] = (meta[slot] & ~mask) | value;
+    }
+
+    // get the alpha of a voxel (-1 if not set)
+    public final int getAlpha(int slot) {
+        return alphas == null ? -1 : alphas[slot];
+    }
+
+    // set the alpha of a voxel (-1 to unset)
+    public final void setAlpha(int slot, int alpha) {
+        if (alphas == null) {
+            if (alpha == -1) {
+                return;
+            }
+            alphas = new int[cells.length];
+            Arrays.fill(alphas, -1);
+        }
+        alphas[slot] = alpha;
+    }
+
+    // get the selection state of a voxel
+    public final boolean isSelected(int slot) {
+        return meta != null && (meta[slot] & SELECTED) != 0;
+    }
+
+    // set the selection state of a voxel
+    public final void setSelected(int slot, boolean selected) {
+        setMeta(slot, SELECTED, selected ? SELECTED : 0);
+    }
+
+    // get the rotation of a voxel (for all sides, null if not set)
+    public final int[] getRotation(int slot) {
+        if (meta == null || (meta[slot] & HAS_ROTATION) == 0) {
+            return null;
+        }
+        int[] result = new int[6];
+        for (int side = 0; side < 6; side++) {
+            result[side] = (meta[slot] >> (ROTATION_SHIFT + side * 2)) & 3;
+        }
+        return result;
+    }
+
+    // get the flip of a voxel (for all sides, null if not set)
+    public final boolean[] getFlip(int slot) {
+        if (meta == null || (meta[slot] & HAS_FLIP) == 0) {
+            return null;
+        }
+        boolean[] result = new boolean[6];
+        for (int side = 0; side < 6; side++) {
+            result[side] = (meta[slot] & (1 << (FLIP_SHIFT + side))) != 0;
+        }
+        return result;
+    }
+
+    // set the rotation and the flip of a voxel (null to unset)
+    public final void setTransform(int slot, int[] rotation, boolean[] flip) {
+        int value = 0;
+        if (rotation != null) {
+            value |= HAS_ROTATION;
+            for (int side = 0; side < 6; side++) {
+                value |= (rotation[side] & 3) << (ROTATION_SHIFT + side * 2);
+            }
+        }
+        if (flip != null) {
+            value |= HAS_FLIP;
+            for (int side = 0; side < 6; side++) {
+                if (flip[side]) {
+                    value |= 1 << (FLIP_SHIFT + side);
+                }
+            }
+        }
+        setMeta(slot, ~SELECTED, value);
+    }
+
+    // get the texture slot of a voxel (zero if not textured)
+    public final int getTextureSlot(int slot) {
+        return textures == null ? 0 : textures[slot];
+    }
+
+    // set the texture slot of a voxel (zero if not textured)
+    public final void setTextureSlot(int slot, int textureSlot) {
+        if (textures == null) {
+            if (textureSlot == 0) {
+                return;
+            }
+            textures = new int[cells.length];
+        }
+        textures[slot] = textureSlot;
+    }
 }
@@ -2,75 +2,159 @@ package com.vitco.app.low.engine;
 
 import com.vitco.app.low.CubeIndexer;
 import com.vitco.app.util.misc.IntegerTools;
+import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
  * Proves fast read/write access to voxel in the world.
+ *
+ * The voxel are stored in chunks (see Chunk) that hold packed primitive arrays. Texture
+ * id arrays are shared, i.e. every distinct texture combination is stored only once and
+ * referenced by a slot.
  */
 public class Engine {
 
-    // ------------------------------
-    // static information for all engines (!!!)
+    // wrapper that makes it possible to use texture ids as map key
+    private static final class TextureKey {
+        private final int[] textureIds;
+        private final int hash;
 
-    // holds the different known voxel types
-    private static final HashMap<VoxelType, VoxelType> voxelTypes = new HashMap<VoxelType, VoxelType>();
+        private TextureKey(int[] textureIds) {
+            this.textureIds = textureIds;
+            this.hash = Arrays.hashCode(textureIds);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof TextureKey && Arrays.equals(textureIds, ((TextureKey) o).textureIds));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 
-    // generate unique ids for the voxel
-    private static int uidCount = 1;
-    private static int generateUID() {
-        return uidCount++;
+    // holds the different known texture combinations (slot zero means "no texture")
+    private final ArrayList<int[]> textureSlots = new ArrayList<int[]>();
+    private final HashMap<TextureKey, Integer> textureSlotLookup = new HashMap<TextureKey, Integer>();
+
+    // obtain the slot for texture ids (create a new one if it doesn't exist)
+    public final int getTextureSlot(int[] textureIds) {
+        if (textureIds == null) {
+            return 0;
+        }
+        TextureKey key = new TextureKey(textureIds.clone());
+        Integer slot = textureSlotLookup.get(key);
+        if (slot == null) {
+            textureSlots.add(key.textureIds);
+            slot = textureSlots.size();
+            textureSlotLookup.put(key, slot);
+        }
+        return slot;
+    }
+
+    // get the texture ids for a slot (null for slot zero)
+    public final int[] getTexture(int textureSlot) {
+        return textureSlot == 0 ? null : textureSlots.get(textureSlot - 1).clone();
     }
 
     // -----------------------------
 
+    // used to iterate over the voxel (the engine must not be changed while visiting)
+    public interface SlotVisitor {
+        void visit(Chunk chunk, int slot);
+    }
+
     // holds the different known chunks
     private final TIntObjectHashMap<Chunk> chunks = new TIntObjectHashMap<Chunk>();
 
-    // obtain the appropriate chunk (create a new one if it doesn't exist)
-    private Chunk getChunk(int[] xyz) {
-        int chunkId = CubeIndexer.getId(
-                IntegerTools.ifloordiv2(xyz[0], Chunk.CHUNK_SIZE),
-                IntegerTools.ifloordiv2(xyz[1], Chunk.CHUNK_SIZE),
-                IntegerTools.ifloordiv2(xyz[2], Chunk.CHUNK_SIZE));
-        Chunk result = chunks.get(chunkId);
-        if (result == null) {
-            result = new Chunk();
-            chunks.put(chunkId, result);
-        }
-        return result;
+    // total amount of voxel in this engine
+    private int size = 0;
+
+    // get the id of the chunk that contains the position
+    private static int getChunkId(int x, int y, int z) {
+        return CubeIndexer.getId(
+                IntegerTools.ifloordiv2(x, Chunk.CHUNK_SIZE),
+                IntegerTools.ifloordiv2(y, Chunk.CHUNK_SIZE),
+                IntegerTools.ifloordiv2(z, Chunk.CHUNK_SIZE));
     }
 
-    // delete a voxel
-    public boolean delete(int[][] xyzs) {
-        return false;
+    // get the chunk that contains the position (null if there is no voxel in that chunk)
+    public final Chunk getChunk(int x, int y, int z) {
+        return chunks.get(getChunkId(x, y, z));
+    }
+
+    // add a voxel, returns false if the position is already used
+    public final boolean add(int x, int y, int z, int id, int color) {
+        int chunkId = getChunkId(x, y, z);
+        Chunk chunk = chunks.get(chunkId);
+        if (chunk == null) {
+            chunk = new Chunk(
+                    IntegerTools.ifloordiv2(x, Chunk.CHUNK_SIZE),
+                    IntegerTools.ifloordiv2(y, Chunk.CHUNK_SIZE),
+                    IntegerTools.ifloordiv2(z, Chunk.CHUNK_SIZE));
+            chunks.put(chunkId, chunk);
+        } else if (chunk.find(x, y, z) != -1) {
+            return false;
+        }
+        chunk.add(x, y, z, id, color);
+        size++;
+        return true;
     }
 
-    // set a voxel
-    public void set(int[][] xyzs, VoxelType newType) {
-        // get the voxel type if it already exists, or create a new one
-        VoxelType type = voxelTypes.get(newType);
-        if (type == null) {
-            voxelTypes.put(newType, newType);
-            newType.uId = generateUID();
-            type = newType;
+    // delete a voxel, returns true iff the position was used
+    public final boolean delete(int x, int y, int z) {
+        int chunkId = getChunkId(x, y, z);
+        Chunk chunk = chunks.get(chunkId);
+        int slot = chunk == null ? -1 : chunk.find(x, y, z);
+        if (slot == -1) {
+            return false;
         }
-        for (int[] xyz : xyzs) {
-            // increase the used count
-            type.usedCount++;
-            // get the chunk this voxel lives in
-            Chunk chunk = getChunk(xyz);
-            // check if the voxel already exists (and decrease used count of the type if so)
-            // ...
-            // update the voxel in the chunk
-            // ...
+        chunk.remove(slot);
+        if (chunk.getSize() == 0) {
+            chunks.remove(chunkId);
         }
+        size--;
+        return true;
     }
 
-    // get a voxel
-    public VoxelType get(int[][] xyz) {
-        return null;
+    // get the amount of voxel in this engine
+    public final int size() {
+        return size;
+    }
+
+    // visit all voxel
+    public final void visit(SlotVisitor visitor) {
+        for (TIntObjectIterator<Chunk> it = chunks.iterator(); it.hasNext();) {
+            it.advance();
+            Chunk chunk = it.value();
+            for (int slot = 0, len = chunk.getSize(); slot < len; slot++) {
+                visitor.visit(chunk, slot);
+            }
+        }
+    }
+
+    // visit the voxel that have the coordinate "plane" on the axis (0 ~ x, 1 ~ y, 2 ~ z)
+    public final void visitPlane(int axis, int plane, SlotVisitor visitor) {
+        int chunkPlane = IntegerTools.ifloordiv2(plane, Chunk.CHUNK_SIZE);
+        for (TIntObjectIterator<Chunk> it = chunks.iterator(); it.hasNext();) {
+            it.advance();
+            if (CubeIndexer.getPos(it.key())[axis] != chunkPlane) {
+                continue;
+            }
+            Chunk chunk = it.value();
+            for (int slot = 0, len = chunk.getSize(); slot < len; slot++) {
+                int coordinate = axis == 0 ? chunk.getX(slot) : (axis == 1 ? chunk.getY(slot) : chunk.getZ(slot));
+                if (coordinate == plane) {
+                    visitor.visit(chunk, slot);
+                }
+            }
+        }
     }
 
 }
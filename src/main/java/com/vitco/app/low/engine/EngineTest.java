@@ -0,0 +1,128 @@
+package com.vitco.app.low.engine;
+
+import com.vitco.app.low.CubeIndexer;
+import gnu.trove.map.hash.TIntIntHashMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test the chunked voxel storage (sparse and dense chunks).
+ */
+public class EngineTest {
+
+    // helper - check that the engine contains exactly the expected voxels (position -> id)
+    private static void check(final Engine engine, final TIntIntHashMap expected, int range) {
+        assert engine.size() == expected.size();
+        final int[] count = new int[1];
+        engine.visit(new Engine.SlotVisitor() {
+            @Override
+            public void visit(Chunk chunk, int slot) {
+                int posId = CubeIndexer.getId(chunk.getX(slot), chunk.getY(slot), chunk.getZ(slot));
+                assert expected.get(posId) == chunk.getId(slot);
+                assert chunk.getColor(slot) == chunk.getId(slot) * 7;
+                count[0]++;
+            }
+        });
+        assert count[0] == expected.size();
+        // check one plane per axis
+        for (int axis = 0; axis < 3; axis++) {
+            final int finalAxis = axis;
+            final int plane = range / 2;
+            final int[] planeCount = new int[1];
+            engine.visitPlane(axis, plane, new Engine.SlotVisitor() {
+                @Override
+                public void visit(Chunk chunk, int slot) {
+                    int[] pos = new int[] {chunk.getX(slot), chunk.getY(slot), chunk.getZ(slot)};
+                    assert pos[finalAxis] == plane;
+                    planeCount[0]++;
+                }
+            });
+            int expectedCount = 0;
+            for (int posId : expected.keys()) {
+                if (CubeIndexer.getPos(posId)[axis] == plane) {
+                    expectedCount++;
+                }
+            }
+            assert planeCount[0] == expectedCount;
+        }
+    }
+
+    @Test
+    public void testRandomAddRemove() throws Exception {
+        Random rand = new Random(1234);
+        Engine engine = new Engine();
+        TIntIntHashMap expected = new TIntIntHashMap();
+        // the range covers partial chunks on both sides and one full chunk that
+        // gets dense enough to use the cell table (and sparse again at the end)
+        int range = 48;
+        int id = 0;
+        for (int i = 0; i < 400000; i++) {
+            int x = rand.nextInt(range) - 16;
+            int y = rand.nextInt(range) - 16;
+            int z = rand.nextInt(range) - 16;
+            int posId = CubeIndexer.getId(x, y, z);
+            // add more than remove in the beginning and only remove at the end
+            if (rand.nextInt(100000) > i - 50000) {
+                boolean added = engine.add(x, y, z, id, id * 7);
+                assert added == !expected.containsKey(posId);
+                if (added) {
+                    expected.put(posId, id++);
+                }
+            } else {
+                assert engine.delete(x, y, z) == expected.containsKey(posId);
+                expected.remove(posId);
+            }
+            if (i % 20000 == 0) {
+                check(engine, expected, range);
+            }
+        }
+        check(engine, expected, range);
+    }
+
+    @Test
+    public void testVoxelState() throws Exception {
+        Engine engine = new Engine();
+        for (int i = 0; i < 10; i++) {
+            engine.add(i, -i, i * 3, i, 0);
+        }
+        Chunk chunk = engine.getChunk(9, -9, 27);
+        int slot = chunk.find(9, -9, 27);
+        assert chunk.getId(slot) == 9;
+        // defaults
+        assert chunk.getAlpha(slot) == -1;
+        assert !chunk.isSelected(slot);
+        assert chunk.getRotation(slot) == null;
+        assert chunk.getFlip(slot) == null;
+        assert engine.getTexture(chunk.getTextureSlot(slot)) == null;
+        // change the state
+        chunk.setAlpha(slot, 1000);
+        chunk.setSelected(slot, true);
+        chunk.setTransform(slot, new int[] {0, 1, 2, 3, 0, 1}, new boolean[] {true, false, false, true, false, true});
+        chunk.setTextureSlot(slot, engine.getTextureSlot(new int[] {1, 2, 3, 4, 5, 6}));
+        assert chunk.getAlpha(slot) == 1000;
+        assert chunk.isSelected(slot);
+        assert Arrays.equals(chunk.getRotation(slot), new int[] {0, 1, 2, 3, 0, 1});
+        assert Arrays.equals(chunk.getFlip(slot), new boolean[] {true, false, false, true, false, true});
+        assert Arrays.equals(engine.getTexture(chunk.getTextureSlot(slot)), new int[] {1, 2, 3, 4, 5, 6});
+        // equal textures share the slot
+        assert engine.getTextureSlot(new int[] {1, 2, 3, 4, 5, 6}) == chunk.getTextureSlot(slot);
+        // the transform doesn't change the selection
+        chunk.setTransform(slot, null, null);
+        assert chunk.isSelected(slot);
+        assert chunk.getRotation(slot) == null;
+        assert chunk.getFlip(slot) == null;
+        // other voxels are not changed
+        int other = chunk.find(8, -8, 24);
+        assert chunk.getAlpha(other) == -1;
+        assert !chunk.isSelected(other);
+        // the state moves with the (last) voxel when another voxel is removed
+        assert engine.delete(1, -1, 3);
+        assert slot != chunk.find(9, -9, 27);
+        slot = chunk.find(9, -9, 27);
+        assert chunk.getId(slot) == 9;
+        assert chunk.getAlpha(slot) == 1000;
+        assert chunk.isSelected(slot);
+    }
+}
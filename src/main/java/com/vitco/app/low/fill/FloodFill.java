@@ -0,0 +1,113 @@
+package com.vitco.app.low.fill;
+
+import com.vitco.app.low.CubeIndexer;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Scanline flood fill over CubeIndexer ids (6-connected, or 4-connected in a plane).
+ *
+ * Runs of positions along one axis (spans) are filled at once and only the first
+ * position of every run in the neighbouring lines is pushed to the stack.
+ */
+public final class FloodFill {
+
+    // the positions that can be filled
+    public interface Region {
+        boolean contains(int posId);
+    }
+
+    // id offset for a step along the axis (x, y, z)
+    private static final int[] STEP = new int[] {1, CubeIndexer.widthwidth, CubeIndexer.width};
+
+    // the coordinate on the axis (x, y, z) as offset into the CubeIndexer space
+    private static int getCoordinate(int posId, int axis) {
+        long offset = (long) posId - CubeIndexer.min;
+        switch (axis) {
+            case 0: return (int) (offset % CubeIndexer.width);
+            case 1: return (int) (offset / CubeIndexer.widthwidth);
+            default: return (int) ((offset / CubeIndexer.width) % CubeIndexer.width);
+        }
+    }
+
+    // true iff the position can be filled
+    private static boolean isOpen(int posId, Region region, PositionBitSet filled) {
+        return !filled.get(posId) && region.contains(posId);
+    }
+
+    // push the first position of every open run in the line (that starts at "from")
+    private static void pushRuns(int from, int length, int step, Region region,
+                                 PositionBitSet filled, TIntArrayList stack) {
+        boolean inRun = false;
+        for (int i = 0, posId = from; i < length; i++, posId += step) {
+            if (isOpen(posId, region, filled)) {
+                if (!inRun) {
+                    stack.add(posId);
+                    inRun = true;
+                }
+            } else {
+                inRun = false;
+            }
+        }
+    }
+
+    // fill the region that is connected to the start position, the filled positions
+    // are added to the result. The fill stays in the plane of the start position
+    // if a fixed axis is given (0 = x, 1 = y, 2 = z, -1 ~ no fixed axis).
+    // Returns false (and stops) if the region has more than maxRegion positions (<= 0 ~ no limit)
+    public static boolean fill(int start, int fixedAxis, int maxRegion, Region region, TIntArrayList result) {
+        // the axis that spans are formed along and the axes of the neighbouring lines
+        int scanAxis = fixedAxis == 0 ? 2 : 0;
+        int[] otherAxes = new int[2];
+        int otherCount = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            if (axis != scanAxis && axis != fixedAxis) {
+                otherAxes[otherCount++] = axis;
+            }
+        }
+        int step = STEP[scanAxis];
+        int last = CubeIndexer.width - 1;
+
+        PositionBitSet filled = new PositionBitSet();
+        TIntArrayList stack = new TIntArrayList();
+        stack.add(start);
+        int size = 0;
+        while (!stack.isEmpty()) {
+            int posId = stack.removeAt(stack.size() - 1);
+            if (!isOpen(posId, region, filled)) {
+                continue;
+            }
+            // extend the span in both directions
+            int coordinate = getCoordinate(posId, scanAxis);
+            int from = posId;
+            for (int c = coordinate; c > 0 && isOpen(from - step, region, filled); c--) {
+                from -= step;
+            }
+            int to = posId;
+            for (int c = coordinate; c < last && isOpen(to + step, region, filled); c++) {
+                to += step;
+            }
+            int length = (to - from) / step + 1;
+            size += length;
+            if (maxRegion > 0 && size > maxRegion) {
+                return false;
+            }
+            // fill the span
+            for (int i = 0, id = from; i < length; i++, id += step) {
+                filled.set(id);
+                result.add(id);
+            }
+            // check the neighbouring lines
+            for (int i = 0; i < otherCount; i++) {
+                int axis = otherAxes[i];
+                int otherCoordinate = getCoordinate(posId, axis);
+                if (otherCoordinate > 0) {
+                    pushRuns(from - STEP[axis], length, step, region, filled, stack);
+                }
+                if (otherCoordinate < last) {
+                    pushRuns(from + STEP[axis], length, step, region, filled, stack);
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package com.vitco.app.low.fill;
+
+import com.vitco.app.low.CubeIndexer;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Test the scanline flood fill against a simple fill.
+ */
+public class FloodFillTest {
+
+    // simple flood fill (one position at a time)
+    private static TIntHashSet simpleFill(int[] start, int fixedAxis, TIntHashSet region) {
+        TIntHashSet result = new TIntHashSet();
+        ArrayList<int[]> stack = new ArrayList<int[]>();
+        stack.add(start);
+        while (!stack.isEmpty()) {
+            int[] pos = stack.remove(stack.size() - 1);
+            if (pos[0] < -CubeIndexer.radius || pos[0] >= CubeIndexer.radius ||
+                    pos[1] < -CubeIndexer.radius || pos[1] >= CubeIndexer.radius ||
+                    pos[2] < -CubeIndexer.radius || pos[2] >= CubeIndexer.radius) {
+                continue;
+            }
+            int posId = CubeIndexer.getId(pos[0], pos[1], pos[2]);
+            if (region.contains(posId) && result.add(posId)) {
+                for (int axis = 0; axis < 3; axis++) {
+                    if (axis != fixedAxis) {
+                        for (int dir = -1; dir <= 1; dir += 2) {
+                            int[] next = pos.clone();
+                            next[axis] += dir;
+                            stack.add(next);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testFill() throws Exception {
+        Random rand = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            // random region (some of them at the border of the cube)
+            int size = rand.nextInt(12) + 1;
+            int[] offset = new int[3];
+            for (int axis = 0; axis < 3; axis++) {
+                switch (rand.nextInt(3)) {
+                    case 0: offset[axis] = -CubeIndexer.radius; break;
+                    case 1: offset[axis] = CubeIndexer.radius - size; break;
+                    default: offset[axis] = rand.nextInt(100) - 50; break;
+                }
+            }
+            final TIntHashSet region = new TIntHashSet();
+            int[] start = null;
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    for (int z = 0; z < size; z++) {
+                        if (rand.nextInt(10) < 6) {
+                            int[] pos = new int[] {offset[0] + x, offset[1] + y, offset[2] + z};
+                            region.add(CubeIndexer.getId(pos[0], pos[1], pos[2]));
+                            if (start == null) {
+                                start = pos;
+                            }
+                        }
+                    }
+                }
+            }
+            if (start == null) {
+                continue;
+            }
+            FloodFill.Region filter = new FloodFill.Region() {
+                @Override
+                public boolean contains(int posId) {
+                    return region.contains(posId);
+                }
+            };
+            for (int fixedAxis = -1; fixedAxis < 3; fixedAxis++) {
+                TIntHashSet expected = simpleFill(start, fixedAxis, region);
+                TIntArrayList result = new TIntArrayList();
+                assert FloodFill.fill(CubeIndexer.getId(start[0], start[1], start[2]), fixedAxis, 0, filter, result);
+                // every position is only filled once
+                assert result.size() == expected.size();
+                assert expected.containsAll(result);
+                // the region limit
+                result.clear();
+                assert FloodFill.fill(CubeIndexer.getId(start[0], start[1], start[2]),
+                        fixedAxis, expected.size(), filter, result);
+                assert expected.size() == 1 || !FloodFill.fill(CubeIndexer.getId(start[0], start[1], start[2]),
+                        fixedAxis, expected.size() - 1, filter, new TIntArrayList());
+            }
+        }
+    }
+}
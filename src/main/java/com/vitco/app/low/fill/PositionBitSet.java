@@ -0,0 +1,26 @@
+package com.vitco.app.low.fill;
+
+import gnu.trove.map.hash.TIntLongHashMap;
+
+/**
+ * Sparse bit set over CubeIndexer ids.
+ *
+ * Every word holds 64 consecutive ids (i.e. 64 voxels in a row along the x axis,
+ * since the cube width is a multiple of 64) and only non empty words are stored.
+ */
+final class PositionBitSet {
+
+    // maps (id >> 6) to the bits of that word
+    private final TIntLongHashMap words = new TIntLongHashMap();
+
+    // true iff the id is in the set
+    boolean get(int posId) {
+        return (words.get(posId >> 6) & (1L << posId)) != 0;
+    }
+
+    // add the id to the set
+    void set(int posId) {
+        int key = posId >> 6;
+        words.put(key, words.get(key) | (1L << posId));
+    }
+}
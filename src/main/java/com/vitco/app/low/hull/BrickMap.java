@@ -0,0 +1,80 @@
+package com.vitco.app.low.hull;
+
+import com.vitco.app.low.CubeIndexer;
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import java.io.Serializable;
+
+/**
+ * Sparse occupancy of the CubeIndexer space in cubic bricks.
+ *
+ * Counts the positions per brick for a few levels (coarse to fine), so that
+ * a ray can skip bricks that contain no positions at all.
+ */
+final class BrickMap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // log2 of the brick size for every level (coarse to fine)
+    private static final int[] SHIFT = new int[] {6, 3};
+    // amount of levels
+    static final int LEVELS = SHIFT.length;
+
+    // amount of positions per brick (only non empty bricks are stored)
+    private final TIntIntHashMap[] count = new TIntIntHashMap[LEVELS];
+
+    // constructor
+    BrickMap() {
+        for (int level = 0; level < LEVELS; level++) {
+            count[level] = new TIntIntHashMap();
+        }
+    }
+
+    // log2 of the brick size for this level
+    static int getShift(int level) {
+        return SHIFT[level];
+    }
+
+    // compute the brick id (x, y, z as offsets into the CubeIndexer space)
+    private static int getBrick(int level, int x, int y, int z) {
+        int shift = SHIFT[level];
+        int bricks = ((CubeIndexer.width - 1) >> shift) + 1;
+        return (x >> shift) + ((z >> shift) + (y >> shift) * bricks) * bricks;
+    }
+
+    // add or remove a position from the bricks
+    private void change(int posId, int delta) {
+        long offset = (long) posId - CubeIndexer.min;
+        int x = (int) (offset % CubeIndexer.width);
+        int z = (int) ((offset / CubeIndexer.width) % CubeIndexer.width);
+        int y = (int) (offset / CubeIndexer.widthwidth);
+        for (int level = 0; level < LEVELS; level++) {
+            int brick = getBrick(level, x, y, z);
+            if (count[level].adjustOrPutValue(brick, delta, delta) == 0) {
+                count[level].remove(brick);
+            }
+        }
+    }
+
+    // a position was added
+    void add(int posId) {
+        change(posId, 1);
+    }
+
+    // a position was removed
+    void remove(int posId) {
+        change(posId, -1);
+    }
+
+    // true iff the brick of this level that contains the position is empty
+    boolean isEmpty(int level, int x, int y, int z) {
+        return !count[level].containsKey(getBrick(level,
+                x + CubeIndexer.radius, y + CubeIndexer.radius, z + CubeIndexer.radius));
+    }
+
+    // remove all positions
+    void clear() {
+        for (int level = 0; level < LEVELS; level++) {
+            count[level].clear();
+        }
+    }
+}
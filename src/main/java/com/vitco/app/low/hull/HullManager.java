@@ -25,6 +25,9 @@ public class HullManager<T> implements HullManagerInterface<T>, Serializable {
     // maps position to objects
     private final TIntObjectHashMap<T> id2obj = new TIntObjectHashMap<T>();
 
+    // occupancy of the space (used to skip empty space)
+    private final BrickMap bricks = new BrickMap();
+
     // border
     private final TIntHashSet[] border = new TIntHashSet[]{
             new TIntHashSet(),new TIntHashSet(),new TIntHashSet(),
@@ -61,6 +64,7 @@ public class HullManager<T> implements HullManagerInterface<T>, Serializable {
     @Override
     public final void clear() {
         id2obj.clear();
+        bricks.clear();
         for (int i = 0; i < 6; i++) {
             border[i].clear();
             borderAdded[i].clear();
@@ -90,6 +94,11 @@ public class HullManager<T> implements HullManagerInterface<T>, Serializable {
         return border[orientation].contains(posId);
     }
 
+    // true iff the brick of this level that contains the position is empty
+    protected final boolean isEmptyBrick(int level, int x, int y, int z) {
+        return bricks.isEmpty(level, x, y, z);
+    }
+
     @Override
     public final int[] getPosIds() {
         return id2obj.keys();
@@ -133,6 +142,7 @@ public class HullManager<T> implements HullManagerInterface<T>, Serializable {
         } else {
 
             T obj = id2obj.get(posId);
+            bricks.add(posId);
 
             // check borders
             int idOff = posId-1;
@@ -345,6 +355,7 @@ public class HullManager<T> implements HullManagerInterface<T>, Serializable {
             }
             // remove the object
             id2obj.remove(posId);
+            bricks.remove(posId);
             return true;
         }
         return false;
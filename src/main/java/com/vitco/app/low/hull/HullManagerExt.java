@@ -24,102 +24,134 @@ public class HullManagerExt<T> extends HullManager<T> implements HullManagerExtI
     // do a hit test against the voxels in this hull manager
     @Override
     public short[] hitTest(SimpleVector origin, SimpleVector dir) {
+        return hitTest(origin, dir, true);
+    }
 
-        // If the origin is outside the max box of the CubeIndexer it needs to be
-        // shifted into the cube before we can proceed
-        // Note: Not necessary atm (since the camera is usually inside the max box)
-//        origin = CubeIndexer.validateRay(origin, dir);
-//        if (origin == null) {
-//            return null;
-//        }
-
-        // ---------------
-
-        // step direction
-        short stepX = (short) Math.signum(dir.x);
-        short stepY = (short) Math.signum(dir.y);
-        short stepZ = (short) Math.signum(dir.z);
-
-        boolean stepXB = stepX > 0;
-        boolean stepYB = stepY > 0;
-        boolean stepZB = stepZ > 0;
-
-        short sideX = (short) (stepXB ? 1 : 0);
-        short sideY = (short) (stepYB ? 3 : 2);
-        short sideZ = (short) (stepZB ? 5 : 4);
-
-        // starting grid coordinates
-        short lastHitSide;
-        int pos = CubeIndexer.getId(
-                (short) Math.floor(origin.x),
-                (short) Math.floor(origin.y),
-                (short) Math.floor(origin.z)
-        );
-
-        // compute the offsets
-        double offX = stepX == Math.signum(origin.x) ? (1 - Math.abs(origin.x%1d)) : Math.abs(origin.x%1d);
-        double offY = stepY == Math.signum(origin.y) ? (1 - Math.abs(origin.y%1d)) : Math.abs(origin.y%1d);
-        double offZ = stepZ == Math.signum(origin.z) ? (1 - Math.abs(origin.z%1d)) : Math.abs(origin.z%1d);
-        offX = (double)Math.round(offX * 1000000000) / 1000000000;
-        offY = (double)Math.round(offY * 1000000000) / 1000000000;
-        offZ = (double)Math.round(offZ * 1000000000) / 1000000000;
-        if (offX == 0) {
-            offX = 1;
+    // do a hit test against the voxels in this hull manager, the ray is followed through
+    // the whole CubeIndexer space (empty bricks are skipped if requested)
+    final short[] hitTest(SimpleVector origin, SimpleVector dir, boolean skipEmpty) {
+        double[] o = new double[] {origin.x, origin.y, origin.z};
+        double[] d = new double[] {dir.x, dir.y, dir.z};
+        if (d[0] == 0 && d[1] == 0 && d[2] == 0) {
+            return null;
         }
-        if (offY == 0) {
-            offY = 1;
+
+        // clip the ray to the CubeIndexer space
+        double enter = 0;
+        double exit = Double.POSITIVE_INFINITY;
+        int enterAxis = -1;
+        for (int a = 0; a < 3; a++) {
+            if (d[a] == 0) {
+                if (o[a] < -CubeIndexer.radius || o[a] >= CubeIndexer.radius) {
+                    return null;
+                }
+            } else {
+                double t1 = (-CubeIndexer.radius - o[a]) / d[a];
+                double t2 = (CubeIndexer.radius - o[a]) / d[a];
+                if (Math.min(t1, t2) > enter) {
+                    enter = Math.min(t1, t2);
+                    enterAxis = a;
+                }
+                exit = Math.min(exit, Math.max(t1, t2));
+            }
         }
-        if (offZ == 0) {
-            offZ = 1;
+        if (enter >= exit) {
+            return null;
         }
 
-        // the "progress" value
-        double valYX = Math.abs(dir.y / dir.x);
-        double valZX = Math.abs(dir.z / dir.x);
-        double valZY = Math.abs(dir.z / dir.y);
-
-        int tMaxX = 0;
-        int tMaxY = 0;
-        int tMaxZ = 0;
+        // step direction and the side that is hit when stepping along the axis
+        int[] step = new int[3];
+        short[] side = new short[3];
+        // the current cell
+        int[] cell = new int[3];
+        // the ray parameter of the first crossing of a cell boundary and the distance
+        // between two crossings (the crossing n happens at first + n * delta)
+        double[] first = new double[3];
+        double[] delta = new double[3];
+        // amount of crossings done
+        long[] crossed = new long[3];
+        for (int a = 0; a < 3; a++) {
+            step[a] = (int) Math.signum(d[a]);
+            side[a] = (short) (a * 2 + (step[a] > 0 ? 1 : 0));
+            if (a == enterAxis) {
+                cell[a] = step[a] > 0 ? -CubeIndexer.radius : CubeIndexer.radius - 1;
+            } else {
+                cell[a] = Math.max(-CubeIndexer.radius, Math.min(CubeIndexer.radius - 1,
+                        (int) Math.floor(o[a] + d[a] * enter)));
+            }
+            if (step[a] == 0) {
+                first[a] = Double.POSITIVE_INFINITY;
+                delta[a] = 0;
+            } else {
+                first[a] = ((step[a] > 0 ? cell[a] + 1 : cell[a]) - o[a]) / d[a];
+                delta[a] = 1 / Math.abs(d[a]);
+            }
+        }
 
-        // only check for nearby voxels (ray length)
-        int i = 0;
-        while (i++ < 400) {
+        // the origin is outside, so the ray enters through a side of the first cell
+        if (enterAxis != -1) {
+            int pos = CubeIndexer.getId(cell[0], cell[1], cell[2]);
+            if (containsBorder(pos, side[enterAxis])) {
+                return new short[] {(short) cell[0], (short) cell[1], (short) cell[2], side[enterAxis]};
+            }
+        }
 
-            double diffYX = valYX * (tMaxX + offX) - (tMaxY + offY);
+        while (true) {
+            // do the next crossing (ties are resolved towards the later axis)
+            double tX = first[0] + crossed[0] * delta[0];
+            double tY = first[1] + crossed[1] * delta[1];
+            double tZ = first[2] + crossed[2] * delta[2];
+            int a = tX < tY ? (tX < tZ ? 0 : 2) : (tY < tZ ? 1 : 2);
+            crossed[a]++;
+            cell[a] += step[a];
+            if (cell[a] < -CubeIndexer.radius || cell[a] >= CubeIndexer.radius) {
+                return null;
+            }
 
-            if (diffYX < 0) {
-                double diffZX = valZX * (tMaxX + offX) - (tMaxZ + offZ);
-                if (diffZX < 0) {
-                    tMaxX++;
-                    pos = CubeIndexer.changeX(pos, stepXB);
-                    lastHitSide = sideX;
-                } else {
-                    tMaxZ++;
-                    pos = CubeIndexer.changeZ(pos, stepZB);
-                    lastHitSide = sideZ;
-                }
-            } else {
-                double diffZY = valZY * (tMaxY + offY) - (tMaxZ + offZ);
-                if (diffZY < 0) {
-                    tMaxY++;
-                    pos = CubeIndexer.changeY(pos, stepYB);
-                    lastHitSide = sideY;
-                } else {
-                    tMaxZ++;
-                    pos = CubeIndexer.changeZ(pos, stepZB);
-                    lastHitSide = sideZ;
+            // check for containment (hit side has to be visible)
+            if (!skipEmpty || !skipEmptyBrick(cell, step, first, delta, crossed)) {
+                int pos = CubeIndexer.getId(cell[0], cell[1], cell[2]);
+                if (containsBorder(pos, side[a])) {
+                    return new short[] {(short) cell[0], (short) cell[1], (short) cell[2], side[a]};
                 }
             }
+        }
+    }
 
-            // check for containment
-            if (containsBorder(pos, lastHitSide)) { // hit side has to be visible
-                //if (id2obj.containsKey(pos)) { // any voxel can be hit
-                short[] result = CubeIndexer.getPos(pos);
-                return new short[] {result[0], result[1], result[2], lastHitSide};
+    // if the cell lives in an empty brick, do all crossings before the ray leaves that brick
+    // (this results in the same state as crossing the cells one by one)
+    // returns true if a brick was skipped
+    private boolean skipEmptyBrick(int[] cell, int[] step, double[] first, double[] delta, long[] crossed) {
+        for (int level = 0; level < BrickMap.LEVELS; level++) {
+            if (isEmptyBrick(level, cell[0], cell[1], cell[2])) {
+                int shift = BrickMap.getShift(level);
+                // find when the ray leaves the brick
+                double exit = Double.POSITIVE_INFINITY;
+                for (int a = 0; a < 3; a++) {
+                    if (step[a] != 0) {
+                        int start = ((cell[a] + CubeIndexer.radius) >> shift << shift) - CubeIndexer.radius;
+                        int steps = step[a] > 0 ? start + (1 << shift) - cell[a] : cell[a] - start + 1;
+                        exit = Math.min(exit, first[a] + (crossed[a] + steps - 1) * delta[a]);
+                    }
+                }
+                // do the crossings that happen before that
+                for (int a = 0; a < 3; a++) {
+                    if (step[a] != 0) {
+                        long n = Math.max(crossed[a], (long) Math.ceil((exit - first[a]) / delta[a]));
+                        while (n > crossed[a] && first[a] + (n - 1) * delta[a] >= exit) {
+                            n--;
+                        }
+                        while (first[a] + n * delta[a] < exit) {
+                            n++;
+                        }
+                        cell[a] += (n - crossed[a]) * step[a];
+                        crossed[a] = n;
+                    }
+                }
+                return true;
             }
         }
-        return null;
+        return false;
     }
 
     // constructor
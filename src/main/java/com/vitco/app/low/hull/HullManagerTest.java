@@ -1,7 +1,11 @@
 package com.vitco.app.low.hull;
 
+import com.threed.jpct.SimpleVector;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Random;
+
 /**
  * Testing that the hull detection is working properly.
  */
@@ -231,4 +235,45 @@ public class HullManagerTest {
         }
 
     }
+
+    @Test
+    public void testHitTest() throws Exception {
+        HullManagerExt<String> hullManager = new HullManagerExt<String>();
+        update(hullManager, get(700, 5, -3));
+        update(hullManager, get(-790, 0, 0));
+        // far away voxels are hit
+        short[] hit = hullManager.hitTest(new SimpleVector(-700.5f, 5.5f, -2.5f), new SimpleVector(1, 0, 0));
+        assert Arrays.equals(hit, new short[] {700, 5, -3, 1});
+        hit = hullManager.hitTest(new SimpleVector(0.5f, 0.5f, 0.5f), new SimpleVector(-1, 0, 0));
+        assert Arrays.equals(hit, new short[] {-790, 0, 0, 0});
+        // rays that start outside of the indexer space
+        hit = hullManager.hitTest(new SimpleVector(2000.5f, 5.5f, -2.5f), new SimpleVector(-1, 0, 0));
+        assert Arrays.equals(hit, new short[] {700, 5, -3, 0});
+        assert hullManager.hitTest(new SimpleVector(2000.5f, 5.5f, -2.5f), new SimpleVector(1, 0, 0)) == null;
+        // removed voxels are no longer hit
+        hullManager.clearPosition(get(700, 5, -3));
+        assert hullManager.hitTest(new SimpleVector(-700.5f, 5.5f, -2.5f), new SimpleVector(1, 0, 0)) == null;
+
+        // skipping empty space does not change the result
+        Random rand = new Random(1234);
+        hullManager.clear();
+        for (int i = 0; i < 2000; i++) {
+            update(hullManager, get(rand.nextInt(200) - 100, rand.nextInt(200) - 100, rand.nextInt(200) - 100));
+        }
+        int hits = 0;
+        for (int i = 0; i < 2000; i++) {
+            SimpleVector origin = new SimpleVector(
+                    rand.nextFloat() * 400 - 200, rand.nextFloat() * 400 - 200, rand.nextFloat() * 400 - 200);
+            SimpleVector target = new SimpleVector(
+                    rand.nextFloat() * 100 - 50, rand.nextFloat() * 100 - 50, rand.nextFloat() * 100 - 50);
+            SimpleVector dir = target.calcSub(origin).normalize();
+            hit = hullManager.hitTest(origin, dir, true);
+            assert Arrays.equals(hit, hullManager.hitTest(origin, dir, false));
+            if (hit != null) {
+                hits++;
+                assert hullManager.containsBorder(new short[] {hit[0], hit[1], hit[2]}, hit[3]);
+            }
+        }
+        assert hits > 0;
+    }
 }
@@ -1,5 +1,7 @@
 package com.vitco.app.low.triangulate;
 
+import com.vitco.app.low.triangulate.util.BitGrid;
+import com.vitco.app.low.triangulate.util.TriangleBuffer;
 import org.poly2tri.geometry.polygon.PolygonPoint;
 import org.poly2tri.triangulation.delaunay.DelaunayTriangle;
 
@@ -24,4 +26,13 @@ public class Grid2TriNaive {
         }
         return result;
     }
+
+    // compute the triangulation (into the buffer)
+    public static void triangulate(BitGrid bits, TriangleBuffer result) {
+        for (int y = 0, lenY = bits.getHeight(); y < lenY; y++) {
+            for (int x = bits.nextSetBit(0, y); x != -1; x = bits.nextSetBit(x + 1, y)) {
+                result.addRectangle(x, y, x + 1, y + 1);
+            }
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package com.vitco.app.low.triangulate;
 
+import com.vitco.app.low.triangulate.util.BitGrid;
+import com.vitco.app.low.triangulate.util.TriangleBuffer;
 import org.poly2tri.geometry.polygon.PolygonPoint;
 import org.poly2tri.triangulation.delaunay.DelaunayTriangle;
 
@@ -147,4 +149,64 @@ public class Grid2TriNaiveGreedy {
         }
         return result;
     }
+
+    // triangulate a bit grid (into the buffer), the grid is cleared by this
+    public static void triangulate(BitGrid bits, TriangleBuffer result) {
+        int lenX = bits.getWidth();
+        int lenY = bits.getHeight();
+        int lenXM = lenX - 1;
+        int lenYM = lenY - 1;
+        int pxP,pxN,pyP,pyN;
+
+        for (int x = 0; x < lenX; x++) {
+            for (int y = 0; y < lenY; y++) {
+                // we found a set point -> start expanding
+                if (bits.get(x, y)) {
+                    // unset point
+                    bits.clear(x, y);
+                    pxP = lenXM;
+                    pyP = lenYM;
+                    pyN = y;
+
+                    // expand in x direction (positive)
+                    for (int i = x; ++i < lenX;) {
+                        if (!bits.get(i, y)) {
+                            pxP = --i;
+                            break;
+                        } else {
+                            bits.clear(i, y);
+                        }
+                    }
+                    pxN = x;
+
+                    // expand in y direction (positive)
+                    loop: for (int i = y; ++i < lenY;) {
+                        if (!bits.get(pxP, i) || !bits.get(pxN, i)) {
+                            pyP = --i;
+                            break;
+                        } else {
+                            bits.clear(pxP, i);
+                            bits.clear(pxN, i);
+                        }
+                        for (int j = pxN; ++j < pxP;) {
+                            if (!bits.get(j, i)) {
+                                for (int k = j; --k > pxN;) {
+                                    bits.set(k, i);
+                                }
+                                bits.set(pxP, i);
+                                bits.set(pxN, i);
+                                pyP = --i;
+                                break loop;
+                            } else {
+                                bits.clear(j, i);
+                            }
+                        }
+                    }
+
+                    // add the triangles for this rectangle
+                    result.addRectangle(pxN, pyN, pxP + 1, pyP + 1);
+                }
+            }
+        }
+    }
 }
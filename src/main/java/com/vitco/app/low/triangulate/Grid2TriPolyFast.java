@@ -1,5 +1,6 @@
 package com.vitco.app.low.triangulate;
 
+import com.vitco.app.low.triangulate.util.TriangleBuffer;
 import com.vitco.app.util.misc.IntegerTools;
 import gnu.trove.set.hash.TIntHashSet;
 import org.poly2tri.Poly2Tri;
@@ -32,14 +33,30 @@ public class Grid2TriPolyFast {
 
     // ==============
 
-    // helper - we need only one context for all conversion (faster)
-    private final static TriangulationContext tcx = Poly2Tri.createContext(TriangulationAlgorithm.DTSweep);
+    // helper - we need only one context per thread for all conversion (faster)
+    private final static ThreadLocal<TriangulationContext<?>> context = new ThreadLocal<TriangulationContext<?>>() {
+        @Override
+        protected TriangulationContext<?> initialValue() {
+            return Poly2Tri.createContext(TriangulationAlgorithm.DTSweep);
+        }
+    };
 
     // triangulate a polygon, the input data is interpolated to allow Poly2Tri to process it.
     // Hence the output data is slightly "off". This can be fixed by rounding the output data, don't use (int)
     // casting though as this might round down instead of up.
     public static ArrayList<DelaunayTriangle> triangulate(short[][][] polys) {
         ArrayList<DelaunayTriangle> result = new ArrayList<DelaunayTriangle>();
+        triangulate(polys, result, null);
+        return result;
+    }
+
+    // triangulate a polygon into the buffer (same output as above)
+    public static void triangulate(short[][][] polys, TriangleBuffer result) {
+        triangulate(polys, null, result);
+    }
+
+    // triangulate a polygon into the list or into the buffer
+    private static void triangulate(short[][][] polys, ArrayList<DelaunayTriangle> result, TriangleBuffer buffer) {
 
         // stores and manages all seen points
         TIntHashSet indexer = new TIntHashSet();
@@ -90,19 +107,18 @@ public class Grid2TriPolyFast {
             }
 
             // do the triangulation and add the triangles for this polygon
-            // Note: This needs to be synchronized to prevent multiple instances
-            // from accessing the tcx context at once
-            synchronized (tcx) {
-                tcx.prepareTriangulation(polyR);
-                Poly2Tri.triangulate(tcx);
-                tcx.clear();
+            // Note: Every thread uses its own context, so conversions can run concurrently
+            TriangulationContext<?> tcx = context.get();
+            tcx.prepareTriangulation(polyR);
+            Poly2Tri.triangulate(tcx);
+            tcx.clear();
+            if (buffer != null) {
+                buffer.addTriangles(polyR.getTriangles());
+            } else {
+                result.addAll(polyR.getTriangles());
             }
-            result.addAll(polyR.getTriangles());
 
         }
-
-        // return all triangles
-        return result;
     }
 
 }
@@ -0,0 +1,58 @@
+package com.vitco.app.low.triangulate;
+
+import com.vitco.app.low.triangulate.util.BitGrid;
+import com.vitco.app.low.triangulate.util.Grid2PolyHelper;
+import com.vitco.app.low.triangulate.util.TriangleBuffer;
+
+/**
+ * The available algorithms to convert a bit grid into triangles.
+ *
+ * The triangles are added to the buffer. Note: The grid might be changed by the algorithm.
+ */
+public enum Grid2TriStrategy {
+    // two triangles for every set bit
+    NAIVE {
+        @Override
+        public void triangulate(BitGrid bits, TriangleBuffer result) {
+            Grid2TriNaive.triangulate(bits, result);
+        }
+    },
+    // naive greedy meshing (rectangles)
+    NAIVE_GREEDY {
+        @Override
+        public void triangulate(BitGrid bits, TriangleBuffer result) {
+            Grid2TriNaiveGreedy.triangulate(bits, result);
+        }
+    },
+    // optimal rectangle coverage
+    GREEDY_OPTIMAL {
+        @Override
+        public void triangulate(BitGrid bits, TriangleBuffer result) {
+            result.addTriangles(Grid2TriGreedyOptimal.triangulate(bits.toArray()));
+        }
+    },
+    // monotone polygons
+    MONO {
+        @Override
+        public void triangulate(BitGrid bits, TriangleBuffer result) {
+            result.addTriangles(Grid2TriMono.triangulate(bits.toArray(), false));
+        }
+    },
+    // monotone polygons (without t-junctions)
+    MONO_SAVE {
+        @Override
+        public void triangulate(BitGrid bits, TriangleBuffer result) {
+            result.addTriangles(Grid2TriMono.triangulate(bits.toArray(), true));
+        }
+    },
+    // polygons with holes (Poly2Tri)
+    POLY_FAST {
+        @Override
+        public void triangulate(BitGrid bits, TriangleBuffer result) {
+            Grid2TriPolyFast.triangulate(Grid2PolyHelper.convert(bits), result);
+        }
+    };
+
+    // triangulate the bit grid into the buffer
+    public abstract void triangulate(BitGrid bits, TriangleBuffer result);
+}
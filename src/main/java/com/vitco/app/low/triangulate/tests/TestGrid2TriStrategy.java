@@ -0,0 +1,106 @@
+package com.vitco.app.low.triangulate.tests;
+
+import com.vitco.app.low.triangulate.Grid2TriNaiveGreedy;
+import com.vitco.app.low.triangulate.Grid2TriStrategy;
+import com.vitco.app.low.triangulate.util.BitGrid;
+import com.vitco.app.low.triangulate.util.TriangleBuffer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test the triangulation strategies that work on bit grids and triangle buffers.
+ */
+public class TestGrid2TriStrategy {
+
+    // helper - create a random grid
+    private static boolean[][] createData(Random rand, int w, int h) {
+        boolean[][] data = new boolean[w][h];
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                data[x][y] = rand.nextInt(3) != 0;
+            }
+        }
+        return data;
+    }
+
+    // helper - the area covered by all triangles in the buffer
+    private static double getArea(TriangleBuffer buffer) {
+        double area = 0;
+        for (int tri = 0; tri < buffer.getTriangleCount(); tri++) {
+            int a = buffer.getIndex(tri, 0);
+            int b = buffer.getIndex(tri, 1);
+            int c = buffer.getIndex(tri, 2);
+            area += Math.abs((buffer.getX(b) - buffer.getX(a)) * (buffer.getY(c) - buffer.getY(a))
+                    - (buffer.getX(c) - buffer.getX(a)) * (buffer.getY(b) - buffer.getY(a))) / 2;
+        }
+        return area;
+    }
+
+    @Test
+    public void testBitGrid() throws Exception {
+        Random rand = new Random(0);
+        BitGrid grid = new BitGrid();
+        for (int i = 0; i < 100; i++) {
+            boolean[][] data = createData(rand, rand.nextInt(150) + 1, rand.nextInt(20) + 1);
+            grid.reset(data.length, data[0].length);
+            int count = 0;
+            for (int x = 0; x < data.length; x++) {
+                for (int y = 0; y < data[0].length; y++) {
+                    if (data[x][y]) {
+                        grid.set(x, y);
+                        count++;
+                    }
+                }
+            }
+            assert Arrays.deepEquals(grid.toArray(), data);
+            assert Arrays.deepEquals(BitGrid.fromArray(data).toArray(), data);
+            // iterate over the set bits
+            for (int y = 0; y < data[0].length; y++) {
+                for (int x = grid.nextSetBit(0, y); x != -1; x = grid.nextSetBit(x + 1, y)) {
+                    assert data[x][y];
+                    count--;
+                }
+            }
+            assert count == 0;
+        }
+    }
+
+    @Test
+    public void testStrategies() throws Exception {
+        Random rand = new Random(0);
+        BitGrid grid = new BitGrid();
+        TriangleBuffer buffer = new TriangleBuffer();
+        for (int i = 0; i < 200; i++) {
+            boolean[][] data = createData(rand, rand.nextInt(70) + 1, rand.nextInt(70) + 1);
+            int count = 0;
+            for (boolean[] row : data) {
+                for (boolean value : row) {
+                    if (value) {
+                        count++;
+                    }
+                }
+            }
+            for (Grid2TriStrategy strategy : Grid2TriStrategy.values()) {
+                // the grid and the buffer are reused
+                grid.reset(data.length, data[0].length);
+                for (int x = 0; x < data.length; x++) {
+                    for (int y = 0; y < data[0].length; y++) {
+                        if (data[x][y]) {
+                            grid.set(x, y);
+                        }
+                    }
+                }
+                buffer.clear();
+                strategy.triangulate(grid, buffer);
+                // Note: poly2tri can move points slightly (they are rounded when used)
+                assert Math.abs(getArea(buffer) - count) < 0.01 : strategy;
+                if (strategy == Grid2TriStrategy.NAIVE_GREEDY) {
+                    // the same result as the boolean version (which consumes the data)
+                    assert buffer.getTriangleCount() == Grid2TriNaiveGreedy.triangulate(BitGrid.fromArray(data).toArray()).size();
+                }
+            }
+        }
+    }
+}
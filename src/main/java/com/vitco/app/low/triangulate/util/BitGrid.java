@@ -0,0 +1,106 @@
+package com.vitco.app.low.triangulate.util;
+
+import java.util.Arrays;
+
+/**
+ * A reusable bit packed 2D grid (rows of longs).
+ *
+ * The memory is only ever grown, so one instance can be used for
+ * many grids of different size.
+ */
+public final class BitGrid {
+
+    // the bits, row by row (y), every row uses wordsPerRow longs
+    private long[] bits = new long[0];
+    private int width = 0;
+    private int height = 0;
+    private int wordsPerRow = 0;
+
+    // constructor
+    public BitGrid() {}
+
+    // constructor
+    public BitGrid(int width, int height) {
+        reset(width, height);
+    }
+
+    // create a grid from a boolean array (indexed [x][y])
+    public static BitGrid fromArray(boolean[][] data) {
+        BitGrid grid = new BitGrid(data.length, data[0].length);
+        for (int x = 0; x < data.length; x++) {
+            for (int y = 0; y < data[x].length; y++) {
+                if (data[x][y]) {
+                    grid.set(x, y);
+                }
+            }
+        }
+        return grid;
+    }
+
+    // resize the grid, all bits are unset afterwards
+    public void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        wordsPerRow = (width + 63) >> 6;
+        int size = wordsPerRow * height;
+        if (bits.length < size) {
+            bits = new long[size];
+        } else {
+            Arrays.fill(bits, 0, size, 0);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // true iff the bit is set
+    public boolean get(int x, int y) {
+        return (bits[y * wordsPerRow + (x >> 6)] & (1L << x)) != 0;
+    }
+
+    // set a bit
+    public void set(int x, int y) {
+        bits[y * wordsPerRow + (x >> 6)] |= 1L << x;
+    }
+
+    // unset a bit
+    public void clear(int x, int y) {
+        bits[y * wordsPerRow + (x >> 6)] &= ~(1L << x);
+    }
+
+    // find the first set bit in the row at or after x, returns -1 if there is none
+    public int nextSetBit(int x, int y) {
+        if (x >= width) {
+            return -1;
+        }
+        int offset = y * wordsPerRow;
+        int word = x >> 6;
+        long value = bits[offset + word] & (-1L << x);
+        while (true) {
+            if (value != 0) {
+                int result = (word << 6) + Long.numberOfTrailingZeros(value);
+                return result < width ? result : -1;
+            }
+            if (++word == wordsPerRow) {
+                return -1;
+            }
+            value = bits[offset + word];
+        }
+    }
+
+    // convert to a boolean array (indexed [x][y])
+    public boolean[][] toArray() {
+        boolean[][] result = new boolean[width][height];
+        for (int y = 0; y < height; y++) {
+            for (int x = nextSetBit(0, y); x != -1; x = nextSetBit(x + 1, y)) {
+                result[x][y] = true;
+            }
+        }
+        return result;
+    }
+}
@@ -21,14 +21,14 @@ public class Grid2PolyHelper {
     // When the method terminates, the vertEdges ArrayList holds the vertical edges sorted in x direction (but not sorted
     // in any y direction) and the edges HashMap, meshes the first coordinate point hash "makeInt" to a short[] array.
     // The short array contains in that order: x1, y1, x2, y2, direction (1 or 0), polygonid (always initialized with -1)
-    private static void extractEdges(boolean[][] data, ArrayList<short[]> vertEdges, TIntObjectHashMap<short[]> edges) {
+    private static void extractEdges(BitGrid data, ArrayList<short[]> vertEdges, TIntObjectHashMap<short[]> edges) {
         // temporary array to hold current edge
         short[] edge;
 
         // prepare dimension variables
-        short lenX = (short) data.length;
+        short lenX = (short) data.getWidth();
         short lenXM = (short) (lenX-1);
-        short lenY = (short) data[0].length;
+        short lenY = (short) data.getHeight();
         short lenYM = (short) (lenY-1);
 
         // used for edge computation to memorize starting/stop position
@@ -43,24 +43,24 @@ public class Grid2PolyHelper {
         for (short x = 1, xM = 0; x < lenX; xM = x, x++) {
             for (short y = 0; y < lenY; y++) {
                 // ---------------
-                if ((data[xM][y] || data[xM][y] == data[x][y]) && start != -1) {
+                if ((data.get(xM, y) || data.get(xM, y) == data.get(x, y)) && start != -1) {
                     // add vertex
                     edge = new short[] {x,start,x,y,1,-1};
                     edges.put(-IntegerTools.makeInt(edge[0], edge[1]),edge);
                     vertEdges.add(edge);
                     start = -1;
                 }
-                if ((data[x][y] || data[xM][y] == data[x][y]) && stop != -1) {
+                if ((data.get(x, y) || data.get(xM, y) == data.get(x, y)) && stop != -1) {
                     // add vertex
                     edge = new short[] {x,y,x,stop,0,-1};
                     edges.put(IntegerTools.makeInt(edge[0], edge[1]),edge);
                     vertEdges.add(edge);
                     stop = -1;
                 }
-                if (data[xM][y] ^ data[x][y]) {
-                    if (data[xM][y] && stop == -1) {
+                if (data.get(xM, y) ^ data.get(x, y)) {
+                    if (data.get(xM, y) && stop == -1) {
                         stop = y;
-                    } else if (!data[xM][y] && start == -1) {
+                    } else if (!data.get(xM, y) && start == -1) {
                         start = y;
                     }
                 }
@@ -86,24 +86,24 @@ public class Grid2PolyHelper {
         // =============
         // find outside vertical edges
         for (short y = 0; y < lenY; y++) {
-            if (!data[0][y] && start != -1) {
+            if (!data.get(0, y) && start != -1) {
                 // add vertex
                 edge = new short[] {0,start,0,y,1,-1};
                 edges.put(-IntegerTools.makeInt(edge[0], edge[1]), edge);
                 vertEdges.add(0,edge);
                 start = -1;
             }
-            if (!data[lenXM][y] && stop != -1) {
+            if (!data.get(lenXM, y) && stop != -1) {
                 // add vertex
                 edge = new short[] {lenX,y,lenX,stop,0,-1};
                 edges.put(IntegerTools.makeInt(edge[0], edge[1]),edge);
                 vertEdges.add(edge);
                 stop = -1;
             }
-            if (data[0][y] && start == -1) {
+            if (data.get(0, y) && start == -1) {
                 start = y;
             }
-            if (data[lenXM][y] && stop == -1) {
+            if (data.get(lenXM, y) && stop == -1) {
                 stop = y;
             }
         }
@@ -128,22 +128,22 @@ public class Grid2PolyHelper {
         for (short y = 1, yM = 0; y < lenY; yM = y, y++) {
             for (short x = 0; x < lenX; x++) {
                 // ---------------
-                if ((data[x][yM] || data[x][yM] == data[x][y]) && start != -1) {
+                if ((data.get(x, yM) || data.get(x, yM) == data.get(x, y)) && start != -1) {
                     // add vertex
                     edge = new short[] {x,y,start,y,0,-1};
                     edges.put(-IntegerTools.makeInt(edge[0], edge[1]), edge);
                     start = -1;
                 }
-                if ((data[x][y] || data[x][yM] == data[x][y]) && stop != -1) {
+                if ((data.get(x, y) || data.get(x, yM) == data.get(x, y)) && stop != -1) {
                     // add vertex
                     edge = new short[] {stop,y,x,y,1,-1};
                     edges.put(IntegerTools.makeInt(edge[0], edge[1]), edge);
                     stop = -1;
                 }
-                if (data[x][yM] ^ data[x][y]) {
-                    if (data[x][yM] && stop == -1) {
+                if (data.get(x, yM) ^ data.get(x, y)) {
+                    if (data.get(x, yM) && stop == -1) {
                         stop = x;
-                    } else if (!data[x][yM] && start == -1) {
+                    } else if (!data.get(x, yM) && start == -1) {
                         start = x;
                     }
                 }
@@ -168,22 +168,22 @@ public class Grid2PolyHelper {
         // compute outside horizontal edges
 
         for (short x = 0; x < lenX; x++) {
-            if (!data[x][0] && start != -1) {
+            if (!data.get(x, 0) && start != -1) {
                 // add vertex
                 edge = new short[] {x,0,start,0,0,-1};
                 edges.put(-IntegerTools.makeInt(edge[0], edge[1]), edge);
                 start = -1;
             }
-            if (!data[x][lenYM] && stop != -1) {
+            if (!data.get(x, lenYM) && stop != -1) {
                 // add vertex
                 edge = new short[] {stop,lenY,x,lenY,1,-1};
                 edges.put(IntegerTools.makeInt(edge[0], edge[1]), edge);
                 stop = -1;
             }
-            if (data[x][0] && start == -1) {
+            if (data.get(x, 0) && start == -1) {
                 start = x;
             }
-            if (data[x][lenYM] && stop == -1) {
+            if (data.get(x, lenYM) && stop == -1) {
                 stop = x;
             }
         }
@@ -206,6 +206,11 @@ public class Grid2PolyHelper {
     // of the holes. The inner most arrays finally describe outlines and are structured
     // as x1,y1,x2,y2,x3,y3,....,xn,yn,x1,y1
     public static short[][][] convert(boolean[][] data) {
+        return convert(BitGrid.fromArray(data));
+    }
+
+    // convert bit data into polygon (same structure as above)
+    public static short[][][] convert(BitGrid data) {
         // result list that still needs conversion into array, each array list holds a polygon.
         // The outline is stored in the first entry and the holes as further entries (optionally).
         TIntObjectHashMap<ArrayList<short[]>> result = new TIntObjectHashMap<ArrayList<short[]>>();
@@ -225,7 +230,7 @@ public class Grid2PolyHelper {
         short[] edgeR;
 
         // holds poly id information for current column
-        short[] polyIds = new short[data[0].length];
+        short[] polyIds = new short[data.getHeight()];
         // holds current poly id
         short polyId = 0;
 
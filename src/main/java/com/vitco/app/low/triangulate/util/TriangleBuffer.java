@@ -0,0 +1,93 @@
+package com.vitco.app.low.triangulate.util;
+
+import org.poly2tri.triangulation.delaunay.DelaunayTriangle;
+
+import java.util.List;
+
+/**
+ * A reusable output buffer for triangulations (vertex coordinates and triangle indices).
+ *
+ * The arrays are only ever grown, so one instance can be used for many triangulations.
+ */
+public final class TriangleBuffer {
+
+    // the vertices (x, y)
+    private double[] vertices = new double[64];
+    private int vertexCount = 0;
+    // the triangles (three vertex indices each)
+    private int[] indices = new int[96];
+    private int triangleCount = 0;
+
+    // remove all vertices and triangles
+    public void clear() {
+        vertexCount = 0;
+        triangleCount = 0;
+    }
+
+    // add a vertex, returns the vertex index
+    public int addVertex(double x, double y) {
+        if (vertexCount * 2 == vertices.length) {
+            double[] newVertices = new double[vertices.length * 2];
+            System.arraycopy(vertices, 0, newVertices, 0, vertices.length);
+            vertices = newVertices;
+        }
+        vertices[vertexCount * 2] = x;
+        vertices[vertexCount * 2 + 1] = y;
+        return vertexCount++;
+    }
+
+    // add a triangle (by vertex indices)
+    public void addTriangle(int a, int b, int c) {
+        if (triangleCount * 3 == indices.length) {
+            int[] newIndices = new int[indices.length * 2];
+            System.arraycopy(indices, 0, newIndices, 0, indices.length);
+            indices = newIndices;
+        }
+        indices[triangleCount * 3] = a;
+        indices[triangleCount * 3 + 1] = b;
+        indices[triangleCount * 3 + 2] = c;
+        triangleCount++;
+    }
+
+    // add the two triangles of the rectangle [x1, x2] x [y1, y2]
+    public void addRectangle(int x1, int y1, int x2, int y2) {
+        int p11 = addVertex(x1, y1);
+        int p21 = addVertex(x2, y1);
+        int p12 = addVertex(x1, y2);
+        int p22 = addVertex(x2, y2);
+        addTriangle(p11, p21, p12);
+        addTriangle(p21, p22, p12);
+    }
+
+    // add triangles from a poly2tri triangulation
+    public void addTriangles(List<DelaunayTriangle> triangles) {
+        for (DelaunayTriangle tri : triangles) {
+            addTriangle(
+                    addVertex(tri.points[0].getX(), tri.points[0].getY()),
+                    addVertex(tri.points[1].getX(), tri.points[1].getY()),
+                    addVertex(tri.points[2].getX(), tri.points[2].getY())
+            );
+        }
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    // get the vertex index of a triangle corner (0 - 2)
+    public int getIndex(int triangle, int corner) {
+        return indices[triangle * 3 + corner];
+    }
+
+    public double getX(int vertex) {
+        return vertices[vertex * 2];
+    }
+
+    public double getY(int vertex) {
+        return vertices[vertex * 2 + 1];
+    }
+}
@@ -2,9 +2,20 @@ package com.vitco.app.manager.async;
 
 /**
  * Action to be performed by AsyncActionManager
+ *
+ * Actions with a higher priority (lower value) are executed first.
  */
 public abstract class AsyncAction implements Runnable {
 
+    // priorities (input > repaint > default > world refresh > background)
+    public static final int PRIORITY_INPUT = 0;
+    public static final int PRIORITY_REPAINT = 1;
+    public static final int PRIORITY_DEFAULT = 2;
+    public static final int PRIORITY_WORLD = 3;
+    public static final int PRIORITY_BACKGROUND = 4;
+    // amount of different priorities
+    static final int PRIORITY_COUNT = 5;
+
     public abstract void performAction();
 
     @Override
@@ -15,26 +26,49 @@ public abstract class AsyncAction implements Runnable {
     // name of this AsyncAction
     public final String name;
 
-    // can be overriden to delay execution of this AsyncAction
+    // priority of this AsyncAction
+    public final int priority;
+
+    // can be overriden to delay execution of this AsyncAction until a condition holds
+    // Note: The condition is only checked again after an action was executed or added, so
+    // it needs to change from within an async action (or the action needs to be added again)
     public boolean ready() {
         return true;
     }
 
+    // can be overriden to delay execution of this AsyncAction until a known
+    // time (in ms, see System.currentTimeMillis()), the manager wakes up at that time
+    public long getReadyTime() {
+        return 0;
+    }
+
     // giving a name to an async action guarantees that
     // there are not a lot of delayed actions with the
     // same name queueing up in the AsyncActionManager
     // IMPORTANT: it doesn't enforce this for not delayed actions
-    public AsyncAction(String name) {
+    public AsyncAction(String name, int priority) {
+        assert priority >= 0 && priority < PRIORITY_COUNT;
         this.name = name;
+        this.priority = priority;
+    }
+
+    public AsyncAction(String name) {
+        this(name, PRIORITY_DEFAULT);
     }
 
     // once this reaches Integer.MAX_VALUE it will reset to Integer.MIN_VALUE
     private static int c = 0;
 
-    public AsyncAction() {
+    public AsyncAction(int priority) {
+        assert priority >= 0 && priority < PRIORITY_COUNT;
         synchronized (AsyncAction.class) {
             name = String.valueOf(c++);
         }
+        this.priority = priority;
+    }
+
+    public AsyncAction() {
+        this(PRIORITY_DEFAULT);
     }
 
 }
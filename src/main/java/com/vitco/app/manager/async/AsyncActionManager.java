@@ -5,13 +5,27 @@ import com.vitco.app.manager.thread.ThreadManagerInterface;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages Async Actions
+ *
+ * Actions are executed one at a time, ordered by priority (FIFO for the same priority).
+ * Every queued action has a deadline (depending on the priority). Actions that missed
+ * their deadline are executed before higher priority actions (except input), so long
+ * running sliced work (e.g. the world refresh) still makes progress while the user interacts.
+ * Sliced work should size its slices with getSliceBudget(), so input and repaints can still
+ * be handled within the frame.
+ *
+ * The worker never polls: Actions that are not ready are checked again after every executed
+ * or added action and actions with a ready time schedule a wake up for that time.
  */
 public class AsyncActionManager {
 
@@ -22,44 +36,204 @@ public class AsyncActionManager {
         this.threadManager = threadManager;
     }
 
-    // list of new action
-    private final ArrayList<AsyncAction> newActions = new ArrayList<AsyncAction>();
+    // the time of one frame (in ns)
+    private static final long FRAME_TIME = 1000000000L / 60;
+    // time until a queued action is considered overdue (per priority, in ns)
+    private static final long[] DEADLINES = new long[] {
+            0, FRAME_TIME, FRAME_TIME * 2, FRAME_TIME * 4, FRAME_TIME * 30
+    };
+    // time that one slice of sliced work should take (in ns), the rest
+    // of the frame is left for input handling and repainting
+    private static final long SLICE_BUDGET = FRAME_TIME / 2;
+
+    // a queued action (the action itself is stored by name)
+    private static final class QueueEntry {
+        private final String name;
+        private final long deadline;
+
+        private QueueEntry(String name, long deadline) {
+            this.name = name;
+            this.deadline = deadline;
+        }
+    }
+
+    // lock for all the internal data structures
+    private final Object lock = new Object();
+
+    // the queues (one per priority)
+    private final ArrayList<ArrayDeque<QueueEntry>> queues = new ArrayList<ArrayDeque<QueueEntry>>();
+    {
+        for (int i = 0; i < AsyncAction.PRIORITY_COUNT; i++) {
+            queues.add(new ArrayDeque<QueueEntry>());
+        }
+    }
 
-    // list of actions
-    private final ArrayList<String> stack = new ArrayList<String>();
-    // retry to execute when the main stack is empty
-    private final ArrayList<String> idleStack = new ArrayList<String>();
+    // retry to execute when the queues contain no ready action
+    private final ArrayList<QueueEntry> idleStack = new ArrayList<QueueEntry>();
 
     // list of current action names
     private final HashMap<String, AsyncAction> actionNames = new HashMap<String, AsyncAction>();
 
+    // true while an action is executed
+    private boolean running = false;
+
+    // wakes up the worker when actions that are not ready reach their ready time
+    private final ScheduledExecutorService wakeUpTimer = Executors.newSingleThreadScheduledExecutor();
+    // the time of the earliest scheduled wake up (in ms)
+    private long nextWakeUp = Long.MAX_VALUE;
+
+    // helper - check if an action is ready (schedules a wake up if the action
+    // is not ready yet and has a ready time that is not scheduled yet)
+    private boolean isReady(AsyncAction action) {
+        long readyTime = action.getReadyTime();
+        long now = System.currentTimeMillis();
+        if (readyTime > now) {
+            if (readyTime < nextWakeUp || nextWakeUp <= now) {
+                nextWakeUp = readyTime;
+                wakeUpTimer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            lock.notifyAll();
+                        }
+                    }
+                }, readyTime - now, TimeUnit.MILLISECONDS);
+            }
+            return false;
+        }
+        return action.ready();
+    }
+
     public final void removeAsyncAction(String actionName) {
-        if (null != actionNames.remove(actionName)) {
-            stack.remove(actionName);
-            idleStack.remove(actionName);
+        synchronized (lock) {
+            if (null != actionNames.remove(actionName)) {
+                for (ArrayDeque<QueueEntry> queue : queues) {
+                    removeEntry(queue.iterator(), actionName);
+                }
+                removeEntry(idleStack.iterator(), actionName);
+            }
+        }
+    }
+
+    // helper - remove the entry with the given name (returns the entry or null)
+    private static QueueEntry removeEntry(Iterator<QueueEntry> it, String actionName) {
+        while (it.hasNext()) {
+            QueueEntry entry = it.next();
+            if (entry.name.equals(actionName)) {
+                it.remove();
+                return entry;
+            }
         }
+        return null;
     }
 
     // Note: re-adding an action does not ensure that the action
-    // is at the end of the queue!
+    // is at the end of the queue (unless the priority changes)!
     public final void addAsyncAction(AsyncAction action) {
-        synchronized (newActions) {
-            newActions.add(action);
+        synchronized (lock) {
+            long deadline = System.nanoTime() + DEADLINES[action.priority];
+            AsyncAction previous = actionNames.put(action.name, action);
+            if (previous == null) {
+                queues.get(action.priority).add(new QueueEntry(action.name, deadline));
+            } else if (previous.priority != action.priority) {
+                // move the entry to the queue of the new priority (entries on the idle
+                // stack are added to the queue of the new priority once they are ready)
+                QueueEntry entry = removeEntry(queues.get(previous.priority).iterator(), action.name);
+                if (entry != null) {
+                    queues.get(action.priority).add(new QueueEntry(action.name,
+                            entry.deadline - deadline < 0 ? entry.deadline : deadline));
+                }
+            }
+            lock.notifyAll();
         }
-        synchronized (workerThread) {
-            workerThread.notify();
+    }
+
+    // the time that one slice of sliced work (an action that adds itself again until
+    // the work is done) should take (in ns), shorter if input is already waiting
+    public final long getSliceBudget() {
+        synchronized (lock) {
+            return queues.get(AsyncAction.PRIORITY_INPUT).isEmpty() ? SLICE_BUDGET : SLICE_BUDGET / 4;
+        }
+    }
+
+    // helper - get the first ready entry of a queue (without removing it),
+    // entries that are not ready are moved to the idle stack
+    private QueueEntry readyHead(ArrayDeque<QueueEntry> queue) {
+        while (!queue.isEmpty()) {
+            QueueEntry entry = queue.peek();
+            if (isReady(actionNames.get(entry.name))) {
+                return entry;
+            }
+            idleStack.add(queue.poll());
+        }
+        return null;
+    }
+
+    // helper - get the queue that contains the next action to execute (or null)
+    private ArrayDeque<QueueEntry> nextQueue(long now) {
+        // input is always handled first
+        ArrayDeque<QueueEntry> input = queues.get(AsyncAction.PRIORITY_INPUT);
+        if (readyHead(input) != null) {
+            return input;
+        }
+        // find the most overdue action and the highest priority action
+        ArrayDeque<QueueEntry> overdue = null;
+        ArrayDeque<QueueEntry> first = null;
+        for (int i = AsyncAction.PRIORITY_INPUT + 1; i < queues.size(); i++) {
+            ArrayDeque<QueueEntry> queue = queues.get(i);
+            QueueEntry entry = readyHead(queue);
+            if (entry != null) {
+                if (first == null) {
+                    first = queue;
+                }
+                if (entry.deadline - now < 0 && (overdue == null || entry.deadline - overdue.peek().deadline < 0)) {
+                    overdue = queue;
+                }
+            }
+        }
+        return overdue != null ? overdue : first;
+    }
+
+    // obtain the next action to execute (or null if no action is ready),
+    // the action is removed from this manager
+    final AsyncAction poll() {
+        synchronized (lock) {
+            ArrayDeque<QueueEntry> queue = nextQueue(System.nanoTime());
+            if (queue == null && !idleStack.isEmpty()) {
+                // add <ready> idle stack back to the queues
+                boolean changed = false;
+                for (Iterator<QueueEntry> it = idleStack.iterator(); it.hasNext();) {
+                    QueueEntry entry = it.next();
+                    AsyncAction action = actionNames.get(entry.name);
+                    if (isReady(action)) {
+                        queues.get(action.priority).add(entry);
+                        it.remove();
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    queue = nextQueue(System.nanoTime());
+                }
+            }
+            if (queue == null) {
+                return null;
+            }
+            // remove first in case the action adds
+            // itself to the cue again (e.g. for refreshWorld())
+            return actionNames.remove(queue.poll().name);
         }
     }
 
     // needs to be one as those tasks can not be executed in parallel!
     // Note: ExecutorService is much faster than using a new thread to
-    // execute each AsyncAction
+    // execute each AsyncAction (and an exception doesn't stop the worker)
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
     private final LifeTimeThread workerThread = new LifeTimeThread() {
 
         @Override
         public void onAfterStop() {
+            wakeUpTimer.shutdownNow();
             executor.shutdown();
             // Wait until all threads are finish
             //noinspection StatementWithEmptyBody
@@ -68,56 +242,36 @@ public class AsyncActionManager {
 
         @Override
         public void loop() throws InterruptedException {
-            // add new tasks
-            synchronized (newActions) {
-                if (!newActions.isEmpty()) {
-                    for (AsyncAction action : newActions) {
-                        String actionName = action.name;
-                        if (null == actionNames.put(actionName, action)) {
-                            stack.add(actionName);
-                        }
-                    }
-                    newActions.clear();
+            final AsyncAction action;
+            synchronized (lock) {
+                // only hand over the next action once the previous one is finished,
+                // so a new action with higher priority can still be executed first
+                while (running) {
+                    lock.wait();
                 }
-            }
-            // handle stack execution
-            if (!stack.isEmpty()) {
-                // fetch action
-                String actionName = stack.remove(0);
-                final AsyncAction action = actionNames.get(actionName);
-                if (action.ready()) {
-                    // remove first in case the action adds
-                    // itself to the cue again (e.g. for refreshWorld())
-                    actionNames.remove(actionName);
-                    executor.execute(action);
-                } else {
-                    idleStack.add(actionName);
+                AsyncAction next = poll();
+                while (next == null) {
+                    // nothing to do, wait until an action is added, an action is
+                    // finished or an action that is not ready reaches its ready time
+                    lock.wait();
+                    next = poll();
                 }
-            } else {
-                // -- the main stack is empty
-                // add <ready> idle stack back to main stack
-                if (!idleStack.isEmpty()) {
-                    for (String asyncAction : idleStack) {
-                        if (actionNames.get(asyncAction).ready()) {
-                            stack.add(asyncAction);
-                        }
-                    }
-                    idleStack.removeAll(stack);
-                }
-
-                if (stack.isEmpty()) {
-                    synchronized (workerThread) {
-                        // sometimes notify is "too early"/fails(?), so we need a timeout here
-                        if (idleStack.isEmpty()) {
-                            // no actions waiting, we can be "lazy"
-                            workerThread.wait(500);
-                        } else {
-                            // there are some actions not ready yet, so we should check often
-                            workerThread.wait(50);
+                action = next;
+                running = true;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        action.run();
+                    } finally {
+                        synchronized (lock) {
+                            running = false;
+                            lock.notifyAll();
                         }
                     }
                 }
-            }
+            });
         }
     };
 
@@ -0,0 +1,209 @@
+package com.vitco.app.manager.async;
+
+import com.vitco.app.manager.action.ActionManager;
+import com.vitco.app.manager.thread.LifeTimeThread;
+import com.vitco.app.manager.thread.ThreadManagerInterface;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the scheduling of the async actions.
+ */
+public class AsyncActionManagerTest {
+
+    // action that records the execution order
+    private static AsyncAction createAction(String name, int priority, final ArrayList<String> log, final String entry) {
+        return new AsyncAction(name, priority) {
+            @Override
+            public void performAction() {
+                synchronized (log) {
+                    log.add(entry);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+        AsyncActionManager manager = new AsyncActionManager();
+        ArrayList<String> log = new ArrayList<String>();
+        manager.addAsyncAction(createAction("world", AsyncAction.PRIORITY_WORLD, log, "world"));
+        manager.addAsyncAction(createAction("bg", AsyncAction.PRIORITY_BACKGROUND, log, "bg"));
+        manager.addAsyncAction(createAction("repaint", AsyncAction.PRIORITY_REPAINT, log, "repaint"));
+        manager.addAsyncAction(createAction("input1", AsyncAction.PRIORITY_INPUT, log, "input1"));
+        manager.addAsyncAction(createAction("input2", AsyncAction.PRIORITY_INPUT, log, "input2"));
+        AsyncAction action;
+        while ((action = manager.poll()) != null) {
+            action.run();
+        }
+        assert log.toString().equals("[input1, input2, repaint, world, bg]");
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        AsyncActionManager manager = new AsyncActionManager();
+        ArrayList<String> log = new ArrayList<String>();
+        manager.addAsyncAction(createAction("repaint", AsyncAction.PRIORITY_REPAINT, log, "first"));
+        manager.addAsyncAction(createAction("other", AsyncAction.PRIORITY_REPAINT, log, "other"));
+        // replaces the queued action (but keeps the position)
+        manager.addAsyncAction(createAction("repaint", AsyncAction.PRIORITY_REPAINT, log, "second"));
+        manager.removeAsyncAction("other");
+        AsyncAction action;
+        while ((action = manager.poll()) != null) {
+            action.run();
+        }
+        assert log.toString().equals("[second]");
+    }
+
+    @Test
+    public void testPriorityChange() throws Exception {
+        AsyncActionManager manager = new AsyncActionManager();
+        ArrayList<String> log = new ArrayList<String>();
+        manager.addAsyncAction(createAction("bg1", AsyncAction.PRIORITY_BACKGROUND, log, "bg1"));
+        manager.addAsyncAction(createAction("bg2", AsyncAction.PRIORITY_BACKGROUND, log, "bg2"));
+        manager.addAsyncAction(createAction("repaint", AsyncAction.PRIORITY_REPAINT, log, "repaint"));
+        // promote the second action to input priority
+        manager.addAsyncAction(createAction("bg2", AsyncAction.PRIORITY_INPUT, log, "input"));
+        AsyncAction action;
+        while ((action = manager.poll()) != null) {
+            action.run();
+        }
+        assert log.toString().equals("[input, repaint, bg1]");
+    }
+
+    @Test
+    public void testSliceBudget() throws Exception {
+        AsyncActionManager manager = new AsyncActionManager();
+        long budget = manager.getSliceBudget();
+        assert budget > 0;
+        // less time for a slice if input is waiting
+        manager.addAsyncAction(createAction("input", AsyncAction.PRIORITY_INPUT, new ArrayList<String>(), "input"));
+        assert manager.getSliceBudget() < budget;
+        manager.poll();
+        assert manager.getSliceBudget() == budget;
+    }
+
+    @Test
+    public void testNotReadyAndOverdue() throws Exception {
+        AsyncActionManager manager = new AsyncActionManager();
+        ArrayList<String> log = new ArrayList<String>();
+        final boolean[] ready = new boolean[] {false};
+        manager.addAsyncAction(new AsyncAction("delayed", AsyncAction.PRIORITY_INPUT) {
+            @Override
+            public void performAction() {}
+
+            @Override
+            public boolean ready() {
+                return ready[0];
+            }
+        });
+        manager.addAsyncAction(createAction("world", AsyncAction.PRIORITY_WORLD, log, "world"));
+        // let the world action miss its deadline
+        Thread.sleep(100);
+        manager.addAsyncAction(createAction("repaint", AsyncAction.PRIORITY_REPAINT, log, "repaint"));
+        AsyncAction action;
+        while ((action = manager.poll()) != null) {
+            action.run();
+        }
+        // the overdue action is executed first
+        assert log.toString().equals("[world, repaint]");
+        ready[0] = true;
+        action = manager.poll();
+        assert action != null && action.name.equals("delayed");
+        assert manager.poll() == null;
+    }
+
+    // helper - start the worker of the manager
+    private static LifeTimeThread startWorker(AsyncActionManager manager) {
+        final LifeTimeThread[] worker = new LifeTimeThread[1];
+        manager.setThreadManager(new ThreadManagerInterface() {
+            @Override
+            public void setActionManager(ActionManager actionManager) {}
+
+            @Override
+            public void manage(LifeTimeThread thread) {
+                worker[0] = thread;
+                thread.start();
+            }
+
+            @Override
+            public void init() {}
+
+            @Override
+            public void remove(LifeTimeThread thread) {
+                thread.stopThread();
+            }
+        });
+        manager.init();
+        return worker[0];
+    }
+
+    @Test
+    public void testReadyTime() throws Exception {
+        AsyncActionManager manager = new AsyncActionManager();
+        LifeTimeThread worker = startWorker(manager);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long readyTime = System.currentTimeMillis() + 200;
+        final long[] executed = new long[1];
+        manager.addAsyncAction(new AsyncAction("delayed") {
+            @Override
+            public void performAction() {
+                executed[0] = System.currentTimeMillis();
+                latch.countDown();
+            }
+
+            @Override
+            public long getReadyTime() {
+                return readyTime;
+            }
+        });
+        // nothing else is added, so only the scheduled wake up can execute the action
+        boolean done = latch.await(5, TimeUnit.SECONDS);
+        worker.stopThread();
+        assert done;
+        assert executed[0] >= readyTime;
+    }
+
+    @Test
+    public void testWorker() throws Exception {
+        final AsyncActionManager manager = new AsyncActionManager();
+        LifeTimeThread worker = startWorker(manager);
+        final CountDownLatch latch = new CountDownLatch(100);
+        final CountDownLatch queued = new CountDownLatch(1);
+        final ArrayList<String> log = new ArrayList<String>();
+        // keep the worker busy until all actions are queued
+        manager.addAsyncAction(new AsyncAction("wait", AsyncAction.PRIORITY_INPUT) {
+            @Override
+            public void performAction() {
+                try {
+                    queued.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        // actions that add themselves again (as the world refresh does)
+        manager.addAsyncAction(new AsyncAction("slice", AsyncAction.PRIORITY_WORLD) {
+            @Override
+            public void performAction() {
+                latch.countDown();
+                if (latch.getCount() > 0) {
+                    manager.addAsyncAction(this);
+                }
+            }
+        });
+        for (int i = 0; i < 50; i++) {
+            manager.addAsyncAction(createAction("input" + i, AsyncAction.PRIORITY_INPUT, log, "input"));
+        }
+        queued.countDown();
+        assert latch.await(10, TimeUnit.SECONDS);
+        worker.stopThread();
+        // the input actions are always executed before the next slice
+        synchronized (log) {
+            assert log.size() == 50;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.vitco.app.manager.pref;
 
 import com.vitco.app.App;
 import com.vitco.app.manager.error.ErrorHandlerInterface;
-import com.vitco.app.settings.VitcoSettings;
 import com.vitco.app.util.file.FileTools;
 import com.vitco.app.util.misc.AutoFileCloser;
 
@@ -16,6 +15,9 @@ import java.util.HashMap;
  */
 public class Preferences implements PreferencesInterface {
 
+    // lock for the preferences (listeners are notified after the lock is released)
+    private final Object lock = new Object();
+
     // preferences
     private HashMap<String, Object> map = new HashMap<String, Object>();
 
@@ -25,33 +27,41 @@ public class Preferences implements PreferencesInterface {
     // Note: notification should take place in the order that the listener were added
     @Override
     public void notifyListeners(String key, Object value) {
-        synchronized (VitcoSettings.SYNC) {
-            if (listeners.containsKey(key)) {
-                for (PrefChangeListener pcl : listeners.get(key)) {
-                    pcl.onPrefChange(value);
-                }
+        PrefChangeListener[] toNotify;
+        synchronized (lock) {
+            if (!listeners.containsKey(key)) {
+                return;
             }
+            ArrayList<PrefChangeListener> list = listeners.get(key);
+            toNotify = list.toArray(new PrefChangeListener[list.size()]);
+        }
+        for (PrefChangeListener pcl : toNotify) {
+            pcl.onPrefChange(value);
         }
     }
 
     @Override
     public void addPrefChangeListener(String key, PrefChangeListener pcl) {
-        synchronized (VitcoSettings.SYNC) {
+        boolean known;
+        Object value;
+        synchronized (lock) {
             if (!listeners.containsKey(key)) { // make sure this is init
                 listeners.put(key, new ArrayList<PrefChangeListener>());
             }
             // add the listener
             listeners.get(key).add(pcl);
-            // call it if value is known
-            if (map.containsKey(key)) {
-                pcl.onPrefChange(map.get(key));
-            }
+            known = map.containsKey(key);
+            value = map.get(key);
+        }
+        // call it if value is known
+        if (known) {
+            pcl.onPrefChange(value);
         }
     }
 
     @Override
     public boolean contains(String key) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             return map.containsKey(key);
         }
     }
@@ -60,66 +70,64 @@ public class Preferences implements PreferencesInterface {
     private ErrorHandlerInterface errorHandler;
     @Override
     public final void setErrorHandler(ErrorHandlerInterface errorHandler) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             this.errorHandler = errorHandler;
         }
     }
 
     @Override
     public final void storeObject(String key, Object value) {
-        synchronized (VitcoSettings.SYNC) {
+        boolean changed = false;
+        synchronized (lock) {
             if (!map.containsKey(key) || !map.get(key).equals(value)) {
                 map.put(key, value);
-                notifyListeners(key, value);
+                changed = true;
             }
         }
+        if (changed) {
+            notifyListeners(key, value);
+        }
     }
 
     @Override
     public Object loadObject(String key) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             return map.containsKey(key) ? map.get(key) : null;
         }
     }
 
     @Override
     public void storeBoolean(String key, boolean value) {
-        synchronized (VitcoSettings.SYNC) {
-            storeObject(key, value);
-        }
+        storeObject(key, value);
     }
 
     @Override
     public void storeInteger(String key, int value) {
-        synchronized (VitcoSettings.SYNC) {
-            storeObject(key, value);
-        }
+        storeObject(key, value);
     }
 
     @Override
     public void storeString(String key, String value) {
-        synchronized (VitcoSettings.SYNC) {
-            storeObject(key, value);
-        }
+        storeObject(key, value);
     }
 
     @Override
     public boolean loadBoolean(String key) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             return map.containsKey(key) ? (Boolean)map.get(key) : false;
         }
     }
 
     @Override
     public int loadInteger(String key) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             return map.containsKey(key) ? (Integer)map.get(key) : 0;
         }
     }
 
     @Override
     public final String loadString(String key) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             return map.containsKey(key) ? (String)map.get(key) : "";
         }
     }
@@ -132,7 +140,7 @@ public class Preferences implements PreferencesInterface {
     private String storageFileName;
     @Override
     public final void setStorageFile(String filename) {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             if (App.isDebugMode()) {
                 storageFileName = filename;
             } else {
@@ -145,7 +153,7 @@ public class Preferences implements PreferencesInterface {
     // "manually" executed after all PreDestroys are called
     @Override
     public void save() {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             // store the map in file
             final File dataFile = new File(storageFileName);
             if (dataFile.getParentFile().exists() || dataFile.getParentFile().mkdirs()) {
@@ -168,7 +176,7 @@ public class Preferences implements PreferencesInterface {
     // executed when initiated (spring "init-method")
     @Override
     public void load() {
-        synchronized (VitcoSettings.SYNC) {
+        synchronized (lock) {
             final File dataFile = new File(storageFileName);
             if (dataFile.exists()) {
                 try {
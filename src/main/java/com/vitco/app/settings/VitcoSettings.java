@@ -8,6 +8,7 @@ import javax.swing.*;
 import javax.swing.border.Border;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Hold all used colors and settings. Aids in keeping a consistent color schema.
@@ -17,6 +18,10 @@ public final class VitcoSettings {
     // object that all data access is synced to
     public static final Object SYNC = new Object();
 
+    // lock that all access to the voxel and animation data is synced to
+    // (queries can run concurrently, changes are exclusive)
+    public static final ReentrantReadWriteLock DATA_LOCK = new ReentrantReadWriteLock();
+
     // color for the "big bounding box"
     public static final Color BOUNDING_BOX_COLOR = new Color(255, 255, 255, 100);
 
@@ -207,6 +212,14 @@ public final class VitcoSettings {
 
     // maximum voxel count per layer (and for picture import)
     public static final int MAX_VOXEL_COUNT_PER_LAYER = 100000;
+    // maximum amount of voxels that are changed by one flood fill (the fill is cancelled otherwise)
+    public static final int FLOOD_FILL_MAX_REGION = 2000000;
+
+    // memory budget of the voxel history (in bytes), the oldest history is
+    // moved to a temporary file and afterwards removed when it is exceeded
+    public static final long VOXEL_HISTORY_MEMORY_BUDGET = 256L * 1024 * 1024;
+    // maximum size of the temporary history file (in bytes), zero disables the file
+    public static final long VOXEL_HISTORY_SPILL_BUDGET = 1024L * 1024 * 1024;
 
     // grid size for triangulation
     public static final int TRI_GRID_SIZE = 13;
@@ -221,6 +234,8 @@ public final class VitcoSettings {
     public static final float TEXTURE_INTERPOLATION_VALUE = 0.004f;
     // interpolation to show black outline (moves textures towards the outside)
     public static final float BORDER_INSET_VALUE = 0.04f;
+    // size of the shared texture pages that hold the area textures (power of two)
+    public static final int TEXTURE_ATLAS_PAGE_SIZE = 1024;
 
     // help screen settings
     public static final Color HELP_OVERLAY_DEFAULT_COLOR = Color.ORANGE;
@@ -3,13 +3,28 @@ package com.vitco.app.util.file;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 /**
  * To read a file (binary or not)
+ *
+ * The file is read through a window of 64k bytes, all reads are served from the window
+ * (no system call per read). Methods with "Rev" in the name read little-endian values.
+ * The file is closed by finish().
  */
 public class FileIn  {
 
-    private final SaveDataInputStream in;
+    // size of the read window
+    private static final int WINDOW_SIZE = 65536;
+
+    private final FileChannel channel;
+    // length of the file
+    private final long length;
+    // the read window and the position of its first byte in the file
+    private final ByteBuffer in = ByteBuffer.allocate(WINDOW_SIZE);
+    private long windowStart = 0;
 
     private final File file;
     public final File getInternalFile() {
@@ -17,53 +32,145 @@ public class FileIn  {
     }
 
     // constructor
-    public FileIn(File file) throws FileNotFoundException {
-        in = new SaveDataInputStream(new FileInputStream(file));
+    public FileIn(File file) throws IOException {
+        channel = new FileInputStream(file).getChannel();
+        length = channel.size();
+        // the window is empty
+        in.limit(0);
         this.file = file;
     }
 
     // constructor
-    public FileIn(String filename) throws FileNotFoundException {
+    public FileIn(String filename) throws IOException {
         this(new File(filename));
     }
 
+    // helper - move the window to the current position and fill it
+    private void fill() throws IOException {
+        windowStart += in.position();
+        in.compact();
+        while (in.hasRemaining() && windowStart + in.position() < length) {
+            if (channel.read(in, windowStart + in.position()) < 0) {
+                break;
+            }
+        }
+        in.flip();
+    }
+
+    // helper - true iff there are bytes left in the file
+    private boolean hasRemaining() throws IOException {
+        if (!in.hasRemaining()) {
+            fill();
+        }
+        return in.hasRemaining();
+    }
+
+    // helper - make sure that enough bytes are in the window (count is at most 8)
+    private ByteBuffer require(int count) throws IOException {
+        if (in.remaining() < count) {
+            fill();
+            if (in.remaining() < count) {
+                throw new EOFException();
+            }
+        }
+        return in.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    // helper - read a little-endian value
+    private ByteBuffer requireRev(int count) throws IOException {
+        return require(count).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // get the length of the file
+    public long length() {
+        return length;
+    }
+
+    // get the current position in the file
+    public long getPosition() {
+        return windowStart + in.position();
+    }
+
+    // jump to a position in the file
+    public void seek(long pos) throws IOException {
+        if (pos < 0 || pos > length) {
+            throw new EOFException();
+        }
+        if (pos >= windowStart && pos <= windowStart + in.limit()) {
+            in.position((int) (pos - windowStart));
+        } else {
+            // start a new (empty) window
+            windowStart = pos;
+            in.clear().limit(0);
+        }
+    }
+
+    // returns null if eof is reached
     public String readLine() throws IOException {
-        return in.readLineSave();
+        StringBuilder lineBuf = new StringBuilder();
+        while (hasRemaining()) {
+            int c = in.get() & 0xFF;
+            switch (c) {
+                case '\n':
+                    return lineBuf.toString();
+                case '\r':
+                    if (hasRemaining() && in.get(in.position()) == '\n') {
+                        in.get();
+                    }
+                    return lineBuf.toString();
+                default:
+                    lineBuf.append((char) c);
+            }
+        }
+        return null;
     }
 
     public byte readByte() throws IOException {
-        return in.readByte();
+        return require(1).get();
     }
 
     public int read(byte[] b) throws IOException {
-        return in.read(b);
+        if (b.length > 0 && !hasRemaining()) {
+            return -1;
+        }
+        // take what is in the window and read the rest directly
+        int len = Math.min(b.length, in.remaining());
+        in.get(b, 0, len);
+        if (len < b.length) {
+            ByteBuffer rest = ByteBuffer.wrap(b, len, b.length - len);
+            long pos = getPosition();
+            while (rest.hasRemaining() && channel.read(rest, pos + rest.position() - len) > 0) {
+                // continue reading
+            }
+            seek(pos + rest.position() - len);
+            len = rest.position();
+        }
+        return len;
     }
 
     public int readInt() throws IOException {
-        return in.readInt();
+        return require(4).getInt();
     }
 
     public int readIntRev() throws IOException {
-        return Integer.reverseBytes(in.readInt());
+        return requireRev(4).getInt();
     }
 
     public float readFloat() throws IOException {
-        return in.readFloat();
+        return require(4).getFloat();
     }
 
     public float readFloatRev() throws IOException {
-        return Float.intBitsToFloat(
-                Integer.reverseBytes(Float.floatToIntBits (in.readFloat()))
-        );
+        return requireRev(4).getFloat();
     }
 
     public double readDouble() throws IOException {
-        return in.readDouble();
+        return require(8).getDouble();
     }
 
     public String readUTF8String(int length) throws IOException {
         byte[] bytes = new byte[length];
-        if (length != in.read(bytes)) {
+        if (length != read(bytes)) {
             return null;
         }
         return new String(bytes, "UTF-8");
@@ -71,7 +178,7 @@ public class FileIn  {
 
     public String readASCIIString(int length) throws IOException {
         byte[] bytes = new byte[length];
-        if (length != in.read(bytes)) {
+        if (length != read(bytes)) {
             return null;
         }
         return new String(bytes, "ASCII");
@@ -79,34 +186,41 @@ public class FileIn  {
 
     // read space terminated string
     public String readSpaceString() throws java.io.IOException {
-        String rtn = "";
-        int ch;
-        do {
-            ch = in.read();
-            if (ch != 32 && ch != -1)
-                rtn += (char)ch;
-        } while (ch != 32 && ch != -1);
-        return ch != -1 ? rtn : null;
+        StringBuilder rtn = new StringBuilder();
+        while (hasRemaining()) {
+            int ch = in.get() & 0xFF;
+            if (ch == 32) {
+                return rtn.toString();
+            }
+            rtn.append((char) ch);
+        }
+        return null;
     }
 
     public long readLong() throws IOException {
-        return in.readLong();
+        return require(8).getLong();
     }
 
     public char readChar() throws IOException {
-        return in.readChar();
+        return require(2).getChar();
     }
 
+    // returns -1 if eof is reached
     public int readByteUnsigned() throws IOException {
-        return in.read();
+        return hasRemaining() ? in.get() & 0xFF : -1;
+    }
+
+    // throws an exception if eof is reached
+    public int readUInt8() throws IOException {
+        return require(1).get() & 0xFF;
     }
 
     public short readShort() throws IOException {
-        return in.readShort();
+        return require(2).getShort();
     }
 
     public short readShortRev() throws IOException {
-        return Short.reverseBytes(in.readShort());
+        return requireRev(2).getShort();
     }
 
     public int readShortUnsigned() throws IOException {
@@ -119,7 +233,7 @@ public class FileIn  {
 
     // finalize
     public void finish() throws IOException {
-        in.close();
+        channel.close();
     }
 
     public int readIntRevUnsigned() throws IOException {
@@ -131,17 +245,20 @@ public class FileIn  {
     }
 
     public long readLongRev() throws IOException {
-        return Long.reverseBytes(readLong());
+        return requireRev(8).getLong();
     }
 
     public boolean skipBytes(int mainContentSize) throws IOException {
-        return mainContentSize == in.skip(mainContentSize);
+        long pos = getPosition();
+        long skip = Math.max(0, Math.min(mainContentSize, length - pos));
+        seek(pos + skip);
+        return mainContentSize == skip;
     }
 
     public BufferedImage readImage() throws IOException {
         int length = readIntRev();
         byte[] bytes = new byte[length];
-        if (length != in.read(bytes)) {
+        if (length != read(bytes)) {
             return null;
         }
         return ImageIO.read(new ByteArrayInputStream(bytes));
@@ -0,0 +1,97 @@
+package com.vitco.app.util.file;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Test that the file reader returns the content of the file (also across the read window).
+ */
+public class FileInTest {
+
+    @Test
+    public void testRead() throws Exception {
+        Random rand = new Random(0);
+        byte[] content = new byte[200000];
+        rand.nextBytes(content);
+        // some lines and space terminated strings
+        byte[] text = "line one\r\nline two\nword ".getBytes("ASCII");
+        System.arraycopy(text, 0, content, 65530, text.length);
+        File file = File.createTempFile("file-in-test", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+
+        FileIn in = new FileIn(file);
+        DataInputStream expected = new DataInputStream(new ByteArrayInputStream(content));
+        assert in.length() == content.length;
+        // read values that cross the end of the window
+        // (read into locals, the reads must also happen without assertions enabled)
+        while (in.getPosition() < 65530 - 16) {
+            long longValue = in.readLong();
+            assert longValue == expected.readLong();
+            int intValue = in.readInt();
+            assert intValue == expected.readInt();
+            short shortValue = in.readShort();
+            assert shortValue == expected.readShort();
+            byte byteValue = in.readByte();
+            assert byteValue == expected.readByte();
+            int unsignedValue = in.readUInt8();
+            assert unsignedValue == expected.readUnsignedByte();
+        }
+        in.seek(65530);
+        String line1 = in.readLine();
+        String line2 = in.readLine();
+        String word = in.readSpaceString();
+        assert line1.equals("line one");
+        assert line2.equals("line two");
+        assert word.equals("word");
+
+        // little-endian values
+        in.seek(70001);
+        int value = (content[70001] & 0xFF) | (content[70002] & 0xFF) << 8
+                | (content[70003] & 0xFF) << 16 | (content[70004] & 0xFF) << 24;
+        int valueRev = in.readIntRev();
+        assert valueRev == value;
+        assert in.getPosition() == 70005;
+
+        // large reads and seeking backwards
+        in.seek(1000);
+        byte[] block = new byte[150000];
+        int blockRead = in.read(block);
+        assert blockRead == block.length;
+        for (int i = 0; i < block.length; i++) {
+            assert block[i] == content[1000 + i];
+        }
+        byte afterBlock = in.readByte();
+        assert afterBlock == content[151000];
+        in.seek(10);
+        byte afterSeek = in.readByte();
+        assert afterSeek == content[10];
+        boolean skipped = in.skipBytes(100);
+        assert skipped;
+        byte afterSkip = in.readByte();
+        assert afterSkip == content[111];
+
+        // the end of the file
+        in.seek(content.length - 2);
+        int endRead = in.read(new byte[10]);
+        assert endRead == 2;
+        int endByte = in.readByteUnsigned();
+        assert endByte == -1;
+        try {
+            in.readInt();
+            assert false;
+        } catch (EOFException ignored) {}
+        in.finish();
+
+        // the file is released
+        boolean deleted = file.delete();
+        assert deleted;
+    }
+}
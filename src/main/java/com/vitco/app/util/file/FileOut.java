@@ -7,69 +7,126 @@ import com.googlecode.pngtastic.core.PngOptimizer;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
-
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * To write a binary file.
+ *
+ * All writes go to a (heap) byte buffer that is only handed to the underlying
+ * channel once it is full. Methods with "Rev" in the name write little-endian values.
+ */
 public class FileOut {
-    private final DataOutputStream p;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer bufferRev = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
 
     // constructor
     public FileOut(String filename) throws FileNotFoundException {
-        p = new DataOutputStream(new FileOutputStream(filename));
+        channel = new FileOutputStream(filename).getChannel();
     }
 
     // alternative constructor
     public FileOut(ByteArrayOutputStream b) {
-        this.p = new DataOutputStream(b);
+        channel = Channels.newChannel(b);
+    }
+
+    // helper - make sure that the buffer can hold the bytes
+    private ByteBuffer require(int count) throws IOException {
+        if (buffer.remaining() < count) {
+            flush();
+        }
+        return buffer;
+    }
+
+    // helper - write a little-endian value (the buffers share the position through "buffer")
+    private ByteBuffer requireRev(int count) throws IOException {
+        require(count);
+        bufferRev.position(buffer.position());
+        buffer.position(buffer.position() + count);
+        return bufferRev;
+    }
+
+    // hand the buffered content to the underlying channel
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
     }
 
     // attach another ByteArrayOutputStream
     public void writeBytes(byte[] bytes) throws IOException {
-        p.write(bytes);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    // write part of a byte array
+    public void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.capacity()) {
+            // large arrays are handed to the channel directly
+            flush();
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes, offset, length);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        } else {
+            require(length).put(bytes, offset, length);
+        }
     }
 
     // write text
     public void writeASCIIString(String text) throws IOException {
-        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(p, "ASCII"));
-        bw.write(text);
-        bw.flush();
+        writeBytes(text.getBytes("ASCII"));
     }
 
     // write text
     public void writeUTF8String(String text) throws IOException {
-        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(p, "UTF8"));
-        bw.write(text);
-        bw.flush();
+        writeBytes(text.getBytes("UTF8"));
     }
 
     // write a line of text
     public void writeLine(String text) throws IOException {
-        p.writeBytes(text + "\r\n");
+        writeBytes(text);
+        writeBytes("\r\n");
     }
 
     // write integer revered
     public void writeIntRev(int data) throws IOException {
-        p.writeInt(Integer.reverseBytes(data));
+        requireRev(4).putInt(data);
+    }
+
+    // write integers reversed
+    public void writeIntRev(int[] data) throws IOException {
+        for (int value : data) {
+            requireRev(4).putInt(value);
+        }
     }
 
     // write short reversed
     public void writeShortRev(short data) throws IOException {
-        p.writeShort(Short.reverseBytes(data));
+        requireRev(2).putShort(data);
     }
 
     // write float reversed
     public void writeFloatRev(float data) throws IOException {
-        p.writeFloat(Float.intBitsToFloat(
-                Integer.reverseBytes(Float.floatToIntBits (data))
-        ));
+        requireRev(4).putFloat(data);
     }
 
     // write byte
     public void writeByte(byte data) throws IOException {
-        p.writeByte(data);
+        require(1).put(data);
     }
 
-    // write bytes
+    // write bytes (only the low byte of every character is written)
     public void writeBytes(String bytes) throws IOException {
-        p.writeBytes(bytes);
+        for (int i = 0, len = bytes.length(); i < len; i++) {
+            require(1).put((byte) bytes.charAt(i));
+        }
     }
 
     // write an image file
@@ -83,7 +140,7 @@ public class FileOut {
         // write the size
         this.writeIntRev(contentLength);
         // write the data
-        p.write(tmp.toByteArray());
+        writeBytes(tmp.toByteArray());
     }
 
     // write an image file
@@ -99,7 +156,7 @@ public class FileOut {
         // write the size
         this.writeIntRev(contentLength);
         // write the data
-        p.write(bytes);
+        writeBytes(bytes);
     }
 
     // write an image file compressed
@@ -139,11 +196,12 @@ public class FileOut {
         this.writeIntRev(contentLength);
 
         // write the data
-        p.write(data);
+        writeBytes(data);
     }
 
     // finalize
     public void finish() throws IOException {
-        p.close();
+        flush();
+        channel.close();
     }
 }
@@ -3,13 +3,12 @@ package com.vitco.app.util.graphic;
 import com.vitco.app.util.misc.ArrayUtil;
 import com.vitco.app.util.misc.IntegerTools;
 import gnu.trove.iterator.TIntIntIterator;
-import gnu.trove.iterator.TIntIterator;
 import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.set.hash.TIntHashSet;
 
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
@@ -44,6 +43,13 @@ public class ImageComparator {
     // amount of different colors in this image
     public final int colorCount;
 
+    // the colors (sorted) and their count (for fast comparison)
+    private final int[] colorKeys;
+    private final int[] colorCounts;
+    // signature of the colors (one hashed bit per color), the colors of
+    // an image can only be a subset if the bits are a subset
+    private final long colorSignature;
+
     // helper class - array list that has an init action executed on initialization
     private static abstract class InitArrayList extends ArrayList<int[]> {
         protected abstract void init();
@@ -114,6 +120,17 @@ public class ImageComparator {
         this.pixelCount = pixels.size();
         this.colorCount = colors.size();
 
+        // sorted colors and signature
+        colorKeys = colors.keys();
+        Arrays.sort(colorKeys);
+        colorCounts = new int[colorKeys.length];
+        long signature = 0;
+        for (int i = 0; i < colorKeys.length; i++) {
+            colorCounts[i] = colors.get(colorKeys[i]);
+            signature |= 1L << ((colorKeys[i] * 0x9E3779B9) >>> 26);
+        }
+        colorSignature = signature;
+
         // finalize the size
         this.widthM = width;
         this.heightM = height;
@@ -125,100 +142,105 @@ public class ImageComparator {
 
     // compute the Jaccard similarity coefficient (using the colors)
     public final float jaccard(ImageComparator other) {
-        TIntHashSet uniqueColors = new TIntHashSet(this.colors.keySet());
-        uniqueColors.addAll(other.colors.keySet());
-
         int intersection = 0;
-        int union = 0;
-
-        for (TIntIterator it = uniqueColors.iterator(); it.hasNext();) {
-            int color = it.next();
-            int count1 = this.colors.get(color);
-            int count2 = other.colors.get(color);
-            intersection += Math.min(count1, count2);
-            union += Math.max(count1, count2);
+        // no common colors if the signatures don't overlap
+        if ((colorSignature & other.colorSignature) != 0) {
+            // walk the sorted colors of both images
+            int[] keys1 = this.colorKeys;
+            int[] keys2 = other.colorKeys;
+            for (int i = 0, j = 0; i < keys1.length && j < keys2.length;) {
+                if (keys1[i] < keys2[j]) {
+                    i++;
+                } else if (keys1[i] > keys2[j]) {
+                    j++;
+                } else {
+                    intersection += Math.min(this.colorCounts[i++], other.colorCounts[j++]);
+                }
+            }
         }
+        // the sum of the maximum counts (the counts add up to the pixel count)
+        int union = this.pixelCount + other.pixelCount - intersection;
 
         return intersection / (float)union;
     }
 
+    // quick check if the child could be contained in this image
+    // (false if it can not be contained, see getPosition)
+    public final boolean mayContain(ImageComparator child) {
+        // -- check if the colors can be a subset
+        if ((child.colorSignature & ~colorSignature) != 0) {
+            return false;
+        }
+
+        // -- single pixels are only checked by color
+        if (child.pixelCount == 1) {
+            return true;
+        }
+
+        // -- check if dimensions fit
+        if ((child.width > this.width || child.height > this.height) && (child.height > this.width || child.width > this.height)) {
+            return false;
+        }
+
+        // -- check if pixel count fits
+        if (this.pixelCount < child.pixelCount) {
+            return false;
+        }
+
+        // -- check if there are enough different colors
+        return this.colorCount >= child.colorCount;
+    }
+
     // =================
 
-    // helper - check if a certain pixel is "ok" (matches
-    // or "not set") for a specific matching
-    private static void checkPixel(
-            int x, int y, ImageComparator one, ImageComparator two,
-            int i, int j, boolean[] matched, int[] pixelOverlapTmp,
-            boolean flip
-    ) {
-        // compute point in static image ("one")
-        int p1 = IntegerTools.makeInt(i, j);
-
-        for (int k = 0; k < 4; k ++) {
-            // only proceed if this check has not already failed
-            if (matched[k]) {
-                // compute the corresponding pixel in image "two"
-                int p2;
-                if (flip) {
-                    // -- check for overlap of corresponding pixel
-                    // 0 : check for "rotation 1" (1)
-                    // 1 : check for "rotation 3" (3)
-                    // 2 : check for "flipped and rotation 1" (5)
-                    // 3 : check for "flipped and rotation 3" (7)
-                    switch (k) {
-                        case 0: p2 = IntegerTools.makeInt(j - y, two.height - 1 - (i - x)); break;
-                        case 1: p2 = IntegerTools.makeInt(two.width - 1 - (j - y), i - x); break;
-                        case 2: p2 = IntegerTools.makeInt(two.width - 1 - (j - y), two.height - 1 - (i - x)); break;
-                        default: p2 = IntegerTools.makeInt(j - y, i - x); break;
-                    }
-                } else {
-                    // -- check for overlap of corresponding pixel
-                    // 0 : check for "default orientation" (0)
-                    // 1 : check for "twice rotated" (2)
-                    // 2 : check for "flipped" (4)
-                    // 3 : check for "flipped and twice rotated" (6)
-                    switch (k) {
-                        case 0: p2 = IntegerTools.makeInt(i - x, j - y); break;
-                        case 1: p2 = IntegerTools.makeInt(two.width - 1 - (i - x), two.height - 1 - (j - y)); break;
-                        case 2: p2 = IntegerTools.makeInt(two.width - 1 - (i - x), j - y); break;
-                        default: p2 = IntegerTools.makeInt(i - x, two.height - 1 - (j - y)); break;
-                    }
-                }
-                // check for containment
-                if (one.pixels.containsKey(p1) && two.pixels.containsKey(p2)) {
-                    if (one.pixels.get(p1) == two.pixels.get(p2)) {
-                        pixelOverlapTmp[k]++;
-                    } else {
-                        matched[k] = false;
-                    }
-                }
+    // helper - rasterize the image "two" in the four orientations that are
+    // checked for a merge position (the palette maps colors to indices)
+    // 0 : "default orientation" (0), 1 : "twice rotated" (2), 2 : "flipped" (4), 3 : "flipped and twice rotated" (6)
+    // or if flipped (width and height swapped)
+    // 0 : "rotation 1" (1), 1 : "rotation 3" (3), 2 : "flipped and rotation 1" (5), 3 : "flipped and rotation 3" (7)
+    private static PackedImage[] pack(ImageComparator two, TIntIntHashMap palette, int planeCount, boolean flip) {
+        PackedImage[] result = new PackedImage[4];
+        for (int k = 0; k < 4; k++) {
+            result[k] = flip
+                    ? new PackedImage(two.height, two.width, planeCount)
+                    : new PackedImage(two.width, two.height, planeCount);
+        }
+        for (TIntIntIterator pixel = two.pixels.iterator(); pixel.hasNext();) {
+            pixel.advance();
+            short[] pos = IntegerTools.getShorts(pixel.key());
+            int index = palette.get(pixel.value());
+            int x = pos[0];
+            int y = pos[1];
+            if (flip) {
+                result[0].set(two.heightM - y, x, index);
+                result[1].set(y, two.widthM - x, index);
+                result[2].set(two.heightM - y, two.widthM - x, index);
+                result[3].set(y, x, index);
+            } else {
+                result[0].set(x, y, index);
+                result[1].set(two.widthM - x, two.heightM - y, index);
+                result[2].set(two.widthM - x, y, index);
+                result[3].set(x, two.heightM - y, index);
             }
         }
+        return result;
     }
 
     // helper - check if a certain offset allows placing
     // the second image onto the first one
     private static void checkPosition(
             int x, int y, ImageComparator one, ImageComparator two,
+            PackedImage packedOne, PackedImage[] packedTwo,
             int[] area, int[] size, int originalWidth, int originalHeight,
             int[] pixelOverlap, int[] result,
             boolean flip
     ) {
-        // compute intersection area
-        int minX = Math.max(0, x);
-        int minY = Math.max(0, y);
-        int maxX, maxY;
+        // compute new width, height and pixel count
         int widthTmp, heightTmp;
         if (flip) {
-            maxX = Math.min(one.width, x + two.height);
-            maxY = Math.min(one.height, y + two.width);
-            // compute new width, height and pixel count
             widthTmp = Math.max(one.width, x + two.height) - Math.min(0, x);
             heightTmp = Math.max(one.height, y + two.width) - Math.min(0, y);
         } else {
-            maxX = Math.min(one.width, x + two.width);
-            maxY = Math.min(one.height, y + two.height);
-            // compute new width, height and pixel count
             widthTmp = Math.max(one.width, x + two.width) - Math.min(0, x);
             heightTmp = Math.max(one.height, y + two.height) - Math.min(0, y);
         }
@@ -229,23 +251,15 @@ public class ImageComparator {
                 // ensure that the image can not only grow into one direction
                 (widthTmp < heightTmp * 3 || (originalWidth != size[0] && size[0] >= widthTmp)) &&
                 (heightTmp < widthTmp * 3 || (originalHeight != size[1] && size[1] >= heightTmp))) {
-            // initialize variables
-            boolean[] matched = new boolean[] {true, true, true, true};
+            // compare the overlapping pixels (64 at once) for every orientation
             int[] pixelOverlapTmp = new int[4];
-            // loop over all intersection points
-            loop: for (int i = minX; i < maxX; i++) {
-                for (int j = minY; j < maxY; j++) {
-                    checkPixel(x, y, one, two, i, j, matched, pixelOverlapTmp, flip);
-                    // if all overlap checks have already failed we can break the loop
-                    if (!matched[0] && !matched[1] && !matched[2] && !matched[3]) {
-                        break loop;
-                    }
-                }
+            for (int k = 0; k < 4; k++) {
+                pixelOverlapTmp[k] = packedOne.getOverlap(packedTwo[k], x, y);
             }
 
             // check if matches are better
             for (int k = 0; k < 4; k ++) {
-                if (matched[k]) {
+                if (pixelOverlapTmp[k] != -1) {
                     if (area[0] > areaTmp || pixelOverlapTmp[k] > pixelOverlap[0]) {
                         result[0] = x;
                         result[1] = y;
@@ -279,10 +293,30 @@ public class ImageComparator {
 
         int[] originalSize = size.clone();
 
+        // rasterize the images with a shared palette
+        TIntIntHashMap palette = new TIntIntHashMap();
+        for (int color : one.colorKeys) {
+            palette.put(color, palette.size());
+        }
+        for (int color : two.colorKeys) {
+            if (!palette.containsKey(color)) {
+                palette.put(color, palette.size());
+            }
+        }
+        int planeCount = 32 - Integer.numberOfLeadingZeros(Math.max(1, palette.size()) - 1);
+        PackedImage packedOne = new PackedImage(one.width, one.height, planeCount);
+        for (TIntIntIterator pixel = one.pixels.iterator(); pixel.hasNext();) {
+            pixel.advance();
+            short[] pos = IntegerTools.getShorts(pixel.key());
+            packedOne.set(pos[0], pos[1], palette.get(pixel.value()));
+        }
+        PackedImage[] packedTwo = pack(two, palette, planeCount, false);
+        PackedImage[] packedTwoFlipped = pack(two, palette, planeCount, true);
+
         // loop over all "non flipped" start positions
         for (int x = -two.width + 1; x < one.width; x++) {
             for (int y = -two.height + 1; y < one.height; y++) {
-                checkPosition(x,y,one,two,area,size,originalSize[0],originalSize[1],pixelOverlap,result, false);
+                checkPosition(x,y,one,two,packedOne,packedTwo,area,size,originalSize[0],originalSize[1],pixelOverlap,result, false);
             }
         }
 
@@ -290,7 +324,7 @@ public class ImageComparator {
         // (i.e. the width and height of "two" are swapped)
         for (int x = -two.height + 1; x <= one.width; x++) {
             for (int y = -two.width + 1; y < one.height; y++) {
-                checkPosition(x,y,one,two,area,size,originalSize[0],originalSize[1],pixelOverlap,result, true);
+                checkPosition(x,y,one,two,packedOne,packedTwoFlipped,area,size,originalSize[0],originalSize[1],pixelOverlap,result, true);
             }
         }
 
@@ -310,21 +344,21 @@ public class ImageComparator {
                         pixel.advance();
                         // check for containment in parent
                         short[] childPos = IntegerTools.getShorts(pixel.key());
-                        int color;
+                        int pos;
                         switch (type) {
                             // 0 - original, 1 - rotated x 1, 2 - rotated x 2, 3 - rotated x 3,
                             // 4 - flipped, 5 - flipped & rotated x 1, 6 - flipped & rotated x 2, 7 - flipped & rotated x 3
-                            case 0: color = this.pixels.get(IntegerTools.makeInt(x + childPos[0], y + childPos[1])); break;
-                            case 4: color = this.pixels.get(IntegerTools.makeInt(x + (child.widthM - childPos[0]), y + childPos[1])); break;
-                            case 2: color = this.pixels.get(IntegerTools.makeInt(x + (child.widthM - childPos[0]), y + (child.heightM - childPos[1]))); break;
-                            case 6: color = this.pixels.get(IntegerTools.makeInt(x + childPos[0], y + (child.heightM - childPos[1]))); break;
-                            case 7: color = this.pixels.get(IntegerTools.makeInt(x + childPos[1], y + childPos[0])); break;
-                            case 1: color = this.pixels.get(IntegerTools.makeInt(x + (child.heightM - childPos[1]), y + childPos[0])); break;
-                            case 3: color = this.pixels.get(IntegerTools.makeInt(x + childPos[1], y + (child.widthM - childPos[0]))); break;
-                            default: color = this.pixels.get(IntegerTools.makeInt(x + (child.heightM - childPos[1]), y + (child.widthM - childPos[0]))); break; // case 5
+                            case 0: pos = IntegerTools.makeInt(x + childPos[0], y + childPos[1]); break;
+                            case 4: pos = IntegerTools.makeInt(x + (child.widthM - childPos[0]), y + childPos[1]); break;
+                            case 2: pos = IntegerTools.makeInt(x + (child.widthM - childPos[0]), y + (child.heightM - childPos[1])); break;
+                            case 6: pos = IntegerTools.makeInt(x + childPos[0], y + (child.heightM - childPos[1])); break;
+                            case 7: pos = IntegerTools.makeInt(x + childPos[1], y + childPos[0]); break;
+                            case 1: pos = IntegerTools.makeInt(x + (child.heightM - childPos[1]), y + childPos[0]); break;
+                            case 3: pos = IntegerTools.makeInt(x + childPos[1], y + (child.widthM - childPos[0])); break;
+                            default: pos = IntegerTools.makeInt(x + (child.heightM - childPos[1]), y + (child.widthM - childPos[0])); break; // case 5
                         }
-                        // Note: "color" might be null
-                        if (pixel.value() != color) {
+                        // Note: the pixel might not be set in this image (get() returns zero, which is a valid color)
+                        if (pixel.value() != this.pixels.get(pos) || !this.pixels.containsKey(pos)) {
                             match = false;
                             break;
                         }
@@ -346,42 +380,30 @@ public class ImageComparator {
     // 0 - original, 1 - rotated x 1, 2 - rotated x 2, 3 - rotated x 3,
     // 4 - flipped, 5 - flipped & rotated x 1, 6 - flipped & rotated x 2, 7 - flipped & rotated x 3
     public final int[] getPosition(ImageComparator child, int[] restriction) {
+        // -- do the quick checks first
+        if (!mayContain(child)) {
+            return null;
+        }
+
         // -- do a quick return if child is one pixel in size
         if (child.pixelCount == 1) {
             int color = child.colors.keySet().iterator().next();
             // ensure that the color is present
             if (this.colors.containsKey(color)) {
-                if (this.pixelCount == 1) {
-                    return new int[] {0,0,0};
-                } else {
-                    // find location
-                    for (TIntIntIterator it = this.pixels.iterator(); it.hasNext();) {
-                        it.advance();
-                        if (it.value() == color) {
-                            short[] p = IntegerTools.getShorts(it.key());
-                            return new int[]{p[0], p[1], 0};
+                // the pixel is not necessarily at the origin of the child
+                short[] c = IntegerTools.getShorts(child.pixels.keys()[0]);
+                // find location
+                for (TIntIntIterator it = this.pixels.iterator(); it.hasNext();) {
+                    it.advance();
+                    if (it.value() == color) {
+                        short[] p = IntegerTools.getShorts(it.key());
+                        if (p[0] >= c[0] && p[1] >= c[1]) {
+                            return new int[]{p[0] - c[0], p[1] - c[1], 0};
                         }
                     }
-                    // this should never be reached since the color is present
-                    assert false;
                 }
             }
-            // color is not present
-            return null;
-        }
-
-        // -- check if dimensions fit
-        if ((child.width > this.width || child.height > this.height) && (child.height > this.width || child.width > this.height)) {
-            return null;
-        }
-
-        // -- check if pixel count fits
-        if (this.pixelCount < child.pixelCount) {
-            return null;
-        }
-
-        // -- check if there are enough different colors
-        if (this.colorCount < child.colorCount) {
+            // color is not present (or the child would start outside this image)
             return null;
         }
 
@@ -396,22 +418,22 @@ public class ImageComparator {
         int[] result;
         if (child.width <= this.width && child.height <= this.height) {
             // -- check for containment (Orientation 1)
-            ArrayList<Integer> rowRow = getPossiblePositions(child.colorsPerRow, colorsPerRow, false);
-            ArrayList<Integer> colCol = getPossiblePositions(child.colorsPerCol, colorsPerCol, false);
+            ArrayList<Integer> rowRow = getPossiblePositions(child.colorsPerRow, child.height, colorsPerRow, height, false);
+            ArrayList<Integer> colCol = getPossiblePositions(child.colorsPerCol, child.width, colorsPerCol, width, false);
             result = getPosition(child, colCol, rowRow, restriction, 0);
             if (result != null) {
                 return result;
             }
 
             // -- check for containment (Flip 1)
-            ArrayList<Integer> colColFlip = getPossiblePositions(child.colorsPerCol, colorsPerCol, true);
+            ArrayList<Integer> colColFlip = getPossiblePositions(child.colorsPerCol, child.width, colorsPerCol, width, true);
             result = getPosition(child, colColFlip, rowRow, restriction, 4);
             if (result != null) {
                 return result;
             }
 
             // -- check for containment (Rotation 2)
-            ArrayList<Integer> rowRowFlip = getPossiblePositions(child.colorsPerRow, colorsPerRow, true);
+            ArrayList<Integer> rowRowFlip = getPossiblePositions(child.colorsPerRow, child.height, colorsPerRow, height, true);
             result = getPosition(child, colColFlip, rowRowFlip, restriction, 2);
             if (result != null) {
                 return result;
@@ -429,22 +451,22 @@ public class ImageComparator {
         // -- check for placement with "swap"
         if (child.height <= this.width && child.width <= this.height) {
             // -- check for containment (Flip + Rotation 3)
-            ArrayList<Integer> colRow = getPossiblePositions(child.colorsPerCol, colorsPerRow, false);
-            ArrayList<Integer> rowCol = getPossiblePositions(child.colorsPerRow, colorsPerCol, false);
+            ArrayList<Integer> colRow = getPossiblePositions(child.colorsPerCol, child.width, colorsPerRow, height, false);
+            ArrayList<Integer> rowCol = getPossiblePositions(child.colorsPerRow, child.height, colorsPerCol, width, false);
             result = getPosition(child, rowCol, colRow, restriction, 7);
             if (result != null) {
                 return result;
             }
 
             // -- check for containment (Rotation 1)
-            ArrayList<Integer> rowColFlip = getPossiblePositions(child.colorsPerRow, colorsPerCol, true);
+            ArrayList<Integer> rowColFlip = getPossiblePositions(child.colorsPerRow, child.height, colorsPerCol, width, true);
             result = getPosition(child, rowColFlip, colRow, restriction, 1);
             if (result != null) {
                 return result;
             }
 
             // -- check for containment (Rotation 3)
-            ArrayList<Integer> colRowFlip = getPossiblePositions(child.colorsPerCol, colorsPerRow, true);
+            ArrayList<Integer> colRowFlip = getPossiblePositions(child.colorsPerCol, child.width, colorsPerRow, height, true);
             result = getPosition(child, rowCol, colRowFlip, restriction, 3);
             if (result != null) {
                 return result;
@@ -462,17 +484,17 @@ public class ImageComparator {
     }
 
     // check "containment" positions of child array in parent array
+    // (the length is the extent of the image, rows or columns without pixels are not in the array)
     private ArrayList<Integer> getPossiblePositions(
-            TIntObjectHashMap<TIntIntHashMap> childArray,
-            TIntObjectHashMap<TIntIntHashMap> parentArray,
+            TIntObjectHashMap<TIntIntHashMap> childArray, int lenChild,
+            TIntObjectHashMap<TIntIntHashMap> parentArray, int lenParent,
             boolean flip) {
         ArrayList<Integer> result = new ArrayList<Integer>();
 
         if (flip) {
             // -- check for presence of inverted child array
-            int lenChild = childArray.size();
             // loop over all possible starting positions
-            for (int i = lenChild - 1, lenParent = parentArray.size(); i < lenParent; i++) {
+            for (int i = lenChild - 1; i < lenParent; i++) {
                 // loop over child positions
                 boolean matched = true;
                 for (int j = 0; j < lenChild; j++) {
@@ -488,9 +510,8 @@ public class ImageComparator {
             }
         } else {
             // -- check for presence of normal child array
-            int lenChild = childArray.size();
             // loop over all possible starting positions
-            for (int i = 0, len = parentArray.size() - lenChild + 1; i < len; i++) {
+            for (int i = 0, len = lenParent - lenChild + 1; i < len; i++) {
                 // loop over child positions
                 boolean matched = true;
                 for (int j = 0; j < lenChild; j++) {
@@ -510,13 +531,12 @@ public class ImageComparator {
     }
 
     // check if color list is contained in other color list
+    // (null is an empty row or column)
     private boolean contained(TIntIntHashMap child, TIntIntHashMap parent) {
         if (child == null) {
-            System.err.println("ImageComparator Error 3941");
             return true;
         }
         if (parent == null) {
-            System.err.println("ImageComparator Error 3942");
             return false;
         }
         for (TIntIntIterator it = child.iterator(); it.hasNext();) {
@@ -1,11 +1,17 @@
 package com.vitco.app.util.graphic;
 
+import com.vitco.app.util.misc.IntegerTools;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 import org.junit.Test;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Test Image comparator functionality
@@ -115,4 +121,263 @@ public class ImageComparatorTest {
         assert getResult("needle.png", "haystack_small.png", new int[] {7})[2] == 7;
 
     }
+
+    // helper - random image (pixels with x, y and color)
+    private static ArrayList<int[]> randomImage(Random rand, int width, int height, int colors) {
+        ArrayList<int[]> result = new ArrayList<int[]>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (rand.nextInt(4) != 0) {
+                    result.add(new int[] {x, y, rand.nextInt(colors) * 997});
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(new int[] {0, 0, 0});
+        }
+        return result;
+    }
+
+    // helper - check that the child is contained in the parent at the position
+    // (all pixels of the child are set in the parent and have the same color)
+    private static boolean isPlaced(ArrayList<int[]> parent, ArrayList<int[]> child, int[] position) {
+        TIntIntHashMap parentPixels = new TIntIntHashMap();
+        for (int[] pixel : parent) {
+            parentPixels.put(IntegerTools.makeInt(pixel[0], pixel[1]), pixel[2]);
+        }
+        int widthM = 0, heightM = 0;
+        for (int[] pixel : child) {
+            widthM = Math.max(widthM, pixel[0]);
+            heightM = Math.max(heightM, pixel[1]);
+        }
+        int x = position[0], y = position[1];
+        for (int[] pixel : child) {
+            int u = pixel[0], v = pixel[1];
+            int pos;
+            switch (position[2]) {
+                case 0: pos = IntegerTools.makeInt(x + u, y + v); break;
+                case 4: pos = IntegerTools.makeInt(x + widthM - u, y + v); break;
+                case 2: pos = IntegerTools.makeInt(x + widthM - u, y + heightM - v); break;
+                case 6: pos = IntegerTools.makeInt(x + u, y + heightM - v); break;
+                case 7: pos = IntegerTools.makeInt(x + v, y + u); break;
+                case 1: pos = IntegerTools.makeInt(x + heightM - v, y + u); break;
+                case 3: pos = IntegerTools.makeInt(x + v, y + widthM - u); break;
+                default: pos = IntegerTools.makeInt(x + heightM - v, y + widthM - u); break;
+            }
+            if (!parentPixels.containsKey(pos) || parentPixels.get(pos) != pixel[2]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testGetPositionSparse() throws Exception {
+        // the child and the parent have empty rows
+        ArrayList<int[]> parent = new ArrayList<int[]>();
+        parent.add(new int[] {0, 0, 3});
+        parent.add(new int[] {0, 3, 5});
+        parent.add(new int[] {0, 5, 7});
+        ArrayList<int[]> child = new ArrayList<int[]>();
+        child.add(new int[] {0, 0, 5});
+        child.add(new int[] {0, 2, 7});
+        int[] position = new ImageComparator(parent).getPosition(new ImageComparator(child), null);
+        assert position != null;
+        assert isPlaced(parent, child, position);
+
+        // a pixel with color zero is not contained in a pixel that is not set
+        parent.clear();
+        parent.add(new int[] {0, 0, 0});
+        parent.add(new int[] {1, 1, 0});
+        child.clear();
+        child.add(new int[] {1, 0, 0});
+        child.add(new int[] {0, 1, 0});
+        position = new ImageComparator(parent).getPosition(new ImageComparator(child), null);
+        assert position != null;
+        assert isPlaced(parent, child, position);
+        assert position[2] != 0;
+    }
+
+    // helper - the color counts of an image
+    private static TIntIntHashMap countColors(ArrayList<int[]> pixels) {
+        TIntIntHashMap result = new TIntIntHashMap();
+        for (int[] pixel : pixels) {
+            result.adjustOrPutValue(pixel[2], 1, 1);
+        }
+        return result;
+    }
+
+    @Test
+    public void testJaccardAndContainment() throws Exception {
+        Random rand = new Random(0);
+        for (int run = 0; run < 500; run++) {
+            ArrayList<int[]> pixels1 = randomImage(rand, 1 + rand.nextInt(12), 1 + rand.nextInt(12), 1 + rand.nextInt(20));
+            ArrayList<int[]> pixels2 = randomImage(rand, 1 + rand.nextInt(12), 1 + rand.nextInt(12), 1 + rand.nextInt(20));
+            ImageComparator one = new ImageComparator(pixels1);
+            ImageComparator two = new ImageComparator(pixels2);
+
+            // compare with the jaccard similarity computed over all colors
+            TIntIntHashMap colors1 = countColors(pixels1);
+            TIntIntHashMap colors2 = countColors(pixels2);
+            TIntHashSet uniqueColors = new TIntHashSet(colors1.keySet());
+            uniqueColors.addAll(colors2.keySet());
+            int intersection = 0;
+            int union = 0;
+            for (int color : uniqueColors.toArray()) {
+                intersection += Math.min(colors1.get(color), colors2.get(color));
+                union += Math.max(colors1.get(color), colors2.get(color));
+            }
+            assert one.jaccard(two) == intersection / (float) union;
+            assert two.jaccard(one) == one.jaccard(two);
+            assert one.jaccard(one) == 1;
+
+            // a texture that can not contain the other has no position for it
+            if (!one.mayContain(two)) {
+                assert one.getPosition(two, null) == null;
+            }
+            if (!two.mayContain(one)) {
+                assert two.getPosition(one, null) == null;
+            }
+
+            // a part of the image is always contained
+            ArrayList<int[]> part = new ArrayList<int[]>();
+            for (int[] pixel : pixels1) {
+                if (pixel[0] < 3 && pixel[1] < 3) {
+                    part.add(pixel);
+                }
+            }
+            if (!part.isEmpty()) {
+                ImageComparator child = new ImageComparator(part);
+                assert one.mayContain(child);
+                int[] position = one.getPosition(child, null);
+                assert position != null;
+                assert isPlaced(pixels1, part, position);
+            }
+
+            // a found position places the image
+            int[] position = one.getPosition(two, null);
+            if (position != null) {
+                assert isPlaced(pixels1, pixels2, position);
+            }
+        }
+    }
+
+    // helper - the color of a pixel of an image given as grid (0 if not set)
+    private static int getColor(int[][] grid, int x, int y) {
+        return x >= 0 && y >= 0 && x < grid.length && y < grid[x].length ? grid[x][y] : 0;
+    }
+
+    // helper - the merge point computed by comparing every pixel (grids are indexed [x][y])
+    private static int[] getMergePoint(int[][] one, int[][] two) {
+        int width1 = one.length, height1 = one[0].length;
+        int width2 = two.length, height2 = two[0].length;
+        int[] result = new int[]{width1, 0, 0};
+        int[] size = new int[] {width1 + width2, Math.max(height1, height2)};
+        if (size[0] > size[1] * 3) {
+            result[0] = 0;
+            result[1] = height1;
+            size[0] = Math.max(width1, width2);
+            size[1] = height1 + height2;
+        }
+        int area = size[0] * size[1];
+        int pixelOverlap = 0;
+        int[] originalSize = size.clone();
+        for (int flip = 0; flip < 2; flip++) {
+            int w = flip == 1 ? height2 : width2;
+            int h = flip == 1 ? width2 : height2;
+            for (int x = -w + 1; x < width1 + flip; x++) {
+                for (int y = -h + 1; y < height1; y++) {
+                    int widthTmp = Math.max(width1, x + w) - Math.min(0, x);
+                    int heightTmp = Math.max(height1, y + h) - Math.min(0, y);
+                    int areaTmp = widthTmp * heightTmp;
+                    if (area < areaTmp ||
+                            !(widthTmp < heightTmp * 3 || (originalSize[0] != size[0] && size[0] >= widthTmp)) ||
+                            !(heightTmp < widthTmp * 3 || (originalSize[1] != size[1] && size[1] >= heightTmp))) {
+                        continue;
+                    }
+                    for (int k = 0; k < 4; k++) {
+                        boolean matched = true;
+                        int overlap = 0;
+                        for (int i = Math.max(0, x); i < Math.min(width1, x + w); i++) {
+                            for (int j = Math.max(0, y); j < Math.min(height1, y + h); j++) {
+                                int u = i - x, v = j - y;
+                                int color;
+                                if (flip == 1) {
+                                    switch (k) {
+                                        case 0: color = getColor(two, v, height2 - 1 - u); break;
+                                        case 1: color = getColor(two, width2 - 1 - v, u); break;
+                                        case 2: color = getColor(two, width2 - 1 - v, height2 - 1 - u); break;
+                                        default: color = getColor(two, v, u); break;
+                                    }
+                                } else {
+                                    switch (k) {
+                                        case 0: color = getColor(two, u, v); break;
+                                        case 1: color = getColor(two, width2 - 1 - u, height2 - 1 - v); break;
+                                        case 2: color = getColor(two, width2 - 1 - u, v); break;
+                                        default: color = getColor(two, u, height2 - 1 - v); break;
+                                    }
+                                }
+                                if (one[i][j] != 0 && color != 0) {
+                                    if (one[i][j] == color) {
+                                        overlap++;
+                                    } else {
+                                        matched = false;
+                                    }
+                                }
+                            }
+                        }
+                        if (matched && (area > areaTmp || overlap > pixelOverlap)) {
+                            result[0] = x;
+                            result[1] = y;
+                            result[2] = k * 2 + flip;
+                            area = areaTmp;
+                            size[0] = widthTmp;
+                            size[1] = heightTmp;
+                            pixelOverlap = overlap;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // helper - the pixels of an image given as grid
+    private static ArrayList<int[]> toPixels(int[][] grid) {
+        ArrayList<int[]> result = new ArrayList<int[]>();
+        for (int x = 0; x < grid.length; x++) {
+            for (int y = 0; y < grid[x].length; y++) {
+                if (grid[x][y] != 0) {
+                    result.add(new int[] {x, y, grid[x][y]});
+                }
+            }
+        }
+        return result;
+    }
+
+    // helper - random image as grid (the last column and row are always set)
+    private static int[][] randomGrid(Random rand, int width, int height, int colors) {
+        int[][] result = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (x == width - 1 || y == height - 1 || rand.nextInt(3) != 0) {
+                    result[x][y] = 1 + rand.nextInt(colors);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testGetMergePoint() throws Exception {
+        Random rand = new Random(0);
+        for (int run = 0; run < 300; run++) {
+            // some images are wider than a word of the packed images
+            int maxSize = run % 10 == 0 ? 90 : 12;
+            int[][] one = randomGrid(rand, 1 + rand.nextInt(maxSize), 1 + rand.nextInt(maxSize), 1 + rand.nextInt(run % 3 == 0 ? 2 : 40));
+            int[][] two = randomGrid(rand, 1 + rand.nextInt(maxSize), 1 + rand.nextInt(maxSize), 1 + rand.nextInt(run % 3 == 0 ? 2 : 40));
+            int[] result = ImageComparator.getMergePoint(new ImageComparator(toPixels(one)), new ImageComparator(toPixels(two)));
+            assert Arrays.equals(result, getMergePoint(one, two));
+        }
+    }
 }
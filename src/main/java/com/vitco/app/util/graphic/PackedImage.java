@@ -0,0 +1,86 @@
+package com.vitco.app.util.graphic;
+
+/**
+ * Image stored as bit rows (64 pixels per word).
+ *
+ * The occupancy row has a bit set for every pixel that is set. The colors are stored as
+ * palette indices, one bit row for every bit of the index ("color planes"). Two images can
+ * then be compared for 64 pixels at once: pixels overlap if both occupancy bits are set and
+ * the colors differ if any of the color plane bits differ.
+ */
+final class PackedImage {
+
+    // dimension of the image
+    final int width;
+    final int height;
+    // words per row
+    private final int words;
+    // occupancy bits (row after row)
+    private final long[] occupancy;
+    // the bits of the palette indices (row after row)
+    private final long[][] planes;
+
+    PackedImage(int width, int height, int planeCount) {
+        this.width = width;
+        this.height = height;
+        this.words = (width + 63) >>> 6;
+        this.occupancy = new long[words * height];
+        this.planes = new long[planeCount][words * height];
+    }
+
+    // set a pixel with a palette index
+    void set(int x, int y, int index) {
+        int pos = y * words + (x >>> 6);
+        long bit = 1L << (x & 63);
+        occupancy[pos] |= bit;
+        for (int p = 0; p < planes.length; p++) {
+            if (((index >>> p) & 1) != 0) {
+                planes[p][pos] |= bit;
+            }
+        }
+    }
+
+    // helper - the 64 bits of a row starting at a bit position
+    // (the position can be negative, bits outside the row are zero)
+    private long window(long[] data, int rowStart, int start) {
+        int word = start >> 6;
+        int shift = start & 63;
+        long result = word >= 0 && word < words ? data[rowStart + word] >>> shift : 0;
+        if (shift != 0 && word + 1 >= 0 && word + 1 < words) {
+            result |= data[rowStart + word + 1] << (64 - shift);
+        }
+        return result;
+    }
+
+    // place the other image at the offset (x, y) and compare the overlapping pixels,
+    // returns the amount of overlapping pixels or -1 if any overlapping pixel has a
+    // different color (both images need to use the same palette)
+    int getOverlap(PackedImage other, int x, int y) {
+        int minX = Math.max(0, x);
+        int minY = Math.max(0, y);
+        int maxX = Math.min(width, x + other.width);
+        int maxY = Math.min(height, y + other.height);
+        if (minX >= maxX) {
+            return 0;
+        }
+        int count = 0;
+        for (int j = minY; j < maxY; j++) {
+            int row = j * words;
+            int otherRow = (j - y) * other.words;
+            for (int w = minX >>> 6, last = (maxX - 1) >>> 6; w <= last; w++) {
+                // pixels of the other image that correspond to this word
+                int start = (w << 6) - x;
+                long overlap = occupancy[row + w] & other.window(other.occupancy, otherRow, start);
+                if (overlap != 0) {
+                    for (int p = 0; p < planes.length; p++) {
+                        if (((planes[p][row + w] ^ other.window(other.planes[p], otherRow, start)) & overlap) != 0) {
+                            return -1;
+                        }
+                    }
+                    count += Long.bitCount(overlap);
+                }
+            }
+        }
+        return count;
+    }
+}
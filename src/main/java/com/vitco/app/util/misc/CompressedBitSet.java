@@ -0,0 +1,466 @@
+package com.vitco.app.util.misc;
+
+import gnu.trove.procedure.TIntProcedure;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bit set for non negative integers (roaring-style).
+ *
+ * The values are grouped into chunks of 2^16 values by their high bits. A chunk
+ * is stored as a sorted array of the low bits (up to 4096 values) or as a bitmap.
+ * The set operations work on whole chunks (word by word for bitmaps) and return
+ * new sets, the operands are not changed.
+ */
+public final class CompressedBitSet {
+
+    // chunks with more values are stored as bitmap
+    private static final int MAX_ARRAY = 4096;
+    // the size of a bitmap (in longs)
+    private static final int BITMAP_WORDS = 1024;
+
+    // set operations
+    private static final int OR = 0;
+    private static final int AND = 1;
+    private static final int AND_NOT = 2;
+    private static final int XOR = 3;
+
+    // the values of one chunk (either the array or the bitmap is used)
+    private static final class Chunk {
+        private char[] array;
+        private long[] bitmap;
+        private int cardinality;
+
+        // create a chunk from sorted values (null if there are no values)
+        private static Chunk fromSorted(char[] values, int count) {
+            if (count == 0) {
+                return null;
+            }
+            Chunk result = new Chunk();
+            if (count > MAX_ARRAY) {
+                result.bitmap = new long[BITMAP_WORDS];
+                for (int i = 0; i < count; i++) {
+                    result.bitmap[values[i] >>> 6] |= 1L << values[i];
+                }
+            } else {
+                result.array = values;
+            }
+            result.cardinality = count;
+            return result;
+        }
+
+        // create a chunk from a bitmap (null if there are no values)
+        private static Chunk fromWords(long[] words) {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            if (count == 0) {
+                return null;
+            }
+            Chunk result = new Chunk();
+            if (count > MAX_ARRAY) {
+                result.bitmap = words;
+            } else {
+                result.array = toArray(words, count);
+            }
+            result.cardinality = count;
+            return result;
+        }
+
+        // helper - the values of a bitmap as sorted array
+        private static char[] toArray(long[] words, int count) {
+            char[] result = new char[count];
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    result[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return result;
+        }
+
+        // the values as bitmap (the bitmap of this chunk must not be changed)
+        private long[] words() {
+            if (bitmap != null) {
+                return bitmap;
+            }
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                result[array[i] >>> 6] |= 1L << array[i];
+            }
+            return result;
+        }
+
+        private boolean contains(char value) {
+            if (bitmap != null) {
+                return (bitmap[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, value) >= 0;
+        }
+
+        private boolean add(char value) {
+            if (bitmap != null) {
+                long bit = 1L << value;
+                if ((bitmap[value >>> 6] & bit) != 0) {
+                    return false;
+                }
+                bitmap[value >>> 6] |= bit;
+                cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, value);
+            if (index >= 0) {
+                return false;
+            }
+            if (cardinality == MAX_ARRAY) {
+                // switch to a bitmap
+                bitmap = words();
+                array = null;
+                return add(value);
+            }
+            index = -index - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(MAX_ARRAY, array.length * 2));
+            }
+            System.arraycopy(array, index, array, index + 1, cardinality - index);
+            array[index] = value;
+            cardinality++;
+            return true;
+        }
+
+        private boolean remove(char value) {
+            if (bitmap != null) {
+                long bit = 1L << value;
+                if ((bitmap[value >>> 6] & bit) == 0) {
+                    return false;
+                }
+                bitmap[value >>> 6] &= ~bit;
+                cardinality--;
+                if (cardinality == MAX_ARRAY) {
+                    // switch to an array
+                    array = toArray(bitmap, cardinality);
+                    bitmap = null;
+                }
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(array, index + 1, array, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        private Chunk copy() {
+            Chunk result = new Chunk();
+            result.array = array == null ? null : Arrays.copyOf(array, cardinality);
+            result.bitmap = bitmap == null ? null : bitmap.clone();
+            result.cardinality = cardinality;
+            return result;
+        }
+
+        private boolean forEach(int high, TIntProcedure procedure) {
+            if (bitmap != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    for (long word = bitmap[w]; word != 0; word &= word - 1) {
+                        if (!procedure.execute(high | ((w << 6) + Long.numberOfTrailingZeros(word)))) {
+                            return false;
+                        }
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (!procedure.execute(high | array[i])) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean sameValues(Chunk other) {
+            if (cardinality != other.cardinality) {
+                return false;
+            }
+            // the representation only depends on the cardinality
+            if (bitmap != null) {
+                return Arrays.equals(bitmap, other.bitmap);
+            }
+            for (int i = 0; i < cardinality; i++) {
+                if (array[i] != other.array[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // combine two chunks (null if the result is empty)
+        private static Chunk combine(Chunk a, Chunk b, int op) {
+            if (a.array != null && b.array != null) {
+                // merge the sorted arrays
+                char[] out = new char[op == AND ? Math.min(a.cardinality, b.cardinality)
+                        : (op == AND_NOT ? a.cardinality : a.cardinality + b.cardinality)];
+                int i = 0, j = 0, n = 0;
+                while (i < a.cardinality && j < b.cardinality) {
+                    char va = a.array[i];
+                    char vb = b.array[j];
+                    if (va < vb) {
+                        if (op != AND) {
+                            out[n++] = va;
+                        }
+                        i++;
+                    } else if (va > vb) {
+                        if (op == OR || op == XOR) {
+                            out[n++] = vb;
+                        }
+                        j++;
+                    } else {
+                        if (op == OR || op == AND) {
+                            out[n++] = va;
+                        }
+                        i++;
+                        j++;
+                    }
+                }
+                if (op != AND) {
+                    while (i < a.cardinality) {
+                        out[n++] = a.array[i++];
+                    }
+                }
+                if (op == OR || op == XOR) {
+                    while (j < b.cardinality) {
+                        out[n++] = b.array[j++];
+                    }
+                }
+                return fromSorted(n == out.length ? out : Arrays.copyOf(out, n), n);
+            }
+            // combine the bitmaps word by word
+            long[] wa = a.words();
+            long[] wb = b.words();
+            long[] out = new long[BITMAP_WORDS];
+            switch (op) {
+                case OR: for (int w = 0; w < BITMAP_WORDS; w++) out[w] = wa[w] | wb[w]; break;
+                case AND: for (int w = 0; w < BITMAP_WORDS; w++) out[w] = wa[w] & wb[w]; break;
+                case AND_NOT: for (int w = 0; w < BITMAP_WORDS; w++) out[w] = wa[w] & ~wb[w]; break;
+                default: for (int w = 0; w < BITMAP_WORDS; w++) out[w] = wa[w] ^ wb[w]; break;
+            }
+            return fromWords(out);
+        }
+    }
+
+    // the chunks (sorted by key, the high bits of the values)
+    private char[] keys = new char[4];
+    private Chunk[] chunks = new Chunk[4];
+    private int size = 0;
+
+    // helper - add a chunk at the position
+    private void insertChunk(int index, char key, Chunk chunk) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(chunks, index, chunks, index + 1, size - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        size++;
+    }
+
+    // add a value, returns true if the value was not contained
+    public boolean add(int value) {
+        assert value >= 0;
+        char key = (char) (value >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) {
+            return chunks[index].add((char) value);
+        }
+        Chunk chunk = new Chunk();
+        chunk.array = new char[] {(char) value};
+        chunk.cardinality = 1;
+        insertChunk(-index - 1, key, chunk);
+        return true;
+    }
+
+    // add the values
+    public void addAll(int[] values) {
+        for (int value : values) {
+            add(value);
+        }
+    }
+
+    // remove a value, returns true if the value was contained
+    public boolean remove(int value) {
+        int index = value < 0 ? -1 : Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        if (index < 0 || !chunks[index].remove((char) value)) {
+            return false;
+        }
+        if (chunks[index].cardinality == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(chunks, index + 1, chunks, index, size - index - 1);
+            chunks[--size] = null;
+        }
+        return true;
+    }
+
+    // true iff the value is in the set
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return index >= 0 && chunks[index].contains((char) value);
+    }
+
+    // remove all values
+    public void clear() {
+        keys = new char[4];
+        chunks = new Chunk[4];
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // the amount of values in the set
+    public int cardinality() {
+        int result = 0;
+        for (int i = 0; i < size; i++) {
+            result += chunks[i].cardinality;
+        }
+        return result;
+    }
+
+    // execute the procedure for all values (in ascending order), returns
+    // false if the procedure returned false for a value
+    public boolean forEach(TIntProcedure procedure) {
+        for (int i = 0; i < size; i++) {
+            if (!chunks[i].forEach(keys[i] << 16, procedure)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the values (in ascending order)
+    public int[] toArray() {
+        final int[] result = new int[cardinality()];
+        forEach(new TIntProcedure() {
+            private int n = 0;
+            @Override
+            public boolean execute(int value) {
+                result[n++] = value;
+                return true;
+            }
+        });
+        return result;
+    }
+
+    // copy of this set
+    public CompressedBitSet copy() {
+        CompressedBitSet result = new CompressedBitSet();
+        result.keys = Arrays.copyOf(keys, Math.max(4, size));
+        result.chunks = new Chunk[result.keys.length];
+        for (int i = 0; i < size; i++) {
+            result.chunks[i] = chunks[i].copy();
+        }
+        result.size = size;
+        return result;
+    }
+
+    // estimated memory used by this set (in bytes)
+    public long getMemorySize() {
+        long result = 32 + keys.length * 6L;
+        for (int i = 0; i < size; i++) {
+            result += 24 + (chunks[i].bitmap != null ? BITMAP_WORDS * 8L : chunks[i].array.length * 2L);
+        }
+        return result;
+    }
+
+    // -------------
+    // set operations (a new set is returned)
+
+    // combine this set with another set
+    private CompressedBitSet combine(CompressedBitSet other, int op) {
+        CompressedBitSet result = new CompressedBitSet();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            int keyA = i < size ? keys[i] : Integer.MAX_VALUE;
+            int keyB = j < other.size ? other.keys[j] : Integer.MAX_VALUE;
+            Chunk chunk;
+            int key;
+            if (keyA < keyB) {
+                key = keyA;
+                chunk = op == AND ? null : chunks[i].copy();
+                i++;
+            } else if (keyA > keyB) {
+                key = keyB;
+                chunk = op == OR || op == XOR ? other.chunks[j].copy() : null;
+                j++;
+            } else {
+                key = keyA;
+                chunk = Chunk.combine(chunks[i], other.chunks[j], op);
+                i++;
+                j++;
+            }
+            if (chunk != null) {
+                result.insertChunk(result.size, (char) key, chunk);
+            }
+        }
+        return result;
+    }
+
+    // values that are in this or in the other set
+    public CompressedBitSet or(CompressedBitSet other) {
+        return combine(other, OR);
+    }
+
+    // values that are in this and in the other set
+    public CompressedBitSet and(CompressedBitSet other) {
+        return combine(other, AND);
+    }
+
+    // values that are in this but not in the other set
+    public CompressedBitSet andNot(CompressedBitSet other) {
+        return combine(other, AND_NOT);
+    }
+
+    // values that are in exactly one of the sets
+    public CompressedBitSet xor(CompressedBitSet other) {
+        return combine(other, XOR);
+    }
+
+    // -------------
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CompressedBitSet)) {
+            return false;
+        }
+        CompressedBitSet other = (CompressedBitSet) obj;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i] || !chunks[i].sameValues(other.chunks[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] result = new int[] {size};
+        forEach(new TIntProcedure() {
+            @Override
+            public boolean execute(int value) {
+                result[0] = result[0] * 31 + value;
+                return true;
+            }
+        });
+        return result[0];
+    }
+}
@@ -0,0 +1,127 @@
+package com.vitco.app.util.misc;
+
+import gnu.trove.set.hash.TIntHashSet;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test the compressed bit set against a hash set.
+ */
+public class CompressedBitSetTest {
+
+    // helper - check that the bit set contains exactly the values
+    private static void check(CompressedBitSet set, TIntHashSet values) {
+        assert set.cardinality() == values.size();
+        assert set.isEmpty() == values.isEmpty();
+        int[] expected = values.toArray();
+        Arrays.sort(expected);
+        assert Arrays.equals(set.toArray(), expected);
+        for (int value : expected) {
+            assert set.contains(value);
+        }
+    }
+
+    // helper - random values (dense or sparse)
+    private static int randomValue(Random rand, boolean dense) {
+        return dense
+                ? rand.nextInt(3) * 65536 + rand.nextInt(20000)
+                : rand.nextInt(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testAddRemove() throws Exception {
+        Random rand = new Random(0);
+        for (int run = 0; run < 20; run++) {
+            boolean dense = run % 2 == 0;
+            CompressedBitSet set = new CompressedBitSet();
+            TIntHashSet values = new TIntHashSet();
+            for (int i = 0; i < 30000; i++) {
+                int value = randomValue(rand, dense);
+                if (rand.nextInt(3) == 0) {
+                    assert set.remove(value) == values.remove(value);
+                } else {
+                    assert set.add(value) == values.add(value);
+                }
+                assert set.contains(value) == values.contains(value);
+            }
+            check(set, values);
+            // remove until the chunks are arrays again
+            for (int value : values.toArray()) {
+                if (rand.nextBoolean()) {
+                    assert set.remove(value);
+                    values.remove(value);
+                }
+            }
+            check(set, values);
+            assert set.copy().equals(set);
+            assert set.copy().hashCode() == set.hashCode();
+            set.clear();
+            check(set, new TIntHashSet());
+        }
+    }
+
+    @Test
+    public void testSetOperations() throws Exception {
+        Random rand = new Random(0);
+        for (int run = 0; run < 40; run++) {
+            CompressedBitSet a = new CompressedBitSet();
+            CompressedBitSet b = new CompressedBitSet();
+            TIntHashSet valuesA = new TIntHashSet();
+            TIntHashSet valuesB = new TIntHashSet();
+            // different densities (to combine arrays and bitmaps)
+            int countA = rand.nextInt(30000);
+            int countB = rand.nextInt(30000);
+            for (int i = 0; i < countA; i++) {
+                int value = randomValue(rand, run % 4 != 0);
+                a.add(value);
+                valuesA.add(value);
+            }
+            for (int i = 0; i < countB; i++) {
+                int value = randomValue(rand, run % 3 != 0);
+                b.add(value);
+                valuesB.add(value);
+            }
+            CompressedBitSet copyA = a.copy();
+            CompressedBitSet copyB = b.copy();
+
+            TIntHashSet or = new TIntHashSet(valuesA);
+            or.addAll(valuesB);
+            check(a.or(b), or);
+            TIntHashSet and = new TIntHashSet(valuesA);
+            and.retainAll(valuesB);
+            check(a.and(b), and);
+            TIntHashSet andNot = new TIntHashSet(valuesA);
+            andNot.removeAll(valuesB);
+            check(a.andNot(b), andNot);
+            TIntHashSet xor = new TIntHashSet(or);
+            xor.removeAll(and);
+            check(a.xor(b), xor);
+            // xor twice restores the set
+            assert a.xor(b).xor(b).equals(a);
+            assert a.xor(a).isEmpty();
+
+            // the operands are not changed
+            assert a.equals(copyA);
+            assert b.equals(copyB);
+        }
+    }
+
+    // selecting and deselecting many voxel should be fast
+    @Test
+    public void testPerformance() throws Exception {
+        CompressedBitSet all = new CompressedBitSet();
+        for (int i = 0; i < 500000; i++) {
+            all.add(i);
+        }
+        CompressedBitSet selection = new CompressedBitSet();
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            selection = selection.xor(all);
+            assert selection.cardinality() == (i % 2 == 0 ? 500000 : 0);
+        }
+        time = System.currentTimeMillis() - time;
+        assert time < 1000 : time;
+    }
+}